@@ -1558,6 +1558,23 @@ class BeamModulePlugin implements Plugin<Project> {
             // that ends up on the runtime classpath.
             args 'org.apache.beam'
           }
+          // Specify -PjmhProfiler=gc to additionally report the allocation rate.
+          if (project.hasProperty("jmhProfiler")) {
+            args '-prof=' + project.getProperty("jmhProfiler")
+          }
+          // Specify -PjmhResults=results.json to write the results in JSON format, which can be
+          // used as baseline of a later run by specifying -PjmhBaseline=results.json. The run fails
+          // if a benchmark regressed by more than -PjmhRegressionThreshold (defaults to 0.1).
+          if (project.hasProperty("jmhResults")) {
+            args '-rf=json'
+            args '-rff=' + project.file(project.getProperty("jmhResults"))
+          }
+          if (project.hasProperty("jmhBaseline")) {
+            environment 'JMH_BASELINE_RESULTS', project.file(project.getProperty("jmhBaseline"))
+          }
+          if (project.hasProperty("jmhRegressionThreshold")) {
+            environment 'JMH_REGRESSION_THRESHOLD', project.getProperty("jmhRegressionThreshold")
+          }
           // Reduce forks to 3
           args '-f=3'
           args '-foe=true'
@@ -79,6 +79,14 @@ public class Environments {
   public static final String ENVIRONMENT_EMBEDDED = "EMBEDDED"; // Non Public urn for testing
   public static final String ENVIRONMENT_LOOPBACK = "LOOPBACK"; // Non Public urn for testing
 
+  /**
+   * Indicates that the SDK harness is able to connect to a data {@link ApiServiceDescriptor} with a
+   * {@code unix://} URL. Runners which execute the SDK harness on the same host may use a Unix
+   * domain socket for the data plane instead of a TCP connection.
+   */
+  public static final String DOMAIN_SOCKET_DATA_CHANNEL_CAPABILITY =
+      "beam:protocol:domain_socket_data_channel:v1";
+
   private static final String dockerContainerImageOption = "docker_container_image";
   private static final String externalServiceAddressOption = "external_service_address";
   private static final String processCommandOption = "process_command";
@@ -424,6 +432,7 @@ public class Environments {
     capabilities.add(BeamUrns.getUrn(SplittableParDoComponents.TRUNCATE_SIZED_RESTRICTION));
     capabilities.add(BeamUrns.getUrn(Primitives.TO_STRING));
     capabilities.add(BeamUrns.getUrn(StandardProtocols.Enum.DATA_SAMPLING));
+    capabilities.add(DOMAIN_SOCKET_DATA_CHANNEL_CAPABILITY);
     return capabilities.build();
   }
 
@@ -207,6 +207,9 @@ public class EnvironmentsTest implements Serializable {
     assertThat(
         Environments.getJavaCapabilities(),
         hasItem(BeamUrns.getUrn(RunnerApi.StandardProtocols.Enum.DATA_SAMPLING)));
+    assertThat(
+        Environments.getJavaCapabilities(),
+        hasItem(Environments.DOMAIN_SOCKET_DATA_CHANNEL_CAPABILITY));
     // Check that SDF truncation is supported
     assertThat(
         Environments.getJavaCapabilities(),
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core.jmh;
+
+import java.util.Random;
+import org.apache.beam.runners.core.InMemoryTimerInternals;
+import org.apache.beam.runners.core.StateNamespace;
+import org.apache.beam.runners.core.StateNamespaces;
+import org.apache.beam.runners.core.TimerInternals.TimerData;
+import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for setting, resetting, deleting and firing the timers of a single key group in an
+ * {@link InMemoryTimerInternals}. Scores are reported per timer.
+ */
+public class InMemoryTimerInternalsBenchmark {
+  static final int NUM_TIMERS = 1_000_000;
+
+  private static final StateNamespace NAMESPACE = StateNamespaces.global();
+
+  /** The IDs of the timers and two random timestamps for each of them. */
+  @State(Scope.Benchmark)
+  public static class Timers {
+    String[] ids = new String[0];
+    Instant[] timestamps = new Instant[0];
+    Instant[] resetTimestamps = new Instant[0];
+
+    @Setup
+    public void setup() {
+      Random random = new Random(42);
+      ids = new String[NUM_TIMERS];
+      timestamps = new Instant[NUM_TIMERS];
+      resetTimestamps = new Instant[NUM_TIMERS];
+      for (int i = 0; i < NUM_TIMERS; ++i) {
+        ids[i] = "timer" + i;
+        timestamps[i] = new Instant(random.nextInt(Integer.MAX_VALUE));
+        resetTimestamps[i] = new Instant(random.nextInt(Integer.MAX_VALUE));
+      }
+    }
+
+    void setAll(InMemoryTimerInternals timerInternals, Instant[] timestamps) {
+      for (int i = 0; i < NUM_TIMERS; ++i) {
+        timerInternals.setTimer(
+            NAMESPACE, ids[i], "", timestamps[i], timestamps[i], TimeDomain.EVENT_TIME);
+      }
+    }
+  }
+
+  /** An {@link InMemoryTimerInternals} with all {@link Timers} set. */
+  @State(Scope.Thread)
+  public static class SetTimers {
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals();
+
+    @Setup(Level.Invocation)
+    public void setup(Timers timers) {
+      timerInternals = new InMemoryTimerInternals();
+      timers.setAll(timerInternals, timers.timestamps);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_TIMERS)
+  public InMemoryTimerInternals setTimers(Timers timers) {
+    InMemoryTimerInternals timerInternals = new InMemoryTimerInternals();
+    timers.setAll(timerInternals, timers.timestamps);
+    return timerInternals;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_TIMERS)
+  public InMemoryTimerInternals resetTimers(Timers timers, SetTimers set) {
+    timers.setAll(set.timerInternals, timers.resetTimestamps);
+    return set.timerInternals;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_TIMERS)
+  public InMemoryTimerInternals deleteTimers(Timers timers, SetTimers set) {
+    for (int i = 0; i < NUM_TIMERS; ++i) {
+      set.timerInternals.deleteTimer(NAMESPACE, timers.ids[i], "", TimeDomain.EVENT_TIME);
+    }
+    return set.timerInternals;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_TIMERS)
+  public void fireTimers(SetTimers set, Blackhole bh) throws Exception {
+    set.timerInternals.advanceInputWatermark(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    for (TimerData timer = set.timerInternals.removeNextEventTimer();
+        timer != null;
+        timer = set.timerInternals.removeNextEventTimer()) {
+      bh.consume(timer);
+    }
+  }
+}
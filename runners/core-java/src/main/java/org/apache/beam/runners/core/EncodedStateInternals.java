@@ -0,0 +1,775 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryCombiningState;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryMap;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryMultimap;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemorySet;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryWatermarkHold;
+import org.apache.beam.runners.core.StateTag.StateBinder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.Coder.NonDeterministicException;
+import org.apache.beam.sdk.coders.CoderException;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.CombiningState;
+import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.MultimapState;
+import org.apache.beam.sdk.state.OrderedListState;
+import org.apache.beam.sdk.state.ReadableState;
+import org.apache.beam.sdk.state.ReadableStates;
+import org.apache.beam.sdk.state.SetState;
+import org.apache.beam.sdk.state.State;
+import org.apache.beam.sdk.state.StateContext;
+import org.apache.beam.sdk.state.ValueState;
+import org.apache.beam.sdk.state.WatermarkHoldState;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.CombineWithContext.CombineFnWithContext;
+import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.CombineFnUtil;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Instant;
+
+/**
+ * Implementation of {@link StateInternals} which keeps value, bag, set, map and ordered list state
+ * encoded with the coders of their {@link StateTag} in a {@link StateArena}, rather than as decoded
+ * objects on the heap like {@link InMemoryStateInternals}.
+ *
+ * <p>Each element costs its encoded size plus a few bytes in the arena and the {@code long} address
+ * referencing it, so the memory used by large state is predictable and can be spilled to a local
+ * file by using a {@link StateArena#spilling spilling} arena, which may be shared by the state
+ * internals of many keys. In exchange, every read decodes the elements it returns.
+ *
+ * <p>Set and map state is indexed by the encoded elements and keys, and therefore only kept encoded
+ * if the element or key coder is deterministic; otherwise it falls back to the cells of {@link
+ * InMemoryStateInternals}, as do combining, watermark hold and multimap state.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+public class EncodedStateInternals<K> implements StateInternals {
+
+  private static final long NO_ADDRESS = -1L;
+
+  /** Returns state internals for {@code key} which keep their state in a new in-memory arena. */
+  public static <K> EncodedStateInternals<K> forKey(@Nullable K key) {
+    return forKey(key, StateArena.inMemory());
+  }
+
+  /** Returns state internals for {@code key} which keep their state in {@code arena}. */
+  public static <K> EncodedStateInternals<K> forKey(@Nullable K key, StateArena arena) {
+    return new EncodedStateInternals<>(key, arena);
+  }
+
+  private final @Nullable K key;
+  private final StateArena arena;
+
+  private final StateTable encodedState =
+      new StateTable() {
+        @Override
+        protected StateBinder binderForNamespace(StateNamespace namespace, StateContext<?> c) {
+          return new EncodedStateBinder(c);
+        }
+      };
+
+  private EncodedStateInternals(@Nullable K key, StateArena arena) {
+    this.key = key;
+    this.arena = arena;
+  }
+
+  @Override
+  public @Nullable K getKey() {
+    return key;
+  }
+
+  /** Clears all state of this key and frees its records in the arena. */
+  public void clear() {
+    for (State state : encodedState.values()) {
+      state.clear();
+    }
+    encodedState.clear();
+  }
+
+  @Override
+  public <T extends State> T state(
+      StateNamespace namespace, StateTag<T> address, final StateContext<?> c) {
+    return encodedState.get(namespace, address, c);
+  }
+
+  /** A {@link StateBinder} that returns encoded {@link State} objects. */
+  private class EncodedStateBinder implements StateBinder {
+    private final StateContext<?> c;
+
+    private EncodedStateBinder(StateContext<?> c) {
+      this.c = c;
+    }
+
+    @Override
+    public <T> ValueState<T> bindValue(StateTag<ValueState<T>> address, Coder<T> coder) {
+      return new EncodedValue<>(coder);
+    }
+
+    @Override
+    public <T> BagState<T> bindBag(final StateTag<BagState<T>> address, Coder<T> elemCoder) {
+      return new EncodedBag<>(elemCoder);
+    }
+
+    @Override
+    public <T> SetState<T> bindSet(StateTag<SetState<T>> spec, Coder<T> elemCoder) {
+      return isDeterministic(elemCoder)
+          ? new EncodedSet<>(elemCoder)
+          : new InMemorySet<>(elemCoder);
+    }
+
+    @Override
+    public <KeyT, ValueT> MapState<KeyT, ValueT> bindMap(
+        StateTag<MapState<KeyT, ValueT>> spec,
+        Coder<KeyT> mapKeyCoder,
+        Coder<ValueT> mapValueCoder) {
+      return isDeterministic(mapKeyCoder)
+          ? new EncodedMap<>(mapKeyCoder, mapValueCoder)
+          : new InMemoryMap<>(mapKeyCoder, mapValueCoder);
+    }
+
+    @Override
+    public <KeyT, ValueT> MultimapState<KeyT, ValueT> bindMultimap(
+        StateTag<MultimapState<KeyT, ValueT>> spec,
+        Coder<KeyT> keyCoder,
+        Coder<ValueT> valueCoder) {
+      return new InMemoryMultimap<>(keyCoder, valueCoder);
+    }
+
+    @Override
+    public <T> OrderedListState<T> bindOrderedList(
+        StateTag<OrderedListState<T>> spec, Coder<T> elemCoder) {
+      return new EncodedOrderedList<>(elemCoder);
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT> CombiningState<InputT, AccumT, OutputT> bindCombiningValue(
+        StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+        Coder<AccumT> accumCoder,
+        final CombineFn<InputT, AccumT, OutputT> combineFn) {
+      return new InMemoryCombiningState<>(combineFn, accumCoder);
+    }
+
+    @Override
+    public WatermarkHoldState bindWatermark(
+        StateTag<WatermarkHoldState> address, TimestampCombiner timestampCombiner) {
+      return new InMemoryWatermarkHold(timestampCombiner);
+    }
+
+    @Override
+    public <InputT, AccumT, OutputT>
+        CombiningState<InputT, AccumT, OutputT> bindCombiningValueWithContext(
+            StateTag<CombiningState<InputT, AccumT, OutputT>> address,
+            Coder<AccumT> accumCoder,
+            CombineFnWithContext<InputT, AccumT, OutputT> combineFn) {
+      return bindCombiningValue(address, accumCoder, CombineFnUtil.bindContext(combineFn, c));
+    }
+  }
+
+  /** An encoded implementation of {@link ValueState}. */
+  private final class EncodedValue<T> implements ValueState<T> {
+    private final Coder<T> coder;
+    private long address = NO_ADDRESS;
+
+    private EncodedValue(Coder<T> coder) {
+      this.coder = coder;
+    }
+
+    @Override
+    public void clear() {
+      if (address != NO_ADDRESS) {
+        arena.free(address);
+        address = NO_ADDRESS;
+      }
+    }
+
+    @Override
+    public EncodedValue<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public T read() {
+      return address == NO_ADDRESS ? null : decode(coder, address);
+    }
+
+    @Override
+    public void write(T input) {
+      long previous = address;
+      address = arena.write(encode(coder, input));
+      if (previous != NO_ADDRESS) {
+        arena.free(previous);
+      }
+    }
+  }
+
+  /** An encoded implementation of {@link BagState}. */
+  private final class EncodedBag<T> implements BagState<T> {
+    private final Coder<T> elemCoder;
+    private final Addresses contents = new Addresses();
+
+    private EncodedBag(Coder<T> elemCoder) {
+      this.elemCoder = elemCoder;
+    }
+
+    @Override
+    public void clear() {
+      // The result of read below is decoded eagerly, so it stays stable when the bag is cleared
+      // while it is still in use.
+      contents.free();
+    }
+
+    @Override
+    public EncodedBag<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public Iterable<T> read() {
+      List<T> result = new ArrayList<>(contents.size());
+      for (int i = 0; i < contents.size(); ++i) {
+        result.add(decode(elemCoder, contents.get(i)));
+      }
+      return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void add(T input) {
+      contents.add(arena.write(encode(elemCoder, input)));
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+
+        @Override
+        public Boolean read() {
+          return contents.size() == 0;
+        }
+      };
+    }
+  }
+
+  /** An encoded implementation of {@link OrderedListState}. */
+  private final class EncodedOrderedList<T> implements OrderedListState<T> {
+    private final Coder<T> elemCoder;
+    private final NavigableMap<Instant, Addresses> contents = new TreeMap<>();
+
+    private EncodedOrderedList(Coder<T> elemCoder) {
+      this.elemCoder = elemCoder;
+    }
+
+    @Override
+    public void clear() {
+      clear(contents);
+    }
+
+    @Override
+    public void clearRange(Instant minTimestamp, Instant limitTimestamp) {
+      clear(contents.subMap(minTimestamp, true, limitTimestamp, false));
+    }
+
+    private void clear(Map<Instant, Addresses> range) {
+      for (Addresses addresses : range.values()) {
+        addresses.free();
+      }
+      range.clear();
+    }
+
+    @Override
+    public EncodedOrderedList<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public OrderedListState<T> readRangeLater(Instant minTimestamp, Instant limitTimestamp) {
+      return this;
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> read() {
+      return readRange(Instant.ofEpochMilli(Long.MIN_VALUE), Instant.ofEpochMilli(Long.MAX_VALUE));
+    }
+
+    @Override
+    public Iterable<TimestampedValue<T>> readRange(Instant minTimestamp, Instant limitTimestamp) {
+      List<TimestampedValue<T>> result = new ArrayList<>();
+      for (Map.Entry<Instant, Addresses> entry :
+          contents.subMap(minTimestamp, true, limitTimestamp, false).entrySet()) {
+        Addresses addresses = entry.getValue();
+        for (int i = 0; i < addresses.size(); ++i) {
+          result.add(TimestampedValue.of(decode(elemCoder, addresses.get(i)), entry.getKey()));
+        }
+      }
+      return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void add(TimestampedValue<T> input) {
+      contents
+          .computeIfAbsent(input.getTimestamp(), x -> new Addresses())
+          .add(arena.write(encode(elemCoder, input.getValue())));
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+
+        @Override
+        public Boolean read() {
+          return contents.isEmpty();
+        }
+      };
+    }
+  }
+
+  /** An encoded implementation of {@link SetState}, requiring a deterministic element coder. */
+  private final class EncodedSet<T> implements SetState<T> {
+    private final Coder<T> elemCoder;
+    private final EncodedIndex contents = new EncodedIndex();
+
+    private EncodedSet(Coder<T> elemCoder) {
+      this.elemCoder = elemCoder;
+    }
+
+    @Override
+    public void clear() {
+      contents.clear();
+    }
+
+    @Override
+    public ReadableState<Boolean> contains(T t) {
+      byte[] encoded = encode(elemCoder, t);
+      return ReadableStates.immediate(contents.find(encoded, hash(encoded)) >= 0);
+    }
+
+    @Override
+    public ReadableState<Boolean> addIfAbsent(T t) {
+      byte[] encoded = encode(elemCoder, t);
+      int hash = hash(encoded);
+      boolean alreadyContained = contents.find(encoded, hash) >= 0;
+      if (!alreadyContained) {
+        contents.insert(hash, arena.write(encoded), NO_ADDRESS);
+      }
+      return ReadableStates.immediate(!alreadyContained);
+    }
+
+    @Override
+    public void remove(T t) {
+      byte[] encoded = encode(elemCoder, t);
+      int slot = contents.find(encoded, hash(encoded));
+      if (slot >= 0) {
+        contents.removeAt(slot);
+      }
+    }
+
+    @Override
+    public EncodedSet<T> readLater() {
+      return this;
+    }
+
+    @Override
+    public Iterable<T> read() {
+      List<T> result = new ArrayList<>(contents.size());
+      for (int slot = contents.next(0); slot >= 0; slot = contents.next(slot + 1)) {
+        result.add(decode(elemCoder, contents.keyAt(slot)));
+      }
+      return Collections.unmodifiableList(result);
+    }
+
+    @Override
+    public void add(T input) {
+      addIfAbsent(input);
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+
+        @Override
+        public Boolean read() {
+          return contents.size() == 0;
+        }
+      };
+    }
+  }
+
+  /** An encoded implementation of {@link MapState}, requiring a deterministic key coder. */
+  private final class EncodedMap<KeyT, ValueT> implements MapState<KeyT, ValueT> {
+    private final Coder<KeyT> keyCoder;
+    private final Coder<ValueT> valueCoder;
+    private final EncodedIndex contents = new EncodedIndex();
+
+    private EncodedMap(Coder<KeyT> keyCoder, Coder<ValueT> valueCoder) {
+      this.keyCoder = keyCoder;
+      this.valueCoder = valueCoder;
+    }
+
+    @Override
+    public void clear() {
+      contents.clear();
+    }
+
+    @Override
+    public ReadableState<ValueT> get(KeyT key) {
+      return getOrDefault(key, null);
+    }
+
+    @Override
+    public ReadableState<ValueT> getOrDefault(KeyT key, @Nullable ValueT defaultValue) {
+      return new ReadableState<ValueT>() {
+        @Override
+        public ValueT read() {
+          byte[] encoded = encode(keyCoder, key);
+          int slot = contents.find(encoded, hash(encoded));
+          return slot < 0 ? defaultValue : decode(valueCoder, contents.valueAt(slot));
+        }
+
+        @Override
+        public ReadableState<ValueT> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public void put(KeyT key, ValueT value) {
+      byte[] encoded = encode(keyCoder, key);
+      int hash = hash(encoded);
+      int slot = contents.find(encoded, hash);
+      long valueAddress = arena.write(encode(valueCoder, value));
+      if (slot >= 0) {
+        contents.replaceValueAt(slot, valueAddress);
+      } else {
+        contents.insert(hash, arena.write(encoded), valueAddress);
+      }
+    }
+
+    @Override
+    public ReadableState<ValueT> computeIfAbsent(
+        KeyT key, Function<? super KeyT, ? extends ValueT> mappingFunction) {
+      byte[] encoded = encode(keyCoder, key);
+      int slot = contents.find(encoded, hash(encoded));
+      if (slot >= 0) {
+        return ReadableStates.immediate(decode(valueCoder, contents.valueAt(slot)));
+      }
+      put(key, mappingFunction.apply(key));
+      return ReadableStates.immediate(null);
+    }
+
+    @Override
+    public void remove(KeyT key) {
+      byte[] encoded = encode(keyCoder, key);
+      int slot = contents.find(encoded, hash(encoded));
+      if (slot >= 0) {
+        contents.removeAt(slot);
+      }
+    }
+
+    @Override
+    public ReadableState<Iterable<KeyT>> keys() {
+      return new ReadableState<Iterable<KeyT>>() {
+        @Override
+        public Iterable<KeyT> read() {
+          List<KeyT> result = new ArrayList<>(contents.size());
+          for (int slot = contents.next(0); slot >= 0; slot = contents.next(slot + 1)) {
+            result.add(decode(keyCoder, contents.keyAt(slot)));
+          }
+          return Collections.unmodifiableList(result);
+        }
+
+        @Override
+        public ReadableState<Iterable<KeyT>> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public ReadableState<Iterable<ValueT>> values() {
+      return new ReadableState<Iterable<ValueT>>() {
+        @Override
+        public Iterable<ValueT> read() {
+          List<ValueT> result = new ArrayList<>(contents.size());
+          for (int slot = contents.next(0); slot >= 0; slot = contents.next(slot + 1)) {
+            result.add(decode(valueCoder, contents.valueAt(slot)));
+          }
+          return Collections.unmodifiableList(result);
+        }
+
+        @Override
+        public ReadableState<Iterable<ValueT>> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public ReadableState<Iterable<Map.Entry<KeyT, ValueT>>> entries() {
+      return new ReadableState<Iterable<Map.Entry<KeyT, ValueT>>>() {
+        @Override
+        public Iterable<Map.Entry<KeyT, ValueT>> read() {
+          List<Map.Entry<KeyT, ValueT>> result = new ArrayList<>(contents.size());
+          for (int slot = contents.next(0); slot >= 0; slot = contents.next(slot + 1)) {
+            result.add(
+                new AbstractMap.SimpleImmutableEntry<>(
+                    decode(keyCoder, contents.keyAt(slot)),
+                    decode(valueCoder, contents.valueAt(slot))));
+          }
+          return Collections.unmodifiableList(result);
+        }
+
+        @Override
+        public ReadableState<Iterable<Map.Entry<KeyT, ValueT>>> readLater() {
+          return this;
+        }
+      };
+    }
+
+    @Override
+    public ReadableState<Boolean> isEmpty() {
+      return new ReadableState<Boolean>() {
+        @Override
+        public Boolean read() {
+          return contents.size() == 0;
+        }
+
+        @Override
+        public ReadableState<Boolean> readLater() {
+          return this;
+        }
+      };
+    }
+  }
+
+  /** A growable list of the addresses of records in the arena. */
+  private final class Addresses {
+    private long[] addresses = new long[4];
+    private int size;
+
+    private void add(long address) {
+      if (size == addresses.length) {
+        addresses = Arrays.copyOf(addresses, size * 2);
+      }
+      addresses[size++] = address;
+    }
+
+    private long get(int index) {
+      return addresses[index];
+    }
+
+    private int size() {
+      return size;
+    }
+
+    /** Frees all records of this list in the arena and empties it. */
+    private void free() {
+      for (int i = 0; i < size; ++i) {
+        arena.free(addresses[i]);
+      }
+      addresses = new long[4];
+      size = 0;
+    }
+  }
+
+  /**
+   * An open addressing hash table of encoded keys in the arena, each with the address of an
+   * optional value. Keys are compared by their encoded bytes, which is why the key coder has to be
+   * deterministic.
+   */
+  private final class EncodedIndex {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private long[] keys = emptyKeys(INITIAL_CAPACITY);
+    private long[] values = new long[INITIAL_CAPACITY];
+    private int size;
+
+    private int size() {
+      return size;
+    }
+
+    /** Returns the slot of the key encoded as {@code encoded}, or -1 if it is absent. */
+    private int find(byte[] encoded, int hash) {
+      int mask = keys.length - 1;
+      for (int slot = hash & mask; keys[slot] != NO_ADDRESS; slot = (slot + 1) & mask) {
+        if (hashes[slot] == hash && arena.contentEquals(keys[slot], encoded)) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    /** Returns the first occupied slot at or after {@code from}, or -1 if there is none. */
+    private int next(int from) {
+      for (int slot = from; slot < keys.length; ++slot) {
+        if (keys[slot] != NO_ADDRESS) {
+          return slot;
+        }
+      }
+      return -1;
+    }
+
+    private long keyAt(int slot) {
+      return keys[slot];
+    }
+
+    private long valueAt(int slot) {
+      return values[slot];
+    }
+
+    private void replaceValueAt(int slot, long valueAddress) {
+      arena.free(values[slot]);
+      values[slot] = valueAddress;
+    }
+
+    /** Inserts a key which must not be present yet. */
+    private void insert(int hash, long keyAddress, long valueAddress) {
+      if (2 * (size + 1) > keys.length) {
+        resize(2 * keys.length);
+      }
+      place(hash, keyAddress, valueAddress);
+      size++;
+    }
+
+    private void place(int hash, long keyAddress, long valueAddress) {
+      int mask = keys.length - 1;
+      int slot = hash & mask;
+      while (keys[slot] != NO_ADDRESS) {
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      keys[slot] = keyAddress;
+      values[slot] = valueAddress;
+    }
+
+    /** Removes the key in {@code slot} and frees its records in the arena. */
+    private void removeAt(int slot) {
+      arena.free(keys[slot]);
+      if (values[slot] != NO_ADDRESS) {
+        arena.free(values[slot]);
+      }
+      size--;
+      // Shift back the following keys of the probe sequence which may fill the hole, so that
+      // lookups don't need tombstones.
+      int mask = keys.length - 1;
+      int hole = slot;
+      for (int next = (hole + 1) & mask; keys[next] != NO_ADDRESS; next = (next + 1) & mask) {
+        int ideal = hashes[next] & mask;
+        if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+          hashes[hole] = hashes[next];
+          keys[hole] = keys[next];
+          values[hole] = values[next];
+          hole = next;
+        }
+      }
+      keys[hole] = NO_ADDRESS;
+    }
+
+    /** Removes all keys and frees their records in the arena. */
+    private void clear() {
+      for (int slot = next(0); slot >= 0; slot = next(slot + 1)) {
+        arena.free(keys[slot]);
+        if (values[slot] != NO_ADDRESS) {
+          arena.free(values[slot]);
+        }
+      }
+      hashes = new int[INITIAL_CAPACITY];
+      keys = emptyKeys(INITIAL_CAPACITY);
+      values = new long[INITIAL_CAPACITY];
+      size = 0;
+    }
+
+    private void resize(int capacity) {
+      int[] oldHashes = hashes;
+      long[] oldKeys = keys;
+      long[] oldValues = values;
+      hashes = new int[capacity];
+      keys = emptyKeys(capacity);
+      values = new long[capacity];
+      for (int slot = 0; slot < oldKeys.length; ++slot) {
+        if (oldKeys[slot] != NO_ADDRESS) {
+          place(oldHashes[slot], oldKeys[slot], oldValues[slot]);
+        }
+      }
+    }
+  }
+
+  private static long[] emptyKeys(int capacity) {
+    long[] keys = new long[capacity];
+    Arrays.fill(keys, NO_ADDRESS);
+    return keys;
+  }
+
+  private static int hash(byte[] encoded) {
+    int hash = Arrays.hashCode(encoded);
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean isDeterministic(Coder<?> coder) {
+    try {
+      coder.verifyDeterministic();
+      return true;
+    } catch (NonDeterministicException e) {
+      return false;
+    }
+  }
+
+  private static <T> byte[] encode(Coder<T> coder, T value) {
+    try {
+      return CoderUtils.encodeToByteArray(coder, value);
+    } catch (CoderException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private <T> T decode(Coder<T> coder, long address) {
+    try {
+      return CoderUtils.decodeFromByteArray(coder, arena.read(address));
+    } catch (CoderException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -21,16 +21,17 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkNotNull;
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
-import java.util.NavigableSet;
-import java.util.NoSuchElementException;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.beam.sdk.state.TimeDomain;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.util.WindowTracing;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.HashBasedTable;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Table;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 
@@ -40,17 +41,23 @@ import org.joda.time.Instant;
 })
 public class InMemoryTimerInternals implements TimerInternals {
 
-  /** The current set timers by namespace and ID. */
-  Table<StateNamespace, String, TimerData> existingTimers = HashBasedTable.create();
+  /** The current set timers by namespace, ID and family. */
+  private final Map<TimerKey, TimerEntry> existingTimers = new HashMap<>();
+
+  /**
+   * The key to look up timers in {@link #existingTimers}, reused to not allocate a key per lookup.
+   * Only copies of it are stored in the map.
+   */
+  private final TimerKey lookupKey = new TimerKey();
 
   /** Pending input watermark timers, in timestamp order. */
-  private final NavigableSet<TimerData> watermarkTimers = new TreeSet<>();
+  private final TimerQueue watermarkTimers = new TimerQueue();
 
   /** Pending processing time timers, in timestamp order. */
-  private final NavigableSet<TimerData> processingTimers = new TreeSet<>();
+  private final TimerQueue processingTimers = new TimerQueue();
 
   /** Pending synchronized processing time timers, in timestamp order. */
-  private final NavigableSet<TimerData> synchronizedProcessingTimers = new TreeSet<>();
+  private final TimerQueue synchronizedProcessingTimers = new TimerQueue();
 
   /** Current input watermark. */
   private Instant inputWatermarkTime = BoundedWindow.TIMESTAMP_MIN_VALUE;
@@ -82,23 +89,11 @@ public class InMemoryTimerInternals implements TimerInternals {
    * timers scheduled in that time domain.
    */
   public @Nullable Instant getNextTimer(TimeDomain domain) {
-    try {
-      switch (domain) {
-        case EVENT_TIME:
-          return watermarkTimers.first().getTimestamp();
-        case PROCESSING_TIME:
-          return processingTimers.first().getTimestamp();
-        case SYNCHRONIZED_PROCESSING_TIME:
-          return synchronizedProcessingTimers.first().getTimestamp();
-        default:
-          throw new IllegalArgumentException("Unexpected time domain: " + domain);
-      }
-    } catch (NoSuchElementException exc) {
-      return null;
-    }
+    TimerQueue timers = timersForDomain(domain);
+    return timers.isEmpty() ? null : timers.peek().timer.getTimestamp();
   }
 
-  private NavigableSet<TimerData> timersForDomain(TimeDomain domain) {
+  private TimerQueue timersForDomain(TimeDomain domain) {
     switch (domain) {
       case EVENT_TIME:
         return watermarkTimers;
@@ -131,24 +126,24 @@ public class InMemoryTimerInternals implements TimerInternals {
   public void setTimer(TimerData timerData) {
     WindowTracing.trace("{}.setTimer: {}", SIMPLE_NAME, timerData);
 
-    @Nullable String colKey = timerData.getTimerId() + '+' + timerData.getTimerFamilyId();
-    TimerData existing = existingTimers.get(timerData.getNamespace(), colKey);
+    TimerEntry existing =
+        existingTimers.get(
+            lookupKey.set(
+                timerData.getNamespace(), timerData.getTimerId(), timerData.getTimerFamilyId()));
     if (existing == null) {
-      existingTimers.put(timerData.getNamespace(), colKey, timerData);
-      timersForDomain(timerData.getDomain()).add(timerData);
+      TimerEntry entry = new TimerEntry(timerData);
+      existingTimers.put(lookupKey.copy(), entry);
+      timersForDomain(timerData.getDomain()).add(entry);
     } else {
       checkArgument(
-          timerData.getDomain().equals(existing.getDomain()),
+          timerData.getDomain().equals(existing.timer.getDomain()),
           "Attempt to set %s for time domain %s, but it is already set for time domain %s",
           timerData.getTimerId(),
           timerData.getDomain(),
-          existing.getDomain());
+          existing.timer.getDomain());
 
-      if (!timerData.getTimestamp().equals(existing.getTimestamp())) {
-        NavigableSet<TimerData> timers = timersForDomain(timerData.getDomain());
-        timers.remove(existing);
-        timers.add(timerData);
-        existingTimers.put(timerData.getNamespace(), colKey, timerData);
+      if (!timerData.getTimestamp().equals(existing.timer.getTimestamp())) {
+        timersForDomain(timerData.getDomain()).update(existing, timerData);
       }
     }
   }
@@ -156,14 +151,14 @@ public class InMemoryTimerInternals implements TimerInternals {
   @Override
   public void deleteTimer(
       StateNamespace namespace, String timerId, String timerFamilyId, TimeDomain timeDomain) {
-    TimerData removedTimer = existingTimers.remove(namespace, timerId + '+' + timerFamilyId);
-    if (removedTimer != null) {
+    TimerEntry removed = existingTimers.remove(lookupKey.set(namespace, timerId, timerFamilyId));
+    if (removed != null) {
       Preconditions.checkState(
-          removedTimer.getDomain().equals(timeDomain),
+          removed.timer.getDomain().equals(timeDomain),
           "%s doesn't match time domain %s of timer",
           timeDomain,
-          removedTimer.getDomain());
-      timersForDomain(timeDomain).remove(removedTimer);
+          removed.timer.getDomain());
+      timersForDomain(timeDomain).remove(removed);
     }
   }
 
@@ -171,9 +166,9 @@ public class InMemoryTimerInternals implements TimerInternals {
   @Deprecated
   @Override
   public void deleteTimer(StateNamespace namespace, String timerId, String timerFamilyId) {
-    TimerData removedTimer = existingTimers.remove(namespace, timerId + '+' + timerFamilyId);
-    if (removedTimer != null) {
-      timersForDomain(removedTimer.getDomain()).remove(removedTimer);
+    TimerEntry removed = existingTimers.remove(lookupKey.set(namespace, timerId, timerFamilyId));
+    if (removed != null) {
+      timersForDomain(removed.timer.getDomain()).remove(removed);
     }
   }
 
@@ -203,9 +198,9 @@ public class InMemoryTimerInternals implements TimerInternals {
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(getClass())
-        .add("watermarkTimers", watermarkTimers)
-        .add("processingTimers", processingTimers)
-        .add("synchronizedProcessingTimers", synchronizedProcessingTimers)
+        .add("watermarkTimers", watermarkTimers.sorted())
+        .add("processingTimers", processingTimers.sorted())
+        .add("synchronizedProcessingTimers", synchronizedProcessingTimers.sorted())
         .add("inputWatermarkTime", inputWatermarkTime)
         .add("outputWatermarkTime", outputWatermarkTime)
         .add("processingTime", processingTime)
@@ -321,15 +316,168 @@ public class InMemoryTimerInternals implements TimerInternals {
   }
 
   private @Nullable TimerData removeNextTimer(Instant currentTime, TimeDomain domain) {
-    NavigableSet<TimerData> timers = timersForDomain(domain);
+    TimerQueue timers = timersForDomain(domain);
 
-    if (!timers.isEmpty() && currentTime.isAfter(timers.first().getTimestamp())) {
-      TimerData timer = timers.pollFirst();
+    if (!timers.isEmpty() && currentTime.isAfter(timers.peek().timer.getTimestamp())) {
+      TimerData timer = timers.poll().timer;
       existingTimers.remove(
-          timer.getNamespace(), timer.getTimerId() + '+' + timer.getTimerFamilyId());
+          lookupKey.set(timer.getNamespace(), timer.getTimerId(), timer.getTimerFamilyId()));
       return timer;
     } else {
       return null;
     }
   }
+
+  /** The namespace, ID and family which identify a timer. */
+  private static final class TimerKey {
+    private StateNamespace namespace;
+    private String timerId;
+    private String timerFamilyId;
+    private int hashCode;
+
+    private TimerKey set(StateNamespace namespace, String timerId, String timerFamilyId) {
+      this.namespace = namespace;
+      this.timerId = timerId;
+      this.timerFamilyId = timerFamilyId;
+      this.hashCode =
+          31 * (31 * namespace.hashCode() + timerId.hashCode()) + timerFamilyId.hashCode();
+      return this;
+    }
+
+    private TimerKey copy() {
+      TimerKey copy = new TimerKey();
+      copy.namespace = namespace;
+      copy.timerId = timerId;
+      copy.timerFamilyId = timerFamilyId;
+      copy.hashCode = hashCode;
+      return copy;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (!(other instanceof TimerKey)) {
+        return false;
+      }
+      TimerKey that = (TimerKey) other;
+      return hashCode == that.hashCode
+          && timerId.equals(that.timerId)
+          && timerFamilyId.equals(that.timerFamilyId)
+          && namespace.equals(that.namespace);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /** A set timer and its position in its {@link TimerQueue}. */
+  private static final class TimerEntry {
+    private TimerData timer;
+    private int position = -1;
+
+    private TimerEntry(TimerData timer) {
+      this.timer = timer;
+    }
+  }
+
+  /**
+   * A binary min-heap of {@link TimerEntry TimerEntries} in the order of their {@link TimerData}.
+   *
+   * <p>Each entry tracks its position in the heap, so an entry can be removed or reset to a new
+   * timer in logarithmic time, without searching for it and without allocating a new entry.
+   */
+  private static final class TimerQueue {
+    private TimerEntry[] heap = new TimerEntry[16];
+    private int size;
+
+    private boolean isEmpty() {
+      return size == 0;
+    }
+
+    private TimerEntry peek() {
+      return heap[0];
+    }
+
+    private void add(TimerEntry entry) {
+      if (size == heap.length) {
+        heap = Arrays.copyOf(heap, heap.length * 2);
+      }
+      entry.position = size++;
+      heap[entry.position] = entry;
+      siftUp(entry.position);
+    }
+
+    private TimerEntry poll() {
+      TimerEntry first = heap[0];
+      remove(first);
+      return first;
+    }
+
+    private void remove(TimerEntry entry) {
+      int position = entry.position;
+      TimerEntry last = heap[--size];
+      heap[size] = null;
+      entry.position = -1;
+      if (last != entry) {
+        heap[position] = last;
+        last.position = position;
+        siftDown(position);
+        siftUp(last.position);
+      }
+    }
+
+    /** Replaces the timer of the {@code entry}, which must be in this queue, by {@code timer}. */
+    private void update(TimerEntry entry, TimerData timer) {
+      entry.timer = timer;
+      siftDown(entry.position);
+      siftUp(entry.position);
+    }
+
+    private void siftUp(int position) {
+      TimerEntry entry = heap[position];
+      while (position > 0) {
+        int parent = (position - 1) >>> 1;
+        if (heap[parent].timer.compareTo(entry.timer) <= 0) {
+          break;
+        }
+        move(heap[parent], position);
+        position = parent;
+      }
+      move(entry, position);
+    }
+
+    private void siftDown(int position) {
+      TimerEntry entry = heap[position];
+      int half = size >>> 1;
+      while (position < half) {
+        int child = 2 * position + 1;
+        int right = child + 1;
+        if (right < size && heap[right].timer.compareTo(heap[child].timer) < 0) {
+          child = right;
+        }
+        if (entry.timer.compareTo(heap[child].timer) <= 0) {
+          break;
+        }
+        move(heap[child], position);
+        position = child;
+      }
+      move(entry, position);
+    }
+
+    private void move(TimerEntry entry, int position) {
+      heap[position] = entry;
+      entry.position = position;
+    }
+
+    /** Returns the timers in this queue in order. */
+    private List<TimerData> sorted() {
+      List<TimerData> timers = new ArrayList<>(size);
+      for (int i = 0; i < size; ++i) {
+        timers.add(heap[i].timer);
+      }
+      Collections.sort(timers);
+      return timers;
+    }
+  }
 }
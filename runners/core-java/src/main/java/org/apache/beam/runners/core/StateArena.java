@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An append-only store of byte records, used by {@link EncodedStateInternals} to keep encoded
+ * state cells in a few large pages instead of many small objects.
+ *
+ * <p>Records are addressed by the {@code long} returned from {@link #write}. Each record is stored
+ * as its length followed by its bytes in the current page; records larger than a page get a page
+ * of their own. Freed records are not reused, but a page is released once all of its records were
+ * freed, so the memory held by the arena is bounded by the live records plus the fragmentation of
+ * their pages.
+ *
+ * <p>An arena created with {@link #spilling} writes its oldest full pages to a temporary file in
+ * the given directory whenever the pages held in memory exceed the given limit, and reads records
+ * of spilled pages back from that file. Space in the file is not reclaimed until the arena is
+ * {@link #close closed}.
+ *
+ * <p>All methods are synchronized, so an arena may be shared by the state of many keys.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+public class StateArena implements AutoCloseable {
+
+  /** The default size of a page, in bytes. */
+  public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+  private static final int HEADER_BYTES = Integer.BYTES;
+
+  /** A page of records, which is either held in memory or spilled to the file. */
+  private static final class Page {
+    private byte @Nullable [] bytes;
+    private int used;
+    private int live;
+    private long fileOffset = -1;
+
+    private Page(byte[] bytes) {
+      this.bytes = bytes;
+    }
+  }
+
+  private final int pageSize;
+  private final @Nullable Path spillDirectory;
+  private final long maxMemoryBytes;
+
+  // Released pages are set to null and their index is reused by the next page.
+  private final List<@Nullable Page> pages = new ArrayList<>();
+  private final Deque<Integer> freePageIndices = new ArrayDeque<>();
+  // Indices of full pages in memory in the order they were filled, the candidates for spilling.
+  private final Deque<Integer> fullPages = new ArrayDeque<>();
+  private int currentPage = -1;
+  private long memoryBytes;
+  private long spilledBytes;
+  private @Nullable FileChannel spillFile;
+
+  private StateArena(int pageSize, @Nullable Path spillDirectory, long maxMemoryBytes) {
+    checkArgument(pageSize > HEADER_BYTES, "pageSize must be larger than %s", HEADER_BYTES);
+    checkArgument(maxMemoryBytes > 0, "maxMemoryBytes must be positive");
+    this.pageSize = pageSize;
+    this.spillDirectory = spillDirectory;
+    this.maxMemoryBytes = maxMemoryBytes;
+  }
+
+  /** Returns an arena which keeps all of its records in memory. */
+  public static StateArena inMemory() {
+    return new StateArena(DEFAULT_PAGE_SIZE, null, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns an arena which spills its oldest pages to a temporary file in {@code directory} once it
+   * holds more than {@code maxMemoryBytes} in memory.
+   */
+  public static StateArena spilling(Path directory, long maxMemoryBytes) {
+    return spilling(directory, maxMemoryBytes, DEFAULT_PAGE_SIZE);
+  }
+
+  /** Like {@link #spilling(Path, long)}, but with pages of {@code pageSize} bytes. */
+  public static StateArena spilling(Path directory, long maxMemoryBytes, int pageSize) {
+    return new StateArena(pageSize, directory, maxMemoryBytes);
+  }
+
+  /** Appends {@code record} to the arena and returns its address. */
+  public synchronized long write(byte[] record) {
+    int size = HEADER_BYTES + record.length;
+    int pageIndex;
+    if (size > pageSize) {
+      // oversized records get a page of their own, which is full right away
+      pageIndex = newPage(size);
+      fullPages.addLast(pageIndex);
+    } else {
+      Page current = currentPage < 0 ? null : pages.get(currentPage);
+      if (current == null || current.used + size > pageSize) {
+        if (current != null) {
+          fullPages.addLast(currentPage);
+        }
+        currentPage = newPage(pageSize);
+      }
+      pageIndex = currentPage;
+    }
+    Page page = pages.get(pageIndex);
+    int offset = page.used;
+    ByteBuffer.wrap(page.bytes, offset, size).putInt(record.length).put(record);
+    page.used += size;
+    page.live++;
+    maybeSpill();
+    return ((long) pageIndex << 32) | offset;
+  }
+
+  /** Returns a copy of the record at {@code address}. */
+  public synchronized byte[] read(long address) {
+    Page page = page(address);
+    int offset = (int) address;
+    if (page.bytes != null) {
+      int length = ByteBuffer.wrap(page.bytes).getInt(offset);
+      return Arrays.copyOfRange(page.bytes, offset + HEADER_BYTES, offset + HEADER_BYTES + length);
+    }
+    ByteBuffer header = readSpilled(page.fileOffset + offset, HEADER_BYTES);
+    return readSpilled(page.fileOffset + offset + HEADER_BYTES, header.getInt()).array();
+  }
+
+  /** Returns whether the record at {@code address} consists of exactly {@code bytes}. */
+  public synchronized boolean contentEquals(long address, byte[] bytes) {
+    Page page = page(address);
+    int offset = (int) address;
+    if (page.bytes != null) {
+      if (ByteBuffer.wrap(page.bytes).getInt(offset) != bytes.length) {
+        return false;
+      }
+      for (int i = 0; i < bytes.length; ++i) {
+        if (page.bytes[offset + HEADER_BYTES + i] != bytes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return Arrays.equals(read(address), bytes);
+  }
+
+  /**
+   * Frees the record at {@code address}, which must not be read afterwards. The page of the record
+   * is released once all of its records were freed.
+   */
+  public synchronized void free(long address) {
+    int pageIndex = (int) (address >>> 32);
+    Page page = page(address);
+    if (--page.live > 0) {
+      return;
+    }
+    if (pageIndex == currentPage) {
+      // keep filling the current page from its start
+      page.used = 0;
+      return;
+    }
+    if (page.bytes != null) {
+      memoryBytes -= page.bytes.length;
+      fullPages.remove(pageIndex);
+    }
+    pages.set(pageIndex, null);
+    freePageIndices.push(pageIndex);
+  }
+
+  /** Returns the number of bytes held by the pages in memory. */
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  /** Returns the number of bytes written to the spill file. */
+  public synchronized long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  /** Releases all pages and deletes the spill file, if any. */
+  @Override
+  public synchronized void close() throws IOException {
+    pages.clear();
+    freePageIndices.clear();
+    fullPages.clear();
+    currentPage = -1;
+    memoryBytes = 0;
+    if (spillFile != null) {
+      spillFile.close();
+      spillFile = null;
+    }
+  }
+
+  private Page page(long address) {
+    int pageIndex = (int) (address >>> 32);
+    @Nullable Page page = pageIndex < pages.size() ? pages.get(pageIndex) : null;
+    checkState(page != null, "Address %s is not part of this arena", address);
+    return page;
+  }
+
+  private int newPage(int size) {
+    Page page = new Page(new byte[size]);
+    memoryBytes += size;
+    @Nullable Integer pageIndex = freePageIndices.poll();
+    if (pageIndex == null) {
+      pages.add(page);
+      return pages.size() - 1;
+    }
+    pages.set(pageIndex, page);
+    return pageIndex;
+  }
+
+  private void maybeSpill() {
+    while (memoryBytes > maxMemoryBytes && !fullPages.isEmpty()) {
+      int pageIndex = fullPages.removeFirst();
+      Page page = pages.get(pageIndex);
+      try {
+        FileChannel file = spillFile();
+        long fileOffset = file.size();
+        ByteBuffer buffer = ByteBuffer.wrap(page.bytes, 0, page.used);
+        while (buffer.hasRemaining()) {
+          file.write(buffer, fileOffset + buffer.position());
+        }
+        page.fileOffset = fileOffset;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Unable to spill state to " + spillDirectory, e);
+      }
+      memoryBytes -= page.bytes.length;
+      spilledBytes += page.used;
+      page.bytes = null;
+    }
+  }
+
+  private FileChannel spillFile() throws IOException {
+    if (spillFile == null) {
+      Path path = Files.createTempFile(spillDirectory, "state-arena", ".spill");
+      spillFile =
+          FileChannel.open(
+              path,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    }
+    return spillFile;
+  }
+
+  private ByteBuffer readSpilled(long position, int length) {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try {
+      while (buffer.hasRemaining()) {
+        if (spillFile.read(buffer, position + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of spill file at " + position);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Unable to read spilled state", e);
+    }
+    buffer.flip();
+    return buffer;
+  }
+}
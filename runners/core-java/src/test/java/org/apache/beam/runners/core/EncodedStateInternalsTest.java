@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemoryMap;
+import org.apache.beam.runners.core.InMemoryStateInternals.InMemorySet;
+import org.apache.beam.sdk.coders.DoubleCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.state.BagState;
+import org.apache.beam.sdk.state.MapState;
+import org.apache.beam.sdk.state.SetState;
+import org.apache.beam.sdk.state.ValueState;
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link EncodedStateInternals}. This is based on {@link StateInternalsTest}. */
+public class EncodedStateInternalsTest {
+
+  /** A standard StateInternals test. */
+  @RunWith(JUnit4.class)
+  public static class StandardStateInternalsTests extends StateInternalsTest {
+    @Override
+    protected StateInternals createStateInternals() {
+      return EncodedStateInternals.forKey("dummyKey");
+    }
+  }
+
+  /** A standard StateInternals test with state that is spilled to a file all the time. */
+  @RunWith(JUnit4.class)
+  public static class SpillingStateInternalsTests extends StateInternalsTest {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private StateArena arena;
+
+    @Override
+    protected StateInternals createStateInternals() {
+      arena = StateArena.spilling(tmpFolder.getRoot().toPath(), 1, 16);
+      return EncodedStateInternals.forKey("dummyKey", arena);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+      arena.close();
+    }
+  }
+
+  /** A specific test of EncodedStateInternals. */
+  @RunWith(JUnit4.class)
+  public static class OtherTests {
+    @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private static final StateNamespace NAMESPACE = new StateNamespaceForTest("ns");
+
+    private static final StateTag<ValueState<String>> STRING_VALUE_ADDR =
+        StateTags.value("stringValue", StringUtf8Coder.of());
+    private static final StateTag<BagState<String>> STRING_BAG_ADDR =
+        StateTags.bag("stringBag", StringUtf8Coder.of());
+    private static final StateTag<SetState<String>> STRING_SET_ADDR =
+        StateTags.set("stringSet", StringUtf8Coder.of());
+    private static final StateTag<MapState<String, Integer>> STRING_MAP_ADDR =
+        StateTags.map("stringMap", StringUtf8Coder.of(), VarIntCoder.of());
+    private static final StateTag<SetState<Double>> DOUBLE_SET_ADDR =
+        StateTags.set("doubleSet", DoubleCoder.of());
+    private static final StateTag<MapState<Double, Integer>> DOUBLE_MAP_ADDR =
+        StateTags.map("doubleMap", DoubleCoder.of(), VarIntCoder.of());
+
+    @Test
+    public void testClearFreesArena() throws Exception {
+      try (StateArena arena =
+          StateArena.spilling(tmpFolder.getRoot().toPath(), Long.MAX_VALUE, 64)) {
+        EncodedStateInternals<String> underTest = EncodedStateInternals.forKey("key", arena);
+        BagState<String> bag = underTest.state(NAMESPACE, STRING_BAG_ADDR);
+        SetState<String> set = underTest.state(NAMESPACE, STRING_SET_ADDR);
+        MapState<String, Integer> map = underTest.state(NAMESPACE, STRING_MAP_ADDR);
+        for (int i = 0; i < 1000; ++i) {
+          bag.add("element" + i);
+          set.add("element" + i);
+          map.put("element" + i, i);
+        }
+        underTest.state(NAMESPACE, STRING_VALUE_ADDR).write("value");
+        assertThat(arena.getMemoryBytes(), greaterThan(10_000L));
+
+        underTest.clear();
+
+        // only the page which is currently filled is kept
+        assertThat(arena.getMemoryBytes(), equalTo(64L));
+        assertThat(underTest.state(NAMESPACE, STRING_BAG_ADDR).read(), Matchers.emptyIterable());
+      }
+    }
+
+    @Test
+    public void testSpillsToFile() throws Exception {
+      try (StateArena arena = StateArena.spilling(tmpFolder.getRoot().toPath(), 256, 64)) {
+        EncodedStateInternals<String> underTest = EncodedStateInternals.forKey("key", arena);
+        BagState<String> bag = underTest.state(NAMESPACE, STRING_BAG_ADDR);
+        MapState<String, Integer> map = underTest.state(NAMESPACE, STRING_MAP_ADDR);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; ++i) {
+          bag.add("element" + i);
+          map.put("element" + i, i);
+          expected.add("element" + i);
+        }
+
+        assertThat(arena.getMemoryBytes(), lessThanOrEqualTo(256L));
+        assertThat(arena.getSpilledBytes(), greaterThan(0L));
+        assertThat(bag.read(), equalTo(expected));
+        assertThat(map.keys().read(), containsInAnyOrder(expected.toArray()));
+        assertThat(map.get("element500").read(), equalTo(500));
+      }
+    }
+
+    @Test
+    public void testSharedArena() throws Exception {
+      try (StateArena arena = StateArena.inMemory()) {
+        EncodedStateInternals<String> first = EncodedStateInternals.forKey("first", arena);
+        EncodedStateInternals<String> second = EncodedStateInternals.forKey("second", arena);
+        first.state(NAMESPACE, STRING_SET_ADDR).add("a");
+        second.state(NAMESPACE, STRING_SET_ADDR).add("b");
+
+        first.clear();
+
+        assertThat(first.state(NAMESPACE, STRING_SET_ADDR).read(), Matchers.emptyIterable());
+        assertThat(second.state(NAMESPACE, STRING_SET_ADDR).read(), containsInAnyOrder("b"));
+      }
+    }
+
+    @Test
+    public void testNonDeterministicKeysAreNotEncoded() throws Exception {
+      EncodedStateInternals<String> underTest = EncodedStateInternals.forKey("key");
+      SetState<Double> set = underTest.state(NAMESPACE, DOUBLE_SET_ADDR);
+      MapState<Double, Integer> map = underTest.state(NAMESPACE, DOUBLE_MAP_ADDR);
+
+      assertThat(set, instanceOf(InMemorySet.class));
+      assertThat(map, instanceOf(InMemoryMap.class));
+      set.add(1.5);
+      map.put(1.5, 1);
+      assertThat(set.contains(1.5).read(), equalTo(true));
+      assertThat(map.get(1.5).read(), equalTo(1));
+    }
+  }
+}
@@ -19,10 +19,16 @@ package org.apache.beam.runners.core;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 import org.apache.beam.runners.core.TimerInternals.TimerData;
 import org.apache.beam.sdk.state.TimeDomain;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Ordering;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
 import org.junit.Test;
@@ -203,4 +209,36 @@ public class InMemoryTimerInternalsTest {
     assertThat(underTest.removeNextEventTimer(), equalTo(eventTime));
     assertThat(underTest.removeNextEventTimer(), nullValue());
   }
+
+  @Test
+  public void testManyTimersFireInOrder() throws Exception {
+    InMemoryTimerInternals underTest = new InMemoryTimerInternals();
+    Random random = new Random(42);
+    int numTimers = 1000;
+    for (int i = 0; i < numTimers; ++i) {
+      Instant timestamp = new Instant(random.nextInt(10 * numTimers));
+      underTest.setTimer(NS1, "id" + i, "", timestamp, timestamp, TimeDomain.EVENT_TIME);
+    }
+    // Reset every third timer and delete every fifth one, in an arbitrary order.
+    for (int i = numTimers - 1; i >= 0; --i) {
+      if (i % 5 == 0) {
+        underTest.deleteTimer(NS1, "id" + i, "", TimeDomain.EVENT_TIME);
+      } else if (i % 3 == 0) {
+        Instant timestamp = new Instant(random.nextInt(10 * numTimers));
+        underTest.setTimer(NS1, "id" + i, "", timestamp, timestamp, TimeDomain.EVENT_TIME);
+      }
+    }
+
+    underTest.advanceInputWatermark(BoundedWindow.TIMESTAMP_MAX_VALUE);
+    List<TimerData> fired = new ArrayList<>();
+    for (TimerData timer = underTest.removeNextEventTimer();
+        timer != null;
+        timer = underTest.removeNextEventTimer()) {
+      fired.add(timer);
+    }
+
+    assertThat(fired.size(), equalTo(numTimers - numTimers / 5));
+    assertThat(Ordering.natural().isOrdered(fired), is(true));
+    assertThat(underTest.hasPendingTimers(), is(false));
+  }
 }
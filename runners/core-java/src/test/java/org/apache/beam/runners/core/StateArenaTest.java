@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.core;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link StateArena}. */
+@RunWith(JUnit4.class)
+public class StateArenaTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    try (StateArena arena = StateArena.inMemory()) {
+      long hello = arena.write(bytes("hello"));
+      long empty = arena.write(new byte[0]);
+      long world = arena.write(bytes("world"));
+
+      assertArrayEquals(bytes("hello"), arena.read(hello));
+      assertArrayEquals(new byte[0], arena.read(empty));
+      assertArrayEquals(bytes("world"), arena.read(world));
+      assertTrue(arena.contentEquals(hello, bytes("hello")));
+      assertFalse(arena.contentEquals(hello, bytes("hell")));
+      assertFalse(arena.contentEquals(hello, bytes("world")));
+    }
+  }
+
+  @Test
+  public void testOversizedRecord() throws Exception {
+    try (StateArena arena = StateArena.spilling(tmpFolder.getRoot().toPath(), Long.MAX_VALUE, 16)) {
+      byte[] large = new byte[100];
+      large[99] = 42;
+      long small = arena.write(bytes("small"));
+      long address = arena.write(large);
+
+      assertArrayEquals(large, arena.read(address));
+      assertArrayEquals(bytes("small"), arena.read(small));
+      assertEquals(16 + 104, arena.getMemoryBytes());
+    }
+  }
+
+  @Test
+  public void testFreeReleasesPages() throws Exception {
+    try (StateArena arena = StateArena.spilling(tmpFolder.getRoot().toPath(), Long.MAX_VALUE, 16)) {
+      long first = arena.write(bytes("first"));
+      long second = arena.write(bytes("second"));
+      long third = arena.write(bytes("third"));
+      assertEquals(3 * 16, arena.getMemoryBytes());
+
+      arena.free(first);
+      arena.free(second);
+      assertEquals(16, arena.getMemoryBytes());
+      assertArrayEquals(bytes("third"), arena.read(third));
+    }
+  }
+
+  @Test
+  public void testSpilling() throws Exception {
+    try (StateArena arena = StateArena.spilling(tmpFolder.getRoot().toPath(), 32, 16)) {
+      long[] addresses = new long[100];
+      for (int i = 0; i < addresses.length; ++i) {
+        addresses[i] = arena.write(bytes("record" + i));
+      }
+
+      assertTrue(arena.getMemoryBytes() <= 32);
+      assertTrue(arena.getSpilledBytes() > 0);
+      for (int i = 0; i < addresses.length; ++i) {
+        assertArrayEquals(bytes("record" + i), arena.read(addresses[i]));
+        assertTrue(arena.contentEquals(addresses[i], bytes("record" + i)));
+      }
+    }
+  }
+
+  private static byte[] bytes(String string) {
+    return string.getBytes(UTF_8);
+  }
+}
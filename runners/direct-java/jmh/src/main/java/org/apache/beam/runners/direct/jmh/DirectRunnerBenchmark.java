@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.runners.direct.jmh;
+
+import org.apache.beam.runners.direct.DirectOptions;
+import org.apache.beam.runners.direct.DirectRunner;
+import org.apache.beam.sdk.Pipeline;
+import org.apache.beam.sdk.PipelineResult;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.transforms.Filter;
+import org.apache.beam.sdk.transforms.Flatten;
+import org.apache.beam.sdk.transforms.GenerateSequence;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.PCollectionList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks for executing pipelines with many transforms on the {@link DirectRunner}.
+ *
+ * <p>The pipelines are chains of diamonds, in which each diamond splits its input into two
+ * branches and flattens them again. The cost of tracking the watermarks grows with the number of
+ * transforms, and the contention on it with the parallelism of the runner, so running the
+ * benchmark with several values of both shows how the runner scales:
+ *
+ * <pre>
+ * ./gradlew :runners:direct-java:jmh:jmh -Pbenchmark=DirectRunnerBenchmark
+ * </pre>
+ */
+public class DirectRunnerBenchmark {
+  private static final long NUM_ELEMENTS = 1000;
+
+  /** The shape of the pipeline and the parallelism of the runner. */
+  @State(Scope.Benchmark)
+  public static class Graph {
+    @Param({"10", "50", "200"})
+    public int numDiamonds = 10;
+
+    @Param({"1", "4", "16"})
+    public int targetParallelism = 1;
+  }
+
+  @Benchmark
+  public PipelineResult.State diamonds(Graph graph) {
+    DirectOptions options = PipelineOptionsFactory.create().as(DirectOptions.class);
+    options.setRunner(DirectRunner.class);
+    options.setTargetParallelism(graph.targetParallelism);
+    Pipeline pipeline = Pipeline.create(options);
+
+    PCollection<Long> elements = pipeline.apply(GenerateSequence.from(0).to(NUM_ELEMENTS));
+    for (int i = 0; i < graph.numDiamonds; ++i) {
+      // The branches keep disjoint halves of the elements, so the number of elements stays the same
+      PCollection<Long> even = elements.apply("even" + i, Filter.by(element -> element % 2 == 0));
+      PCollection<Long> odd = elements.apply("odd" + i, Filter.by(element -> element % 2 != 0));
+      elements = PCollectionList.of(even).and(odd).apply("join" + i, Flatten.pCollections());
+    }
+
+    PipelineResult.State state = pipeline.run().waitUntilFinish();
+    if (state != PipelineResult.State.DONE) {
+      throw new IllegalStateException("Pipeline finished in state " + state);
+    }
+    return state;
+  }
+}
@@ -54,10 +54,31 @@ public interface DirectOptions extends PipelineOptions, ApplicationNameOptions {
 
   void setEnforceEncodability(boolean test);
 
+  /**
+   * Whether the DirectRunner is optimized for throughput rather than for detecting violations of
+   * the Beam model, for example to run load tests locally.
+   *
+   * <p>In performance mode, elements are neither encoded nor checked for mutations, regardless of
+   * {@link #isEnforceEncodability()} and {@link #isEnforceImmutability()}. Consumers of the output
+   * of an unkeyed step are evaluated in the same task as the step, and watermarks are updated in
+   * batches. Pipelines which pass in performance mode may fail in the default, strict mode, which
+   * should be used to test the correctness of pipelines.
+   */
+  @Default.Boolean(false)
+  @Description(
+      "Optimizes the DirectRunner for throughput rather than for detecting violations of the"
+          + " Beam model, for example to run load tests locally. Disables the enforcement of"
+          + " encodability and immutability, evaluates chains of unkeyed steps in a single task"
+          + " and updates watermarks in batches.")
+  boolean isPerformanceMode();
+
+  void setPerformanceMode(boolean performanceMode);
+
   @Default.InstanceFactory(AvailableParallelismFactory.class)
   @Description(
-      "Controls the amount of target parallelism the DirectRunner will use. Defaults to"
-          + " the greater of the number of available processors and 3. Must be a value greater"
+      "Controls the amount of target parallelism the DirectRunner will use, which is the number"
+          + " of workers that evaluate bundles and steal work from each other when idle. Defaults"
+          + " to the greater of the number of available processors and 3. Must be a value greater"
           + " than zero.")
   int getTargetParallelism();
 
@@ -62,7 +62,9 @@ import org.joda.time.Duration;
  * and test data, and should be used for ensuring that processing logic is correct. It also is
  * appropriate for executing unit tests and performs additional work to ensure that behavior
  * contained within a {@link Pipeline} does not break assumptions within the Beam model, to improve
- * the ability to execute a {@link Pipeline} at scale on a distributed backend.
+ * the ability to execute a {@link Pipeline} at scale on a distributed backend. To run local load
+ * tests instead, {@link DirectOptions#isPerformanceMode()} trades this additional work for
+ * throughput.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
@@ -99,6 +101,9 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
     // Utilities for creating enforcements
     static Set<Enforcement> enabled(DirectOptions options) {
       EnumSet<Enforcement> enabled = EnumSet.noneOf(Enforcement.class);
+      if (options.isPerformanceMode()) {
+        return Collections.unmodifiableSet(enabled);
+      }
       if (options.isEnforceEncodability()) {
         enabled.add(ENCODABILITY);
       }
@@ -199,7 +204,8 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
               Enforcement.bundleFactoryFor(enabledEnforcements, graph),
               graph,
               keyedPValueVisitor.getKeyedPValues(),
-              metricsPool);
+              metricsPool,
+              options.isPerformanceMode());
 
       TransformEvaluatorRegistry registry =
           TransformEvaluatorRegistry.javaSdkNativeRegistry(context, options);
@@ -209,7 +215,8 @@ public class DirectRunner extends PipelineRunner<DirectPipelineResult> {
               registry,
               Enforcement.defaultModelEnforcements(enabledEnforcements),
               context,
-              metricsPool);
+              metricsPool,
+              options.isPerformanceMode());
       executor.start(graph, RootProviderRegistry.javaNativeRegistry(context, options));
 
       DirectPipelineResult result = new DirectPipelineResult(executor, context);
@@ -109,7 +109,22 @@ class EvaluationContext {
       DirectGraph graph,
       Set<PValue> keyedPValues,
       ExecutorService executorService) {
-    return new EvaluationContext(clock, bundleFactory, graph, keyedPValues, executorService);
+    return create(clock, bundleFactory, graph, keyedPValues, executorService, false);
+  }
+
+  /**
+   * Creates an {@link EvaluationContext} which applies the watermark updates of completed bundles
+   * in batches when it is refreshed if {@code batchWatermarkUpdates} is true.
+   */
+  public static EvaluationContext create(
+      Clock clock,
+      BundleFactory bundleFactory,
+      DirectGraph graph,
+      Set<PValue> keyedPValues,
+      ExecutorService executorService,
+      boolean batchWatermarkUpdates) {
+    return new EvaluationContext(
+        clock, bundleFactory, graph, keyedPValues, executorService, batchWatermarkUpdates);
   }
 
   private EvaluationContext(
@@ -117,13 +132,16 @@ class EvaluationContext {
       BundleFactory bundleFactory,
       DirectGraph graph,
       Set<PValue> keyedPValues,
-      ExecutorService executorService) {
+      ExecutorService executorService,
+      boolean batchWatermarkUpdates) {
     this.clock = clock;
     this.bundleFactory = checkNotNull(bundleFactory);
     this.graph = checkNotNull(graph);
     this.keyedPValues = keyedPValues;
 
-    this.watermarkManager = WatermarkManager.create(clock, graph, AppliedPTransform::getFullName);
+    this.watermarkManager =
+        WatermarkManager.create(
+            clock, graph, AppliedPTransform::getFullName, batchWatermarkUpdates);
     this.sideInputContainer = SideInputContainer.create(this, graph.getViews());
 
     this.applicationStateInternals = new ConcurrentHashMap<>();
@@ -25,7 +25,9 @@ import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
@@ -45,8 +47,6 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.LoadingCac
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.RemovalListener;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Queues;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Duration;
 import org.joda.time.Instant;
@@ -66,6 +66,7 @@ final class ExecutorServiceParallelExecutor
   private static final Logger LOG = LoggerFactory.getLogger(ExecutorServiceParallelExecutor.class);
 
   private final int targetParallelism;
+  private final boolean fuseSteps;
   private final ExecutorService executorService;
 
   private final TransformEvaluatorRegistry registry;
@@ -88,8 +89,23 @@ final class ExecutorServiceParallelExecutor
       Map<String, Collection<ModelEnforcementFactory>> transformEnforcements,
       EvaluationContext context,
       ExecutorService metricsExecutor) {
+    return create(
+        targetParallelism, registry, transformEnforcements, context, metricsExecutor, false);
+  }
+
+  /**
+   * Creates an {@link ExecutorServiceParallelExecutor} which evaluates the consumers of the output
+   * of an unkeyed step in the same task as the step if {@code fuseSteps} is true.
+   */
+  public static ExecutorServiceParallelExecutor create(
+      int targetParallelism,
+      TransformEvaluatorRegistry registry,
+      Map<String, Collection<ModelEnforcementFactory>> transformEnforcements,
+      EvaluationContext context,
+      ExecutorService metricsExecutor,
+      boolean fuseSteps) {
     return new ExecutorServiceParallelExecutor(
-        targetParallelism, registry, transformEnforcements, context, metricsExecutor);
+        targetParallelism, registry, transformEnforcements, context, metricsExecutor, fuseSteps);
   }
 
   private ExecutorServiceParallelExecutor(
@@ -97,18 +113,17 @@ final class ExecutorServiceParallelExecutor
       TransformEvaluatorRegistry registry,
       Map<String, Collection<ModelEnforcementFactory>> transformEnforcements,
       EvaluationContext context,
-      ExecutorService metricsExecutor) {
+      ExecutorService metricsExecutor,
+      boolean fuseSteps) {
     this.targetParallelism = targetParallelism;
     this.metricsExecutor = metricsExecutor;
-    // Don't use Daemon threads for workers. The Pipeline should continue to execute even if there
-    // are no other active threads (for example, because waitUntilFinish was not called)
-    this.executorService =
-        Executors.newFixedThreadPool(
-            targetParallelism,
-            new ThreadFactoryBuilder()
-                .setThreadFactory(MoreExecutors.platformThreadFactory())
-                .setNameFormat("direct-runner-worker")
-                .build());
+    this.fuseSteps = fuseSteps;
+    // Work submitted by a worker is queued locally to that worker. In particular the next bundle
+    // of a (step, key) pair is submitted by the worker which completed the previous one, so it
+    // tends to be evaluated by the same worker, which still has the state of the key in its cache.
+    // Idle workers steal work from the queues of busy workers, so a hot key doesn't keep the work
+    // queued behind it from being evaluated.
+    this.executorService = new ForkJoinPool(targetParallelism, workerThreadFactory(), null, true);
     this.registry = registry;
     this.evaluationContext = context;
 
@@ -123,10 +138,24 @@ final class ExecutorServiceParallelExecutor
 
     this.visibleUpdates = new QueueMessageReceiver();
 
-    parallelExecutorService = TransformExecutorServices.parallel(executorService);
+    parallelExecutorService =
+        fuseSteps
+            ? TransformExecutorServices.fusing(executorService)
+            : TransformExecutorServices.parallel(executorService);
     executorFactory = new DirectTransformExecutor.Factory(context, registry, transformEnforcements);
   }
 
+  private static ForkJoinWorkerThreadFactory workerThreadFactory() {
+    return pool -> {
+      ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+      // Don't use Daemon threads for workers. The Pipeline should continue to execute even if there
+      // are no other active threads (for example, because waitUntilFinish was not called)
+      worker.setDaemon(false);
+      worker.setName("direct-runner-worker");
+      return worker;
+    };
+  }
+
   private CacheLoader<StepAndKey, TransformExecutorService>
       serialTransformExecutorServiceCacheLoader() {
     return new CacheLoader<StepAndKey, TransformExecutorService>() {
@@ -168,7 +197,7 @@ final class ExecutorServiceParallelExecutor
     evaluationContext.initialize(pendingRootBundles.build());
     final ExecutionDriver executionDriver =
         QuiescenceDriver.create(
-            evaluationContext, graph, this, visibleUpdates, pendingRootBundles.build());
+            evaluationContext, graph, this, visibleUpdates, pendingRootBundles.build(), fuseSteps);
     executorService.submit(
         new Runnable() {
           @Override
@@ -61,7 +61,29 @@ class QuiescenceDriver implements ExecutionDriver {
           bundleProcessor,
       PipelineMessageReceiver messageReceiver,
       Map<AppliedPTransform<?, ?, ?>, Queue<CommittedBundle<?>>> initialBundles) {
-    return new QuiescenceDriver(context, graph, bundleProcessor, messageReceiver, initialBundles);
+    return create(context, graph, bundleProcessor, messageReceiver, initialBundles, false);
+  }
+
+  /**
+   * Creates a {@link QuiescenceDriver} which hands the output of completed bundles to the {@link
+   * BundleProcessor} right away, rather than when it is driven next, if {@code
+   * processOutputsOnCompletion} is true.
+   */
+  public static ExecutionDriver create(
+      EvaluationContext context,
+      DirectGraph graph,
+      BundleProcessor<PCollection<?>, CommittedBundle<?>, AppliedPTransform<?, ?, ?>>
+          bundleProcessor,
+      PipelineMessageReceiver messageReceiver,
+      Map<AppliedPTransform<?, ?, ?>, Queue<CommittedBundle<?>>> initialBundles,
+      boolean processOutputsOnCompletion) {
+    return new QuiescenceDriver(
+        context,
+        graph,
+        bundleProcessor,
+        messageReceiver,
+        initialBundles,
+        processOutputsOnCompletion);
   }
 
   private final EvaluationContext evaluationContext;
@@ -69,6 +91,7 @@ class QuiescenceDriver implements ExecutionDriver {
   private final BundleProcessor<PCollection<?>, CommittedBundle<?>, AppliedPTransform<?, ?, ?>>
       bundleProcessor;
   private final PipelineMessageReceiver pipelineMessageReceiver;
+  private final boolean processOutputsOnCompletion;
 
   private final CompletionCallback defaultCompletionCallback =
       new TimerIterableCompletionCallback(Collections.emptyList());
@@ -93,12 +116,14 @@ class QuiescenceDriver implements ExecutionDriver {
       BundleProcessor<PCollection<?>, CommittedBundle<?>, AppliedPTransform<?, ?, ?>>
           bundleProcessor,
       PipelineMessageReceiver pipelineMessageReceiver,
-      Map<AppliedPTransform<?, ?, ?>, Queue<CommittedBundle<?>>> pendingRootBundles) {
+      Map<AppliedPTransform<?, ?, ?>, Queue<CommittedBundle<?>>> pendingRootBundles,
+      boolean processOutputsOnCompletion) {
     this.evaluationContext = evaluationContext;
     this.graph = graph;
     this.bundleProcessor = bundleProcessor;
     this.pipelineMessageReceiver = pipelineMessageReceiver;
     this.pendingRootBundles = pendingRootBundles;
+    this.processOutputsOnCompletion = processOutputsOnCompletion;
   }
 
   @Override
@@ -297,9 +322,17 @@ class QuiescenceDriver implements ExecutionDriver {
       final CommittedResult<AppliedPTransform<?, ?, ?>> committedResult;
       committedResult = evaluationContext.handleResult(inputBundle, timers, result);
       for (CommittedBundle<?> outputBundle : committedResult.getOutputs()) {
-        pendingWork.offer(
-            WorkUpdate.fromBundle(
-                outputBundle, graph.getPerElementConsumers(outputBundle.getPCollection())));
+        Collection<AppliedPTransform<?, ?, ?>> consumers =
+            graph.getPerElementConsumers(outputBundle.getPCollection());
+        if (processOutputsOnCompletion) {
+          // The bundle is registered as outstanding work before the input bundle completes, so
+          // that the executor can't be considered quiescent in between.
+          for (AppliedPTransform<?, ?, ?> consumer : consumers) {
+            processBundle(outputBundle, consumer);
+          }
+        } else {
+          pendingWork.offer(WorkUpdate.fromBundle(outputBundle, consumers));
+        }
       }
       Optional<? extends CommittedBundle<?>> unprocessedInputs =
           committedResult.getUnprocessedInputs();
@@ -17,6 +17,7 @@
  */
 package org.apache.beam.runners.direct;
 
+import java.util.ArrayDeque;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
@@ -32,6 +33,8 @@ import org.slf4j.LoggerFactory;
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 final class TransformExecutorServices {
+  private static final Logger LOG = LoggerFactory.getLogger(TransformExecutorServices.class);
+
   private TransformExecutorServices() {
     // Do not instantiate
   }
@@ -44,6 +47,15 @@ final class TransformExecutorServices {
     return new ParallelTransformExecutor(executor);
   }
 
+  /**
+   * Returns an EvaluationState that evaluates {@link TransformExecutor TransformExecutors} in
+   * parallel, except that the first {@link TransformExecutor} scheduled while evaluating another
+   * one is evaluated right after it by the same thread.
+   */
+  public static TransformExecutorService fusing(ExecutorService executor) {
+    return new FusingTransformExecutor(executor);
+  }
+
   /**
    * Returns an EvaluationState that evaluates {@link TransformExecutor TransformExecutors} in
    * serial.
@@ -104,6 +116,74 @@ final class TransformExecutorServices {
     }
   }
 
+  /**
+   * A {@link TransformExecutorService} with unlimited parallelism which fuses chains of {@link
+   * TransformExecutor TransformExecutors} into a single task.
+   *
+   * <p>If the evaluation of a {@link TransformExecutor} schedules follow-up work, typically the
+   * evaluation of the consumers of its output, the first follow-up is evaluated by the same thread
+   * once the current evaluation completed. This saves a hand-off to the {@link ExecutorService} per
+   * step and evaluates the output of a step while it is still in the cache of the thread which
+   * produced it. Any additional follow-up is submitted to the {@link ExecutorService}, to retain
+   * parallelism if an output is consumed by multiple steps.
+   */
+  private static class FusingTransformExecutor implements TransformExecutorService {
+    private final ParallelTransformExecutor parallel;
+    private final AtomicBoolean active = new AtomicBoolean(true);
+
+    // The follow-up work scheduled by the evaluation on the current thread, if it is fused.
+    private final ThreadLocal<Queue<TransformExecutor>> fusedWork = new ThreadLocal<>();
+
+    private FusingTransformExecutor(ExecutorService executor) {
+      this.parallel = new ParallelTransformExecutor(executor);
+    }
+
+    @Override
+    public void schedule(TransformExecutor work) {
+      Queue<TransformExecutor> fused = fusedWork.get();
+      if (fused != null && fused.isEmpty()) {
+        fused.offer(work);
+      } else {
+        parallel.schedule(() -> evaluateFused(work));
+      }
+    }
+
+    private void evaluateFused(TransformExecutor work) {
+      // Restored afterwards, as the ExecutorService may evaluate work on the scheduling thread.
+      Queue<TransformExecutor> outer = fusedWork.get();
+      Queue<TransformExecutor> fused = new ArrayDeque<>(1);
+      fusedWork.set(fused);
+      try {
+        TransformExecutor next = work;
+        while (next != null && active.get()) {
+          try {
+            next.run();
+          } catch (RuntimeException e) {
+            // The failure was reported to the completion callback of the work, as for work that
+            // is submitted to the ExecutorService directly.
+            LOG.debug("Evaluation of fused work {} failed", next, e);
+          }
+          next = fused.poll();
+        }
+      } finally {
+        if (outer == null) {
+          fusedWork.remove();
+        } else {
+          fusedWork.set(outer);
+        }
+      }
+    }
+
+    @Override
+    public void complete(TransformExecutor completed) {}
+
+    @Override
+    public void shutdown() {
+      active.set(false);
+      parallel.shutdown();
+    }
+  }
+
   /**
    * A {@link TransformExecutorService} with a single work queue. Any {@link TransformExecutor}
    * scheduled will be placed on the work queue. Only one item of work will be submitted to the
@@ -26,12 +26,14 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
@@ -836,8 +838,10 @@ class WatermarkManager<ExecutableT, CollectionT> {
    * have no more pending timers.
    *
    * <p>The result collection retains ordering of timers (from earliest to latest).
+   *
+   * <p>The caller must hold the lock of the watermark which owns {@code objectTimers}.
    */
-  private static synchronized Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(
+  private static Map<StructuralKey<?>, List<TimerData>> extractFiredTimers(
       Instant latestTime, Map<StructuralKey<?>, NavigableSet<TimerData>> objectTimers) {
     Map<StructuralKey<?>, List<TimerData>> result = new HashMap<>();
     Set<StructuralKey<?>> emptyKeys = new HashSet<>();
@@ -875,9 +879,18 @@ class WatermarkManager<ExecutableT, CollectionT> {
 
   private final Function<ExecutableT, String> getName;
 
+  /** Whether pending updates are only applied by {@link #refreshAll()}. */
+  private final boolean batchUpdates;
+
   /** The input and output watermark of each {@link AppliedPTransform}. */
   private final Map<ExecutableT, TransformWatermarks> transformToWatermarks;
 
+  /**
+   * The position of each {@link AppliedPTransform} in a topological order of the graph, in which
+   * every executable comes after the producers of its inputs.
+   */
+  private final Map<ExecutableT, Integer> topologicalOrder;
+
   /** A queue of pending updates to the state of this {@link WatermarkManager}. */
   private final Queue<PendingWatermarkUpdate<ExecutableT, CollectionT>> pendingUpdates;
 
@@ -914,16 +927,35 @@ class WatermarkManager<ExecutableT, CollectionT> {
           Clock clock,
           ExecutableGraph<ExecutableT, ? super CollectionT> graph,
           Function<ExecutableT, String> getName) {
-    return new WatermarkManager<>(clock, graph, getName);
+    return create(clock, graph, getName, false);
+  }
+
+  /**
+   * Creates a new {@link WatermarkManager} like {@link #create(Clock, ExecutableGraph, Function)}.
+   *
+   * @param batchUpdates whether updates are only applied in batches by {@link #refreshAll()},
+   *     rather than incrementally by the threads which complete bundles as well. This reduces the
+   *     contention on the watermarks if many bundles complete concurrently, at the cost of the
+   *     watermarks advancing only when they are refreshed.
+   */
+  public static <ExecutableT, CollectionT>
+      WatermarkManager<ExecutableT, ? super CollectionT> create(
+          Clock clock,
+          ExecutableGraph<ExecutableT, ? super CollectionT> graph,
+          Function<ExecutableT, String> getName,
+          boolean batchUpdates) {
+    return new WatermarkManager<>(clock, graph, getName, batchUpdates);
   }
 
   private WatermarkManager(
       Clock clock,
       ExecutableGraph<ExecutableT, CollectionT> graph,
-      Function<ExecutableT, String> getName) {
+      Function<ExecutableT, String> getName,
+      boolean batchUpdates) {
     this.clock = clock;
     this.graph = graph;
     this.getName = getName;
+    this.batchUpdates = batchUpdates;
 
     this.pendingUpdates = Queues.newArrayDeque();
 
@@ -931,6 +963,7 @@ class WatermarkManager<ExecutableT, CollectionT> {
     this.pendingRefreshes = new HashSet<>();
 
     transformToWatermarks = new HashMap<>();
+    topologicalOrder = new HashMap<>();
 
     for (ExecutableT rootTransform : graph.getRootTransforms()) {
       getTransformWatermark(rootTransform);
@@ -975,6 +1008,8 @@ class WatermarkManager<ExecutableT, CollectionT> {
               inputProcessingWatermark,
               outputProcessingWatermark);
       transformToWatermarks.put(executable, wms);
+      // The watermarks of the producers of all inputs were created above, so they come first.
+      topologicalOrder.put(executable, topologicalOrder.size());
     }
     return wms;
   }
@@ -1098,7 +1133,9 @@ class WatermarkManager<ExecutableT, CollectionT> {
           PendingWatermarkUpdate.create(
               executable, completed, timerUpdate, unprocessedInputs, outputs, earliestHold));
     }
-    tryApplyPendingUpdates();
+    if (!batchUpdates) {
+      tryApplyPendingUpdates();
+    }
   }
 
   private void tryApplyPendingUpdates() {
@@ -1201,29 +1238,32 @@ class WatermarkManager<ExecutableT, CollectionT> {
   /**
    * Refresh the watermarks contained within this {@link WatermarkManager}, causing all watermarks
    * to be advanced as far as possible.
+   *
+   * <p>Only the executables with pending updates and the executables downstream of an advanced
+   * watermark are refreshed. They are refreshed in topological order, so each of them is refreshed
+   * at most once, after all of its upstream watermarks have been refreshed.
    */
-  public synchronized void refreshAll() {
+  public void refreshAll() {
     refreshLock.lock();
     try {
       applyAllPendingUpdates();
-      Set<ExecutableT> toRefresh = pendingRefreshes;
+      PriorityQueue<ExecutableT> toRefresh =
+          new PriorityQueue<>(Comparator.comparingInt(topologicalOrder::get));
+      toRefresh.addAll(pendingRefreshes);
+      Set<ExecutableT> queued = new HashSet<>(pendingRefreshes);
+      pendingRefreshes.clear();
       while (!toRefresh.isEmpty()) {
-        toRefresh = refreshAllOf(toRefresh);
+        for (ExecutableT consumer : refreshWatermarks(toRefresh.poll())) {
+          if (queued.add(consumer)) {
+            toRefresh.offer(consumer);
+          }
+        }
       }
-      pendingRefreshes.clear();
     } finally {
       refreshLock.unlock();
     }
   }
 
-  private Set<ExecutableT> refreshAllOf(Set<ExecutableT> toRefresh) {
-    Set<ExecutableT> newRefreshes = new HashSet<>();
-    for (ExecutableT executable : toRefresh) {
-      newRefreshes.addAll(refreshWatermarks(executable));
-    }
-    return newRefreshes;
-  }
-
   private Set<ExecutableT> refreshWatermarks(final ExecutableT toRefresh) {
     TransformWatermarks myWatermarks = transformToWatermarks.get(toRefresh);
     WatermarkUpdate updateResult = myWatermarks.refresh();
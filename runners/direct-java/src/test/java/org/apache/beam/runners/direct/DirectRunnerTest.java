@@ -31,6 +31,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +66,9 @@ import org.apache.beam.sdk.io.UnboundedSource;
 import org.apache.beam.sdk.options.Default;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.state.StateSpec;
+import org.apache.beam.sdk.state.StateSpecs;
+import org.apache.beam.sdk.state.ValueState;
 import org.apache.beam.sdk.testing.PAssert;
 import org.apache.beam.sdk.testing.TestPipeline;
 import org.apache.beam.sdk.transforms.Count;
@@ -72,6 +76,7 @@ import org.apache.beam.sdk.transforms.Create;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.transforms.Flatten;
 import org.apache.beam.sdk.transforms.MapElements;
+import org.apache.beam.sdk.transforms.Max;
 import org.apache.beam.sdk.transforms.PTransform;
 import org.apache.beam.sdk.transforms.ParDo;
 import org.apache.beam.sdk.transforms.SerializableFunction;
@@ -162,6 +167,76 @@ public class DirectRunnerTest implements Serializable {
     result.waitUntilFinish();
   }
 
+  @Test
+  public void keyedStateWithManyWorkersShouldSucceed() {
+    Pipeline p = getPipeline();
+    p.getOptions().as(DirectOptions.class).setTargetParallelism(8);
+
+    PCollection<KV<Integer, Long>> counts =
+        p.apply(GenerateSequence.from(0).to(1000))
+            .apply(
+                MapElements.into(
+                        TypeDescriptors.kvs(TypeDescriptors.integers(), TypeDescriptors.longs()))
+                    .via(element -> KV.of((int) (element % 10), element)))
+            .apply(
+                ParDo.of(
+                    new DoFn<KV<Integer, Long>, KV<Integer, Long>>() {
+                      @StateId("count")
+                      private final StateSpec<ValueState<Long>> countSpec =
+                          StateSpecs.value(VarLongCoder.of());
+
+                      @ProcessElement
+                      public void processElement(
+                          ProcessContext c, @StateId("count") ValueState<Long> countState) {
+                        // Lost updates of the state would result in a lower final count
+                        Long previous = countState.read();
+                        long count = previous == null ? 1L : previous + 1;
+                        countState.write(count);
+                        c.output(KV.of(c.element().getKey(), count));
+                      }
+                    }))
+            .apply(Max.longsPerKey());
+
+    List<KV<Integer, Long>> expected = new ArrayList<>();
+    for (int key = 0; key < 10; ++key) {
+      expected.add(KV.of(key, 100L));
+    }
+    PAssert.that(counts).containsInAnyOrder(expected);
+    p.run();
+  }
+
+  @Test
+  public void wordCountInPerformanceModeShouldSucceed() throws Throwable {
+    Pipeline p = getPipeline();
+    p.getOptions().as(DirectOptions.class).setPerformanceMode(true);
+
+    PCollection<KV<String, Long>> counts =
+        p.apply(Create.of("foo", "bar", "foo", "baz", "bar", "foo"))
+            .apply(
+                MapElements.via(
+                    new SimpleFunction<String, String>() {
+                      @Override
+                      public String apply(String input) {
+                        return input;
+                      }
+                    }))
+            .apply(Count.perElement());
+    PCollection<String> countStrs =
+        counts.apply(
+            MapElements.via(
+                new SimpleFunction<KV<String, Long>, String>() {
+                  @Override
+                  public String apply(KV<String, Long> input) {
+                    return String.format("%s: %s", input.getKey(), input.getValue());
+                  }
+                }));
+
+    PAssert.that(countStrs).containsInAnyOrder("baz: 1", "bar: 2", "foo: 3");
+
+    DirectPipelineResult result = (DirectPipelineResult) p.run();
+    result.waitUntilFinish();
+  }
+
   private static AtomicInteger changed;
 
   @Test
@@ -450,6 +525,30 @@ public class DirectRunnerTest implements Serializable {
     pipeline.run();
   }
 
+  @Test
+  public void testMutatingOutputInPerformanceModeSucceeds() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options.setRunner(DirectRunner.class);
+    options.as(DirectOptions.class).setPerformanceMode(true);
+    Pipeline pipeline = Pipeline.create(options);
+
+    pipeline
+        .apply(Create.of(42))
+        .apply(
+            ParDo.of(
+                new DoFn<Integer, List<Integer>>() {
+                  @ProcessElement
+                  public void processElement(ProcessContext c) {
+                    List<Integer> outputList = Arrays.asList(1, 2, 3, 4);
+                    c.output(outputList);
+                    outputList.set(0, 37);
+                    c.output(outputList);
+                  }
+                }));
+
+    pipeline.run();
+  }
+
   /**
    * Tests that a {@link DoFn} that mutates an output with a good equals() fails in the {@link
    * DirectRunner}.
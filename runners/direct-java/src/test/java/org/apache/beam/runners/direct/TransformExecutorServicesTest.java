@@ -17,10 +17,14 @@
  */
 package org.apache.beam.runners.direct;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
@@ -83,6 +87,42 @@ public class TransformExecutorServicesTest {
     parallel.schedule(first);
   }
 
+  @Test
+  public void fusingEvaluatesFirstFollowUpAfterScheduling() {
+    TransformExecutorService fusing = TransformExecutorServices.fusing(executorService);
+    List<String> evaluated = new ArrayList<>();
+    TransformExecutor second = () -> evaluated.add("second");
+    TransformExecutor third = () -> evaluated.add("third");
+    TransformExecutor first =
+        () -> {
+          evaluated.add("first");
+          fusing.schedule(second);
+          fusing.schedule(third);
+          evaluated.add("first done");
+        };
+
+    fusing.schedule(first);
+
+    // The third executor is submitted to the direct ExecutorService, so it runs while scheduling.
+    assertThat(evaluated, contains("first", "third", "first done", "second"));
+  }
+
+  @Test
+  public void fusingShutdownDropsFollowUp() {
+    TransformExecutorService fusing = TransformExecutorServices.fusing(executorService);
+    List<String> evaluated = new ArrayList<>();
+    TransformExecutor first =
+        () -> {
+          evaluated.add("first");
+          fusing.schedule(() -> evaluated.add("second"));
+          fusing.shutdown();
+        };
+
+    fusing.schedule(first);
+
+    assertThat(evaluated, contains("first"));
+  }
+
   @Test
   public void serialScheduleTwoWaitsForFirstToComplete() {
     @SuppressWarnings("unchecked")
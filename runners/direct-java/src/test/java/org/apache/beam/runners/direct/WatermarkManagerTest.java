@@ -32,8 +32,11 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.beam.runners.core.StateNamespaces;
@@ -1786,6 +1789,98 @@ public class WatermarkManagerTest implements Serializable {
     assertThat(built.getCompletedTimers(), emptyIterable());
   }
 
+  /**
+   * Demonstrates that a single refresh advances the watermarks of all transforms downstream of a
+   * completed source, even if they are reachable by paths of different lengths.
+   */
+  @Test
+  public void refreshAllPropagatesThroughDiamonds() {
+    DiamondGraph diamonds = new DiamondGraph(50);
+    WatermarkManager<String, ? super String> diamondManager =
+        WatermarkManager.create(clock, diamonds, name -> name);
+
+    diamondManager.updateWatermarks(
+        null,
+        TimerUpdate.empty(),
+        "source",
+        null,
+        Collections.emptyList(),
+        BoundedWindow.TIMESTAMP_MAX_VALUE);
+    diamondManager.refreshAll();
+
+    for (String executable : diamonds.getExecutables()) {
+      assertThat(
+          executable,
+          diamondManager.getWatermarks(executable).getOutputWatermark(),
+          equalTo(BoundedWindow.TIMESTAMP_MAX_VALUE));
+    }
+  }
+
+  /**
+   * A graph of a source followed by a chain of diamonds. The transform {@code join<i>} consumes the
+   * outputs of {@code left<i>} and of {@code right<i>}, which both consume the output of {@code
+   * join<i-1>}. The right branch has an additional transform, so the join is reachable by paths of
+   * different lengths.
+   */
+  private static class DiamondGraph implements ExecutableGraph<String, String> {
+    private final List<String> executables = new ArrayList<>();
+    private final Map<String, List<String>> inputs = new HashMap<>();
+
+    private DiamondGraph(int numDiamonds) {
+      add("source");
+      String previous = "source";
+      for (int i = 0; i < numDiamonds; ++i) {
+        add("left" + i, previous);
+        add("right" + i, previous);
+        add("rightTail" + i, "right" + i);
+        add("join" + i, "left" + i, "rightTail" + i);
+        previous = "join" + i;
+      }
+    }
+
+    // Each executable produces a single collection which has the same name.
+    private void add(String executable, String... inputCollections) {
+      executables.add(executable);
+      inputs.put(executable, Arrays.asList(inputCollections));
+    }
+
+    @Override
+    public Collection<String> getRootTransforms() {
+      return Collections.singleton("source");
+    }
+
+    @Override
+    public Collection<String> getExecutables() {
+      return executables;
+    }
+
+    @Override
+    public String getProducer(String collection) {
+      return collection;
+    }
+
+    @Override
+    public Collection<String> getProduced(String producer) {
+      return Collections.singleton(producer);
+    }
+
+    @Override
+    public Collection<String> getPerElementInputs(String transform) {
+      return inputs.get(transform);
+    }
+
+    @Override
+    public Collection<String> getPerElementConsumers(String collection) {
+      List<String> consumers = new ArrayList<>();
+      for (Map.Entry<String, List<String>> input : inputs.entrySet()) {
+        if (input.getValue().contains(collection)) {
+          consumers.add(input.getKey());
+        }
+      }
+      return consumers;
+    }
+  }
+
   @SafeVarargs
   private final <T> CommittedBundle<T> timestampedBundle(
       PCollection<T> pc, TimestampedValue<T>... values) {
@@ -65,7 +65,7 @@ import org.apache.beam.sdk.fn.server.GrpcContextHeaderAccessorProvider;
 import org.apache.beam.sdk.fn.server.GrpcFnServer;
 import org.apache.beam.sdk.fn.server.ServerFactory;
 import org.apache.beam.sdk.fn.stream.OutboundObserverFactory;
-import org.apache.beam.sdk.function.ThrowingFunction;
+import org.apache.beam.sdk.function.ThrowingBiFunction;
 import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PortablePipelineOptions;
@@ -148,7 +148,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
     this.environmentCaches =
         createEnvironmentCaches(
-            serverFactory -> createServerInfo(jobInfo, serverFactory),
+            (serverFactory, dataServerFactory) ->
+                createServerInfo(jobInfo, serverFactory, dataServerFactory),
             getMaxEnvironmentClients(jobInfo));
     this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
     this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
@@ -168,7 +169,8 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     this.environmentExpirationMillis = getEnvironmentExpirationMillis(jobInfo);
     this.loadBalanceBundles = shouldLoadBalanceBundles(jobInfo);
     this.environmentCaches =
-        createEnvironmentCaches(serverFactory -> serverInfo, getMaxEnvironmentClients(jobInfo));
+        createEnvironmentCaches(
+            (serverFactory, dataServerFactory) -> serverInfo, getMaxEnvironmentClients(jobInfo));
     this.availableCachesSemaphore = new Semaphore(environmentCaches.size(), true);
     this.availableCaches = new LinkedBlockingDeque<>(environmentCaches);
     this.evictedActiveClients = Sets.newConcurrentHashSet();
@@ -185,7 +187,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
   }
 
   private ImmutableList<EnvironmentCacheAndLock> createEnvironmentCaches(
-      ThrowingFunction<ServerFactory, ServerInfo> serverInfoCreator, int count) {
+      ThrowingBiFunction<ServerFactory, ServerFactory, ServerInfo> serverInfoCreator, int count) {
 
     ImmutableList.Builder<EnvironmentCacheAndLock> caches = ImmutableList.builder();
     for (int i = 0; i < count; i++) {
@@ -235,7 +237,10 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
                   EnvironmentFactory.Provider environmentFactoryProvider =
                       environmentFactoryProviderMap.get(environment.getUrn());
                   ServerFactory serverFactory = environmentFactoryProvider.getServerFactory();
-                  ServerInfo serverInfo = serverInfoCreator.apply(serverFactory);
+                  ServerInfo serverInfo =
+                      serverInfoCreator.apply(
+                          serverFactory,
+                          environmentFactoryProvider.getDataServerFactory(environment));
                   String workerId = stageIdGenerator.getId();
                   serverInfo
                       .getProvisioningServer()
@@ -662,9 +667,11 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
     }
   }
 
-  private ServerInfo createServerInfo(JobInfo jobInfo, ServerFactory serverFactory)
+  private ServerInfo createServerInfo(
+      JobInfo jobInfo, ServerFactory serverFactory, ServerFactory dataServerFactory)
       throws IOException {
     Preconditions.checkNotNull(serverFactory, "serverFactory can not be null");
+    Preconditions.checkNotNull(dataServerFactory, "dataServerFactory can not be null");
 
     PortablePipelineOptions portableOptions =
         PipelineOptionsTranslation.fromProto(jobInfo.pipelineOptions())
@@ -695,7 +702,7 @@ public class DefaultJobBundleFactory implements JobBundleFactory {
         GrpcFnServer.allocatePortAndCreateFor(
             GrpcDataService.create(
                 portableOptions, executor, OutboundObserverFactory.serverDirect()),
-            serverFactory);
+            dataServerFactory);
     GrpcFnServer<GrpcStateService> stateServer =
         GrpcFnServer.allocatePortAndCreateFor(GrpcStateService.create(), serverFactory);
 
@@ -51,5 +51,13 @@ public interface EnvironmentFactory {
     default ServerFactory getServerFactory() {
       return ServerFactory.createDefault();
     }
+
+    /**
+     * Create the {@link ServerFactory} used for the data plane of the given environment. Defaults
+     * to {@link #getServerFactory()}.
+     */
+    default ServerFactory getDataServerFactory(Environment environment) {
+      return getServerFactory();
+    }
   }
 }
@@ -22,6 +22,7 @@ import java.util.concurrent.TimeoutException;
 import org.apache.beam.model.pipeline.v1.RunnerApi;
 import org.apache.beam.model.pipeline.v1.RunnerApi.Environment;
 import org.apache.beam.runners.core.construction.BeamUrns;
+import org.apache.beam.runners.core.construction.Environments;
 import org.apache.beam.runners.fnexecution.artifact.ArtifactRetrievalService;
 import org.apache.beam.runners.fnexecution.control.ControlClientPool;
 import org.apache.beam.runners.fnexecution.control.FnApiControlClientPoolService;
@@ -30,8 +31,10 @@ import org.apache.beam.runners.fnexecution.logging.GrpcLoggingService;
 import org.apache.beam.runners.fnexecution.provisioning.StaticGrpcProvisionService;
 import org.apache.beam.sdk.fn.IdGenerator;
 import org.apache.beam.sdk.fn.server.GrpcFnServer;
+import org.apache.beam.sdk.fn.server.ServerFactory;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.RemoteEnvironmentOptions;
+import org.apache.beam.vendor.grpc.v1p48p1.io.netty.channel.epoll.Epoll;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.slf4j.Logger;
@@ -139,6 +142,22 @@ public class ProcessEnvironmentFactory implements EnvironmentFactory {
       this.pipelineOptions = options;
     }
 
+    /**
+     * Uses a Unix domain socket for the data plane if the SDK harness supports it since the forked
+     * process always runs on the same host. Falls back to the default TCP based {@link
+     * ServerFactory} otherwise.
+     */
+    @Override
+    public ServerFactory getDataServerFactory(Environment environment) {
+      if (environment
+              .getCapabilitiesList()
+              .contains(Environments.DOMAIN_SOCKET_DATA_CHANNEL_CAPABILITY)
+          && Epoll.isAvailable()) {
+        return ServerFactory.createEpollDomainSocket();
+      }
+      return getServerFactory();
+    }
+
     @Override
     public EnvironmentFactory createEnvironmentFactory(
         GrpcFnServer<FnApiControlClientPoolService> controlServiceServer,
@@ -20,6 +20,9 @@ package org.apache.beam.runners.fnexecution.environment;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Matchers.anyList;
 import static org.mockito.Matchers.anyMap;
@@ -39,6 +42,8 @@ import org.apache.beam.sdk.fn.IdGenerators;
 import org.apache.beam.sdk.fn.server.GrpcFnServer;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.options.RemoteEnvironmentOptions;
+import org.apache.beam.vendor.grpc.v1p48p1.io.grpc.Server;
+import org.apache.beam.vendor.grpc.v1p48p1.io.netty.channel.epoll.Epoll;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -110,6 +115,46 @@ public class ProcessEnvironmentFactoryTest {
     assertThat(barHandle.getEnvironment(), is(equalTo(barEnv)));
   }
 
+  @Test
+  public void usesDomainSocketForDataServerIfSupported() throws Exception {
+    assumeTrue(Epoll.isAvailable());
+    ProcessEnvironmentFactory.Provider provider =
+        new ProcessEnvironmentFactory.Provider(PipelineOptionsFactory.create());
+    Environment environment =
+        ENVIRONMENT
+            .toBuilder()
+            .addCapabilities(Environments.DOMAIN_SOCKET_DATA_CHANNEL_CAPABILITY)
+            .build();
+
+    ApiServiceDescriptor.Builder descriptor = ApiServiceDescriptor.newBuilder();
+    Server server =
+        provider
+            .getDataServerFactory(environment)
+            .allocateAddressAndCreate(Collections.emptyList(), descriptor);
+    try {
+      assertThat(descriptor.getUrl(), startsWith("unix://"));
+    } finally {
+      server.shutdownNow();
+    }
+  }
+
+  @Test
+  public void usesDefaultDataServerIfDomainSocketsAreUnsupported() throws Exception {
+    ProcessEnvironmentFactory.Provider provider =
+        new ProcessEnvironmentFactory.Provider(PipelineOptionsFactory.create());
+
+    ApiServiceDescriptor.Builder descriptor = ApiServiceDescriptor.newBuilder();
+    Server server =
+        provider
+            .getDataServerFactory(ENVIRONMENT)
+            .allocateAddressAndCreate(Collections.emptyList(), descriptor);
+    try {
+      assertThat(descriptor.getUrl(), not(startsWith("unix://")));
+    } finally {
+      server.shutdownNow();
+    }
+  }
+
   private static class InspectibleIdGenerator implements IdGenerator {
 
     private IdGenerator generator = IdGenerators.incrementingLongs();
@@ -0,0 +1,379 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.avro.reflect.Nullable;
+import org.apache.beam.sdk.coders.AvroCoder;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.coders.IterableCoder;
+import org.apache.beam.sdk.coders.KvCoder;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.coders.SerializableCoder;
+import org.apache.beam.sdk.coders.SnappyCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.coders.ZstdCoder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.values.Row;
+import org.joda.time.Instant;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for encoding and decoding bundles of elements with the core SDK {@link Coder}s.
+ *
+ * <p>Scores are reported per element. To also measure the allocation rate, for instance in {@code
+ * gc.alloc.rate.norm} bytes per element, run the benchmarks with the GC profiler:
+ *
+ * <pre>
+ * ./gradlew :sdks:java:core:jmh:jmh -Pbenchmark=CoderBenchmark -PjmhProfiler=gc
+ * </pre>
+ *
+ * <p>To check a coder change for regressions, record the results of a run before the change with
+ * {@code -PjmhResults=baseline.json} and pass them to a run after the change with {@code
+ * -PjmhBaseline=baseline.json}, which fails if any benchmark got slower by more than 10%.
+ */
+public class CoderBenchmark {
+  static final int BUNDLE_SIZE = 1000;
+
+  /** Record encoded by the {@link AvroCoder} and {@link SerializableCoder} benchmarks. */
+  public static class Record implements Serializable {
+    public long id;
+    public String name;
+    public double score;
+    public @Nullable String comment;
+
+    public Record() {
+      this.name = "";
+    }
+  }
+
+  /** The coders to benchmark and the elements they encode. */
+  public enum CoderCase {
+    VAR_INT {
+      @Override
+      Coder<?> coder() {
+        return VarIntCoder.of();
+      }
+
+      @Override
+      Object element(Random random) {
+        // skewed towards small values like most ints in practice
+        return random.nextInt() >>> random.nextInt(32);
+      }
+    },
+    VAR_LONG {
+      @Override
+      Coder<?> coder() {
+        return VarLongCoder.of();
+      }
+
+      @Override
+      Object element(Random random) {
+        return random.nextLong() >>> random.nextInt(64);
+      }
+    },
+    STRING_UTF8 {
+      @Override
+      Coder<?> coder() {
+        return StringUtf8Coder.of();
+      }
+
+      @Override
+      Object element(Random random) {
+        return string(random, random.nextInt(64));
+      }
+    },
+    KV {
+      @Override
+      Coder<?> coder() {
+        return KvCoder.of(StringUtf8Coder.of(), VarLongCoder.of());
+      }
+
+      @Override
+      Object element(Random random) {
+        return org.apache.beam.sdk.values.KV.of(string(random, 16), random.nextLong());
+      }
+    },
+    ITERABLE {
+      @Override
+      Coder<?> coder() {
+        return IterableCoder.of(VarIntCoder.of());
+      }
+
+      @Override
+      Object element(Random random) {
+        int size = random.nextInt(32);
+        List<Integer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; ++i) {
+          values.add(random.nextInt(1 << 16));
+        }
+        return values;
+      }
+    },
+    ROW_NARROW {
+      @Override
+      Coder<?> coder() {
+        return RowCoder.of(NARROW_SCHEMA);
+      }
+
+      @Override
+      Object element(Random random) {
+        return row(NARROW_SCHEMA, random);
+      }
+    },
+    ROW_WIDE {
+      @Override
+      Coder<?> coder() {
+        return RowCoder.of(WIDE_SCHEMA);
+      }
+
+      @Override
+      Object element(Random random) {
+        return row(WIDE_SCHEMA, random);
+      }
+    },
+    AVRO {
+      @Override
+      @SuppressWarnings("deprecation") // AvroCoder of core is deprecated
+      Coder<?> coder() {
+        return AvroCoder.of(Record.class, true);
+      }
+
+      @Override
+      Object element(Random random) {
+        return record(random);
+      }
+    },
+    SERIALIZABLE {
+      @Override
+      Coder<?> coder() {
+        return SerializableCoder.of(Record.class);
+      }
+
+      @Override
+      Object element(Random random) {
+        return record(random);
+      }
+    },
+    ZSTD {
+      @Override
+      Coder<?> coder() {
+        return ZstdCoder.of(StringUtf8Coder.of());
+      }
+
+      @Override
+      Object element(Random random) {
+        return text(random);
+      }
+    },
+    SNAPPY {
+      @Override
+      Coder<?> coder() {
+        return SnappyCoder.of(StringUtf8Coder.of());
+      }
+
+      @Override
+      Object element(Random random) {
+        return text(random);
+      }
+    };
+
+    abstract Coder<?> coder();
+
+    abstract Object element(Random random);
+  }
+
+  private static final Schema NARROW_SCHEMA =
+      Schema.builder()
+          .addInt64Field("id")
+          .addStringField("name")
+          .addDoubleField("score")
+          .build();
+
+  private static final Schema WIDE_SCHEMA = wideSchema(50);
+
+  private static final String[] WORDS = {
+    "apache", "beam", "coder", "pipeline", "window", "bundle", "\u00e9l\u00e9ment", "\u6570\u636e"
+  };
+
+  private static Schema wideSchema(int fieldCount) {
+    FieldType[] types = {
+      FieldType.INT32,
+      FieldType.INT64,
+      FieldType.DOUBLE,
+      FieldType.STRING,
+      FieldType.BOOLEAN,
+      FieldType.DATETIME,
+      FieldType.STRING.withNullable(true)
+    };
+    Schema.Builder schema = Schema.builder();
+    for (int i = 0; i < fieldCount; ++i) {
+      schema.addField("field" + i, types[i % types.length]);
+    }
+    return schema.build();
+  }
+
+  private static Row row(Schema schema, Random random) {
+    Row.Builder row = Row.withSchema(schema);
+    for (Schema.Field field : schema.getFields()) {
+      FieldType type = field.getType();
+      if (type.getNullable() && random.nextBoolean()) {
+        row.addValue(null);
+        continue;
+      }
+      switch (type.getTypeName()) {
+        case INT32:
+          row.addValue(random.nextInt(1 << 20));
+          break;
+        case INT64:
+          row.addValue(random.nextLong());
+          break;
+        case DOUBLE:
+          row.addValue(random.nextDouble());
+          break;
+        case STRING:
+          row.addValue(string(random, random.nextInt(32)));
+          break;
+        case BOOLEAN:
+          row.addValue(random.nextBoolean());
+          break;
+        case DATETIME:
+          row.addValue(new Instant(random.nextInt(Integer.MAX_VALUE)));
+          break;
+        default:
+          throw new IllegalArgumentException("Unsupported field type " + type);
+      }
+    }
+    return row.build();
+  }
+
+  private static Record record(Random random) {
+    Record record = new Record();
+    record.id = random.nextLong();
+    record.name = string(random, 16);
+    record.score = random.nextDouble();
+    record.comment = random.nextBoolean() ? text(random) : null;
+    return record;
+  }
+
+  private static String string(Random random, int length) {
+    StringBuilder string = new StringBuilder(length);
+    for (int i = 0; i < length; ++i) {
+      string.append((char) ('a' + random.nextInt(26)));
+    }
+    return string.toString();
+  }
+
+  /** Returns a compressible text of a few hundred characters. */
+  private static String text(Random random) {
+    StringBuilder text = new StringBuilder();
+    int words = 50 + random.nextInt(50);
+    for (int i = 0; i < words; ++i) {
+      text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return text.toString();
+  }
+
+  /** A bundle of elements and their encoding. */
+  @State(Scope.Benchmark)
+  public static class Bundle {
+    @Param({
+      "VAR_INT",
+      "VAR_LONG",
+      "STRING_UTF8",
+      "KV",
+      "ITERABLE",
+      "ROW_NARROW",
+      "ROW_WIDE",
+      "AVRO",
+      "SERIALIZABLE",
+      "ZSTD",
+      "SNAPPY"
+    })
+    public CoderCase coderCase = CoderCase.VAR_INT;
+
+    @SuppressWarnings("rawtypes")
+    Coder coder = VarIntCoder.of();
+
+    Object[] elements = new Object[0];
+    byte[] encoded = new byte[0];
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws IOException {
+      coder = coderCase.coder();
+      Random random = new Random(42);
+      elements = new Object[BUNDLE_SIZE];
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      for (int i = 0; i < BUNDLE_SIZE; ++i) {
+        elements[i] = coderCase.element(random);
+        coder.encode(elements[i], output);
+      }
+      encoded = output.toByteArray();
+      // fail early rather than benchmarking a coder which can't decode its own output
+      ByteArrayInputStream input = new ByteArrayInputStream(encoded);
+      for (int i = 0; i < BUNDLE_SIZE; ++i) {
+        coder.decode(input);
+      }
+      if (input.available() != 0) {
+        throw new IllegalStateException(coderCase + " did not consume all encoded bytes.");
+      }
+    }
+  }
+
+  /** Output stream reused across invocations to not measure growing the buffer. */
+  @State(Scope.Thread)
+  public static class Output {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  @SuppressWarnings("unchecked")
+  public void encode(Bundle bundle, Output output, Blackhole bh) throws IOException {
+    output.output.reset();
+    for (Object element : bundle.elements) {
+      bundle.coder.encode(element, output.output);
+    }
+    bh.consume(output.output.size());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  public void decode(Bundle bundle, Blackhole bh) throws IOException {
+    ByteArrayInputStream input = new ByteArrayInputStream(bundle.encoded);
+    for (int i = 0; i < BUNDLE_SIZE; ++i) {
+      bh.consume(bundle.coder.decode(input));
+    }
+  }
+}
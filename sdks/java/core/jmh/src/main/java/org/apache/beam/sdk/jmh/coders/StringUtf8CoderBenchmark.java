@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.coders;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.util.ExposedByteArrayInputStream;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for {@link StringUtf8Coder} with the streams it has fast paths for compared to plain
+ * {@link ByteArrayOutputStream}s and {@link ByteArrayInputStream}s.
+ *
+ * <p>Run with {@code -PjmhProfiler=gc} to see the bytes allocated per string in {@code
+ * gc.alloc.rate.norm}.
+ */
+public class StringUtf8CoderBenchmark {
+  private static final int BUNDLE_SIZE = 1000;
+  private static final StringUtf8Coder CODER = StringUtf8Coder.of();
+
+  @State(Scope.Benchmark)
+  public static class Bundle {
+    @Param({"ascii", "utf8"})
+    public String charset = "ascii";
+
+    @Param({"16", "256"})
+    public int length = 16;
+
+    String[] values = new String[0];
+    byte[] encoded = new byte[0];
+
+    @Setup
+    public void setup() throws IOException {
+      String chars = "ascii".equals(charset) ? "abcdefghij" : "abcdefghi\u00e9";
+      values = new String[BUNDLE_SIZE];
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      for (int i = 0; i < BUNDLE_SIZE; ++i) {
+        String repeated = Strings.repeat(chars, length / chars.length() + 2);
+        int start = i % chars.length();
+        values[i] = repeated.substring(start, start + length - 1) + (char) ('a' + i % 26);
+        CODER.encode(values[i], output);
+      }
+      encoded = output.toByteArray();
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class Output {
+    final ByteStringOutputStream byteStringOutput = new ByteStringOutputStream();
+    final ByteArrayOutputStream byteArrayOutput = new ByteArrayOutputStream();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  public void encodeToByteStringOutputStream(Bundle bundle, Output output, Blackhole bh)
+      throws IOException {
+    for (String value : bundle.values) {
+      CODER.encode(value, output.byteStringOutput);
+    }
+    bh.consume(output.byteStringOutput.toByteStringAndReset());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  public void encodeToByteArrayOutputStream(Bundle bundle, Output output, Blackhole bh)
+      throws IOException {
+    output.byteArrayOutput.reset();
+    for (String value : bundle.values) {
+      CODER.encode(value, output.byteArrayOutput);
+    }
+    bh.consume(output.byteArrayOutput.size());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  public void decodeFromExposedByteArrayInputStream(Bundle bundle, Blackhole bh)
+      throws IOException {
+    decode(new ExposedByteArrayInputStream(bundle.encoded), bh);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BUNDLE_SIZE)
+  public void decodeFromByteArrayInputStream(Bundle bundle, Blackhole bh) throws IOException {
+    decode(new ByteArrayInputStream(bundle.encoded), bh);
+  }
+
+  private static void decode(InputStream input, Blackhole bh) throws IOException {
+    for (int i = 0; i < BUNDLE_SIZE; ++i) {
+      bh.consume(CODER.decode(input));
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.jmh.io;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import org.apache.beam.sdk.io.FileBasedSource;
+import org.apache.beam.sdk.io.FileSystems;
+import org.apache.beam.sdk.io.LocalFileSystemOptions;
+import org.apache.beam.sdk.io.Source;
+import org.apache.beam.sdk.io.TextIOReadTest;
+import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for reading local files through file channels and through memory mapped channels, see
+ * {@link LocalFileSystemOptions#getMemoryMapLocalFiles()}. The {@link Bytes} counter reports the
+ * throughput in bytes per unit of time next to the number of files read.
+ *
+ * <p>The file is read repeatedly and therefore served from the page cache, so the benchmarks
+ * measure the overhead of the read path rather than the disk.
+ */
+public class LocalFileSystemBenchmark {
+  private static final int NUM_LINES = 1_000_000;
+
+  @State(Scope.Benchmark)
+  public static class Data {
+    @Param({"false", "true"})
+    public boolean memoryMapped;
+
+    public Path path;
+    public String pathString;
+    public ResourceId resourceId;
+    public long sizeBytes;
+
+    /** Generates a file with {@code NUM_LINES} lines of 60 to 120 characters each. */
+    @Setup
+    public void createFile() throws Exception {
+      LocalFileSystemOptions options = PipelineOptionsFactory.as(LocalFileSystemOptions.class);
+      options.setMemoryMapLocalFiles(memoryMapped);
+      FileSystems.setDefaultPipelineOptions(options);
+
+      path = Files.createTempFile("benchmark", null).toAbsolutePath();
+      pathString = path.toString();
+      Random random = new Random(0);
+      byte[] line = new byte[121];
+      try (OutputStream output = Files.newOutputStream(path)) {
+        for (int i = 0; i < NUM_LINES; ++i) {
+          int length = 60 + random.nextInt(61);
+          for (int j = 0; j < length; ++j) {
+            line[j] = (byte) ('a' + random.nextInt(26));
+          }
+          line[length] = '\n';
+          output.write(line, 0, length + 1);
+        }
+      }
+      resourceId = FileSystems.matchSingleFileSpec(pathString).resourceId();
+      sizeBytes = Files.size(path);
+    }
+
+    @TearDown
+    public void deleteFile() throws Exception {
+      Files.deleteIfExists(path);
+      FileSystems.setDefaultPipelineOptions(PipelineOptionsFactory.create());
+    }
+  }
+
+  /** Counts the bytes of the files which were read. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  /** Buffer reused across invocations, sized like the buffers of file based sources. */
+  @State(Scope.Thread)
+  public static class Buffer {
+    final ByteBuffer buffer = ByteBuffer.allocate(8192);
+  }
+
+  @Benchmark
+  public void readChannel(Data data, Buffer buffer, Bytes bytes, Blackhole bh) throws Exception {
+    try (ReadableByteChannel channel = FileSystems.open(data.resourceId)) {
+      long read = 0;
+      int n;
+      while ((n = channel.read(buffer.buffer)) != -1) {
+        read += n;
+        buffer.buffer.clear();
+      }
+      if (read != data.sizeBytes) {
+        throw new IllegalStateException();
+      }
+      bh.consume(buffer.buffer);
+    }
+    bytes.bytes += data.sizeBytes;
+  }
+
+  @Benchmark
+  public void readTextSource(Data data, Bytes bytes) throws Exception {
+    Source.Reader<String> reader =
+        ((FileBasedSource<String>) TextIOReadTest.getTextSource(data.pathString, null))
+            .createReader(PipelineOptionsFactory.create());
+    long length = 0;
+    for (boolean more = reader.start(); more; more = reader.advance()) {
+      length += reader.getCurrent().length() + 1; // the lines are ASCII
+    }
+    reader.close();
+    if (length != data.sizeBytes) {
+      throw new IllegalStateException();
+    }
+    bytes.bytes += data.sizeBytes;
+  }
+}
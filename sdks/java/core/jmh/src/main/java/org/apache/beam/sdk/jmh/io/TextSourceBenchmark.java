@@ -30,12 +30,19 @@ import org.apache.beam.sdk.io.TextIOReadTest;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.util.LineReader;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
+/**
+ * Benchmarks for reading lines of text. The {@link Bytes} counter reports the throughput in bytes
+ * per unit of time next to the number of files read.
+ */
 public class TextSourceBenchmark {
   private static final int NUM_LINES = 10_000_000;
   private static char[] data = new char[120];
@@ -49,6 +56,7 @@ public class TextSourceBenchmark {
     public Path path;
     public String pathString;
     public int length;
+    public long sizeBytes;
 
     /** Generates a random file with {@code NUM_LINES} between 60 and 120 characters each. */
     @Setup
@@ -64,6 +72,7 @@ public class TextSourceBenchmark {
         writer.write('\n');
       }
       writer.close();
+      sizeBytes = Files.size(path);
     }
 
     @TearDown
@@ -72,10 +81,33 @@ public class TextSourceBenchmark {
     }
   }
 
+  /** Counts the bytes of the files which were read. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Bytes {
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
   @Benchmark
-  public void benchmarkTextSource(Data data) throws Exception {
+  public void benchmarkTextSource(Data data, Bytes bytes) throws Exception {
+    readTextSource(data, null);
+    bytes.bytes += data.sizeBytes;
+  }
+
+  @Benchmark
+  public void benchmarkTextSourceCustomDelimiter(Data data, Bytes bytes) throws Exception {
+    readTextSource(data, new byte[] {'\n'});
+    bytes.bytes += data.sizeBytes;
+  }
+
+  private static void readTextSource(Data data, byte @Nullable [] delimiter) throws Exception {
     Source.Reader<String> reader =
-        ((FileBasedSource<String>) TextIOReadTest.getTextSource(data.pathString, null))
+        ((FileBasedSource<String>) TextIOReadTest.getTextSource(data.pathString, delimiter))
             .createReader(PipelineOptionsFactory.create());
     int length = 0;
     int linesRead = 0;
@@ -97,7 +129,7 @@ public class TextSourceBenchmark {
   }
 
   @Benchmark
-  public void benchmarkHadoopLineReader(Data data) throws Exception {
+  public void benchmarkHadoopLineReader(Data data, Bytes bytes) throws Exception {
     LineReader reader = new LineReader(new FileInputStream(data.pathString));
     int length = 0;
     int linesRead = 0;
@@ -113,5 +145,6 @@ public class TextSourceBenchmark {
       throw new IllegalStateException();
     }
     reader.close();
+    bytes.bytes += data.sizeBytes;
   }
 }
@@ -32,7 +32,10 @@ import org.apache.beam.sdk.annotations.Experimental;
 import org.apache.beam.sdk.annotations.Experimental.Kind;
 import org.apache.beam.sdk.annotations.Internal;
 import org.apache.beam.sdk.coders.CoderRegistry;
+import org.apache.beam.sdk.coders.DoubleArrayCoder;
+import org.apache.beam.sdk.coders.LongArrayCoder;
 import org.apache.beam.sdk.io.Read;
+import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.runners.AppliedPTransform;
@@ -330,10 +333,21 @@ public class Pipeline {
     }
   }
 
-  /** Returns the {@link CoderRegistry} that this {@link Pipeline} uses. */
+  /**
+   * Returns the {@link CoderRegistry} that this {@link Pipeline} uses.
+   *
+   * <p>With the {@link ExperimentalOptions#PRIMITIVE_ARRAY_CODERS} experiment, {@code long[]} and
+   * {@code double[]} are encoded with {@link LongArrayCoder} and {@link DoubleArrayCoder} by
+   * default.
+   */
   public CoderRegistry getCoderRegistry() {
     if (coderRegistry == null) {
       coderRegistry = CoderRegistry.createDefault();
+      if (ExperimentalOptions.hasExperiment(
+          defaultOptions, ExperimentalOptions.PRIMITIVE_ARRAY_CODERS)) {
+        coderRegistry.registerCoderForClass(long[].class, LongArrayCoder.of());
+        coderRegistry.registerCoderForClass(double[].class, DoubleArrayCoder.of());
+      }
     }
     return coderRegistry;
   }
@@ -21,13 +21,21 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import org.apache.beam.sdk.annotations.Internal;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Longs;
 
-class BitConverters {
+/** Reads and writes fixed width, big-endian primitive values on streams without boxing them. */
+@Internal
+public class BitConverters {
+  // The maximum number of array elements converted at once by the array methods, which bounds the
+  // size of their temporary buffer.
+  private static final int MAX_CHUNK_LENGTH = 1024;
+
   private BitConverters() {}
 
-  static long readBigEndianLong(InputStream in) throws IOException {
+  public static long readBigEndianLong(InputStream in) throws IOException {
     byte[] buf = new byte[8];
     ByteStreams.readFully(in, buf);
 
@@ -58,7 +66,7 @@ class BitConverters {
     return (short) ((b1 & 255) << 8 | (b2 & 255));
   }
 
-  static void writeBigEndianLong(long value, OutputStream out) throws IOException {
+  public static void writeBigEndianLong(long value, OutputStream out) throws IOException {
     byte[] buf = Longs.toByteArray(value);
     out.write(buf);
   }
@@ -74,4 +82,56 @@ class BitConverters {
     out.write((byte) (value >> 8));
     out.write((byte) value);
   }
+
+  static void writeBigEndianLongs(long[] values, OutputStream out) throws IOException {
+    ByteBuffer buffer = chunkBuffer(values.length);
+    for (int i = 0; i < values.length; ) {
+      int end = Math.min(values.length, i + MAX_CHUNK_LENGTH);
+      buffer.clear();
+      for (; i < end; ++i) {
+        buffer.putLong(values[i]);
+      }
+      out.write(buffer.array(), 0, buffer.position());
+    }
+  }
+
+  static void writeBigEndianDoubles(double[] values, OutputStream out) throws IOException {
+    ByteBuffer buffer = chunkBuffer(values.length);
+    for (int i = 0; i < values.length; ) {
+      int end = Math.min(values.length, i + MAX_CHUNK_LENGTH);
+      buffer.clear();
+      for (; i < end; ++i) {
+        buffer.putDouble(values[i]);
+      }
+      out.write(buffer.array(), 0, buffer.position());
+    }
+  }
+
+  static void readBigEndianLongs(InputStream in, long[] values) throws IOException {
+    ByteBuffer buffer = chunkBuffer(values.length);
+    for (int i = 0; i < values.length; ) {
+      int end = Math.min(values.length, i + MAX_CHUNK_LENGTH);
+      ByteStreams.readFully(in, buffer.array(), 0, (end - i) * Long.BYTES);
+      buffer.clear();
+      for (; i < end; ++i) {
+        values[i] = buffer.getLong();
+      }
+    }
+  }
+
+  static void readBigEndianDoubles(InputStream in, double[] values) throws IOException {
+    ByteBuffer buffer = chunkBuffer(values.length);
+    for (int i = 0; i < values.length; ) {
+      int end = Math.min(values.length, i + MAX_CHUNK_LENGTH);
+      ByteStreams.readFully(in, buffer.array(), 0, (end - i) * Double.BYTES);
+      buffer.clear();
+      for (; i < end; ++i) {
+        values[i] = buffer.getDouble();
+      }
+    }
+  }
+
+  private static ByteBuffer chunkBuffer(int length) {
+    return ByteBuffer.allocate(Math.min(length, MAX_CHUNK_LENGTH) * Long.BYTES);
+  }
 }
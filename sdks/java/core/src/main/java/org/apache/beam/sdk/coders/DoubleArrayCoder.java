@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.TypeDescriptor;
+
+/**
+ * A {@link Coder} for {@code double[]} which encodes the length of the array, encoded via a {@link
+ * VarIntCoder}, followed by each element in 8 bytes in big-endian order.
+ *
+ * <p>Unlike a {@link ListCoder} of {@link Double}s, the elements are never boxed.
+ *
+ * <p>This coder is only the default coder of {@code double[]} in a pipeline's {@link CoderRegistry}
+ * with the {@link org.apache.beam.sdk.options.ExperimentalOptions#PRIMITIVE_ARRAY_CODERS}
+ * experiment, so that the coders inferred for existing pipelines don't change. Otherwise set it
+ * explicitly to use it.
+ */
+public class DoubleArrayCoder extends AtomicCoder<double[]> {
+
+  public static DoubleArrayCoder of() {
+    return INSTANCE;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final DoubleArrayCoder INSTANCE = new DoubleArrayCoder();
+  private static final TypeDescriptor<double[]> TYPE_DESCRIPTOR = new TypeDescriptor<double[]>() {};
+
+  private DoubleArrayCoder() {}
+
+  @Override
+  public void encode(double[] value, OutputStream outStream) throws IOException, CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null double[]");
+    }
+    VarInt.encode(value.length, outStream);
+    BitConverters.writeBigEndianDoubles(value, outStream);
+  }
+
+  @Override
+  public double[] decode(InputStream inStream) throws IOException, CoderException {
+    try {
+      int length = VarInt.decodeInt(inStream);
+      if (length < 0) {
+        throw new CoderException("invalid length " + length);
+      }
+      double[] value = new double[length];
+      BitConverters.readBigEndianDoubles(inStream, value);
+      return value;
+    } catch (EOFException exn) {
+      throw new CoderException(exn);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws NonDeterministicException always. Floating-point operations are not guaranteed to be
+   *     deterministic, even if the storage format might be, so floating point representations are
+   *     not recommended for use in operations that require deterministic inputs.
+   */
+  @Override
+  public void verifyDeterministic() throws NonDeterministicException {
+    throw new NonDeterministicException(
+        this, "Floating point encodings are not guaranteed to be deterministic.");
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@code true} since {@link #getEncodedElementByteSize} runs in constant time using the
+   *     {@code length} of the provided array.
+   */
+  @Override
+  public boolean isRegisterByteSizeObserverCheap(double[] value) {
+    return true;
+  }
+
+  @Override
+  public TypeDescriptor<double[]> getEncodedTypeDescriptor() {
+    return TYPE_DESCRIPTOR;
+  }
+
+  @Override
+  protected long getEncodedElementByteSize(double[] value) throws Exception {
+    if (value == null) {
+      throw new CoderException("cannot encode a null double[]");
+    }
+    return (long) VarInt.getLength(value.length) + (long) value.length * Double.BYTES;
+  }
+}
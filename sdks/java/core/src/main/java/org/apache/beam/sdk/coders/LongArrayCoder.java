@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.TypeDescriptor;
+
+/**
+ * A {@link Coder} for {@code long[]} which encodes the length of the array, encoded via a {@link
+ * VarIntCoder}, followed by each element in 8 bytes in big-endian order.
+ *
+ * <p>Unlike a {@link ListCoder} of {@link Long}s, the elements are never boxed. See {@link
+ * VarLongArrayCoder} for a more compact encoding of arrays of mostly small, non-negative values.
+ *
+ * <p>This coder is only the default coder of {@code long[]} in a pipeline's {@link CoderRegistry}
+ * with the {@link org.apache.beam.sdk.options.ExperimentalOptions#PRIMITIVE_ARRAY_CODERS}
+ * experiment, so that the coders inferred for existing pipelines don't change. Otherwise set it
+ * explicitly to use it.
+ */
+public class LongArrayCoder extends AtomicCoder<long[]> {
+
+  public static LongArrayCoder of() {
+    return INSTANCE;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final LongArrayCoder INSTANCE = new LongArrayCoder();
+  private static final TypeDescriptor<long[]> TYPE_DESCRIPTOR = new TypeDescriptor<long[]>() {};
+
+  private LongArrayCoder() {}
+
+  @Override
+  public void encode(long[] value, OutputStream outStream) throws IOException, CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null long[]");
+    }
+    VarInt.encode(value.length, outStream);
+    BitConverters.writeBigEndianLongs(value, outStream);
+  }
+
+  @Override
+  public long[] decode(InputStream inStream) throws IOException, CoderException {
+    try {
+      int length = VarInt.decodeInt(inStream);
+      if (length < 0) {
+        throw new CoderException("invalid length " + length);
+      }
+      long[] value = new long[length];
+      BitConverters.readBigEndianLongs(inStream, value);
+      return value;
+    } catch (EOFException exn) {
+      throw new CoderException(exn);
+    }
+  }
+
+  @Override
+  public void verifyDeterministic() {}
+
+  /**
+   * {@inheritDoc}
+   *
+   * @return {@code true} since {@link #getEncodedElementByteSize} runs in constant time using the
+   *     {@code length} of the provided array.
+   */
+  @Override
+  public boolean isRegisterByteSizeObserverCheap(long[] value) {
+    return true;
+  }
+
+  @Override
+  public TypeDescriptor<long[]> getEncodedTypeDescriptor() {
+    return TYPE_DESCRIPTOR;
+  }
+
+  @Override
+  protected long getEncodedElementByteSize(long[] value) throws Exception {
+    if (value == null) {
+      throw new CoderException("cannot encode a null long[]");
+    }
+    return (long) VarInt.getLength(value.length) + (long) value.length * Long.BYTES;
+  }
+}
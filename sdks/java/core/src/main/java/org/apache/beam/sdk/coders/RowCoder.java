@@ -32,6 +32,16 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 /** A sub-class of SchemaCoder that can only encode {@link Row} instances. */
 @Experimental(Kind.SCHEMAS)
 public class RowCoder extends SchemaCoder<Row> {
+  /**
+   * A boolean {@link Schema.Options schema option} which makes the coder decode fields of rows with
+   * the schema only when they are first accessed.
+   *
+   * <p>Primitive, string and bytes fields are kept in their encoded form until they are accessed,
+   * and are copied as is if the row is encoded again. This saves decoding and allocation for wide
+   * schemas of which only a few fields are accessed, e.g. before a projection.
+   */
+  public static final String LAZY_DECODING_OPTION = "beam:option:row:lazy_decoding";
+
   public static RowCoder of(Schema schema) {
     return new RowCoder(schema);
   }
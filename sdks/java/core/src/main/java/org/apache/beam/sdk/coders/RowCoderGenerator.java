@@ -19,6 +19,7 @@ package org.apache.beam.sdk.coders;
 
 import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -26,6 +27,8 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import javax.annotation.Nullable;
@@ -56,8 +59,10 @@ import org.apache.beam.sdk.schemas.Schema.Field;
 import org.apache.beam.sdk.schemas.Schema.FieldType;
 import org.apache.beam.sdk.schemas.SchemaCoder;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.RowWithEncodedValues;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Maps;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
 
 /**
  * A utility for automatically generating a {@link Coder} for {@link Row} objects corresponding to a
@@ -158,6 +163,12 @@ public abstract class RowCoderGenerator {
             SchemaCoder.coderForFieldType(schema.getField(rowIndex).getType().withNullable(false));
       }
 
+      if (useLazyDecoding(schema, componentCoders)) {
+        rowCoder = new LazyDecodingRowCoder(schema, componentCoders, encodingPosToRowIndex);
+        GENERATED_CODERS.put(schema.getUUID(), rowCoder);
+        return rowCoder;
+      }
+
       builder =
           builder
               .defineField(
@@ -454,4 +465,230 @@ public abstract class RowCoderGenerator {
       return Row.withSchema(schema).attachValues(fieldValues);
     }
   }
+
+  /**
+   * Returns whether rows of the {@code schema} should be decoded lazily, which requires the {@link
+   * RowCoder#LAZY_DECODING_OPTION} and at least one field whose encoded form can be skipped.
+   */
+  private static boolean useLazyDecoding(Schema schema, Coder[] componentCoders) {
+    if (!schema.getOptions().getValueOrDefault(RowCoder.LAZY_DECODING_OPTION, false)) {
+      return false;
+    }
+    return Arrays.stream(componentCoders)
+        .anyMatch(coder -> LazyDecodingRowCoder.encodedSize(coder) != LazyDecodingRowCoder.EAGER);
+  }
+
+  /**
+   * A {@link Coder} for {@link Row}s which decodes fields with cheaply skipped encodings only when
+   * they are accessed, returning {@link RowWithEncodedValues}. It uses the same encoding as the
+   * generated coders.
+   */
+  private static class LazyDecodingRowCoder extends Coder<Row> {
+    // The kinds of encodings which are kept in their encoded form. Positive values are the size of
+    // fixed size encodings.
+    static final int EAGER = 0;
+    static final int VAR_INT = -1;
+    static final int LENGTH_PREFIXED = -2;
+
+    // The assumed size of an encoded string or bytes field, to size the buffer of a decoded row.
+    private static final int EXPECTED_LENGTH_PREFIXED_SIZE = 16;
+
+    private final Schema schema;
+    private final Coder[] coders;
+    private final int[] encodingPosToIndex;
+    private final boolean hasNullableFields;
+    // The encoded size of each field indexed by encoding position.
+    private final int[] encodedSizes;
+    // The coder of each field which is kept encoded, indexed by field. Shared by all decoded rows.
+    private final Coder[] encodedFieldCoders;
+    // The position of each field among the fields which are kept encoded, in encoding order,
+    // indexed by field. -1 for fields which are decoded eagerly. Shared by all decoded rows.
+    private final int[] encodedFieldPositions;
+    private final int encodedFieldCount;
+    // The initial size of the buffer holding the encoded fields of a row.
+    private final int expectedEncodedSize;
+
+    private LazyDecodingRowCoder(Schema schema, Coder[] coders, int[] encodingPosToIndex) {
+      this.schema = schema;
+      this.coders = coders;
+      this.encodingPosToIndex = encodingPosToIndex;
+      this.hasNullableFields =
+          schema.getFields().stream().map(Field::getType).anyMatch(FieldType::getNullable);
+      this.encodedSizes = new int[coders.length];
+      this.encodedFieldCoders = new Coder[coders.length];
+      this.encodedFieldPositions = new int[coders.length];
+      Arrays.fill(encodedFieldPositions, -1);
+      int encodedFieldCount = 0;
+      int expectedEncodedSize = 0;
+      for (int encodingPos = 0; encodingPos < coders.length; ++encodingPos) {
+        int encodedSize = encodedSize(coders[encodingPos]);
+        encodedSizes[encodingPos] = encodedSize;
+        if (encodedSize != EAGER) {
+          int rowIndex = encodingPosToIndex[encodingPos];
+          encodedFieldCoders[rowIndex] = coders[encodingPos];
+          encodedFieldPositions[rowIndex] = encodedFieldCount++;
+          if (encodedSize == VAR_INT) {
+            expectedEncodedSize += 1;
+          } else if (encodedSize == LENGTH_PREFIXED) {
+            expectedEncodedSize += EXPECTED_LENGTH_PREFIXED_SIZE;
+          } else {
+            expectedEncodedSize += encodedSize;
+          }
+        }
+      }
+      this.encodedFieldCount = encodedFieldCount;
+      this.expectedEncodedSize = expectedEncodedSize;
+    }
+
+    /** Returns how the encoded form of {@code coder} is skipped or {@link #EAGER} if it isn't. */
+    static int encodedSize(Coder<?> coder) {
+      Class<?> coderClass = coder.getClass();
+      if (coderClass == VarIntCoder.class || coderClass == VarLongCoder.class) {
+        return VAR_INT;
+      } else if (coderClass == StringUtf8Coder.class || coderClass == ByteArrayCoder.class) {
+        return LENGTH_PREFIXED;
+      } else if (coderClass == DoubleCoder.class || coderClass == InstantCoder.class) {
+        return Long.BYTES;
+      } else if (coderClass == FloatCoder.class) {
+        return Integer.BYTES;
+      } else if (coderClass == BigEndianShortCoder.class) {
+        return Short.BYTES;
+      } else if (coderClass == BooleanCoder.class || coderClass == ByteCoder.class) {
+        return 1;
+      }
+      return EAGER;
+    }
+
+    @Override
+    public void encode(Row value, OutputStream outStream) throws IOException {
+      if (!(value instanceof RowWithEncodedValues)) {
+        EncodeInstruction.encodeDelegate(
+            coders, encodingPosToIndex, value, outStream, hasNullableFields);
+        return;
+      }
+      // Copy the fields which are still encoded instead of decoding and encoding them again.
+      RowWithEncodedValues encodedRow = (RowWithEncodedValues) value;
+      int fieldCount = encodedRow.getFieldCount();
+      checkState(
+          encodingPosToIndex.length == fieldCount,
+          "Unable to encode row. Expected %s values, but row has %s%s",
+          encodingPosToIndex.length,
+          fieldCount,
+          encodedRow.getSchema().getFieldNames());
+      VAR_INT_CODER.encode(fieldCount, outStream);
+      BitSet nullFields = new BitSet(fieldCount);
+      for (int idx = 0; idx < fieldCount; ++idx) {
+        if (encodedRow.isNull(idx)) {
+          nullFields.set(idx);
+        }
+      }
+      NULL_LIST_CODER.encode(nullFields, outStream);
+      for (int encodingPos = 0; encodingPos < fieldCount; ++encodingPos) {
+        int rowIndex = encodingPosToIndex[encodingPos];
+        if (!nullFields.get(rowIndex)
+            && !encodedRow.writeEncodedValue(rowIndex, coders[encodingPos], outStream)) {
+          coders[encodingPos].encode(encodedRow.getValue(rowIndex), outStream);
+        }
+      }
+    }
+
+    @Override
+    public Row decode(InputStream inStream) throws IOException {
+      int fieldCount = VAR_INT_CODER.decode(inStream);
+      BitSet nullFields = NULL_LIST_CODER.decode(inStream);
+
+      Object[] fieldValues = new Object[coders.length];
+      // The encoded form of the encoded field at position i is encoded[offsets[i], offsets[i + 1]).
+      int[] offsets = new int[encodedFieldCount + 1];
+      EncodedFields encoded = new EncodedFields(expectedEncodedSize);
+      // In the case of a schema change going backwards, fieldCount might be > coders.length, in
+      // which case we drop the extra fields. Fields missing from the encoding remain null.
+      for (int encodingPos = 0; encodingPos < coders.length; ++encodingPos) {
+        int rowIndex = encodingPosToIndex[encodingPos];
+        boolean isPresent = encodingPos < fieldCount && !nullFields.get(rowIndex);
+        int encodedSize = encodedSizes[encodingPos];
+        if (encodedSize == EAGER) {
+          if (isPresent) {
+            fieldValues[rowIndex] = coders[encodingPos].decode(inStream);
+          }
+        } else {
+          if (isPresent) {
+            encoded.read(inStream, encodedSize);
+          }
+          // Null and missing fields have an empty encoded form.
+          offsets[encodedFieldPositions[rowIndex] + 1] = encoded.size;
+        }
+      }
+      return RowWithEncodedValues.create(
+          schema, fieldValues, encodedFieldCoders, encodedFieldPositions, encoded.bytes, offsets);
+    }
+
+    @Override
+    public List<? extends Coder<?>> getCoderArguments() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public void verifyDeterministic() throws NonDeterministicException {}
+  }
+
+  /** A growable buffer holding the encoded fields of a row. */
+  private static class EncodedFields {
+    private byte[] bytes;
+    private int size = 0;
+
+    EncodedFields(int initialCapacity) {
+      bytes = new byte[initialCapacity];
+    }
+
+    /** Copies the next field with the encoded size from {@code inStream}. */
+    void read(InputStream inStream, int encodedSize) throws IOException {
+      switch (encodedSize) {
+        case LazyDecodingRowCoder.VAR_INT:
+          readVarInt(inStream);
+          break;
+        case LazyDecodingRowCoder.LENGTH_PREFIXED:
+          long length = readVarInt(inStream);
+          if (length > Integer.MAX_VALUE) {
+            throw new CoderException("Invalid encoded length " + length);
+          }
+          readFully(inStream, (int) length);
+          break;
+        default:
+          readFully(inStream, encodedSize);
+      }
+    }
+
+    private long readVarInt(InputStream inStream) throws IOException {
+      long result = 0;
+      int shift = 0;
+      int b;
+      do {
+        if (shift >= 64) {
+          throw new CoderException("Invalid encoded varint");
+        }
+        b = inStream.read();
+        if (b < 0) {
+          throw new EOFException();
+        }
+        ensureCapacity(1);
+        bytes[size++] = (byte) b;
+        result |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+
+    private void readFully(InputStream inStream, int length) throws IOException {
+      ensureCapacity(length);
+      ByteStreams.readFully(inStream, bytes, size, length);
+      size += length;
+    }
+
+    private void ensureCapacity(int additional) {
+      if (size + additional > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + additional));
+      }
+    }
+  }
 }
@@ -23,6 +23,9 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UTFDataFormatException;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.util.ExposedByteArrayInputStream;
 import org.apache.beam.sdk.util.ExposedByteArrayOutputStream;
 import org.apache.beam.sdk.util.StreamUtils;
 import org.apache.beam.sdk.util.VarInt;
@@ -45,7 +48,50 @@ public class StringUtf8Coder extends AtomicCoder<String> {
   private static final StringUtf8Coder INSTANCE = new StringUtf8Coder();
   private static final TypeDescriptor<String> TYPE_DESCRIPTOR = new TypeDescriptor<String>() {};
 
+  // Strings of these lengths are read into a pooled buffer instead of a new array when decoding
+  // them from a stream which doesn't expose its buffer. Shorter strings are cheaper to read into a
+  // new array. The pool is bounded by the number of processors rather than held per thread, so
+  // that decoding on many (e.g. virtual) threads doesn't keep a buffer for each of them.
+  private static final int MIN_SCRATCH_LENGTH = 256;
+  private static final int MAX_SCRATCH_LENGTH = 4096;
+  private static final AtomicReferenceArray<byte[]> SCRATCH_POOL =
+      new AtomicReferenceArray<>(Runtime.getRuntime().availableProcessors());
+
+  /** Takes a buffer of {@link #MAX_SCRATCH_LENGTH} bytes from the pool or allocates a new one. */
+  private static byte[] takeScratch(int slot) {
+    for (int i = 0; i < SCRATCH_POOL.length(); ++i) {
+      byte[] scratch = SCRATCH_POOL.getAndSet((slot + i) % SCRATCH_POOL.length(), null);
+      if (scratch != null) {
+        return scratch;
+      }
+    }
+    return new byte[MAX_SCRATCH_LENGTH];
+  }
+
+  /** Returns a buffer to the pool unless the pool is full. */
+  private static void releaseScratch(int slot, byte[] scratch) {
+    for (int i = 0; i < SCRATCH_POOL.length(); ++i) {
+      if (SCRATCH_POOL.compareAndSet((slot + i) % SCRATCH_POOL.length(), null, scratch)) {
+        return;
+      }
+    }
+  }
+
+  private static boolean isAscii(String value) {
+    for (int i = 0; i < value.length(); ++i) {
+      if (value.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static void writeString(String value, OutputStream dos) throws IOException {
+    if (dos instanceof ByteStringOutputStream && isAscii(value)) {
+      VarInt.encode(value.length(), dos);
+      ((ByteStringOutputStream) dos).writeAscii(value);
+      return;
+    }
     byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
     VarInt.encode(bytes.length, dos);
     dos.write(bytes);
@@ -56,6 +102,20 @@ public class StringUtf8Coder extends AtomicCoder<String> {
     if (len < 0) {
       throw new CoderException("Invalid encoded string length: " + len);
     }
+    if (dis instanceof ExposedByteArrayInputStream) {
+      return ((ExposedByteArrayInputStream) dis).readUtf8(len);
+    }
+    if (len >= MIN_SCRATCH_LENGTH && len <= MAX_SCRATCH_LENGTH) {
+      // Spread the threads over the pool to avoid contending on a single slot.
+      int slot = (int) (Thread.currentThread().getId() % SCRATCH_POOL.length());
+      byte[] scratch = takeScratch(slot);
+      try {
+        ByteStreams.readFully(dis, scratch, 0, len);
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+      } finally {
+        releaseScratch(slot, scratch);
+      }
+    }
     byte[] bytes = new byte[len];
     ByteStreams.readFully(dis, bytes);
     return new String(bytes, StandardCharsets.UTF_8);
@@ -74,6 +134,10 @@ public class StringUtf8Coder extends AtomicCoder<String> {
       throw new CoderException("cannot encode a null String");
     }
     if (context.isWholeStream) {
+      if (outStream instanceof ByteStringOutputStream && isAscii(value)) {
+        ((ByteStringOutputStream) outStream).writeAscii(value);
+        return;
+      }
       byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
       if (outStream instanceof ExposedByteArrayOutputStream) {
         ((ExposedByteArrayOutputStream) outStream).writeAndOwn(bytes);
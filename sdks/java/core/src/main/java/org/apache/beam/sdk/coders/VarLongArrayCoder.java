@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.beam.sdk.util.VarInt;
+import org.apache.beam.sdk.values.TypeDescriptor;
+
+/**
+ * A {@link Coder} for {@code long[]} which encodes the length of the array followed by each
+ * element, all encoded via a {@link VarLongCoder}.
+ *
+ * <p>Small non-negative values take fewer bytes than with {@link LongArrayCoder}, while negative
+ * values take 10 bytes each.
+ */
+public class VarLongArrayCoder extends AtomicCoder<long[]> {
+
+  public static VarLongArrayCoder of() {
+    return INSTANCE;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static final VarLongArrayCoder INSTANCE = new VarLongArrayCoder();
+  private static final TypeDescriptor<long[]> TYPE_DESCRIPTOR = new TypeDescriptor<long[]>() {};
+
+  private VarLongArrayCoder() {}
+
+  @Override
+  public void encode(long[] value, OutputStream outStream) throws IOException, CoderException {
+    if (value == null) {
+      throw new CoderException("cannot encode a null long[]");
+    }
+    VarInt.encode(value.length, outStream);
+    for (long element : value) {
+      VarInt.encode(element, outStream);
+    }
+  }
+
+  @Override
+  public long[] decode(InputStream inStream) throws IOException, CoderException {
+    try {
+      int length = VarInt.decodeInt(inStream);
+      if (length < 0) {
+        throw new CoderException("invalid length " + length);
+      }
+      long[] value = new long[length];
+      for (int i = 0; i < length; ++i) {
+        value[i] = VarInt.decodeLong(inStream);
+      }
+      return value;
+    } catch (EOFException exn) {
+      throw new CoderException(exn);
+    }
+  }
+
+  @Override
+  public void verifyDeterministic() {}
+
+  @Override
+  public TypeDescriptor<long[]> getEncodedTypeDescriptor() {
+    return TYPE_DESCRIPTOR;
+  }
+
+  @Override
+  protected long getEncodedElementByteSize(long[] value) throws Exception {
+    if (value == null) {
+      throw new CoderException("cannot encode a null long[]");
+    }
+    long size = VarInt.getLength(value.length);
+    for (long element : value) {
+      size += VarInt.getLength(element);
+    }
+    return size;
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.io.CompressedSource.BlockDecompressingChannelFactory;
+
+/**
+ * Compression formats which consist of independently compressed blocks. A {@link CompressedSource}
+ * decompressing files in one of these formats splits them at block boundaries, so that large
+ * compressed files are read in parallel.
+ *
+ * <p>For example, use the following to read a BGZF file in parallel:
+ *
+ * <pre>{@code
+ * FileBasedSource<T> mySource = ...;
+ * PCollection<T> collection = p.apply(Read.from(CompressedSource
+ *     .from(mySource)
+ *     .withDecompression(BlockCompression.BGZF)));
+ * }</pre>
+ */
+@Experimental(Kind.SOURCE_SINK)
+public enum BlockCompression implements BlockDecompressingChannelFactory {
+  /**
+   * The blocked GNU zip format, as written by {@code bgzip}. Files are concatenations of gzip
+   * members of at most 64 KiB, each of which stores its compressed size in a {@code BC} extra
+   * field of its header. Files in this format are valid {@link Compression#GZIP} files.
+   */
+  BGZF {
+    @Override
+    public ReadableByteChannel createDecompressingChannel(ReadableByteChannel channel)
+        throws IOException {
+      return Compression.GZIP.readDecompressed(channel);
+    }
+
+    @Override
+    public long nextBlockStart(SeekableByteChannel file, long offset) throws IOException {
+      long size = file.size();
+      if (offset <= 0) {
+        return 0;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(BGZF_SCAN_BUFFER_SIZE);
+      long position = offset;
+      while (position + BGZF_MAGIC.length <= size) {
+        buffer.clear();
+        file.position(position);
+        readFully(file, buffer);
+        int length = buffer.position();
+        byte[] bytes = buffer.array();
+        for (int i = 0; i + BGZF_MAGIC.length <= length; ++i) {
+          if (bytes[i] == BGZF_MAGIC[0]
+              && bytes[i + 1] == BGZF_MAGIC[1]
+              && bytes[i + 2] == BGZF_MAGIC[2]
+              && (bytes[i + 3] & BGZF_MAGIC[3]) != 0
+              && isBgzfBlockChain(file, position + i, size)) {
+            return position + i;
+          }
+        }
+        if (length < BGZF_MAGIC.length) {
+          break;
+        }
+        // Overlap the next scan with the bytes a header could start at in this one.
+        position += length - BGZF_MAGIC.length + 1;
+      }
+      return size;
+    }
+
+    @Override
+    public long previousBlockStart(SeekableByteChannel file, long blockStart) throws IOException {
+      // Blocks are at most 64 KiB large, so the previous block starts within that distance. Once a
+      // block is found, the blocks following it are found through their sizes.
+      long candidate = nextBlockStart(file, Math.max(0, blockStart - BGZF_MAX_BLOCK_SIZE));
+      while (candidate < blockStart) {
+        long end = blockEnd(file, candidate);
+        if (end == blockStart) {
+          return candidate;
+        } else if (end < blockStart) {
+          candidate = end;
+        } else {
+          candidate = nextBlockStart(file, candidate + 1);
+        }
+      }
+      throw new IOException("No BGZF block found before the block at offset " + blockStart);
+    }
+
+    @Override
+    public long blockEnd(SeekableByteChannel file, long blockStart) throws IOException {
+      int blockSize = bgzfBlockSize(file, blockStart);
+      if (blockSize < 0) {
+        throw new IOException("No BGZF block found at offset " + blockStart);
+      }
+      return blockStart + blockSize;
+    }
+
+    @Override
+    public long decompressedSize(SeekableByteChannel file, long blockStart) throws IOException {
+      // The last four bytes of each block store the size of its decompressed content.
+      long size = file.size();
+      long decompressedSize = 0;
+      ByteBuffer isize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+      long block = blockStart;
+      while (block < size) {
+        long end = blockEnd(file, block);
+        isize.clear();
+        file.position(end - isize.capacity());
+        readFully(file, isize);
+        if (isize.hasRemaining()) {
+          throw new IOException("Truncated BGZF block at offset " + block);
+        }
+        decompressedSize += isize.getInt(0) & 0xffffffffL;
+        block = end;
+      }
+      return decompressedSize;
+    }
+  },
+
+  /**
+   * The seekable zstd format, as written by the zstd seekable format library. Files are
+   * concatenations of independently compressed zstd frames followed by a seek table, a skippable
+   * frame which records the compressed and decompressed size of each frame. Files in this format
+   * are valid {@link Compression#ZSTD} files.
+   *
+   * <p>As for {@link Compression#ZSTD}, it is the user's responsibility to declare an explicit
+   * dependency on {@code zstd-jni}.
+   */
+  ZSTD_SEEKABLE {
+    @Override
+    public ReadableByteChannel createDecompressingChannel(ReadableByteChannel channel)
+        throws IOException {
+      return Compression.ZSTD.readDecompressed(channel);
+    }
+
+    @Override
+    public long nextBlockStart(SeekableByteChannel file, long offset) throws IOException {
+      long[] blockStarts = readZstdSeekTable(file).blockStarts;
+      int index = Arrays.binarySearch(blockStarts, offset);
+      if (index >= 0) {
+        return offset;
+      }
+      int next = -index - 1;
+      return next < blockStarts.length ? blockStarts[next] : file.size();
+    }
+
+    @Override
+    public long previousBlockStart(SeekableByteChannel file, long blockStart) throws IOException {
+      long[] blockStarts = readZstdSeekTable(file).blockStarts;
+      int index = Arrays.binarySearch(blockStarts, blockStart);
+      if (index <= 0) {
+        throw new IOException("No zstd frame found before the frame at offset " + blockStart);
+      }
+      return blockStarts[index - 1];
+    }
+
+    @Override
+    public long blockEnd(SeekableByteChannel file, long blockStart) throws IOException {
+      // The end of a frame is found through its header, so that reading a file doesn't read the
+      // seek table for every frame.
+      return zstdFrameEnd(file, blockStart);
+    }
+
+    @Override
+    public long decompressedSize(SeekableByteChannel file, long blockStart) throws IOException {
+      ZstdSeekTable seekTable = readZstdSeekTable(file);
+      int index = Arrays.binarySearch(seekTable.blockStarts, blockStart);
+      if (index < 0) {
+        throw new IOException("No zstd frame found at offset " + blockStart);
+      }
+      long decompressedSize = 0;
+      for (int i = index; i < seekTable.decompressedSizes.length; ++i) {
+        decompressedSize += seekTable.decompressedSizes[i];
+      }
+      return decompressedSize;
+    }
+  };
+
+  /**
+   * The gzip magic bytes and compression method followed by the mask of the extra field flag,
+   * which starts every BGZF block.
+   */
+  private static final byte[] BGZF_MAGIC = {0x1f, (byte) 0x8b, 8, 4};
+
+  /** The size of the fixed part of a gzip header, including the length of the extra field. */
+  private static final int GZIP_HEADER_SIZE = 12;
+
+  private static final int BGZF_MAX_BLOCK_SIZE = 1 << 16;
+  private static final int BGZF_SCAN_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Returns whether a BGZF block starts at {@code offset} which is followed by either another block
+   * or the end of the file. Checking two headers makes it very unlikely to mistake compressed data
+   * for a block header.
+   */
+  private static boolean isBgzfBlockChain(SeekableByteChannel file, long offset, long size)
+      throws IOException {
+    int blockSize = bgzfBlockSize(file, offset);
+    if (blockSize < 0 || offset + blockSize > size) {
+      return false;
+    }
+    return offset + blockSize == size || bgzfBlockSize(file, offset + blockSize) >= 0;
+  }
+
+  /**
+   * Returns the compressed size of the BGZF block starting at {@code offset}, or -1 if no block
+   * starts there.
+   */
+  private static int bgzfBlockSize(SeekableByteChannel file, long offset) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(GZIP_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    file.position(offset);
+    readFully(file, header);
+    if (header.hasRemaining()) {
+      return -1;
+    }
+    for (int i = 0; i < BGZF_MAGIC.length - 1; ++i) {
+      if (header.get(i) != BGZF_MAGIC[i]) {
+        return -1;
+      }
+    }
+    if ((header.get(3) & BGZF_MAGIC[3]) == 0) {
+      return -1;
+    }
+    ByteBuffer extra =
+        ByteBuffer.allocate(header.getShort(10) & 0xffff).order(ByteOrder.LITTLE_ENDIAN);
+    readFully(file, extra);
+    if (extra.hasRemaining()) {
+      return -1;
+    }
+    // The extra field consists of subfields, each with a two byte identifier and length.
+    int position = 0;
+    while (position + 4 <= extra.limit()) {
+      int length = extra.getShort(position + 2) & 0xffff;
+      if (extra.get(position) == 'B'
+          && extra.get(position + 1) == 'C'
+          && length == 2
+          && position + 6 <= extra.limit()) {
+        return (extra.getShort(position + 4) & 0xffff) + 1;
+      }
+      position += 4 + length;
+    }
+    return -1;
+  }
+
+  private static final int ZSTD_FRAME_MAGIC = 0xFD2FB528;
+  private static final int ZSTD_SKIPPABLE_FRAME_MAGIC = 0x184D2A50;
+  private static final int ZSTD_SKIPPABLE_FRAME_MAGIC_MASK = 0xFFFFFFF0;
+  private static final int ZSTD_SEEK_TABLE_MAGIC = 0x184D2A5E;
+  private static final int ZSTD_SEEKABLE_MAGIC = 0x8F92EAB1;
+
+  /** The size of the magic number and frame size which start a skippable frame. */
+  private static final int ZSTD_SKIPPABLE_HEADER_SIZE = 8;
+
+  /** The size of the magic number and the largest possible header of a zstd frame. */
+  private static final int ZSTD_MAX_FRAME_HEADER_SIZE = 18;
+
+  private static final int ZSTD_BLOCK_HEADER_SIZE = 3;
+  private static final int ZSTD_RLE_BLOCK = 1;
+  private static final int ZSTD_RESERVED_BLOCK = 3;
+  private static final int ZSTD_CHECKSUM_SIZE = 4;
+
+  /** The number of frames, the seek table descriptor and the seekable magic number. */
+  private static final int ZSTD_SEEK_TABLE_FOOTER_SIZE = 9;
+
+  /**
+   * The offsets of the frames of a seekable zstd file followed by the offset of its seek table,
+   * along with the decompressed sizes of the frames.
+   */
+  private static class ZstdSeekTable {
+    private final long[] blockStarts;
+    private final long[] decompressedSizes;
+
+    private ZstdSeekTable(long[] blockStarts, long[] decompressedSizes) {
+      this.blockStarts = blockStarts;
+      this.decompressedSizes = decompressedSizes;
+    }
+  }
+
+  /** Reads the seek table at the end of a seekable zstd file. */
+  private static ZstdSeekTable readZstdSeekTable(SeekableByteChannel file) throws IOException {
+    long size = file.size();
+    if (size < ZSTD_SKIPPABLE_HEADER_SIZE + ZSTD_SEEK_TABLE_FOOTER_SIZE) {
+      throw new IOException("No zstd seek table found in a file of size " + size);
+    }
+    ByteBuffer footer =
+        ByteBuffer.allocate(ZSTD_SEEK_TABLE_FOOTER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    file.position(size - ZSTD_SEEK_TABLE_FOOTER_SIZE);
+    readFully(file, footer);
+    if (footer.hasRemaining() || footer.getInt(5) != ZSTD_SEEKABLE_MAGIC) {
+      throw new IOException("No zstd seek table found at the end of the file");
+    }
+    long numFrames = footer.getInt(0) & 0xffffffffL;
+    int descriptor = footer.get(4) & 0xff;
+    // Bits 2 to 6 of the descriptor are reserved, bit 7 indicates that entries have checksums.
+    if ((descriptor & 0x7c) != 0) {
+      throw new IOException("Unsupported zstd seek table descriptor " + descriptor);
+    }
+    int entrySize = (descriptor & 0x80) != 0 ? 12 : 8;
+    long tableSize =
+        ZSTD_SKIPPABLE_HEADER_SIZE + numFrames * entrySize + ZSTD_SEEK_TABLE_FOOTER_SIZE;
+    long tableStart = size - tableSize;
+    if (tableStart < 0) {
+      throw new IOException("zstd seek table of " + numFrames + " frames exceeds the file");
+    }
+    ByteBuffer table =
+        ByteBuffer.allocate((int) (tableSize - ZSTD_SEEK_TABLE_FOOTER_SIZE))
+            .order(ByteOrder.LITTLE_ENDIAN);
+    file.position(tableStart);
+    readFully(file, table);
+    if (table.hasRemaining()
+        || table.getInt(0) != ZSTD_SEEK_TABLE_MAGIC
+        || (table.getInt(4) & 0xffffffffL) != tableSize - ZSTD_SKIPPABLE_HEADER_SIZE) {
+      throw new IOException("Invalid zstd seek table at offset " + tableStart);
+    }
+    // The seek table itself is the last block, which decompresses to nothing.
+    long[] blockStarts = new long[(int) numFrames + 1];
+    long[] decompressedSizes = new long[(int) numFrames + 1];
+    long offset = 0;
+    for (int i = 0; i < numFrames; ++i) {
+      int entry = ZSTD_SKIPPABLE_HEADER_SIZE + i * entrySize;
+      blockStarts[i] = offset;
+      offset += table.getInt(entry) & 0xffffffffL;
+      decompressedSizes[i] = table.getInt(entry + 4) & 0xffffffffL;
+    }
+    if (offset != tableStart) {
+      throw new IOException(
+          "zstd seek table at offset " + tableStart + " records frames ending at " + offset);
+    }
+    blockStarts[(int) numFrames] = tableStart;
+    return new ZstdSeekTable(blockStarts, decompressedSizes);
+  }
+
+  /**
+   * Returns the offset after the end of the zstd frame or skippable frame starting at {@code
+   * frameStart}, which is found by walking the headers of the frame's blocks.
+   */
+  private static long zstdFrameEnd(SeekableByteChannel file, long frameStart) throws IOException {
+    ByteBuffer header =
+        ByteBuffer.allocate(ZSTD_MAX_FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    file.position(frameStart);
+    readFully(file, header);
+    if (header.position() < ZSTD_SKIPPABLE_HEADER_SIZE) {
+      throw new IOException("No zstd frame found at offset " + frameStart);
+    }
+    int magic = header.getInt(0);
+    if ((magic & ZSTD_SKIPPABLE_FRAME_MAGIC_MASK) == ZSTD_SKIPPABLE_FRAME_MAGIC) {
+      return frameStart + ZSTD_SKIPPABLE_HEADER_SIZE + (header.getInt(4) & 0xffffffffL);
+    }
+    if (magic != ZSTD_FRAME_MAGIC) {
+      throw new IOException("No zstd frame found at offset " + frameStart);
+    }
+    // The frame header descriptor determines the sizes of the optional header fields.
+    int descriptor = header.get(4) & 0xff;
+    int contentSizeFlag = descriptor >>> 6;
+    boolean singleSegment = (descriptor & 0x20) != 0;
+    boolean hasChecksum = (descriptor & 0x04) != 0;
+    int dictionaryIdFlag = descriptor & 0x03;
+    int windowDescriptorSize = singleSegment ? 0 : 1;
+    int dictionaryIdSize = dictionaryIdFlag == 0 ? 0 : 1 << (dictionaryIdFlag - 1);
+    int contentSizeSize = contentSizeFlag == 0 ? (singleSegment ? 1 : 0) : 1 << contentSizeFlag;
+    long position = frameStart + 5 + windowDescriptorSize + dictionaryIdSize + contentSizeSize;
+
+    ByteBuffer blockHeader = ByteBuffer.allocate(ZSTD_BLOCK_HEADER_SIZE);
+    boolean lastBlock = false;
+    while (!lastBlock) {
+      blockHeader.clear();
+      file.position(position);
+      readFully(file, blockHeader);
+      if (blockHeader.hasRemaining()) {
+        throw new IOException("Truncated zstd frame at offset " + frameStart);
+      }
+      int value =
+          (blockHeader.get(0) & 0xff)
+              | (blockHeader.get(1) & 0xff) << 8
+              | (blockHeader.get(2) & 0xff) << 16;
+      lastBlock = (value & 1) != 0;
+      int blockType = (value >>> 1) & 0x03;
+      int blockSize = value >>> 3;
+      if (blockType == ZSTD_RESERVED_BLOCK) {
+        throw new IOException("Invalid zstd block in the frame at offset " + frameStart);
+      }
+      // An RLE block stores the single byte which is repeated block size times.
+      position += ZSTD_BLOCK_HEADER_SIZE + (blockType == ZSTD_RLE_BLOCK ? 1 : blockSize);
+    }
+    return position + (hasChecksum ? ZSTD_CHECKSUM_SIZE : 0);
+  }
+
+  private static void readFully(ReadableByteChannel channel, ByteBuffer buffer)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        return;
+      }
+    }
+  }
+}
@@ -23,7 +23,13 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.NonWritableChannelException;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import javax.annotation.concurrent.GuardedBy;
 import org.apache.beam.sdk.annotations.Experimental;
@@ -32,6 +38,9 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.io.fs.MatchResult.Metadata;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.display.DisplayData;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.io.ByteStreams;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Bytes;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.joda.time.Instant;
 
@@ -53,6 +62,10 @@ import org.joda.time.Instant;
  * Compression#LZOP}, {@link Compression#SNAPPY}, and {@link Compression#DEFLATE}. User-defined
  * compression types are supported by implementing a {@link DecompressingChannelFactory}.
  *
+ * <p>Files compressed with a {@link BlockDecompressingChannelFactory}, such as {@link
+ * BlockCompression#BGZF}, are split at block boundaries and read in parallel. All other compressed
+ * files are read sequentially by a single reader.
+ *
  * <p>By default, the compression algorithm is selected from those supported in {@link Compression}
  * based on the file name provided to the source, namely {@code ".bz2"} indicates {@link
  * Compression#BZIP2}, {@code ".gz"} indicates {@link Compression#GZIP}, {@code ".zip"} indicates
@@ -77,6 +90,34 @@ public class CompressedSource<T> extends FileBasedSource<T> {
     ReadableByteChannel createDecompressingChannel(ReadableByteChannel channel) throws IOException;
   }
 
+  /**
+   * Factory interface for formats which consist of independently compressed blocks. Files in such
+   * a format can be split at block boundaries, see {@link BlockCompression}.
+   *
+   * <p>{@link #createDecompressingChannel} decompresses all blocks contained in the given channel,
+   * which starts at a block boundary.
+   */
+  public interface BlockDecompressingChannelFactory extends DecompressingChannelFactory {
+    /**
+     * Returns the offset of the first block starting at or after {@code offset}, or the size of the
+     * file if there is none.
+     */
+    long nextBlockStart(SeekableByteChannel file, long offset) throws IOException;
+
+    /** Returns the offset of the block ending at {@code blockStart}, which is greater than 0. */
+    long previousBlockStart(SeekableByteChannel file, long blockStart) throws IOException;
+
+    /** Returns the offset after the end of the block starting at {@code blockStart}. */
+    long blockEnd(SeekableByteChannel file, long blockStart) throws IOException;
+
+    /**
+     * Returns the decompressed size of the blocks from the block starting at {@code blockStart} to
+     * the end of the file. The size is derived from the blocks' metadata without decompressing
+     * them.
+     */
+    long decompressedSize(SeekableByteChannel file, long blockStart) throws IOException;
+  }
+
   /** @deprecated Use {@link Compression} instead */
   @Deprecated
   public enum CompressionMode implements DecompressingChannelFactory {
@@ -267,7 +308,7 @@ public class CompressedSource<T> extends FileBasedSource<T> {
   /**
    * Determines whether a single file represented by this source is splittable. Returns true if we
    * are using the default decompression factory and it determines from the requested file name that
-   * the file is not compressed.
+   * the file is not compressed, or if the file is block compressed and can be efficiently seeked.
    */
   @Override
   protected final boolean isSplittable() {
@@ -275,6 +316,9 @@ public class CompressedSource<T> extends FileBasedSource<T> {
       if (!sourceDelegate.isSplittable()) {
         return false;
       }
+      if (channelFactory instanceof BlockDecompressingChannelFactory) {
+        return super.isSplittable();
+      }
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -296,6 +340,9 @@ public class CompressedSource<T> extends FileBasedSource<T> {
    */
   @Override
   protected final FileBasedReader<T> createSingleFileReader(PipelineOptions options) {
+    if (channelFactory instanceof BlockDecompressingChannelFactory && isSplittable()) {
+      return new BlockCompressedReader<>(this, options);
+    }
     if (isSplittable()) {
       return sourceDelegate.createSingleFileReader(options);
     }
@@ -485,4 +532,332 @@ public class CompressedSource<T> extends FileBasedSource<T> {
       return readerDelegate.getCurrentTimestamp();
     }
   }
+
+  /**
+   * Reader for a subrange of a block compressed file. Reads the records which start in the blocks
+   * starting within the subrange, and reports the offset of the block a record starts in as its
+   * offset.
+   *
+   * <p>The delegate reader reads the decompressed blocks, preceded by the decompressed content of
+   * the blocks before, if any. It starts at the first block in the subrange, so it skips a record
+   * which started in an earlier block just like a reader of a subrange of an uncompressed file. It
+   * continues past the end of the subrange to finish the last record.
+   */
+  private static class BlockCompressedReader<T> extends FileBasedReader<T> {
+    /**
+     * The minimum number of decompressed bytes before the first block which the delegate reader
+     * can look at to find the start of the first record.
+     */
+    private static final int MIN_PREFIX_LENGTH = 1024;
+
+    private final PipelineOptions options;
+    private final BlockDecompressingChannelFactory channelFactory;
+
+    // Initialized in startReading, unless the subrange contains no block
+    private @Nullable DecompressedBlocks blocks;
+    private @Nullable FileBasedReader<T> readerDelegate;
+
+    private long currentOffset = -1;
+    private long lastSplitPointOffset = -1;
+    private boolean atSplitPoint;
+
+    BlockCompressedReader(CompressedSource<T> source, PipelineOptions options) {
+      super(source);
+      this.options = options;
+      this.channelFactory = (BlockDecompressingChannelFactory) source.getChannelFactory();
+    }
+
+    @Override
+    public synchronized CompressedSource<T> getCurrentSource() {
+      return (CompressedSource<T>) super.getCurrentSource();
+    }
+
+    @Override
+    protected void startReading(ReadableByteChannel channel) throws IOException {
+      checkArgument(
+          channel instanceof SeekableByteChannel,
+          "Block compressed files can only be read from seekable channels");
+      SeekableByteChannel file = (SeekableByteChannel) channel;
+      CompressedSource<T> source = getCurrentSource();
+      long firstBlock = channelFactory.nextBlockStart(file, source.getStartOffset());
+      if (firstBlock >= Math.min(source.getEndOffset(), file.size())) {
+        return;
+      }
+
+      // Decompress blocks before the first block until the delegate reader can see the end of the
+      // record before the first block.
+      List<byte[]> prefixBlocks = new ArrayList<>();
+      long prefixLength = 0;
+      long blockStart = firstBlock;
+      while (blockStart > 0 && prefixLength < MIN_PREFIX_LENGTH) {
+        long previousBlock = channelFactory.previousBlockStart(file, blockStart);
+        byte[] decompressed =
+            ByteStreams.toByteArray(
+                Channels.newInputStream(
+                    channelFactory.createDecompressingChannel(
+                        new SubrangeChannel(file, previousBlock, blockStart))));
+        prefixBlocks.add(0, decompressed);
+        prefixLength += decompressed.length;
+        blockStart = previousBlock;
+      }
+
+      DecompressedBlocks decompressedBlocks =
+          new DecompressedBlocks(
+              file, channelFactory, Bytes.concat(prefixBlocks.toArray(new byte[0][])), firstBlock);
+      blocks = decompressedBlocks;
+      FileBasedReader<T> delegate =
+          source
+              .sourceDelegate
+              .createForSubrangeOfFile(
+                  source.getSingleFileMetadata(), decompressedBlocks.prefixLength(), Long.MAX_VALUE)
+              .createSingleFileReader(options);
+      readerDelegate = delegate;
+      delegate.startReading(decompressedBlocks);
+    }
+
+    @Override
+    protected boolean readNextRecord() throws IOException {
+      FileBasedReader<T> delegate = readerDelegate;
+      if (delegate == null || !delegate.readNextRecord()) {
+        return false;
+      }
+      long blockOffset = blocks.blockStartOf(delegate.getCurrentOffset());
+      // Only the first record of a block is at a split point, as all records of a block share its
+      // offset.
+      atSplitPoint = delegate.isAtSplitPoint() && blockOffset != lastSplitPointOffset;
+      if (atSplitPoint) {
+        lastSplitPointOffset = blockOffset;
+      }
+      currentOffset = blockOffset;
+      return true;
+    }
+
+    @Override
+    protected boolean isAtSplitPoint() {
+      return atSplitPoint;
+    }
+
+    @Override
+    protected long getCurrentOffset() throws NoSuchElementException {
+      if (currentOffset < 0) {
+        throw new NoSuchElementException();
+      }
+      return currentOffset;
+    }
+
+    @Override
+    public T getCurrent() throws NoSuchElementException {
+      if (readerDelegate == null) {
+        throw new NoSuchElementException();
+      }
+      return readerDelegate.getCurrent();
+    }
+
+    @Override
+    public Instant getCurrentTimestamp() throws NoSuchElementException {
+      if (readerDelegate == null) {
+        throw new NoSuchElementException();
+      }
+      return readerDelegate.getCurrentTimestamp();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (blocks != null) {
+        blocks.close();
+      }
+      super.close();
+    }
+  }
+
+  /** A read only channel over the range {@code [start, end)} of a file. */
+  private static class SubrangeChannel implements ReadableByteChannel {
+    private final SeekableByteChannel file;
+    private final long end;
+    private long position;
+
+    SubrangeChannel(SeekableByteChannel file, long start, long end) {
+      this.file = file;
+      this.position = start;
+      this.end = end;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (position >= end) {
+        return -1;
+      }
+      // The file is shared with other channels, so always seek to the position of this one.
+      file.position(position);
+      ByteBuffer limited = dst.duplicate();
+      limited.limit(limited.position() + (int) Math.min(limited.remaining(), end - position));
+      int read = file.read(limited);
+      if (read > 0) {
+        dst.position(dst.position() + read);
+        position += read;
+      }
+      return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return file.isOpen();
+    }
+
+    @Override
+    public void close() {
+      // The file is closed by the reader.
+    }
+  }
+
+  /**
+   * The decompressed content of the blocks of a file from a given block to the end of the file,
+   * preceded by a prefix of decompressed content before that block. Keeps track of the offsets of
+   * the blocks in the decompressed content.
+   *
+   * <p>Positions can be set anywhere in the prefix before reading past it, and forward afterwards.
+   * The size is known once the end of the content has been read. Before that, {@link #size}
+   * derives it from the metadata of the blocks from the first block.
+   */
+  @VisibleForTesting
+  static class DecompressedBlocks implements SeekableByteChannel {
+    private final SeekableByteChannel file;
+    private final BlockDecompressingChannelFactory channelFactory;
+    private final byte[] prefix;
+    private final long firstBlock;
+    private final long fileSize;
+
+    /** The decompressed and compressed offsets of the blocks not yet known to be passed. */
+    private final ArrayDeque<long[]> blockOffsets = new ArrayDeque<>();
+
+    private long position;
+    private long nextBlock;
+    private @Nullable ReadableByteChannel currentBlock;
+    // The size of the decompressed content, or -1 until it is known.
+    private long size = -1;
+
+    DecompressedBlocks(
+        SeekableByteChannel file,
+        BlockDecompressingChannelFactory channelFactory,
+        byte[] prefix,
+        long firstBlock)
+        throws IOException {
+      this.file = file;
+      this.channelFactory = channelFactory;
+      this.prefix = prefix;
+      this.firstBlock = firstBlock;
+      this.fileSize = file.size();
+      this.nextBlock = firstBlock;
+    }
+
+    long prefixLength() {
+      return prefix.length;
+    }
+
+    /**
+     * Returns the offset of the block containing the given decompressed offset, which must not
+     * precede the offsets passed before.
+     */
+    long blockStartOf(long decompressedOffset) {
+      long[] block = blockOffsets.pollFirst();
+      checkArgument(block != null, "No block read at offset %s", decompressedOffset);
+      // Empty blocks share their offset with the next block, which the offset is attributed to.
+      while (!blockOffsets.isEmpty() && blockOffsets.peekFirst()[0] <= decompressedOffset) {
+        block = blockOffsets.pollFirst();
+      }
+      blockOffsets.addFirst(block);
+      return block[1];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+      if (position < prefix.length) {
+        int length = (int) Math.min(dst.remaining(), prefix.length - position);
+        dst.put(prefix, (int) position, length);
+        position += length;
+        return length;
+      }
+      while (true) {
+        ReadableByteChannel block = currentBlock;
+        if (block == null) {
+          if (nextBlock >= fileSize) {
+            size = position;
+            return -1;
+          }
+          long blockEnd = channelFactory.blockEnd(file, nextBlock);
+          blockOffsets.addLast(new long[] {position, nextBlock});
+          block =
+              channelFactory.createDecompressingChannel(
+                  new SubrangeChannel(file, nextBlock, blockEnd));
+          currentBlock = block;
+          nextBlock = blockEnd;
+        }
+        int read = block.read(dst);
+        if (read >= 0) {
+          position += read;
+          return read;
+        }
+        block.close();
+        currentBlock = null;
+      }
+    }
+
+    @Override
+    public long position() {
+      return position;
+    }
+
+    @Override
+    public DecompressedBlocks position(long newPosition) throws IOException {
+      if (newPosition < position) {
+        checkArgument(
+            position <= prefix.length,
+            "Cannot move back to %s after reading past the prefix of length %s",
+            newPosition,
+            prefix.length);
+        position = newPosition;
+      }
+      ByteBuffer skipped = ByteBuffer.allocate(8192);
+      while (position < newPosition) {
+        skipped.clear();
+        skipped.limit((int) Math.min(skipped.capacity(), newPosition - position));
+        if (read(skipped) < 0) {
+          break;
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+      if (size < 0) {
+        // Each channel over the file seeks to its own position, so this doesn't affect reading.
+        size = prefix.length + channelFactory.decompressedSize(file, firstBlock);
+      }
+      return size;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+      throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+      return file.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (currentBlock != null) {
+        currentBlock.close();
+        currentBlock = null;
+      }
+    }
+  }
 }
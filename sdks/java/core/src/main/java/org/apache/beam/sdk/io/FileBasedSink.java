@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -918,6 +919,9 @@ public abstract class FileBasedSink<UserT, DestinationT, OutputT>
     /** The channel to write to. */
     private @Nullable WritableByteChannel channel;
 
+    /** The channel to the output file, which counts the bytes written to it. */
+    private @Nullable CountingChannel fileChannel;
+
     /**
      * The MIME type used in the creation of the output channel (if the file system supports it).
      *
@@ -993,7 +997,8 @@ public abstract class FileBasedSink<UserT, DestinationT, OutputT>
               // would otherwise overwrite already finalized data.
               .setExpectFileToNotExist(true)
               .build();
-      WritableByteChannel tempChannel = FileSystems.create(outputFile, createOptions);
+      fileChannel = new CountingChannel(FileSystems.create(outputFile, createOptions));
+      WritableByteChannel tempChannel = fileChannel;
       try {
         channel = factory.create(tempChannel);
       } catch (Exception e) {
@@ -1025,6 +1030,15 @@ public abstract class FileBasedSink<UserT, DestinationT, OutputT>
       return outputFile;
     }
 
+    /**
+     * Returns the number of bytes written to the output file so far. Since the writer and the
+     * compression of the sink may buffer their output, this can lag behind the values written until
+     * the writer is closed.
+     */
+    long getBytesWritten() {
+      return fileChannel == null ? 0 : fileChannel.getBytesWritten();
+    }
+
     // Helper function to close a channel, on exception cases.
     // Always throws prior exception, with any new closing exception suppressed.
     private static void closeChannelAndThrow(
@@ -1094,6 +1108,37 @@ public abstract class FileBasedSink<UserT, DestinationT, OutputT>
     }
   }
 
+  /** A {@link WritableByteChannel} which counts the bytes written to the channel it wraps. */
+  private static class CountingChannel implements WritableByteChannel {
+    private final WritableByteChannel channel;
+    private long bytesWritten;
+
+    CountingChannel(WritableByteChannel channel) {
+      this.channel = channel;
+    }
+
+    long getBytesWritten() {
+      return bytesWritten;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      int written = channel.write(src);
+      bytesWritten += written;
+      return written;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
   /**
    * Result of a single bundle write. Contains the filename produced by the bundle, and if known the
    * final output filename.
@@ -27,6 +27,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
@@ -91,7 +92,16 @@ class LocalFileSystem extends FileSystem<LocalResourceId> {
   /** Matches a glob containing a wildcard, capturing the portion before the first wildcard. */
   private static final Pattern GLOB_PREFIX = Pattern.compile("(?<PREFIX>[^\\[*?]*)[\\[*?].*");
 
-  LocalFileSystem() {}
+  /** Whether files are read through memory mapped channels, see {@link LocalFileSystemOptions}. */
+  private final boolean memoryMapped;
+
+  LocalFileSystem() {
+    this(false);
+  }
+
+  LocalFileSystem(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+  }
 
   @Override
   protected List<MatchResult> match(List<String> specs) throws IOException {
@@ -128,7 +138,8 @@ class LocalFileSystem extends FileSystem<LocalResourceId> {
     FileInputStream inputStream = new FileInputStream(resourceId.getPath().toFile());
     // Use this method for creating the channel (rather than new FileChannel) so that we get
     // regular FileNotFoundException. Closing the underyling channel will close the inputStream.
-    return inputStream.getChannel();
+    FileChannel channel = inputStream.getChannel();
+    return memoryMapped ? new MappedFileChannel(channel) : channel;
   }
 
   @Override
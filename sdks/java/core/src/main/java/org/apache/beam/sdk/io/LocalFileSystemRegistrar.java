@@ -30,6 +30,8 @@ import org.checkerframework.checker.nullness.qual.Nullable;
 public class LocalFileSystemRegistrar implements FileSystemRegistrar {
   @Override
   public Iterable<FileSystem<?>> fromOptions(@Nullable PipelineOptions options) {
-    return ImmutableList.of(new LocalFileSystem());
+    boolean memoryMapped =
+        options != null && options.as(LocalFileSystemOptions.class).getMemoryMapLocalFiles();
+    return ImmutableList.of(new LocalFileSystem(memoryMapped));
   }
 }
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A read-only {@link SeekableByteChannel} which reads a file through memory mapped windows.
+ *
+ * <p>Windows are mapped one after the other as the position moves through the file, so that
+ * sequential reads touch the pages of a single mapping at a time and the kernel can read ahead
+ * within it. Reads copy straight from the mapped pages into the destination buffer without a
+ * system call. A window is unmapped once it is garbage collected after the channel moved past it.
+ */
+class MappedFileChannel implements SeekableByteChannel {
+  /** The default size of the mapped windows. */
+  static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final int windowSize;
+
+  private @Nullable MappedByteBuffer window;
+  private long windowStart;
+  private long position;
+
+  MappedFileChannel(FileChannel channel) {
+    this(channel, DEFAULT_WINDOW_SIZE);
+  }
+
+  MappedFileChannel(FileChannel channel, int windowSize) {
+    checkArgument(windowSize > 0, "windowSize must be positive, but was %s", windowSize);
+    this.channel = channel;
+    this.windowSize = windowSize;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    if (!channel.isOpen()) {
+      throw new ClosedChannelException();
+    }
+    long size = channel.size();
+    if (position >= size) {
+      return -1;
+    }
+    int read = 0;
+    while (dst.hasRemaining() && position < size) {
+      MappedByteBuffer mapped = window;
+      if (mapped == null || position < windowStart || position >= windowStart + mapped.limit()) {
+        windowStart = position;
+        mapped = channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, size - position));
+        window = mapped;
+      }
+      ByteBuffer src = mapped.duplicate();
+      src.position((int) (position - windowStart));
+      if (src.remaining() > dst.remaining()) {
+        src.limit(src.position() + dst.remaining());
+      }
+      int length = src.remaining();
+      dst.put(src);
+      position += length;
+      read += length;
+    }
+    return read;
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public long position() throws IOException {
+    if (!channel.isOpen()) {
+      throw new ClosedChannelException();
+    }
+    return position;
+  }
+
+  @Override
+  public MappedFileChannel position(long newPosition) throws IOException {
+    checkArgument(newPosition >= 0, "newPosition must be non-negative, but was %s", newPosition);
+    if (!channel.isOpen()) {
+      throw new ClosedChannelException();
+    }
+    position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public boolean isOpen() {
+    return channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+}
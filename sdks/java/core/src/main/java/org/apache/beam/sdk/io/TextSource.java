@@ -22,6 +22,7 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
@@ -54,6 +55,12 @@ import org.checkerframework.checker.nullness.qual.Nullable;
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
 class TextSource extends FileBasedSource<String> {
+  // Constants for finding a byte within a little endian word of eight bytes at once.
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGH_BITS = 0x8080808080808080L;
+  private static final long CR_WORD = ONES * '\r';
+  private static final long LF_WORD = ONES * '\n';
+
   byte[] delimiter;
 
   TextSource(
@@ -83,6 +90,61 @@ class TextSource extends FileBasedSource<String> {
     return StringUtf8Coder.of();
   }
 
+  /**
+   * Returns the position of the first {@code \r} or {@code \n} within {@code [from, to)} of the
+   * {@link ByteOrder#LITTLE_ENDIAN little endian} {@code buffer} or {@code to} if there is none.
+   *
+   * <p>Eight bytes are examined at once instead of comparing each byte individually.
+   */
+  @VisibleForTesting
+  static int indexOfLineTerminator(ByteBuffer buffer, int from, int to) {
+    int posn = from;
+    for (; posn <= to - Long.BYTES; posn += Long.BYTES) {
+      long word = buffer.getLong(posn);
+      long matches = zeroBytes(word ^ CR_WORD) | zeroBytes(word ^ LF_WORD);
+      if (matches != 0) {
+        return posn + (Long.numberOfTrailingZeros(matches) >>> 3);
+      }
+    }
+    for (; posn < to; ++posn) {
+      byte b = buffer.get(posn);
+      if (b == '\r' || b == '\n') {
+        return posn;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Returns the position of the first {@code value} within {@code [from, to)} of the {@link
+   * ByteOrder#LITTLE_ENDIAN little endian} {@code buffer} or {@code to} if there is none.
+   */
+  @VisibleForTesting
+  static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+    long valueWord = ONES * (value & 0xFF);
+    int posn = from;
+    for (; posn <= to - Long.BYTES; posn += Long.BYTES) {
+      long matches = zeroBytes(buffer.getLong(posn) ^ valueWord);
+      if (matches != 0) {
+        return posn + (Long.numberOfTrailingZeros(matches) >>> 3);
+      }
+    }
+    for (; posn < to; ++posn) {
+      if (buffer.get(posn) == value) {
+        return posn;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * Returns a word with the high bit set for the bytes of {@code word} which are zero. Bytes above
+   * the lowest zero byte may be reported incorrectly, so only the lowest set bit is meaningful.
+   */
+  private static long zeroBytes(long word) {
+    return (word - ONES) & ~word & HIGH_BITS;
+  }
+
   /**
    * A {@link FileBasedReader FileBasedReader} which can decode records delimited by delimiter
    * characters.
@@ -115,7 +177,8 @@ class TextSource extends FileBasedSource<String> {
       super(source);
       this.buffer = new byte[READ_BUFFER_SIZE];
       this.str = new ByteArrayOutputStream();
-      this.byteBuffer = ByteBuffer.wrap(buffer);
+      // Little endian so that the first byte of a word is its lowest byte when scanning.
+      this.byteBuffer = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
       this.delimiter = delimiter;
     }
 
@@ -287,6 +350,13 @@ class TextSource extends FileBasedSource<String> {
 
         // Search for the newline
         for (; bufferPosn < bufferLength; ++bufferPosn) {
+          if (!prevCharCR) {
+            // Skip over the bytes which are neither CR nor LF
+            bufferPosn = indexOfLineTerminator(byteBuffer, bufferPosn, bufferLength);
+            if (bufferPosn == bufferLength) {
+              break;
+            }
+          }
           if (buffer[bufferPosn] == LF) {
             newlineLength = (prevCharCR) ? 2 : 1;
             ++bufferPosn; // at next invocation proceed from following byte
@@ -399,6 +469,13 @@ class TextSource extends FileBasedSource<String> {
 
           // fast-path: Look for the delimiter within the buffer
           for (; bufferPosn < bufferLength; ++bufferPosn) {
+            if (delPosn == 0) {
+              // Skip over the bytes which can't start the delimiter
+              bufferPosn = indexOf(byteBuffer, delimiter[0], bufferPosn, bufferLength);
+              if (bufferPosn == bufferLength) {
+                break;
+              }
+            }
             if (buffer[bufferPosn] == delimiter[delPosn]) {
               delPosn++;
               if (delPosn == delimiter.length) {
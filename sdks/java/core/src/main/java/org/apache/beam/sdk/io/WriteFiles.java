@@ -24,6 +24,7 @@ import com.google.auto.value.AutoValue;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -47,6 +48,8 @@ import org.apache.beam.sdk.io.FileBasedSink.FileResultCoder;
 import org.apache.beam.sdk.io.FileBasedSink.WriteOperation;
 import org.apache.beam.sdk.io.FileBasedSink.Writer;
 import org.apache.beam.sdk.io.fs.ResourceId;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.ValueProvider;
 import org.apache.beam.sdk.options.ValueProvider.StaticValueProvider;
@@ -72,6 +75,7 @@ import org.apache.beam.sdk.transforms.windowing.PaneInfo;
 import org.apache.beam.sdk.transforms.windowing.Window;
 import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.MoreFutures;
+import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.sdk.values.PCollection.IsBounded;
@@ -84,6 +88,7 @@ import org.apache.beam.sdk.values.PValue;
 import org.apache.beam.sdk.values.ShardedKey;
 import org.apache.beam.sdk.values.TupleTag;
 import org.apache.beam.sdk.values.TupleTagList;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Objects;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ArrayListMultimap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
@@ -115,6 +120,12 @@ import org.slf4j.LoggerFactory;
  * <p>Example usage with a fixed number of shards:
  *
  * <pre>{@code p.apply(WriteFiles.to(new MySink(...)).withNumShards(3));}</pre>
+ *
+ * <p>Example usage with runner-determined sharding and files of about 256 MiB:
+ *
+ * <pre>{@code p.apply(WriteFiles.to(new MySink(...)).withTargetFileSize(256L << 20));}</pre>
+ *
+ * <p>The sizes of the written files are reported in the {@code bytesPerShard} distribution metric.
  */
 @Experimental(Kind.SOURCE_SINK)
 @AutoValue
@@ -149,6 +160,18 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
   private static final Duration FILE_TRIGGERING_RECORD_BUFFERING_DURATION =
       Duration.standardSeconds(5);
 
+  // Writes of bundles which produce less than this fraction of the target file size for a
+  // destination are coalesced with those of other bundles, see withTargetFileSize().
+  private static final int SMALL_FILE_SIZE_DIVISOR = 4;
+
+  // The number of shards over which the coalesced records of a destination are spread. All
+  // coalesced records of a destination and bundle are grouped together, unlike spilled records, but
+  // those of different bundles are spread over a few shards to avoid a single hot key.
+  @VisibleForTesting static final int COALESCED_RECORD_SHARDING_FACTOR = 4;
+
+  private static final Distribution BYTES_PER_SHARD =
+      Metrics.distribution(WriteFiles.class, "bytesPerShard");
+
   static final int UNKNOWN_SHARDNUM = -1;
   static final int DUMMY_SHARDNUM = 0;
   private @Nullable WriteOperation<DestinationT, OutputT> writeOperation;
@@ -168,6 +191,7 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
         .setMaxNumWritersPerBundle(DEFAULT_MAX_NUM_WRITERS_PER_BUNDLE)
         .setSideInputs(sink.getDynamicDestinations().getSideInputs())
         .setSkipIfEmpty(false)
+        .setTargetFileSizeBytes(0)
         .build();
   }
 
@@ -187,6 +211,9 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
 
   abstract boolean getSkipIfEmpty();
 
+  // The size of files at which writers roll over to a new file, or 0 to not limit file sizes.
+  abstract long getTargetFileSizeBytes();
+
   abstract List<PCollectionView<?>> getSideInputs();
 
   public abstract @Nullable ShardingFunction<UserT, DestinationT> getShardingFunction();
@@ -211,6 +238,9 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
 
     abstract Builder<UserT, DestinationT, OutputT> setSkipIfEmpty(boolean skipIfEmpty);
 
+    abstract Builder<UserT, DestinationT, OutputT> setTargetFileSizeBytes(
+        long targetFileSizeBytes);
+
     abstract Builder<UserT, DestinationT, OutputT> setSideInputs(
         List<PCollectionView<?>> sideInputs);
 
@@ -332,6 +362,31 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
     return toBuilder().setSkipIfEmpty(true).build();
   }
 
+  /**
+   * Returns a new {@link WriteFiles} that sizes its output files adaptively, aiming at files of
+   * about {@code targetFileSizeBytes} bytes per destination.
+   *
+   * <p>A writer rolls over to a new file once it wrote the target size, so large destinations are
+   * split into more files, written in parallel by as many bundles as they are spread over. The
+   * records which a bundle writes to a destination are coalesced with those of other bundles if
+   * they are less than a quarter of the target size, instead of writing a small file per bundle.
+   * The coalesced records of a destination are spread over a few files to avoid a single hot key.
+   * Unbounded writes batch records per destination up to the target size, but at most 64 MiB.
+   *
+   * <p>Since sinks buffer and compress their output, files may exceed the target size by the size
+   * of these buffers and of a single record. Coalescing requires estimating the size of records
+   * with the coder of the input, and does not apply to writes {@link #withNoSpilling()}.
+   *
+   * <p>This option only applies to writes {@link #withRunnerDeterminedSharding()}.
+   */
+  public WriteFiles<UserT, DestinationT, OutputT> withTargetFileSize(long targetFileSizeBytes) {
+    checkArgument(
+        targetFileSizeBytes > 0,
+        "targetFileSizeBytes must be positive, but was: %s",
+        targetFileSizeBytes);
+    return toBuilder().setTargetFileSizeBytes(targetFileSizeBytes).build();
+  }
+
   @Override
   public void validate(PipelineOptions options) {
     getSink().validate(options);
@@ -355,6 +410,10 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
             WriteFiles.class.getSimpleName());
       }
     }
+    checkArgument(
+        getTargetFileSizeBytes() == 0
+            || (getComputeNumShards() == null && getNumShardsProvider() == null),
+        "A target file size can only be used with runner-determined sharding");
     this.writeOperation = getSink().createWriteOperation();
     if (getWindowedWrites()) {
       this.writeOperation.setWindowedWrites();
@@ -429,6 +488,11 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
           DisplayData.item("numShards", getNumShardsProvider())
               .withLabel("Fixed Number of Shards"));
     }
+    if (getTargetFileSizeBytes() > 0) {
+      builder.add(
+          DisplayData.item("targetFileSize", getTargetFileSizeBytes())
+              .withLabel("Target File Size in Bytes"));
+    }
   }
 
   private DynamicDestinations<UserT, DestinationT, OutputT> getDynamicDestinations() {
@@ -484,7 +548,7 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
         return input
             .apply(
                 "WritedUnshardedBundles",
-                ParDo.of(new WriteUnshardedTempFilesFn(null, destinationCoder))
+                ParDo.of(new WriteUnshardedTempFilesFn(null, destinationCoder, input.getCoder()))
                     .withSideInputs(getSideInputs()))
             .setCoder(fileResultCoder);
       }
@@ -494,7 +558,9 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
       PCollectionTuple writeTuple =
           input.apply(
               "WriteUnshardedBundles",
-              ParDo.of(new WriteUnshardedTempFilesFn(unwrittenRecordsTag, destinationCoder))
+              ParDo.of(
+                      new WriteUnshardedTempFilesFn(
+                          unwrittenRecordsTag, destinationCoder, input.getCoder()))
                   .withSideInputs(getSideInputs())
                   .withOutputTags(writtenRecordsTag, TupleTagList.of(unwrittenRecordsTag)));
       PCollection<FileResult<DestinationT>> writtenBundleFiles =
@@ -540,23 +606,33 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
   private class WriteUnshardedTempFilesFn extends DoFn<UserT, FileResult<DestinationT>> {
     private final @Nullable TupleTag<KV<ShardedKey<Integer>, UserT>> unwrittenRecordsTag;
     private final Coder<DestinationT> destinationCoder;
+    private final Coder<UserT> inputCoder;
 
     // Initialized in startBundle()
     private @Nullable Map<WriterKey<DestinationT>, Writer<DestinationT, OutputT>> writers;
 
+    // The records of destinations which were too small so far to open a writer for, only used
+    // with a target file size. Initialized in startBundle().
+    private @Nullable Map<WriterKey<DestinationT>, PendingRecords<UserT>> pendingRecords;
+    private long pendingBytes;
+
     private int spilledShardNum = UNKNOWN_SHARDNUM;
 
     WriteUnshardedTempFilesFn(
         @Nullable TupleTag<KV<ShardedKey<Integer>, UserT>> unwrittenRecordsTag,
-        Coder<DestinationT> destinationCoder) {
+        Coder<DestinationT> destinationCoder,
+        Coder<UserT> inputCoder) {
       this.unwrittenRecordsTag = unwrittenRecordsTag;
       this.destinationCoder = destinationCoder;
+      this.inputCoder = inputCoder;
     }
 
     @StartBundle
     public void startBundle(StartBundleContext c) {
       // Reset state in case of reuse. We need to make sure that each bundle gets unique writers.
       writers = Maps.newHashMap();
+      pendingRecords = Maps.newHashMap();
+      pendingBytes = 0;
     }
 
     @ProcessElement
@@ -571,6 +647,24 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
       DestinationT destination = getDynamicDestinations().getDestination(c.element());
       WriterKey<DestinationT> key = new WriterKey<>(window, c.pane(), destination);
       Writer<DestinationT, OutputT> writer = writers.get(key);
+      List<UserT> records = Collections.singletonList(c.element());
+      if (writer == null && getTargetFileSizeBytes() > 0 && unwrittenRecordsTag != null) {
+        // Hold back the records of a destination until they are enough for a file of their own,
+        // and coalesce them with those of other bundles otherwise. Once too many records are held
+        // back, the destinations which receive more records are written by this bundle.
+        PendingRecords<UserT> pending =
+            pendingRecords.computeIfAbsent(key, k -> new PendingRecords<>());
+        long size = elementByteSize(c.element());
+        pending.add(c.element(), size);
+        pendingBytes += size;
+        if (pending.bytes < getTargetFileSizeBytes() / SMALL_FILE_SIZE_DIVISOR
+            && pendingBytes < FILE_TRIGGERING_BYTE_COUNT) {
+          return;
+        }
+        pendingRecords.remove(key);
+        pendingBytes -= pending.bytes;
+        records = pending.records;
+      }
       if (writer == null) {
         if (getMaxNumWritersPerBundle() < 0 || writers.size() <= getMaxNumWritersPerBundle()) {
           String uuid = UUID.randomUUID().toString();
@@ -586,21 +680,30 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
           writers.put(key, writer);
           LOG.debug("Done opening writer");
         } else {
-          if (spilledShardNum == UNKNOWN_SHARDNUM) {
-            // Cache the random value so we only call ThreadLocalRandom once per DoFn instance.
-            spilledShardNum = ThreadLocalRandom.current().nextInt(SPILLED_RECORD_SHARDING_FACTOR);
-          } else {
-            spilledShardNum = (spilledShardNum + 1) % SPILLED_RECORD_SHARDING_FACTOR;
+          for (UserT record : records) {
+            if (spilledShardNum == UNKNOWN_SHARDNUM) {
+              // Cache the random value so we only call ThreadLocalRandom once per DoFn instance.
+              spilledShardNum = ThreadLocalRandom.current().nextInt(SPILLED_RECORD_SHARDING_FACTOR);
+            } else {
+              spilledShardNum = (spilledShardNum + 1) % SPILLED_RECORD_SHARDING_FACTOR;
+            }
+            c.output(
+                unwrittenRecordsTag,
+                KV.of(
+                    ShardedKey.of(hashDestination(destination, destinationCoder), spilledShardNum),
+                    record));
           }
-          c.output(
-              unwrittenRecordsTag,
-              KV.of(
-                  ShardedKey.of(hashDestination(destination, destinationCoder), spilledShardNum),
-                  c.element()));
           return;
         }
       }
-      writeOrClose(writer, getDynamicDestinations().formatRecord(c.element()));
+      for (UserT record : records) {
+        writeOrClose(writer, getDynamicDestinations().formatRecord(record));
+      }
+      if (getTargetFileSizeBytes() > 0 && writer.getBytesWritten() >= getTargetFileSizeBytes()) {
+        // Roll over to a new file for the next records of this destination.
+        writers.remove(key);
+        c.outputWithTimestamp(closeWriter(key, writer), window.maxTimestamp());
+      }
     }
 
     @FinishBundle
@@ -608,21 +711,65 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
       for (Map.Entry<WriterKey<DestinationT>, Writer<DestinationT, OutputT>> entry :
           writers.entrySet()) {
         WriterKey<DestinationT> key = entry.getKey();
-        Writer<DestinationT, OutputT> writer = entry.getValue();
-        try {
-          writer.close();
-        } catch (Exception e) {
-          // If anything goes wrong, make sure to delete the temporary file.
-          writer.cleanup();
-          throw e;
-        }
         BoundedWindow window = key.window;
-        c.output(
-            new FileResult<>(
-                writer.getOutputFile(), UNKNOWN_SHARDNUM, window, key.paneInfo, key.destination),
-            window.maxTimestamp(),
-            window);
+        c.output(closeWriter(key, entry.getValue()), window.maxTimestamp(), window);
+      }
+      for (Map.Entry<WriterKey<DestinationT>, PendingRecords<UserT>> entry :
+          pendingRecords.entrySet()) {
+        WriterKey<DestinationT> key = entry.getKey();
+        ShardedKey<Integer> shardedKey =
+            ShardedKey.of(
+                hashDestination(key.destination, destinationCoder),
+                ThreadLocalRandom.current().nextInt(COALESCED_RECORD_SHARDING_FACTOR));
+        for (UserT record : entry.getValue().records) {
+          c.output(
+              unwrittenRecordsTag,
+              KV.of(shardedKey, record),
+              key.window.maxTimestamp(),
+              key.window);
+        }
+      }
+    }
+
+    private FileResult<DestinationT> closeWriter(
+        WriterKey<DestinationT> key, Writer<DestinationT, OutputT> writer) throws Exception {
+      try {
+        writer.close();
+      } catch (Exception e) {
+        // If anything goes wrong, make sure to delete the temporary file.
+        writer.cleanup();
+        throw e;
       }
+      BYTES_PER_SHARD.update(writer.getBytesWritten());
+      return new FileResult<>(
+          writer.getOutputFile(), UNKNOWN_SHARDNUM, key.window, key.paneInfo, key.destination);
+    }
+
+    private long elementByteSize(UserT element) throws Exception {
+      ByteSizeObserver observer = new ByteSizeObserver();
+      inputCoder.registerByteSizeObserver(element, observer);
+      observer.advance();
+      return observer.elementByteSize;
+    }
+  }
+
+  /** The records of a destination which are not written yet, and their estimated size. */
+  private static class PendingRecords<T> {
+    private final List<T> records = new ArrayList<>();
+    private long bytes;
+
+    void add(T record, long size) {
+      records.add(record);
+      bytes += size;
+    }
+  }
+
+  private static class ByteSizeObserver extends ElementByteSizeObserver {
+    private long elementByteSize = 0;
+
+    @Override
+    protected void reportElementSize(long elementByteSize) {
+      this.elementByteSize += elementByteSize;
     }
   }
 
@@ -768,7 +915,12 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
               .apply(
                   "ShardAndBatch",
                   GroupIntoBatches.<Integer, UserT>ofSize(FILE_TRIGGERING_RECORD_COUNT)
-                      .withByteSize(FILE_TRIGGERING_BYTE_COUNT)
+                      // Writers roll over to a new file at the target size, larger batches would
+                      // only buffer more records.
+                      .withByteSize(
+                          getTargetFileSizeBytes() > 0
+                              ? Math.min(getTargetFileSizeBytes(), FILE_TRIGGERING_BYTE_COUNT)
+                              : FILE_TRIGGERING_BYTE_COUNT)
                       .withMaxBufferingDuration(FILE_TRIGGERING_RECORD_BUFFERING_DURATION)
                       .withShardedKey())
               .setCoder(
@@ -924,6 +1076,7 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
     private transient List<CompletionStage<Void>> closeFutures = new ArrayList<>();
     private transient List<KV<Instant, FileResult<DestinationT>>> deferredOutput =
         new ArrayList<>();
+    private transient List<Writer<DestinationT, OutputT>> closingWriters = new ArrayList<>();
 
     // Ensure that transient fields are initialized.
     private void readObject(java.io.ObjectInputStream in)
@@ -931,6 +1084,7 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
       in.defaultReadObject();
       closeFutures = new ArrayList<>();
       deferredOutput = new ArrayList<>();
+      closingWriters = new ArrayList<>();
     }
 
     @ProcessElement
@@ -957,6 +1111,11 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
           writers.put(destination, writer);
         }
         writeOrClose(writer, getDynamicDestinations().formatRecord(input));
+        if (getTargetFileSizeBytes() > 0 && writer.getBytesWritten() >= getTargetFileSizeBytes()) {
+          // Roll over to a new file for the next records of this destination.
+          writers.remove(destination);
+          closeWriterInBackground(c, window, destination, writer);
+        }
       }
 
       // Ensure that we clean-up any prior writers that were being closed as part of this bundle
@@ -968,17 +1127,7 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
 
       // Close all writers in the background
       for (Map.Entry<DestinationT, Writer<DestinationT, OutputT>> entry : writers.entrySet()) {
-        int shard = c.element().getKey().getShardNumber();
-        checkArgument(
-            shard != UNKNOWN_SHARDNUM,
-            "Shard should have been set, but is unset for element %s",
-            c.element());
-        Writer<DestinationT, OutputT> writer = entry.getValue();
-        deferredOutput.add(
-            KV.of(
-                c.timestamp(),
-                new FileResult<>(writer.getOutputFile(), shard, window, c.pane(), entry.getKey())));
-        closeWriterInBackground(writer);
+        closeWriterInBackground(c, window, entry.getKey(), entry.getValue());
       }
 
       // Block on completing the past closes before returning. We do so after starting the current
@@ -986,7 +1135,21 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
       MoreFutures.get(pastCloseFutures);
     }
 
-    private void closeWriterInBackground(Writer<DestinationT, OutputT> writer) {
+    private void closeWriterInBackground(
+        ProcessContext c,
+        BoundedWindow window,
+        DestinationT destination,
+        Writer<DestinationT, OutputT> writer) {
+      int shard = c.element().getKey().getShardNumber();
+      checkArgument(
+          shard != UNKNOWN_SHARDNUM,
+          "Shard should have been set, but is unset for element %s",
+          c.element());
+      deferredOutput.add(
+          KV.of(
+              c.timestamp(),
+              new FileResult<>(writer.getOutputFile(), shard, window, c.pane(), destination)));
+      closingWriters.add(writer);
       // Close in parallel so flushing of buffered writes to files for many windows happens in
       // parallel.
       closeFutures.add(
@@ -1011,9 +1174,14 @@ public abstract class WriteFiles<UserT, DestinationT, OutputT>
         for (KV<Instant, FileResult<DestinationT>> result : deferredOutput) {
           c.output(result.getValue(), result.getKey(), result.getValue().getWindow());
         }
+        // Metrics can't be updated from the threads closing the writers.
+        for (Writer<DestinationT, OutputT> writer : closingWriters) {
+          BYTES_PER_SHARD.update(writer.getBytesWritten());
+        }
       } finally {
         deferredOutput.clear();
         closeFutures.clear();
+        closingWriters.clear();
       }
     }
   }
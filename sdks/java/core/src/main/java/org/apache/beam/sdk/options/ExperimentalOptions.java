@@ -37,6 +37,13 @@ public interface ExperimentalOptions extends PipelineOptions {
 
   String STATE_SAMPLING_PERIOD_MILLIS = "state_sampling_period_millis";
 
+  /**
+   * Makes {@link org.apache.beam.sdk.coders.LongArrayCoder} and {@link
+   * org.apache.beam.sdk.coders.DoubleArrayCoder} the default coders of {@code long[]} and {@code
+   * double[]} in the {@link org.apache.beam.sdk.Pipeline#getCoderRegistry coder registry}.
+   */
+  String PRIMITIVE_ARRAY_CODERS = "primitive_array_coders";
+
   @Description(
       "[Experimental] Apache Beam provides a number of experimental features that can "
           + "be enabled with this flag. If executing against a managed service, please contact the "
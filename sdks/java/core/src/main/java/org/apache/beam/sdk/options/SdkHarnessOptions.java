@@ -128,6 +128,35 @@ public interface SdkHarnessOptions extends PipelineOptions {
 
   void setGroupingTableMaxSizeMb(int value);
 
+  /** The implementations of the grouping table used to pre-combine elements. */
+  enum GroupingTableImplementation {
+    /** Stores keys and accumulators as Java objects sized by walking their object graphs. */
+    OBJECT_KEY,
+    /**
+     * Stores keys as encoded bytes within an open-addressing table backed by primitive arrays with
+     * exact accounting of the memory used by the table.
+     */
+    ENCODED_KEY
+  }
+
+  /**
+   * The implementation of the grouping table used by portable SDK harnesses to pre-combine
+   * elements.
+   *
+   * <p>{@link GroupingTableImplementation#ENCODED_KEY ENCODED_KEY} reduces garbage collection
+   * pressure for combiners with a large number of distinct keys at the cost of encoding every key
+   * with the key coder.
+   */
+  @Description(
+      "The implementation of the grouping table used by portable SDK harnesses to pre-combine "
+          + "elements before shuffling. OBJECT_KEY stores keys as Java objects, ENCODED_KEY stores "
+          + "keys as encoded bytes which reduces garbage collection pressure for combiners with a "
+          + "large number of distinct keys.")
+  @Default.Enum("OBJECT_KEY")
+  GroupingTableImplementation getGroupingTableImplementation();
+
+  void setGroupingTableImplementation(GroupingTableImplementation value);
+
   /**
    * Size (in MB) for the process wide cache within the SDK harness. The cache is responsible for
    * storing all values which are cached within a bundle and across bundles such as side inputs and
@@ -186,6 +215,65 @@ public interface SdkHarnessOptions extends PipelineOptions {
 
   void setMaxCacheMemoryUsageMbClass(Class<? extends MaxCacheMemoryUsageMb> kls);
 
+  /**
+   * The number of pages of a paginated state stream which are requested before they are needed.
+   *
+   * <p>Continuation tokens are only known once the preceding page has been received so the pages
+   * are requested one after another without waiting for the bundle processing thread to consume
+   * them. At the end of the bundle, the SDK harness waits for the pages which are still being read
+   * ahead and discards the pages which were never consumed. The per transform state wait metrics
+   * are only reported when pages are read ahead.
+   */
+  @Description(
+      "The number of pages of a paginated state stream, such as a large bag or side input, which "
+          + "the SDK harness requests before they are needed. Defaults to 0 which only requests the "
+          + "next page once the current page is consumed. Larger values hide the latency of state "
+          + "requests at the cost of memory and of requesting pages which may not be consumed.")
+  @Default.Integer(0)
+  @NonNegative
+  int getStateReadAheadPages();
+
+  void setStateReadAheadPages(@NonNegative int value);
+
+  /**
+   * The size of the buffer in MiB which holds user state mutations before they are sent to the
+   * runner.
+   *
+   * <p>Appends and clears of the same state cell are coalesced into a single request. Mutations
+   * are sent once the buffer is full, before the mutated state is read and when the bundle
+   * finishes.
+   */
+  @Description(
+      "The size of the buffer in MiB which holds bag and multimap user state mutations before they "
+          + "are sent to the runner. Mutations to the same state cell across elements of a bundle "
+          + "are coalesced into a single request. Defaults to 0 which sends the mutations of each "
+          + "element as soon as it has been processed.")
+  @Default.Integer(0)
+  @NonNegative
+  int getStateWriteBehindBufferMb();
+
+  void setStateWriteBehindBufferMb(@NonNegative int value);
+
+  /**
+   * The size in MiB of the process wide store of multimap side inputs which are kept as sorted
+   * indices of their encoded keys and values.
+   *
+   * <p>An index is shared by all bundles and DoFn instances of the SDK harness and is discarded
+   * once the runner provides a new cache token for the side input.
+   */
+  @Description(
+      "The size in MiB of the store which holds multimap side inputs, such as those of "
+          + "View.asMap and View.asMultimap, as sorted indices of their encoded keys and values. "
+          + "The indices are shared by all bundles and DoFn instances of the SDK harness while the "
+          + "runner's cache token for the side input remains unchanged. Requires the runner to "
+          + "provide cache tokens for side inputs. Defaults to 0 which decodes and caches side "
+          + "input values within the state cache instead.")
+  @Default.Integer(0)
+  @NonNegative
+  int getSideInputIndexCacheMb();
+
+  void setSideInputIndexCacheMb(@NonNegative int value);
+
   /**
    * A {@link DefaultValueFactory} which constructs an instance of the class specified by {@link
    * #getMaxCacheMemoryUsageMbClass maxCacheMemoryUsageMbClass} to compute the maximum amount of
@@ -18,16 +18,16 @@
 package org.apache.beam.sdk.transforms;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Objects;
 import org.apache.beam.sdk.coders.AtomicCoder;
-import org.apache.beam.sdk.coders.BigEndianLongCoder;
+import org.apache.beam.sdk.coders.BitConverters;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.CoderException;
 import org.apache.beam.sdk.coders.CoderRegistry;
-import org.apache.beam.sdk.coders.DoubleCoder;
 import org.apache.beam.sdk.transforms.Combine.AccumulatingCombineFn.Accumulator;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.MoreObjects;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -174,25 +174,24 @@ public class Mean {
   }
 
   static class CountSumCoder<NumT extends Number> extends AtomicCoder<CountSum<NumT>> {
-    private static final Coder<Long> LONG_CODER = BigEndianLongCoder.of();
-    private static final Coder<Double> DOUBLE_CODER = DoubleCoder.of();
-
+    // The count and sum are encoded like BigEndianLongCoder and DoubleCoder encode them, but
+    // without boxing them.
     @Override
     public void encode(CountSum<NumT> value, OutputStream outStream)
         throws CoderException, IOException {
-      LONG_CODER.encode(value.count, outStream);
-      DOUBLE_CODER.encode(value.sum, outStream);
+      BitConverters.writeBigEndianLong(value.count, outStream);
+      BitConverters.writeBigEndianLong(Double.doubleToLongBits(value.sum), outStream);
     }
 
     @Override
     public CountSum<NumT> decode(InputStream inStream) throws CoderException, IOException {
-      return new CountSum<>(LONG_CODER.decode(inStream), DOUBLE_CODER.decode(inStream));
-    }
-
-    @Override
-    public void verifyDeterministic() throws NonDeterministicException {
-      LONG_CODER.verifyDeterministic();
-      DOUBLE_CODER.verifyDeterministic();
+      try {
+        long count = BitConverters.readBigEndianLong(inStream);
+        double sum = Double.longBitsToDouble(BitConverters.readBigEndianLong(inStream));
+        return new CountSum<>(count, sum);
+      } catch (EOFException exn) {
+        throw new CoderException(exn);
+      }
     }
   }
 }
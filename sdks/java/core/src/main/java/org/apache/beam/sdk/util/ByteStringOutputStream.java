@@ -103,6 +103,55 @@ public final class ByteStringOutputStream extends OutputStream {
     bufferPos += length;
   }
 
+  /**
+   * Writes {@code v} in the encoding of {@link VarInt} directly to the current buffer if it has
+   * enough space left.
+   */
+  void writeVarLong(long v) {
+    if (buffer.length - bufferPos < VarInt.MAX_LENGTH) {
+      while ((v & ~0x7FL) != 0) {
+        write((int) ((v & 0x7F) | 0x80));
+        v >>>= 7;
+      }
+      write((int) v);
+      return;
+    }
+    byte[] buf = buffer;
+    int pos = bufferPos;
+    while ((v & ~0x7FL) != 0) {
+      buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buf[pos++] = (byte) v;
+    bufferPos = pos;
+  }
+
+  /**
+   * Writes the chars of {@code value}, which must all be ASCII chars, as one byte each without
+   * allocating an intermediate array.
+   */
+  @SuppressWarnings("deprecation") // String.getBytes(int, int, byte[], int) copies the low bytes
+  public void writeAscii(String value) {
+    int offset = 0;
+    int length = value.length();
+    int remainingSpaceInBuffer = buffer.length - bufferPos;
+    while (length > remainingSpaceInBuffer) {
+      // Use up the current buffer
+      value.getBytes(offset, offset + remainingSpaceInBuffer, buffer, bufferPos);
+      offset += remainingSpaceInBuffer;
+      length -= remainingSpaceInBuffer;
+
+      result = result.concat(UnsafeByteOperations.unsafeWrap(buffer));
+      // We want to increase our total capacity but not larger than the max chunk size.
+      remainingSpaceInBuffer = Math.min(Math.max(length, result.size()), MAX_CHUNK_SIZE);
+      buffer = new byte[remainingSpaceInBuffer];
+      bufferPos = 0;
+    }
+
+    value.getBytes(offset, offset + length, buffer, bufferPos);
+    bufferPos += length;
+  }
+
   /**
    * Creates a byte string with the size and contents of this output stream.
    *
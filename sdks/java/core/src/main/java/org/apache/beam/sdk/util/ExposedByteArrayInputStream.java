@@ -18,7 +18,9 @@
 package org.apache.beam.sdk.util;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import org.apache.beam.sdk.annotations.Internal;
 
 /**
@@ -42,6 +44,65 @@ public class ExposedByteArrayInputStream extends ByteArrayInputStream {
     return ret;
   }
 
+  /**
+   * Decodes a {@link VarInt} encoded long value directly from the internal buffer, without the
+   * synchronization of reading one byte at a time from the stream.
+   */
+  long readVarLong() throws IOException {
+    int p = pos;
+    if (p < count) {
+      // Most encoded values are small enough to fit into a single byte.
+      int b = buf[p];
+      if (b >= 0) {
+        pos = p + 1;
+        return b;
+      }
+    }
+    long result = 0;
+    for (int shift = 0; p < count; shift += 7) {
+      int b = buf[p++];
+      // The tenth byte may only hold the highest bit of the value.
+      if (shift == 63 && (b & 0xFF) > 1) {
+        pos = p;
+        throw new IOException("varint too long");
+      }
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        pos = p;
+        return result;
+      }
+    }
+    if (p == pos) {
+      throw new EOFException();
+    }
+    pos = p;
+    throw new IOException("varint not terminated");
+  }
+
+  /**
+   * Reads the next {@code length} bytes as UTF-8 encoded string directly from the internal buffer.
+   *
+   * @throws EOFException if fewer than {@code length} bytes remain
+   */
+  @SuppressWarnings("deprecation") // String(byte[], int, int, int) is the fastest way for ASCII
+  public String readUtf8(int length) throws EOFException {
+    if (length > count - pos) {
+      throw new EOFException();
+    }
+    int start = pos;
+    int end = start + length;
+    int i = start;
+    while (i < end && buf[i] >= 0) {
+      ++i;
+    }
+    pos = end;
+    if (i == end) {
+      // ASCII only, so copy the bytes as chars without decoding them.
+      return new String(buf, 0, start, length);
+    }
+    return new String(buf, start, length, StandardCharsets.UTF_8);
+  }
+
   @Override
   public void close() {
     try {
@@ -30,6 +30,8 @@ import java.io.OutputStream;
  * negative ints are encoded using 5 bytes, longs take 10 bytes.
  */
 public class VarInt {
+  /** The maximum length of the encoding of a long value (in bytes). */
+  static final int MAX_LENGTH = 10;
 
   private static long convertIntToLongNoSignExtend(int v) {
     return v & 0xFFFFFFFFL;
@@ -42,6 +44,10 @@ public class VarInt {
 
   /** Encodes the given value onto the stream. */
   public static void encode(long v, OutputStream stream) throws IOException {
+    if (stream instanceof ByteStringOutputStream) {
+      ((ByteStringOutputStream) stream).writeVarLong(v);
+      return;
+    }
     do {
       // Encode next 7 bits + terminator bit
       long bits = v & 0x7F;
@@ -62,6 +68,9 @@ public class VarInt {
 
   /** Decodes a long value from the given stream. */
   public static long decodeLong(InputStream stream) throws IOException {
+    if (stream instanceof ExposedByteArrayInputStream) {
+      return ((ExposedByteArrayInputStream) stream).readVarLong();
+    }
     long result = 0;
     int shift = 0;
     int b;
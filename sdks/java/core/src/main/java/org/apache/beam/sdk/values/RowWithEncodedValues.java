@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.values;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.annotations.Experimental.Kind;
+import org.apache.beam.sdk.annotations.Internal;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A concrete subclass of {@link Row} which keeps some of its fields in their encoded form and only
+ * decodes them when they are first accessed.
+ *
+ * <p>Fields which are never accessed are never decoded, and their encoded form can be copied as is
+ * when the row is encoded again with the same field coders. Like the cache of {@link
+ * RowWithGetters}, the decoded fields are not synchronized.
+ */
+@Internal
+@Experimental(Kind.SCHEMAS)
+@SuppressWarnings("rawtypes")
+public class RowWithEncodedValues extends Row {
+  private final @Nullable Object[] values;
+  // The coder of each field which is still encoded, indexed by field.
+  private final @Nullable Coder[] coders;
+  // The position of each field among the encoded fields, indexed by field. Negative for fields
+  // which are not kept encoded.
+  private final int[] encodedPositions;
+  private final byte[] encoded;
+  // The encoded form of the field at encoded position i is encoded[offsets[i], offsets[i + 1]).
+  // It is empty for null fields.
+  private final int[] offsets;
+
+  private RowWithEncodedValues(
+      Schema schema,
+      @Nullable Object[] values,
+      @Nullable Coder[] coders,
+      int[] encodedPositions,
+      byte[] encoded,
+      int[] offsets) {
+    super(schema);
+    this.values = values;
+    this.coders = coders;
+    this.encodedPositions = encodedPositions;
+    this.encoded = encoded;
+    this.offsets = offsets;
+  }
+
+  /**
+   * Creates a row from the decoded {@code values} and the encoded fields in {@code encoded}. The
+   * {@code values}, {@code coders} and {@code encodedPositions} are indexed by field, and {@code
+   * offsets} by encoded position. The {@code values}, {@code encoded} and {@code offsets} are owned
+   * by the returned row, while {@code coders} and {@code encodedPositions} can be shared by rows.
+   */
+  public static RowWithEncodedValues create(
+      Schema schema,
+      @Nullable Object[] values,
+      @Nullable Coder[] coders,
+      int[] encodedPositions,
+      byte[] encoded,
+      int[] offsets) {
+    return new RowWithEncodedValues(schema, values, coders, encodedPositions, encoded, offsets);
+  }
+
+  @Override
+  @SuppressWarnings({"TypeParameterUnusedInFormals", "unchecked"})
+  public <T extends @Nullable Object> T getValue(int fieldIdx) {
+    @Nullable Object value = values[fieldIdx];
+    if (value == null && encodedLength(fieldIdx) > 0) {
+      value = decode(fieldIdx);
+      values[fieldIdx] = value;
+    }
+    return (T) value;
+  }
+
+  /** Returns the length of the encoded form of the field, which is 0 if it isn't kept encoded. */
+  private int encodedLength(int fieldIdx) {
+    int encodedPosition = encodedPositions[fieldIdx];
+    return encodedPosition < 0 ? 0 : offsets[encodedPosition + 1] - offsets[encodedPosition];
+  }
+
+  private Object decode(int fieldIdx) {
+    Coder coder = coders[fieldIdx];
+    if (coder == null) {
+      throw new IllegalStateException("No coder for encoded field " + fieldIdx);
+    }
+    try {
+      return coder.decode(
+          new ByteArrayInputStream(
+              encoded, offsets[encodedPositions[fieldIdx]], encodedLength(fieldIdx)));
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          String.format("Unable to decode field %s.", getSchema().getField(fieldIdx).getName()),
+          e);
+    }
+  }
+
+  @Override
+  public int getFieldCount() {
+    return values.length;
+  }
+
+  @Override
+  public List<@Nullable Object> getValues() {
+    for (int i = 0; i < values.length; ++i) {
+      getValue(i);
+    }
+    return Collections.unmodifiableList(Arrays.asList(values));
+  }
+
+  /** Returns whether the field is null without decoding it. */
+  public boolean isNull(int fieldIdx) {
+    return values[fieldIdx] == null && encodedLength(fieldIdx) == 0;
+  }
+
+  /**
+   * Writes the encoded form of the field to {@code outStream} if the field is still stored in the
+   * form {@code coder} encodes it, returning whether it was written.
+   */
+  public boolean writeEncodedValue(int fieldIdx, Coder<?> coder, OutputStream outStream)
+      throws IOException {
+    int length = encodedLength(fieldIdx);
+    if (length == 0 || !coder.equals(coders[fieldIdx])) {
+      return false;
+    }
+    outStream.write(encoded, offsets[encodedPositions[fieldIdx]], length);
+    return true;
+  }
+}
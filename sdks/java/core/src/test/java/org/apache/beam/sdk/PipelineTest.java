@@ -33,7 +33,11 @@ import java.util.List;
 import java.util.Map;
 import org.apache.beam.sdk.Pipeline.PipelineExecutionException;
 import org.apache.beam.sdk.Pipeline.PipelineVisitor;
+import org.apache.beam.sdk.coders.CoderRegistry;
+import org.apache.beam.sdk.coders.DoubleArrayCoder;
+import org.apache.beam.sdk.coders.LongArrayCoder;
 import org.apache.beam.sdk.io.GenerateSequence;
+import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptions.CheckEnabled;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -141,6 +145,19 @@ public class PipelineTest {
     Pipeline.create().run(pipelineOptions);
   }
 
+  @Test
+  public void testCoderRegistryPrimitiveArrayCodersExperiment() throws Exception {
+    assertThat(
+        Pipeline.create().getCoderRegistry().getCoder(long[].class),
+        not(instanceOf(LongArrayCoder.class)));
+
+    ExperimentalOptions options = PipelineOptionsFactory.as(ExperimentalOptions.class);
+    ExperimentalOptions.addExperiment(options, ExperimentalOptions.PRIMITIVE_ARRAY_CODERS);
+    CoderRegistry registry = Pipeline.create(options).getCoderRegistry();
+    assertEquals(LongArrayCoder.of(), registry.getCoder(long[].class));
+    assertEquals(DoubleArrayCoder.of(), registry.getCoder(double[].class));
+  }
+
   @Test
   public void testConflictingNames() {
     final PipelineOptions options = TestPipeline.testingPipelineOptions();
@@ -17,7 +17,12 @@
  */
 package org.apache.beam.sdk.coders;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -33,7 +38,9 @@ import org.apache.beam.sdk.schemas.Schema.LogicalType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType;
 import org.apache.beam.sdk.schemas.logicaltypes.EnumerationType.Value;
 import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.RowWithEncodedValues;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
@@ -502,4 +509,96 @@ public class RowCoderTest {
     Row decoded = RowCoder.of(schema2).decode(new ByteArrayInputStream(os.toByteArray()));
     assertEquals(expected, decoded);
   }
+
+  @Test
+  public void testLazyDecoding() throws Exception {
+    Schema nestedSchema = Schema.builder().addInt32Field("f1_int").build();
+    Schema schema =
+        Schema.builder()
+            .addByteField("f_byte")
+            .addInt16Field("f_int16")
+            .addInt32Field("f_int32")
+            .addInt64Field("f_int64")
+            .addDecimalField("f_decimal")
+            .addFloatField("f_float")
+            .addDoubleField("f_double")
+            .addStringField("f_string")
+            .addDateTimeField("f_datetime")
+            .addBooleanField("f_boolean")
+            .addByteArrayField("f_bytes")
+            .addNullableField("f_nullable_string", FieldType.STRING)
+            .addRowField("f_row", nestedSchema)
+            .addArrayField("f_array", FieldType.STRING)
+            .setOptions(
+                Schema.Options.builder()
+                    .setOption(RowCoder.LAZY_DECODING_OPTION, FieldType.BOOLEAN, true))
+            .build();
+
+    DateTime dateTime =
+        new DateTime().withDate(1979, 03, 14).withTime(1, 2, 3, 4).withZone(DateTimeZone.UTC);
+    Row row =
+        Row.withSchema(schema)
+            .addValues(
+                (byte) 0,
+                (short) 1,
+                2,
+                -3L,
+                new BigDecimal("2.3"),
+                1.2f,
+                3.0d,
+                "str",
+                dateTime,
+                true,
+                new byte[] {1, 2, 3},
+                null,
+                Row.withSchema(nestedSchema).addValue(4).build(),
+                ImmutableList.of("a", "b"))
+            .build();
+
+    RowCoder coder = RowCoder.of(schema);
+    CoderProperties.coderDecodeEncodeEqual(coder, row);
+
+    byte[] encoded = CoderUtils.encodeToByteArray(coder, row);
+    Row decoded = CoderUtils.decodeFromByteArray(coder, encoded);
+    assertThat(decoded, instanceOf(RowWithEncodedValues.class));
+    // Encoding a row of which only some fields were accessed copies the remaining fields.
+    assertEquals("str", decoded.getString("f_string"));
+    assertEquals(Integer.valueOf(4), decoded.getRow("f_row").getInt32("f1_int"));
+    assertArrayEquals(encoded, CoderUtils.encodeToByteArray(coder, decoded));
+    assertEquals(row, decoded);
+    assertArrayEquals(encoded, CoderUtils.encodeToByteArray(coder, decoded));
+  }
+
+  @Test
+  public void testLazyDecodingOfRowsWithFewerFields() throws Exception {
+    Schema schema1 = Schema.builder().addInt32Field("f_int32").addStringField("f_string").build();
+    Schema schema2 =
+        Schema.builder()
+            .addInt32Field("f_int32")
+            .addStringField("f_string")
+            .addNullableField("f_int64", FieldType.INT64)
+            .setOptions(
+                Schema.Options.builder()
+                    .setOption(RowCoder.LAZY_DECODING_OPTION, FieldType.BOOLEAN, true))
+            .build();
+    Row row = Row.withSchema(schema1).addValues(1, "str").build();
+
+    byte[] encoded = CoderUtils.encodeToByteArray(RowCoder.of(schema1), row);
+    Row decoded = CoderUtils.decodeFromByteArray(RowCoder.of(schema2), encoded);
+
+    assertThat(decoded, instanceOf(RowWithEncodedValues.class));
+    assertEquals(Row.withSchema(schema2).addValues(1, "str", null).build(), decoded);
+    assertThrows(UnsupportedOperationException.class, () -> decoded.getValues().set(0, 2));
+  }
+
+  @Test
+  public void testLazyDecodingRequiresOption() throws Exception {
+    Schema schema = Schema.builder().addInt32Field("f_int32").addStringField("f_string").build();
+    Row row = Row.withSchema(schema).addValues(1, "str").build();
+
+    Row decoded = CoderUtils.clone(RowCoder.of(schema), row);
+
+    assertThat(decoded, not(instanceOf(RowWithEncodedValues.class)));
+    assertEquals(row, decoded);
+  }
 }
@@ -20,11 +20,20 @@ package org.apache.beam.sdk.coders;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
 import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.util.ExposedByteArrayInputStream;
 import org.apache.beam.sdk.values.TypeDescriptor;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -54,6 +63,66 @@ public class StringUtf8CoderTest {
     }
   }
 
+  @Test
+  public void testDecodeEncodeEqualWithExposedStreams() throws Exception {
+    List<String> values =
+        Arrays.asList(
+            Strings.repeat("ascii", 2000),
+            Strings.repeat("スタリング", 2000),
+            "",
+            "a",
+            "スタリング",
+            Strings.repeat("b", 255),
+            Strings.repeat("c", 256),
+            Strings.repeat("d", 4096),
+            Strings.repeat("e", 4097));
+    ByteStringOutputStream outStream = new ByteStringOutputStream(0);
+    for (String value : values) {
+      TEST_CODER.encode(value, outStream);
+    }
+    byte[] encoded = outStream.toByteString().toByteArray();
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (String value : values) {
+      TEST_CODER.encode(value, expected);
+    }
+    assertThat(encoded, equalTo(expected.toByteArray()));
+
+    ExposedByteArrayInputStream exposedStream = new ExposedByteArrayInputStream(encoded);
+    ByteArrayInputStream inStream = new ByteArrayInputStream(encoded);
+    for (String value : values) {
+      assertThat(TEST_CODER.decode(exposedStream), equalTo(value));
+      assertThat(TEST_CODER.decode(inStream), equalTo(value));
+    }
+  }
+
+  @Test
+  public void testDecodeConcurrently() throws Exception {
+    int numThreads = 4 * Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < numThreads; ++thread) {
+        String value = Strings.repeat(Integer.toString(thread), 1000);
+        byte[] encoded = CoderUtils.encodeToByteArray(TEST_CODER, value);
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int i = 0; i < 1000; ++i) {
+                    assertThat(
+                        TEST_CODER.decode(new ByteArrayInputStream(encoded)), equalTo(value));
+                  }
+                  return null;
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Generated data to check that the wire format has not changed. To regenerate, see {@link
    * org.apache.beam.sdk.coders.PrintBase64Encodings}.
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.coders;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.util.CoderUtils;
+import org.apache.beam.sdk.values.TypeDescriptor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link VarLongArrayCoder}. */
+@RunWith(JUnit4.class)
+public class VarLongArrayCoderTest {
+
+  private static final VarLongArrayCoder TEST_CODER = VarLongArrayCoder.of();
+
+  private static final List<long[]> TEST_VALUES =
+      Arrays.asList(
+          new long[] {},
+          new long[] {0},
+          new long[] {1, -1, Long.MAX_VALUE, Long.MIN_VALUE},
+          new long[] {42, 300, 70000});
+
+  @Test
+  public void testDecodeEncodeEquals() throws Exception {
+    for (long[] value : TEST_VALUES) {
+      CoderProperties.coderDecodeEncodeEqual(TEST_CODER, value);
+    }
+  }
+
+  @Test
+  public void testDecodeEncodeEqualsLargeArray() throws Exception {
+    Random random = new Random(42);
+    long[] value = new long[5000];
+    for (int i = 0; i < value.length; ++i) {
+      value[i] = random.nextLong();
+    }
+    CoderProperties.coderDecodeEncodeEqual(TEST_CODER, value);
+  }
+
+  @Test
+  public void testRegisterByteSizeObserver() throws Exception {
+    CoderProperties.testByteCount(
+        TEST_CODER, Coder.Context.NESTED, TEST_VALUES.toArray(new long[0][]));
+  }
+
+  @Test
+  public void testStructuralValueConsistentWithEquals() throws Exception {
+    for (long[] value1 : TEST_VALUES) {
+      for (long[] value2 : TEST_VALUES) {
+        CoderProperties.structuralValueConsistentWithEquals(TEST_CODER, value1, value2);
+      }
+    }
+  }
+
+  @Test
+  public void testDeterministic() throws Exception {
+    TEST_CODER.verifyDeterministic();
+  }
+
+  /**
+   * Generated data to check that the wire format has not changed. To regenerate, see {@link
+   * org.apache.beam.sdk.coders.PrintBase64Encodings}.
+   */
+  private static final List<String> TEST_ENCODINGS =
+      Arrays.asList("AA", "AQA", "BAH___________8B__________9_gICAgICAgICAAQ", "AyqsAvCiBA");
+
+  @Test
+  public void testWireFormatEncode() throws Exception {
+    CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
+  }
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void encodeNullThrowsCoderException() throws Exception {
+    thrown.expect(CoderException.class);
+    thrown.expectMessage("cannot encode a null long[]");
+
+    CoderUtils.encodeToBase64(TEST_CODER, null);
+  }
+
+  @Test
+  public void decodeTruncatedThrowsCoderException() throws Exception {
+    thrown.expect(CoderException.class);
+
+    CoderUtils.decodeFromBase64(TEST_CODER, "AoAB");
+  }
+
+  @Test
+  public void testEncodedTypeDescriptor() throws Exception {
+    assertThat(TEST_CODER.getEncodedTypeDescriptor(), equalTo(TypeDescriptor.of(long[].class)));
+  }
+}
@@ -0,0 +1,330 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.testing.SourceTestUtils;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.Bytes;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BlockCompression}. */
+@RunWith(JUnit4.class)
+public class BlockCompressionTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  /** Returns {@code data} compressed as a single BGZF block. */
+  private static byte[] bgzfBlock(byte[] data) {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true /* nowrap */);
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] deflated = new byte[data.length + 1024];
+    int length = deflater.deflate(deflated);
+    deflater.end();
+    CRC32 crc = new CRC32();
+    crc.update(data);
+    int blockSize = 18 + length + 8;
+    return ByteBuffer.allocate(blockSize)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .put(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff})
+        .putShort((short) 6)
+        .put((byte) 'B')
+        .put((byte) 'C')
+        .putShort((short) 2)
+        .putShort((short) (blockSize - 1))
+        .put(deflated, 0, length)
+        .putInt((int) crc.getValue())
+        .putInt(data.length)
+        .array();
+  }
+
+  /**
+   * Writes {@code data} as BGZF file of blocks of random sizes, with some empty blocks, and returns
+   * the offsets of the blocks.
+   */
+  private static List<Long> writeBgzf(File file, byte[] data, Random random) throws IOException {
+    List<Long> blockStarts = new ArrayList<>();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int position = 0;
+    while (position < data.length) {
+      int length = Math.min(data.length - position, 1 + random.nextInt(400));
+      blockStarts.add((long) output.size());
+      output.write(bgzfBlock(Arrays.copyOfRange(data, position, position + length)));
+      position += length;
+      if (random.nextInt(20) == 0) {
+        blockStarts.add((long) output.size());
+        output.write(bgzfBlock(new byte[0]));
+      }
+    }
+    // BGZF files end with an empty block
+    blockStarts.add((long) output.size());
+    output.write(bgzfBlock(new byte[0]));
+    Files.write(file.toPath(), output.toByteArray());
+    return blockStarts;
+  }
+
+  /** Returns {@code data}, which must not be empty, compressed as a single zstd frame. */
+  private static byte[] zstdFrame(byte[] data) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ZstdCompressorOutputStream zstd = new ZstdCompressorOutputStream(output)) {
+      zstd.write(data);
+    }
+    return output.toByteArray();
+  }
+
+  /**
+   * Writes {@code data} as a seekable zstd file of frames of random sizes, and returns the offsets
+   * of the frames followed by the offset of the seek table.
+   */
+  private static List<Long> writeZstdSeekable(File file, byte[] data, Random random)
+      throws IOException {
+    List<Long> blockStarts = new ArrayList<>();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    ByteArrayOutputStream entries = new ByteArrayOutputStream();
+    int position = 0;
+    while (position < data.length) {
+      int length = Math.min(data.length - position, 1 + random.nextInt(400));
+      byte[] frame = zstdFrame(Arrays.copyOfRange(data, position, position + length));
+      blockStarts.add((long) output.size());
+      output.write(frame);
+      entries.write(littleEndian(8).putInt(frame.length).putInt(length).array());
+      position += length;
+    }
+    int numFrames = blockStarts.size();
+    blockStarts.add((long) output.size());
+    output.write(littleEndian(8).putInt(0x184D2A5E).putInt(entries.size() + 9).array());
+    output.write(entries.toByteArray());
+    output.write(littleEndian(9).putInt(numFrames).put((byte) 0).putInt(0x8F92EAB1).array());
+    Files.write(file.toPath(), output.toByteArray());
+    return blockStarts;
+  }
+
+  private static ByteBuffer littleEndian(int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static List<String> lines(Random random, int count) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      StringBuilder line = new StringBuilder("line" + i);
+      // some lines span many blocks
+      int length = random.nextInt(i % 50 == 0 ? 2000 : 40);
+      for (int j = 0; j < length; ++j) {
+        line.append((char) ('a' + random.nextInt(26)));
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private static byte[] join(List<String> lines) {
+    StringBuilder text = new StringBuilder();
+    for (String line : lines) {
+      text.append(line).append('\n');
+    }
+    return text.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testBgzfBlockBoundaries() throws Exception {
+    Random random = new Random(0);
+    File file = tmpFolder.newFile();
+    List<Long> blockStarts = writeBgzf(file, join(lines(random, 200)), random);
+    try (SeekableByteChannel channel = Files.newByteChannel(file.toPath())) {
+      long size = channel.size();
+      int block = 0;
+      for (long offset = 0; offset <= size; ++offset) {
+        while (block < blockStarts.size() && blockStarts.get(block) < offset) {
+          block++;
+        }
+        long expected = block < blockStarts.size() ? blockStarts.get(block) : size;
+        assertEquals(expected, BlockCompression.BGZF.nextBlockStart(channel, offset));
+      }
+      for (int i = 0; i < blockStarts.size(); ++i) {
+        long end = i + 1 < blockStarts.size() ? blockStarts.get(i + 1) : size;
+        assertEquals(end, BlockCompression.BGZF.blockEnd(channel, blockStarts.get(i)));
+        if (i > 0) {
+          assertEquals(
+              (long) blockStarts.get(i - 1),
+              BlockCompression.BGZF.previousBlockStart(channel, blockStarts.get(i)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDecompressedBlocksSize() throws Exception {
+    Random random = new Random(0);
+    byte[] data = join(lines(random, 200));
+    File file = tmpFolder.newFile();
+    List<Long> blockStarts = writeBgzf(file, data, random);
+    byte[] prefix = "prefix".getBytes(StandardCharsets.UTF_8);
+    try (SeekableByteChannel channel = Files.newByteChannel(file.toPath());
+        CompressedSource.DecompressedBlocks blocks =
+            new CompressedSource.DecompressedBlocks(channel, BlockCompression.BGZF, prefix, 0)) {
+      assertEquals(data.length, BlockCompression.BGZF.decompressedSize(channel, 0));
+      assertEquals(
+          0,
+          BlockCompression.BGZF.decompressedSize(channel, blockStarts.get(blockStarts.size() - 1)));
+      // The size is computed before the content is read, without moving the position.
+      assertEquals(prefix.length + data.length, blocks.size());
+      ByteBuffer content = ByteBuffer.allocate(prefix.length + data.length);
+      while (content.hasRemaining() && blocks.read(content) >= 0) {}
+      assertEquals(-1, blocks.read(ByteBuffer.allocate(1)));
+      assertEquals(prefix.length + data.length, blocks.size());
+      assertEquals(blocks.size(), blocks.position());
+      assertArrayEquals(Bytes.concat(prefix, data), content.array());
+    }
+  }
+
+  @Test
+  public void testZstdSeekableBlockBoundaries() throws Exception {
+    Random random = new Random(0);
+    byte[] data = join(lines(random, 200));
+    File file = tmpFolder.newFile();
+    List<Long> blockStarts = writeZstdSeekable(file, data, random);
+    try (SeekableByteChannel channel = Files.newByteChannel(file.toPath())) {
+      long size = channel.size();
+      int block = 0;
+      for (long offset = 0; offset <= size; ++offset) {
+        while (block < blockStarts.size() && blockStarts.get(block) < offset) {
+          block++;
+        }
+        long expected = block < blockStarts.size() ? blockStarts.get(block) : size;
+        assertEquals(expected, BlockCompression.ZSTD_SEEKABLE.nextBlockStart(channel, offset));
+      }
+      // The seek table is the last block, which decompresses to nothing.
+      for (int i = 0; i < blockStarts.size(); ++i) {
+        long end = i + 1 < blockStarts.size() ? blockStarts.get(i + 1) : size;
+        assertEquals(end, BlockCompression.ZSTD_SEEKABLE.blockEnd(channel, blockStarts.get(i)));
+        if (i > 0) {
+          assertEquals(
+              (long) blockStarts.get(i - 1),
+              BlockCompression.ZSTD_SEEKABLE.previousBlockStart(channel, blockStarts.get(i)));
+        }
+      }
+      assertEquals(data.length, BlockCompression.ZSTD_SEEKABLE.decompressedSize(channel, 0));
+      assertEquals(
+          0,
+          BlockCompression.ZSTD_SEEKABLE.decompressedSize(
+              channel, blockStarts.get(blockStarts.size() - 1)));
+    }
+  }
+
+  @Test
+  public void testReadZstdSeekableAsZstd() throws Exception {
+    Random random = new Random(0);
+    List<String> lines = lines(random, 200);
+    File file = tmpFolder.newFile();
+    writeZstdSeekable(file, join(lines), random);
+    CompressedSource<String> source =
+        CompressedSource.from(TextIOReadTest.getTextSource(file.getPath(), null))
+            .withCompression(Compression.ZSTD);
+    assertEquals(lines, SourceTestUtils.readFromSource(source, PipelineOptionsFactory.create()));
+  }
+
+  @Test
+  public void testSplitZstdSeekable() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    Random random = new Random(0);
+    List<String> lines = lines(random, 3000);
+    File file = tmpFolder.newFile();
+    writeZstdSeekable(file, join(lines), random);
+    CompressedSource<String> source =
+        CompressedSource.from(TextIOReadTest.getTextSource(file.getPath(), null))
+            .withDecompression(BlockCompression.ZSTD_SEEKABLE);
+
+    assertEquals(lines, SourceTestUtils.readFromSource(source, options));
+    for (long bundleSize : new long[] {10000, 1000, 97}) {
+      List<? extends FileBasedSource<String>> splits = source.split(bundleSize, options);
+      assertThat(splits.size(), greaterThan(1));
+      SourceTestUtils.assertSourcesEqualReferenceSource(source, splits, options);
+    }
+  }
+
+  @Test
+  public void testReadBgzfAsGzip() throws Exception {
+    Random random = new Random(0);
+    List<String> lines = lines(random, 200);
+    File file = tmpFolder.newFile();
+    writeBgzf(file, join(lines), random);
+    CompressedSource<String> source =
+        CompressedSource.from(TextIOReadTest.getTextSource(file.getPath(), null))
+            .withCompression(Compression.GZIP);
+    assertEquals(lines, SourceTestUtils.readFromSource(source, PipelineOptionsFactory.create()));
+  }
+
+  @Test
+  public void testSplitBgzf() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    Random random = new Random(0);
+    List<String> lines = lines(random, 3000);
+    File file = tmpFolder.newFile();
+    writeBgzf(file, join(lines), random);
+    CompressedSource<String> source =
+        CompressedSource.from(TextIOReadTest.getTextSource(file.getPath(), null))
+            .withDecompression(BlockCompression.BGZF);
+
+    assertEquals(lines, SourceTestUtils.readFromSource(source, options));
+    for (long bundleSize : new long[] {10000, 1000, 97}) {
+      List<? extends FileBasedSource<String>> splits = source.split(bundleSize, options);
+      assertThat(splits.size(), greaterThan(1));
+      SourceTestUtils.assertSourcesEqualReferenceSource(source, splits, options);
+    }
+  }
+
+  @Test
+  public void testSplitBgzfAtFraction() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    Random random = new Random(0);
+    File file = tmpFolder.newFile();
+    writeBgzf(file, join(lines(random, 50)), random);
+    CompressedSource<String> source =
+        CompressedSource.from(TextIOReadTest.getTextSource(file.getPath(), null))
+            .withDecompression(BlockCompression.BGZF);
+    List<? extends FileBasedSource<String>> splits = source.split(Long.MAX_VALUE, options);
+    assertEquals(1, splits.size());
+    assertTrue(splits.get(0).isSplittable());
+    SourceTestUtils.assertSplitAtFractionExhaustive(splits.get(0), options);
+  }
+}
@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
@@ -143,6 +144,22 @@ public class LocalFileSystemTest {
     assertEquals(expected, data);
   }
 
+  @Test
+  public void testReadMemoryMapped() throws Exception {
+    String expected = "my test string";
+    File existingFile = temporaryFolder.newFile();
+    Files.write(expected, existingFile, StandardCharsets.UTF_8);
+    ReadableByteChannel channel =
+        new LocalFileSystem(true)
+            .open(LocalResourceId.fromPath(existingFile.toPath(), false /* isDirectory */));
+    assertThat(channel, Matchers.instanceOf(MappedFileChannel.class));
+    String data;
+    try (Reader reader = Channels.newReader(channel, StandardCharsets.UTF_8.name())) {
+      data = new LineReader(reader).readLine();
+    }
+    assertEquals(expected, data);
+  }
+
   @Test
   public void testReadNonExistentFile() throws Exception {
     thrown.expect(FileNotFoundException.class);
@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link MappedFileChannel}. */
+@RunWith(JUnit4.class)
+public class MappedFileChannelTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private byte[] data = new byte[1000];
+
+  private MappedFileChannel open(int windowSize) throws Exception {
+    new Random(0).nextBytes(data);
+    File file = temporaryFolder.newFile();
+    Files.write(file.toPath(), data);
+    return new MappedFileChannel(new FileInputStream(file).getChannel(), windowSize);
+  }
+
+  @Test
+  public void testReadAcrossWindows() throws Exception {
+    for (int bufferSize : new int[] {1, 7, 64, 1000, 4096}) {
+      try (MappedFileChannel channel = open(100)) {
+        ByteBuffer result = ByteBuffer.allocate(data.length);
+        ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+        int read;
+        while ((read = channel.read(buffer)) != -1) {
+          assertEquals(Math.min(bufferSize, data.length - result.position()), read);
+          buffer.flip();
+          result.put(buffer);
+          buffer.clear();
+        }
+        assertArrayEquals(data, result.array());
+        assertEquals(data.length, channel.position());
+      }
+    }
+  }
+
+  @Test
+  public void testSeek() throws Exception {
+    try (MappedFileChannel channel = open(100)) {
+      assertEquals(data.length, channel.size());
+      for (long position : new long[] {950, 10, 99, 100, 0, 999}) {
+        channel.position(position);
+        ByteBuffer buffer = ByteBuffer.allocate(20);
+        int read = channel.read(buffer);
+        assertEquals(Math.min(20, data.length - position), read);
+        assertArrayEquals(
+            Arrays.copyOfRange(data, (int) position, (int) position + read),
+            Arrays.copyOf(buffer.array(), read));
+        assertEquals(position + read, channel.position());
+      }
+      channel.position(2000);
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+  }
+
+  @Test
+  public void testReadOnly() throws Exception {
+    try (MappedFileChannel channel = open(100)) {
+      assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+      assertThrows(NonWritableChannelException.class, () -> channel.truncate(0));
+    }
+  }
+
+  @Test
+  public void testClosed() throws Exception {
+    MappedFileChannel channel = open(100);
+    channel.close();
+    assertFalse(channel.isOpen());
+    assertThrows(ClosedChannelException.class, () -> channel.read(ByteBuffer.allocate(1)));
+  }
+}
@@ -48,6 +48,7 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
@@ -57,6 +58,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -89,6 +91,7 @@ import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.values.PCollection;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Charsets;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Joiner;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
@@ -1046,6 +1049,74 @@ public class TextIOReadTest {
       pipeline.run();
     }
 
+    @Test
+    public void testIndexOfLineTerminator() {
+      // Include bytes which differ from CR and LF only in their high bit or by one.
+      byte[] candidates = {'a', '\r', '\n', (byte) 0x8A, (byte) 0x8D, 0x0B, 0x0C, (byte) 0xFF};
+      Random random = new Random(42);
+      for (int length = 0; length < 40; ++length) {
+        for (int trial = 0; trial < 50; ++trial) {
+          byte[] data = new byte[length];
+          for (int i = 0; i < length; ++i) {
+            data[i] = random.nextInt(4) == 0 ? candidates[random.nextInt(candidates.length)] : 'a';
+          }
+          ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+          for (int from = 0; from <= length; ++from) {
+            int expected = from;
+            while (expected < length && data[expected] != '\r' && data[expected] != '\n') {
+              ++expected;
+            }
+            assertEquals(expected, TextSource.indexOfLineTerminator(buffer, from, length));
+          }
+        }
+      }
+    }
+
+    @Test
+    public void testIndexOf() {
+      byte[] candidates = {'a', 'b', '|', (byte) 0xFC, (byte) 0x80, 0x00, (byte) 0xFF};
+      Random random = new Random(42);
+      for (byte value : candidates) {
+        for (int length = 0; length < 40; ++length) {
+          byte[] data = new byte[length];
+          for (int i = 0; i < length; ++i) {
+            data[i] = candidates[random.nextInt(candidates.length)];
+          }
+          ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+          for (int from = 0; from <= length; ++from) {
+            int expected = from;
+            while (expected < length && data[expected] != value) {
+              ++expected;
+            }
+            assertEquals(expected, TextSource.indexOf(buffer, value, from, length));
+          }
+        }
+      }
+    }
+
+    @Test
+    public void testReadLinesSpanningBuffers() throws Exception {
+      // Lines which are longer than the read buffer and terminators which cross its boundary.
+      List<String> expected = new ArrayList<>();
+      StringBuilder contents = new StringBuilder();
+      String[] terminators = {"\n", "\r", "\r\n"};
+      for (int i = 0; i < 200; ++i) {
+        String line = Strings.repeat(Integer.toString(i % 10), (i * 997) % 20000);
+        expected.add(line);
+        contents.append(line).append(terminators[i % terminators.length]);
+      }
+      Path path = Files.createTempFile("test_txt_spanning", ".txt");
+      Files.write(path, contents.toString().getBytes(UTF_8));
+
+      TextSource source =
+          new TextSource(
+              ValueProvider.StaticValueProvider.of(path.toString()),
+              EmptyMatchTreatment.DISALLOW,
+              null);
+      assertEquals(
+          expected, SourceTestUtils.readFromSource(source, PipelineOptionsFactory.create()));
+    }
+
     private static class FileReadDoFn extends DoFn<FileIO.ReadableFile, String> {
 
       @ProcessElement
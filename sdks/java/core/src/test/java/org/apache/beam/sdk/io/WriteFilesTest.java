@@ -24,8 +24,10 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertEquals;
@@ -454,6 +456,65 @@ public class WriteFilesTest {
             .withNoSpilling());
   }
 
+  @Test
+  @Category(NeedsRunner.class)
+  public void testWriteWithTargetFileSize() throws IOException {
+    List<String> inputs = Lists.newArrayList();
+    for (int i = 0; i < 100; ++i) {
+      inputs.add("mambo_number_" + i);
+    }
+    runWrite(
+        inputs,
+        IDENTITY_MAP,
+        getBaseOutputFilename(),
+        WriteFiles.to(makeSimpleSink()).withTargetFileSize(200));
+
+    checkFileContents(
+        getBaseOutputFilename(), inputs, Optional.absent(), true /* expectRemovedTempDirectory */);
+    List<Metadata> files =
+        FileSystems.match(Collections.singletonList(getBaseOutputFilename() + "*"))
+            .get(0)
+            .metadata();
+    assertThat(files.size(), greaterThan(1));
+    for (Metadata file : files) {
+      // Files exceed the target size by at most a record, the header and the footer.
+      assertThat(file.sizeBytes(), lessThanOrEqualTo(2 * 200L));
+    }
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testWriteWithTargetFileSizeCoalescesSmallFiles() throws IOException {
+    List<String> inputs = Lists.newArrayList();
+    for (int i = 0; i < 100; ++i) {
+      inputs.add("mambo_number_" + i);
+    }
+    runWrite(
+        inputs,
+        IDENTITY_MAP,
+        getBaseOutputFilename(),
+        WriteFiles.to(makeSimpleSink()).withTargetFileSize(1 << 20));
+
+    checkFileContents(
+        getBaseOutputFilename(), inputs, Optional.absent(), true /* expectRemovedTempDirectory */);
+    List<Metadata> files =
+        FileSystems.match(Collections.singletonList(getBaseOutputFilename() + "*"))
+            .get(0)
+            .metadata();
+    assertThat(files.size(), lessThanOrEqualTo(WriteFiles.COALESCED_RECORD_SHARDING_FACTOR));
+  }
+
+  @Test
+  @Category(NeedsRunner.class)
+  public void testTargetFileSizeNeedsRunnerDeterminedSharding() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("A target file size can only be used with runner-determined sharding");
+
+    p.apply(Create.of("foo"))
+        .apply(WriteFiles.to(makeSimpleSink()).withNumShards(3).withTargetFileSize(100));
+    p.run();
+  }
+
   @Test
   public void testBuildWrite() {
     SimpleSink<Void> sink = makeSimpleSink();
@@ -53,6 +53,18 @@ public class MeanTest {
     }
   }
 
+  /**
+   * Generated data to check that the wire format has not changed. To regenerate, see {@link
+   * org.apache.beam.sdk.coders.PrintBase64Encodings}.
+   */
+  private static final List<String> TEST_ENCODINGS =
+      Arrays.asList("AAAAAAAAAAFAFszMzMzMzQ", "AAAAAAAAACpARQAAAAAAAA", "AAAAAAAAAB1AAZmZmZmZmg");
+
+  @Test
+  public void testCountSumCoderWireFormatEncode() throws Exception {
+    CoderProperties.coderEncodesBase64(TEST_CODER, TEST_VALUES, TEST_ENCODINGS);
+  }
+
   @Test
   public void testCountSumCoderSerializable() throws Exception {
     CoderProperties.coderSerializable(TEST_CODER);
@@ -22,7 +22,9 @@ import static org.junit.Assert.assertThrows;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
 import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.UnsafeByteOperations;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -107,6 +109,37 @@ public class ByteStringOutputStreamTest {
     }
   }
 
+  @Test
+  public void testWriteVarLong() throws Exception {
+    for (int initialCapacity : new int[] {0, 4, 128}) {
+      ByteStringOutputStream out = new ByteStringOutputStream(initialCapacity);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      for (long value = 1; value != 0; value <<= 1) {
+        for (long v : new long[] {value, value - 1, -value}) {
+          out.writeVarLong(v);
+          VarInt.encode(v, expected);
+        }
+        assertEquals(expected.size(), out.size());
+      }
+      assertEquals(UnsafeByteOperations.unsafeWrap(expected.toByteArray()), out.toByteString());
+    }
+  }
+
+  @Test
+  public void testWriteAscii() throws Exception {
+    for (int initialCapacity : new int[] {0, 4, 128}) {
+      ByteStringOutputStream out = new ByteStringOutputStream(initialCapacity);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      for (int length = 0; length < 1024 * 1024; length = next(length)) {
+        String value = Strings.repeat("abc", length / 3 + 1).substring(0, length);
+        out.writeAscii(value);
+        expected.write(value.getBytes(StandardCharsets.US_ASCII));
+        assertEquals(expected.size(), out.size());
+      }
+      assertEquals(UnsafeByteOperations.unsafeWrap(expected.toByteArray()), out.toByteString());
+    }
+  }
+
   // Grow the elements based upon an approximation of the fibonacci sequence.
   private static int next(int current) {
     double a = Math.max(1, current * (1 + Math.sqrt(5)) / 2.0);
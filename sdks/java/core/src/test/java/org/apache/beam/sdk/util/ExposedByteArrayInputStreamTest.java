@@ -21,8 +21,10 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Charsets;
 import org.junit.Test;
@@ -76,4 +78,23 @@ public class ExposedByteArrayInputStreamTest {
     byte[] ret = exposedStream.readAll();
     assertArrayEquals("ello World!".getBytes(Charsets.UTF_8), ret);
   }
+
+  @Test
+  public void testReadUtf8() throws IOException {
+    byte[] data = "Hello Wörld! スタリング".getBytes(Charsets.UTF_8);
+    try (ExposedByteArrayInputStream s = new ExposedByteArrayInputStream(data)) {
+      assertEquals("Hello", s.readUtf8(5));
+      assertEquals(' ', s.read());
+      assertEquals("Wörld!", s.readUtf8(7));
+      assertEquals("", s.readUtf8(0));
+      assertEquals(" スタリング", s.readUtf8(s.available()));
+      assertEquals(0, s.available());
+    }
+  }
+
+  @Test
+  public void testReadUtf8PastEnd() throws IOException {
+    assertNotEquals(-1, exposedStream.read());
+    assertThrows(EOFException.class, () -> exposedStream.readUtf8(TEST_DATA.length));
+  }
 }
@@ -25,6 +25,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -308,4 +309,58 @@ public class VarIntTest {
     thrown.expect(IOException.class);
     VarInt.decodeInt(inStream);
   }
+
+  @Test
+  public void decodeValuesFromExposedStream() throws IOException {
+    ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+    for (byte[] encoded : LONG_ENCODED) {
+      outStream.write(encoded);
+    }
+    for (byte[] encoded : INT_ENCODED) {
+      outStream.write(encoded);
+    }
+
+    ExposedByteArrayInputStream inStream = new ExposedByteArrayInputStream(outStream.toByteArray());
+    for (long value : LONG_VALUES) {
+      assertEquals(value, VarInt.decodeLong(inStream));
+    }
+    for (int value : INT_VALUES) {
+      assertEquals(value, VarInt.decodeInt(inStream));
+    }
+    assertEquals(-1, inStream.read());
+  }
+
+  @Test
+  public void decodeFromExposedStreamThrowsExceptionForOverflow() throws IOException {
+    byte[] tooLargeNumber = new byte[12];
+    Arrays.fill(tooLargeNumber, (byte) 0xff);
+
+    thrown.expect(IOException.class);
+    thrown.expectMessage("varint too long");
+    VarInt.decodeLong(new ExposedByteArrayInputStream(tooLargeNumber));
+  }
+
+  @Test
+  public void decodeFromExposedStreamThrowsExceptionForNonterminated() throws IOException {
+    final byte[] nonTerminatedNumber = {(byte) 0xff, (byte) 0xff};
+
+    thrown.expect(IOException.class);
+    thrown.expectMessage("varint not terminated");
+    VarInt.decodeLong(new ExposedByteArrayInputStream(nonTerminatedNumber));
+  }
+
+  @Test
+  public void endOfExposedStreamThrowsException() throws Exception {
+    thrown.expect(EOFException.class);
+    VarInt.decodeInt(new ExposedByteArrayInputStream(new byte[0]));
+  }
+
+  @Test
+  public void encodeValuesToByteStringOutputStream() throws IOException {
+    for (int i = 0; i < LONG_VALUES.length; ++i) {
+      ByteStringOutputStream stream = new ByteStringOutputStream();
+      VarInt.encode(LONG_VALUES[i], stream);
+      assertThat(stream.toByteString().toByteArray(), equalTo(LONG_ENCODED[i]));
+    }
+  }
 }
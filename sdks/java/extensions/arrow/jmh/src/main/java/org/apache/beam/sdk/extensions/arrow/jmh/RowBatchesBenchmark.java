@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.beam.sdk.extensions.arrow.RowBatch;
+import org.apache.beam.sdk.schemas.FieldAccessDescriptor;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.utils.RowSelector;
+import org.apache.beam.sdk.schemas.utils.SelectHelpers.RowSelectorContainer;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for selecting and filtering a batch of rows with {@link RowBatch} compared to the
+ * row-at-a-time {@link org.apache.beam.sdk.schemas.transforms.Select} and {@link
+ * org.apache.beam.sdk.schemas.transforms.Filter} transforms. The batch benchmarks include loading
+ * and serializing the Arrow record batch, as {@link RowBatch} does for every operation. Scores are
+ * reported per row.
+ */
+public class RowBatchesBenchmark {
+  static final int NUM_ROWS = 4096;
+
+  static final Schema SCHEMA =
+      Schema.builder()
+          .addInt32Field("id")
+          .addNullableField("name", Schema.FieldType.STRING)
+          .addInt64Field("amount")
+          .addDoubleField("score")
+          .build();
+
+  static final List<String> SELECTED_FIELDS = ImmutableList.of("name", "amount");
+
+  /** Keeps about half of the rows. */
+  static final SerializableFunction<Long, Boolean> AMOUNT_PREDICATE = amount -> amount % 2 == 0;
+
+  /** The rows to process, both as {@link Row}s and as a single {@link RowBatch}. */
+  @State(Scope.Thread)
+  public static class Rows {
+    final BufferAllocator allocator = new RootAllocator();
+    final List<Row> rows = new ArrayList<>(NUM_ROWS);
+    final RowBatch batch;
+    // The same selector as the Select transform uses.
+    final RowSelector selector =
+        new RowSelectorContainer(
+            SCHEMA, FieldAccessDescriptor.withFieldNames(SELECTED_FIELDS).resolve(SCHEMA), true);
+
+    public Rows() throws IOException {
+      for (int i = 0; i < NUM_ROWS; ++i) {
+        rows.add(
+            Row.withSchema(SCHEMA)
+                .addValues(i, i % 10 == 0 ? null : "name" + i, i * 7L, i * 0.5)
+                .build());
+      }
+      batch = RowBatch.fromRows(SCHEMA, rows, allocator);
+    }
+
+    @TearDown
+    public void tearDown() {
+      allocator.close();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public void selectRows(Rows rows, Blackhole bh) {
+    for (Row row : rows.rows) {
+      bh.consume(rows.selector.select(row));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public RowBatch selectBatch(Rows rows) throws IOException {
+    return rows.batch.select(SELECTED_FIELDS, rows.allocator);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public void filterRows(Rows rows, Blackhole bh) {
+    for (Row row : rows.rows) {
+      // Like the Filter transform, which reads the field value of each row.
+      if (AMOUNT_PREDICATE.apply(row.getValue("amount"))) {
+        bh.consume(row);
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NUM_ROWS)
+  public RowBatch filterBatch(Rows rows) throws IOException {
+    return rows.batch.filter("amount", AMOUNT_PREDICATE, rows.allocator);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow.jmh;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.beam.sdk.extensions.arrow.RowBatch;
+import org.apache.beam.sdk.extensions.arrow.jmh.RowBatchesBenchmark.Rows;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Tests for {@link RowBatchesBenchmark}. */
+@RunWith(JUnit4.class)
+public class RowBatchesBenchmarkTest {
+  @Test
+  public void testSelectAndFilter() throws Exception {
+    Blackhole bh =
+        new Blackhole(
+            "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous.");
+    RowBatchesBenchmark benchmark = new RowBatchesBenchmark();
+    Rows rows = new Rows();
+    try {
+      benchmark.selectRows(rows, bh);
+      benchmark.filterRows(rows, bh);
+
+      RowBatch selected = benchmark.selectBatch(rows);
+      assertEquals(RowBatchesBenchmark.SELECTED_FIELDS, selected.getSchema().getFieldNames());
+      assertEquals(RowBatchesBenchmark.NUM_ROWS, selected.getRowCount());
+      RowBatch filtered = benchmark.filterBatch(rows);
+      assertEquals(RowBatchesBenchmark.NUM_ROWS / 2, filtered.getRowCount());
+    } finally {
+      rows.tearDown();
+    }
+  }
+}
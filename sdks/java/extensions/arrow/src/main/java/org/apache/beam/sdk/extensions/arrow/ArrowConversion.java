@@ -22,19 +22,34 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
+import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
 import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.VarBinaryVector;
+import org.apache.arrow.vector.VarCharVector;
 import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.ipc.ReadChannel;
 import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
 import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
 import org.apache.arrow.vector.types.TimeUnit;
 import org.apache.arrow.vector.types.pojo.ArrowType;
 import org.apache.arrow.vector.util.Text;
@@ -49,6 +64,7 @@ import org.apache.beam.sdk.schemas.logicaltypes.FixedBytes;
 import org.apache.beam.sdk.values.Row;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.joda.time.ReadableInstant;
 
 /**
  * Utilities to create {@link Iterable}s of Beam {@link Row} instances backed by Arrow record
@@ -253,6 +269,21 @@ public class ArrowConversion {
       InputStream inputStream,
       RootAllocator allocator)
       throws IOException {
+    return rowsFromRecordBatch(
+        ArrowSchemaTranslator.toBeamSchema(arrowSchema),
+        loadSerializedRecordBatch(arrowSchema, inputStream, allocator));
+  }
+
+  /**
+   * Returns a {@link VectorSchemaRoot} holding the Arrow record batch serialized in {@code
+   * inputStream}. The caller is responsible for closing the returned {@link VectorSchemaRoot}.
+   */
+  @SuppressWarnings("nullness")
+  static VectorSchemaRoot loadSerializedRecordBatch(
+      org.apache.arrow.vector.types.pojo.Schema arrowSchema,
+      InputStream inputStream,
+      BufferAllocator allocator)
+      throws IOException {
     VectorSchemaRoot vectorRoot = VectorSchemaRoot.create(arrowSchema, allocator);
     VectorLoader vectorLoader = new VectorLoader(vectorRoot);
     vectorRoot.clear();
@@ -262,7 +293,79 @@ public class ArrowConversion {
         vectorLoader.load(arrowMessage);
       }
     }
-    return rowsFromRecordBatch(ArrowSchemaTranslator.toBeamSchema(arrowSchema), vectorRoot);
+    return vectorRoot;
+  }
+
+  /**
+   * Returns a {@link VectorSchemaRoot} holding the values of {@code rows} in one Arrow vector per
+   * field of {@code schema}. The caller is responsible for closing the returned {@link
+   * VectorSchemaRoot}.
+   *
+   * <p>Only fields which {@link ArrowSchemaTranslator#toArrowSchema} supports can be converted.
+   */
+  public static VectorSchemaRoot recordBatchFromRows(
+      Schema schema, Iterable<Row> rows, BufferAllocator allocator) {
+    VectorSchemaRoot vectorRoot =
+        VectorSchemaRoot.create(ArrowSchemaTranslator.toArrowSchema(schema), allocator);
+    try {
+      vectorRoot.allocateNew();
+      int rowIndex = 0;
+      for (Row row : rows) {
+        for (int i = 0; i < schema.getFieldCount(); ++i) {
+          @Nullable Object value = row.getBaseValue(i);
+          // Values which are not set are null since the validity buffers start out cleared.
+          if (value != null) {
+            setValue(vectorRoot.getVector(i), schema.getField(i).getType(), rowIndex, value);
+          }
+        }
+        rowIndex += 1;
+      }
+      vectorRoot.setRowCount(rowIndex);
+      return vectorRoot;
+    } catch (RuntimeException e) {
+      vectorRoot.close();
+      throw e;
+    }
+  }
+
+  private static void setValue(FieldVector vector, FieldType type, int index, Object value) {
+    switch (type.getTypeName()) {
+      case BYTE:
+        ((TinyIntVector) vector).setSafe(index, (Byte) value);
+        break;
+      case INT16:
+        ((SmallIntVector) vector).setSafe(index, (Short) value);
+        break;
+      case INT32:
+        ((IntVector) vector).setSafe(index, (Integer) value);
+        break;
+      case INT64:
+        ((BigIntVector) vector).setSafe(index, (Long) value);
+        break;
+      case FLOAT:
+        ((Float4Vector) vector).setSafe(index, (Float) value);
+        break;
+      case DOUBLE:
+        ((Float8Vector) vector).setSafe(index, (Double) value);
+        break;
+      case BOOLEAN:
+        ((BitVector) vector).setSafe(index, (Boolean) value ? 1 : 0);
+        break;
+      case STRING:
+        ((VarCharVector) vector).setSafe(index, ((String) value).getBytes(StandardCharsets.UTF_8));
+        break;
+      case BYTES:
+        ((VarBinaryVector) vector).setSafe(index, (byte[]) value);
+        break;
+      case DATETIME:
+        ((TimeStampMilliTZVector) vector).setSafe(index, ((ReadableInstant) value).getMillis());
+        break;
+      case LOGICAL_TYPE:
+        ((FixedSizeBinaryVector) vector).setSafe(index, (byte[]) value);
+        break;
+      default:
+        throw new IllegalArgumentException("Type \'" + type + "\' not supported.");
+    }
   }
 
   public static org.apache.arrow.vector.types.pojo.Schema arrowSchemaFromInput(InputStream input)
@@ -295,48 +398,53 @@ public class ArrowConversion {
       @Override
       public List<FieldValueGetter> create(Class<?> clazz, Schema schema) {
         return this.fieldVectors.stream()
-            .map(
-                (fieldVector) -> {
-                  Optional<Function<Object, Object>> optionalValue =
-                      fieldVector.getField().getFieldType().getType().accept(valueConverterVisitor);
-                  if (!optionalValue.isPresent()) {
-                    return new FieldValueGetter<Integer, Object>() {
-                      @Nullable
-                      @Override
-                      public Object get(Integer rowIndex) {
-                        return fieldVector.getObject(rowIndex);
-                      }
-
-                      @Override
-                      public String name() {
-                        return fieldVector.getField().getName();
-                      }
-                    };
-                  } else {
-                    Function<Object, Object> conversionFunction = optionalValue.get();
-                    return new FieldValueGetter<Integer, Object>() {
-                      @Nullable
-                      @Override
-                      public Object get(Integer rowIndex) {
-                        Object value = fieldVector.getObject(rowIndex);
-                        if (value == null) {
-                          return null;
-                        }
-
-                        return conversionFunction.apply(value);
-                      }
-
-                      @Override
-                      public String name() {
-                        return fieldVector.getField().getName();
-                      }
-                    };
-                  }
-                })
+            .map(RecordBatchRowIterator::valueGetter)
             .collect(Collectors.toList());
       }
     }
 
+    /**
+     * Returns a {@link FieldValueGetter} which reads the Beam value of a row index from {@code
+     * fieldVector}.
+     */
+    static FieldValueGetter<Integer, Object> valueGetter(FieldVector fieldVector) {
+      Optional<Function<Object, Object>> optionalValue =
+          fieldVector.getField().getFieldType().getType().accept(valueConverterVisitor);
+      if (!optionalValue.isPresent()) {
+        return new FieldValueGetter<Integer, Object>() {
+          @Nullable
+          @Override
+          public Object get(Integer rowIndex) {
+            return fieldVector.getObject(rowIndex);
+          }
+
+          @Override
+          public String name() {
+            return fieldVector.getField().getName();
+          }
+        };
+      } else {
+        Function<Object, Object> conversionFunction = optionalValue.get();
+        return new FieldValueGetter<Integer, Object>() {
+          @Nullable
+          @Override
+          public Object get(Integer rowIndex) {
+            Object value = fieldVector.getObject(rowIndex);
+            if (value == null) {
+              return null;
+            }
+
+            return conversionFunction.apply(value);
+          }
+
+          @Override
+          public String name() {
+            return fieldVector.getField().getName();
+          }
+        };
+      }
+    }
+
     // TODO: Consider using ByteBuddyUtils.TypeConversion for this
     private static class ArrowValueConverterVisitor
         implements ArrowType.ArrowTypeVisitor<Optional<Function<Object, Object>>> {
@@ -494,9 +602,74 @@ public class ArrowConversion {
 
   private ArrowConversion() {}
 
-  /** Converts Arrow schema to Beam row schema. */
+  /** Converts between Arrow schemas and Beam row schemas. */
   public static class ArrowSchemaTranslator {
 
+    /**
+     * Converts a Beam row schema to an Arrow schema.
+     *
+     * <p>Only flat schemas of primitive fields, {@code DATETIME} fields and {@link FixedBytes}
+     * fields are supported. {@code DATETIME} fields are converted to millisecond timestamps in
+     * UTC.
+     */
+    public static org.apache.arrow.vector.types.pojo.Schema toArrowSchema(Schema schema) {
+      return new org.apache.arrow.vector.types.pojo.Schema(
+          schema.getFields().stream()
+              .map(ArrowSchemaTranslator::toArrowField)
+              .collect(Collectors.toList()));
+    }
+
+    private static org.apache.arrow.vector.types.pojo.Field toArrowField(Field field) {
+      FieldType type = field.getType();
+      ArrowType arrowType;
+      switch (type.getTypeName()) {
+        case BYTE:
+          arrowType = new ArrowType.Int(8, true);
+          break;
+        case INT16:
+          arrowType = new ArrowType.Int(16, true);
+          break;
+        case INT32:
+          arrowType = new ArrowType.Int(32, true);
+          break;
+        case INT64:
+          arrowType = new ArrowType.Int(64, true);
+          break;
+        case FLOAT:
+          arrowType = new ArrowType.FloatingPoint(FloatingPointPrecision.SINGLE);
+          break;
+        case DOUBLE:
+          arrowType = new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+          break;
+        case BOOLEAN:
+          arrowType = new ArrowType.Bool();
+          break;
+        case STRING:
+          arrowType = new ArrowType.Utf8();
+          break;
+        case BYTES:
+          arrowType = new ArrowType.Binary();
+          break;
+        case DATETIME:
+          arrowType = new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC");
+          break;
+        case LOGICAL_TYPE:
+          if (type.isLogicalType(FixedBytes.IDENTIFIER)) {
+            arrowType =
+                new ArrowType.FixedSizeBinary(type.getLogicalType(FixedBytes.class).getLength());
+            break;
+          }
+          // fall through
+        default:
+          throw new IllegalArgumentException(
+              "Type \'" + type + "\' of field \'" + field.getName() + "\' not supported.");
+      }
+      return new org.apache.arrow.vector.types.pojo.Field(
+          field.getName(),
+          new org.apache.arrow.vector.types.pojo.FieldType(type.getNullable(), arrowType, null),
+          Collections.emptyList());
+    }
+
     public static Schema toBeamSchema(org.apache.arrow.vector.types.pojo.Schema schema) {
       return toBeamSchema(schema.getFields());
     }
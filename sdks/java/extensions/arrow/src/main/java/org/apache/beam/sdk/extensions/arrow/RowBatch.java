@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.WriteChannel;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.ipc.message.MessageSerializer;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.util.TransferPair;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.schemas.FieldValueGetter;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.values.Row;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A batch of Beam {@link Row}s stored by column as a serialized Arrow record batch.
+ *
+ * <p>A {@link RowBatch} is immutable and does not hold any Arrow memory. Operations load the record
+ * batch into vectors allocated by the given {@link BufferAllocator} and release them before
+ * returning, so that batches can be passed between transforms like any other element.
+ *
+ * <p>Only schemas supported by {@link ArrowConversion.ArrowSchemaTranslator#toArrowSchema} can be
+ * stored in a {@link RowBatch}.
+ */
+@Experimental(Experimental.Kind.SCHEMAS)
+public class RowBatch {
+  private final Schema schema;
+  private final int rowCount;
+  private final byte[] recordBatch;
+
+  RowBatch(Schema schema, int rowCount, byte[] recordBatch) {
+    this.schema = schema;
+    this.rowCount = rowCount;
+    this.recordBatch = recordBatch;
+  }
+
+  /** Returns a {@link RowBatch} holding the {@code rows} which all have the {@code schema}. */
+  public static RowBatch fromRows(Schema schema, List<Row> rows, BufferAllocator allocator)
+      throws IOException {
+    try (VectorSchemaRoot vectorRoot =
+        ArrowConversion.recordBatchFromRows(schema, rows, allocator)) {
+      return new RowBatch(schema, rows.size(), serialize(vectorRoot));
+    }
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the Arrow IPC serialized record batch which holds the values of this batch. */
+  byte[] getRecordBatch() {
+    return recordBatch;
+  }
+
+  /** Returns a copy of the rows of this batch which do not reference any Arrow memory. */
+  public List<Row> toRows(BufferAllocator allocator) throws IOException {
+    List<Row> rows = new ArrayList<>(rowCount);
+    try (ArrowConversion.RecordBatchRowIterator iterator =
+        ArrowConversion.rowsFromRecordBatch(schema, load(allocator))) {
+      while (iterator.hasNext()) {
+        rows.add(Row.withSchema(schema).addValues(iterator.next().getValues()).build());
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Returns a {@link RowBatch} holding only the fields {@code fieldNames} of this batch in the
+   * given order.
+   *
+   * <p>The vectors of the selected fields are copied as a whole without visiting the individual
+   * rows.
+   */
+  public RowBatch select(List<String> fieldNames, BufferAllocator allocator) throws IOException {
+    Schema.Builder selectedSchema = Schema.builder();
+    for (String fieldName : fieldNames) {
+      checkArgument(schema.hasField(fieldName), "Unknown field %s in %s.", fieldName, schema);
+      selectedSchema.addField(schema.getField(fieldName));
+    }
+    try (VectorSchemaRoot vectorRoot = load(allocator)) {
+      List<Field> fields = new ArrayList<>(fieldNames.size());
+      List<FieldVector> vectors = new ArrayList<>(fieldNames.size());
+      for (String fieldName : fieldNames) {
+        FieldVector vector = vectorRoot.getVector(fieldName);
+        fields.add(vector.getField());
+        vectors.add(vector);
+      }
+      // The selected vectors are owned and released by vectorRoot.
+      VectorSchemaRoot selectedRoot = new VectorSchemaRoot(fields, vectors, rowCount);
+      return new RowBatch(selectedSchema.build(), rowCount, serialize(selectedRoot));
+    }
+  }
+
+  /**
+   * Returns a {@link RowBatch} holding only the rows of this batch for which {@code predicate}
+   * returns true on the value of the field {@code fieldName}, like {@link
+   * org.apache.beam.sdk.schemas.transforms.Filter}.
+   *
+   * <p>The predicate reads only the vector of {@code fieldName}. The values of the matching rows
+   * are then copied vector by vector, without building a {@link Row} for each of them.
+   */
+  @SuppressWarnings("unchecked")
+  public <FieldT> RowBatch filter(
+      String fieldName,
+      SerializableFunction<FieldT, Boolean> predicate,
+      BufferAllocator allocator)
+      throws IOException {
+    checkArgument(schema.hasField(fieldName), "Unknown field %s in %s.", fieldName, schema);
+    try (VectorSchemaRoot vectorRoot = load(allocator)) {
+      FieldValueGetter<Integer, Object> valueGetter =
+          ArrowConversion.RecordBatchRowIterator.valueGetter(vectorRoot.getVector(fieldName));
+      int[] matchingRows = new int[rowCount];
+      int matchingRowCount = 0;
+      for (int i = 0; i < rowCount; ++i) {
+        if (predicate.apply((FieldT) valueGetter.get(i))) {
+          matchingRows[matchingRowCount++] = i;
+        }
+      }
+      if (matchingRowCount == rowCount) {
+        return this;
+      }
+      try (VectorSchemaRoot filteredRoot =
+          VectorSchemaRoot.create(vectorRoot.getSchema(), allocator)) {
+        filteredRoot.allocateNew();
+        for (int field = 0; field < schema.getFieldCount(); ++field) {
+          TransferPair transferPair =
+              vectorRoot.getVector(field).makeTransferPair(filteredRoot.getVector(field));
+          for (int i = 0; i < matchingRowCount; ++i) {
+            transferPair.copyValueSafe(matchingRows[i], i);
+          }
+        }
+        filteredRoot.setRowCount(matchingRowCount);
+        return new RowBatch(schema, matchingRowCount, serialize(filteredRoot));
+      }
+    }
+  }
+
+  private VectorSchemaRoot load(BufferAllocator allocator) throws IOException {
+    return ArrowConversion.loadSerializedRecordBatch(
+        ArrowConversion.ArrowSchemaTranslator.toArrowSchema(schema),
+        new ByteArrayInputStream(recordBatch),
+        allocator);
+  }
+
+  private static byte[] serialize(VectorSchemaRoot vectorRoot) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (ArrowRecordBatch arrowRecordBatch = new VectorUnloader(vectorRoot).getRecordBatch()) {
+      MessageSerializer.serialize(new WriteChannel(Channels.newChannel(output)), arrowRecordBatch);
+    }
+    return output.toByteArray();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RowBatch)) {
+      return false;
+    }
+    RowBatch that = (RowBatch) o;
+    return rowCount == that.rowCount
+        && schema.equals(that.schema)
+        && Arrays.equals(recordBatch, that.recordBatch);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(schema, rowCount, Arrays.hashCode(recordBatch));
+  }
+
+  @Override
+  public String toString() {
+    return "RowBatch{schema=" + schema + ", rowCount=" + rowCount + "}";
+  }
+}
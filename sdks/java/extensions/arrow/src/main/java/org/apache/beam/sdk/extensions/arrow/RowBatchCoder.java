@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.CustomCoder;
+import org.apache.beam.sdk.coders.VarIntCoder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link org.apache.beam.sdk.coders.Coder} for {@link RowBatch}es of a fixed {@link Schema}
+ * which encodes the serialized Arrow record batch as is.
+ */
+@Experimental(Experimental.Kind.SCHEMAS)
+public class RowBatchCoder extends CustomCoder<RowBatch> {
+  private static final VarIntCoder ROW_COUNT_CODER = VarIntCoder.of();
+  private static final ByteArrayCoder RECORD_BATCH_CODER = ByteArrayCoder.of();
+
+  private final Schema schema;
+
+  private RowBatchCoder(Schema schema) {
+    this.schema = schema;
+  }
+
+  public static RowBatchCoder of(Schema schema) {
+    return new RowBatchCoder(schema);
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  @Override
+  public void encode(RowBatch value, OutputStream outStream) throws IOException {
+    ROW_COUNT_CODER.encode(value.getRowCount(), outStream);
+    RECORD_BATCH_CODER.encode(value.getRecordBatch(), outStream);
+  }
+
+  @Override
+  public RowBatch decode(InputStream inStream) throws IOException {
+    int rowCount = ROW_COUNT_CODER.decode(inStream);
+    return new RowBatch(schema, rowCount, RECORD_BATCH_CODER.decode(inStream));
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    return o instanceof RowBatchCoder && schema.equals(((RowBatchCoder) o).schema);
+  }
+
+  @Override
+  public int hashCode() {
+    return schema.hashCode();
+  }
+}
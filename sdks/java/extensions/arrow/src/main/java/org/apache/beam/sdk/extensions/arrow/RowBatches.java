@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.beam.sdk.annotations.Experimental;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.transforms.DoFn;
+import org.apache.beam.sdk.transforms.PTransform;
+import org.apache.beam.sdk.transforms.ParDo;
+import org.apache.beam.sdk.transforms.SerializableFunction;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.joda.time.Instant;
+
+/**
+ * {@link PTransform}s for processing {@link Row}s by column in {@link RowBatch}es.
+ *
+ * <p>{@link #fromRows} and {@link #toRows} convert at the boundaries with transforms which process
+ * one {@link Row} at a time, and preserve the window and timestamp of each row. Transforms in
+ * between, like {@link #select} and {@link #filter}, process all rows of a batch at once:
+ *
+ * <pre>{@code
+ * PCollection<Row> rows = ...;
+ * PCollection<Row> projected =
+ *     rows.apply(RowBatches.fromRows(4096))
+ *         .apply(RowBatches.filter("amount", (Long amount) -> amount > 0))
+ *         .apply(RowBatches.select("userId", "amount"))
+ *         .apply(RowBatches.toRows());
+ * }</pre>
+ */
+@Experimental(Experimental.Kind.SCHEMAS)
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+public class RowBatches {
+  private RowBatches() {}
+
+  /**
+   * Returns a {@link PTransform} which combines the {@link Row}s of each window and bundle into
+   * {@link RowBatch}es of at most {@code maxBatchSize} rows.
+   *
+   * <p>Only rows with the same window and timestamp are combined into a batch, which is output with
+   * that window and timestamp. So {@link #toRows} outputs each row with its original window and
+   * timestamp, but inputs with many distinct timestamps per bundle result in small batches. The
+   * {@link org.apache.beam.sdk.transforms.windowing.PaneInfo} of the rows is not preserved.
+   */
+  public static FromRows fromRows(int maxBatchSize) {
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive but was %s.", maxBatchSize);
+    return new FromRows(maxBatchSize);
+  }
+
+  /**
+   * Returns a {@link PTransform} which outputs the individual {@link Row}s of each batch with the
+   * window and timestamp of the batch.
+   */
+  public static ToRows toRows() {
+    return new ToRows();
+  }
+
+  /** Returns a {@link PTransform} which keeps only the fields {@code fieldNames} of each batch. */
+  public static Select select(String... fieldNames) {
+    return new Select(ImmutableList.copyOf(fieldNames));
+  }
+
+  /**
+   * Returns a {@link PTransform} which keeps only the rows of each batch for which {@code
+   * predicate} returns true on the value of the field {@code fieldName}.
+   */
+  public static <FieldT> Filter<FieldT> filter(
+      String fieldName, SerializableFunction<FieldT, Boolean> predicate) {
+    return new Filter<>(fieldName, predicate);
+  }
+
+  /** Implementation of {@link #fromRows}. */
+  public static class FromRows extends PTransform<PCollection<Row>, PCollection<RowBatch>> {
+    private final int maxBatchSize;
+
+    private FromRows(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public PCollection<RowBatch> expand(PCollection<Row> input) {
+      Schema schema = input.getSchema();
+      // Fail during pipeline construction for schemas which can't be stored in Arrow vectors.
+      ArrowConversion.ArrowSchemaTranslator.toArrowSchema(schema);
+      return input
+          .apply(ParDo.of(new BatchRowsFn(schema, maxBatchSize)))
+          .setCoder(RowBatchCoder.of(schema));
+    }
+  }
+
+  /** Implementation of {@link #toRows}. */
+  public static class ToRows extends PTransform<PCollection<RowBatch>, PCollection<Row>> {
+    private ToRows() {}
+
+    @Override
+    public PCollection<Row> expand(PCollection<RowBatch> input) {
+      Schema schema = getSchema(input);
+      return input.apply(ParDo.of(new UnbatchRowsFn())).setRowSchema(schema);
+    }
+  }
+
+  /** Implementation of {@link #select}. */
+  public static class Select extends PTransform<PCollection<RowBatch>, PCollection<RowBatch>> {
+    private final List<String> fieldNames;
+
+    private Select(List<String> fieldNames) {
+      this.fieldNames = fieldNames;
+    }
+
+    @Override
+    public PCollection<RowBatch> expand(PCollection<RowBatch> input) {
+      Schema schema = getSchema(input);
+      Schema.Builder selectedSchema = Schema.builder();
+      for (String fieldName : fieldNames) {
+        checkArgument(schema.hasField(fieldName), "Unknown field %s in %s.", fieldName, schema);
+        selectedSchema.addField(schema.getField(fieldName));
+      }
+      return input
+          .apply(ParDo.of(new SelectFn(fieldNames)))
+          .setCoder(RowBatchCoder.of(selectedSchema.build()));
+    }
+  }
+
+  /** Implementation of {@link #filter}. */
+  public static class Filter<FieldT>
+      extends PTransform<PCollection<RowBatch>, PCollection<RowBatch>> {
+    private final String fieldName;
+    private final SerializableFunction<FieldT, Boolean> predicate;
+
+    private Filter(String fieldName, SerializableFunction<FieldT, Boolean> predicate) {
+      this.fieldName = fieldName;
+      this.predicate = predicate;
+    }
+
+    @Override
+    public PCollection<RowBatch> expand(PCollection<RowBatch> input) {
+      Schema schema = getSchema(input);
+      checkArgument(schema.hasField(fieldName), "Unknown field %s in %s.", fieldName, schema);
+      return input
+          .apply(ParDo.of(new FilterFn<>(fieldName, predicate)))
+          .setCoder(RowBatchCoder.of(schema));
+    }
+  }
+
+  private static Schema getSchema(PCollection<RowBatch> input) {
+    Coder<RowBatch> coder = input.getCoder();
+    checkArgument(
+        coder instanceof RowBatchCoder,
+        "Expected a PCollection encoded with %s but was encoded with %s.",
+        RowBatchCoder.class.getSimpleName(),
+        coder);
+    return ((RowBatchCoder) coder).getSchema();
+  }
+
+  /** A {@link DoFn} which owns an Arrow allocator for the lifetime of the instance. */
+  private abstract static class ArrowDoFn<InputT, OutputT> extends DoFn<InputT, OutputT> {
+    protected transient BufferAllocator allocator;
+
+    @Setup
+    public void setup() {
+      allocator = new RootAllocator();
+    }
+
+    @Teardown
+    public void teardown() {
+      if (allocator != null) {
+        allocator.close();
+      }
+    }
+  }
+
+  /** Identifies the rows which can be output in the same batch. */
+  private static class BatchKey {
+    private final BoundedWindow window;
+    private final Instant timestamp;
+
+    BatchKey(BoundedWindow window, Instant timestamp) {
+      this.window = window;
+      this.timestamp = timestamp;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof BatchKey)) {
+        return false;
+      }
+      BatchKey that = (BatchKey) o;
+      return window.equals(that.window) && timestamp.equals(that.timestamp);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(window, timestamp);
+    }
+  }
+
+  private static class BatchRowsFn extends ArrowDoFn<Row, RowBatch> {
+    private final Schema schema;
+    private final int maxBatchSize;
+    private transient Map<BatchKey, List<Row>> buffers;
+
+    private BatchRowsFn(Schema schema, int maxBatchSize) {
+      this.schema = schema;
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    @StartBundle
+    public void startBundle() {
+      buffers = new HashMap<>();
+    }
+
+    @ProcessElement
+    public void processElement(
+        @Element Row row,
+        @Timestamp Instant timestamp,
+        BoundedWindow window,
+        OutputReceiver<RowBatch> receiver)
+        throws IOException {
+      BatchKey key = new BatchKey(window, timestamp);
+      List<Row> rows = buffers.computeIfAbsent(key, k -> new ArrayList<>());
+      rows.add(row);
+      if (rows.size() >= maxBatchSize) {
+        buffers.remove(key);
+        // All rows of the batch have the timestamp and window of the current row.
+        receiver.output(RowBatch.fromRows(schema, rows, allocator));
+      }
+    }
+
+    @FinishBundle
+    public void finishBundle(FinishBundleContext context) throws IOException {
+      for (Map.Entry<BatchKey, List<Row>> entry : buffers.entrySet()) {
+        BatchKey key = entry.getKey();
+        context.output(
+            RowBatch.fromRows(schema, entry.getValue(), allocator), key.timestamp, key.window);
+      }
+      buffers.clear();
+    }
+  }
+
+  private static class UnbatchRowsFn extends ArrowDoFn<RowBatch, Row> {
+    @ProcessElement
+    public void processElement(@Element RowBatch batch, OutputReceiver<Row> receiver)
+        throws IOException {
+      for (Row row : batch.toRows(allocator)) {
+        receiver.output(row);
+      }
+    }
+  }
+
+  private static class SelectFn extends ArrowDoFn<RowBatch, RowBatch> {
+    private final List<String> fieldNames;
+
+    private SelectFn(List<String> fieldNames) {
+      this.fieldNames = fieldNames;
+    }
+
+    @ProcessElement
+    public void processElement(@Element RowBatch batch, OutputReceiver<RowBatch> receiver)
+        throws IOException {
+      receiver.output(batch.select(fieldNames, allocator));
+    }
+  }
+
+  private static class FilterFn<FieldT> extends ArrowDoFn<RowBatch, RowBatch> {
+    private final String fieldName;
+    private final SerializableFunction<FieldT, Boolean> predicate;
+
+    private FilterFn(String fieldName, SerializableFunction<FieldT, Boolean> predicate) {
+      this.fieldName = fieldName;
+      this.predicate = predicate;
+    }
+
+    @ProcessElement
+    public void processElement(@Element RowBatch batch, OutputReceiver<RowBatch> receiver)
+        throws IOException {
+      RowBatch filtered = batch.filter(fieldName, predicate, allocator);
+      if (filtered.getRowCount() > 0) {
+        receiver.output(filtered);
+      }
+    }
+  }
+}
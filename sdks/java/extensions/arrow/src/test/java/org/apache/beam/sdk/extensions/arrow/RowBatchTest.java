@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThrows;
+
+import java.util.List;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.schemas.Schema.FieldType;
+import org.apache.beam.sdk.schemas.logicaltypes.FixedBytes;
+import org.apache.beam.sdk.testing.CoderProperties;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableList;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RowBatchTest {
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addByteField("int8")
+          .addInt16Field("int16")
+          .addInt32Field("int32")
+          .addInt64Field("int64")
+          .addFloatField("float")
+          .addDoubleField("double")
+          .addBooleanField("boolean")
+          .addNullableField("string", FieldType.STRING)
+          .addByteArrayField("bytes")
+          .addDateTimeField("datetime")
+          .addLogicalTypeField("fixed_bytes", FixedBytes.of(2))
+          .build();
+
+  private BufferAllocator allocator;
+
+  @Before
+  public void init() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void teardown() {
+    allocator.close();
+  }
+
+  private static Row row(int i) {
+    return Row.withSchema(SCHEMA)
+        .addValues(
+            (byte) i,
+            (short) (i * 2),
+            i * 3,
+            i * 4L,
+            i * 0.5f,
+            i * 0.25,
+            i % 2 == 0,
+            i % 3 == 0 ? null : "row" + i,
+            new byte[] {(byte) i},
+            new Instant(1_000_000L + i),
+            new byte[] {(byte) i, (byte) -i})
+        .build();
+  }
+
+  private static List<Row> rows(int count) {
+    ImmutableList.Builder<Row> rows = ImmutableList.builder();
+    for (int i = 0; i < count; ++i) {
+      rows.add(row(i));
+    }
+    return rows.build();
+  }
+
+  @Test
+  public void toArrowSchema_convertsSupportedFields() {
+    org.apache.arrow.vector.types.pojo.Schema arrowSchema =
+        ArrowConversion.ArrowSchemaTranslator.toArrowSchema(SCHEMA);
+
+    assertThat(arrowSchema.getFields().size(), equalTo(SCHEMA.getFieldCount()));
+    assertThat(
+        arrowSchema.findField("datetime").getType(),
+        equalTo(new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC")));
+    assertThat(
+        arrowSchema.findField("fixed_bytes").getType(), equalTo(new ArrowType.FixedSizeBinary(2)));
+    assertThat(arrowSchema.findField("string").isNullable(), equalTo(true));
+    assertThat(arrowSchema.findField("int32").isNullable(), equalTo(false));
+  }
+
+  @Test
+  public void toArrowSchema_rejectsNestedFields() {
+    Schema schema = Schema.builder().addArrayField("array", FieldType.INT32).build();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> ArrowConversion.ArrowSchemaTranslator.toArrowSchema(schema));
+  }
+
+  @Test
+  public void fromRows_roundTripsRows() throws Exception {
+    List<Row> rows = rows(100);
+
+    RowBatch batch = RowBatch.fromRows(SCHEMA, rows, allocator);
+
+    assertThat(batch.getRowCount(), equalTo(100));
+    assertThat(batch.toRows(allocator), equalTo(rows));
+  }
+
+  @Test
+  public void fromRows_supportsEmptyBatches() throws Exception {
+    RowBatch batch = RowBatch.fromRows(SCHEMA, ImmutableList.of(), allocator);
+
+    assertThat(batch.getRowCount(), equalTo(0));
+    assertThat(batch.toRows(allocator), equalTo(ImmutableList.of()));
+  }
+
+  @Test
+  public void select_projectsColumns() throws Exception {
+    List<Row> rows = rows(10);
+    Schema expectedSchema =
+        Schema.builder()
+            .addNullableField("string", FieldType.STRING)
+            .addInt64Field("int64")
+            .build();
+
+    RowBatch selected =
+        RowBatch.fromRows(SCHEMA, rows, allocator)
+            .select(ImmutableList.of("string", "int64"), allocator);
+
+    assertThat(selected.getSchema(), equalTo(expectedSchema));
+    ImmutableList.Builder<Row> expectedRows = ImmutableList.builder();
+    for (Row row : rows) {
+      expectedRows.add(
+          Row.withSchema(expectedSchema)
+              .addValues(row.getString("string"), row.getInt64("int64"))
+              .build());
+    }
+    assertThat(selected.toRows(allocator), equalTo(expectedRows.build()));
+  }
+
+  @Test
+  public void select_rejectsUnknownFields() throws Exception {
+    RowBatch batch = RowBatch.fromRows(SCHEMA, rows(1), allocator);
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> batch.select(ImmutableList.of("unknown"), allocator));
+  }
+
+  @Test
+  public void filter_keepsMatchingRows() throws Exception {
+    List<Row> rows = rows(10);
+    ImmutableList.Builder<Row> expectedRows = ImmutableList.builder();
+    for (Row row : rows) {
+      if (row.getString("string") != null && row.getInt32("int32") > 6) {
+        expectedRows.add(row);
+      }
+    }
+
+    RowBatch filtered =
+        RowBatch.fromRows(SCHEMA, rows, allocator)
+            .filter("string", (String value) -> value != null, allocator)
+            .filter("int32", (Integer value) -> value > 6, allocator);
+
+    assertThat(filtered.getSchema(), equalTo(SCHEMA));
+    assertThat(filtered.toRows(allocator), equalTo(expectedRows.build()));
+  }
+
+  @Test
+  public void filter_returnsBatchIfAllRowsMatch() throws Exception {
+    RowBatch batch = RowBatch.fromRows(SCHEMA, rows(10), allocator);
+
+    assertThat(batch.filter("int64", (Long value) -> value >= 0, allocator), equalTo(batch));
+    assertThat(
+        batch.filter("int64", (Long value) -> value < 0, allocator).getRowCount(), equalTo(0));
+  }
+
+  @Test
+  public void filter_rejectsUnknownFields() throws Exception {
+    RowBatch batch = RowBatch.fromRows(SCHEMA, rows(1), allocator);
+
+    assertThrows(
+        IllegalArgumentException.class, () -> batch.filter("unknown", value -> true, allocator));
+  }
+
+  @Test
+  public void coder_roundTripsBatches() throws Exception {
+    RowBatch batch = RowBatch.fromRows(SCHEMA, rows(10), allocator);
+
+    CoderProperties.coderDecodeEncodeEqual(RowBatchCoder.of(SCHEMA), batch);
+  }
+}
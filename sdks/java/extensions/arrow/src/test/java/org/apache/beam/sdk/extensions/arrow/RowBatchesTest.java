@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.arrow;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.beam.sdk.coders.RowCoder;
+import org.apache.beam.sdk.schemas.Schema;
+import org.apache.beam.sdk.testing.PAssert;
+import org.apache.beam.sdk.testing.TestPipeline;
+import org.apache.beam.sdk.transforms.Create;
+import org.apache.beam.sdk.transforms.Reify;
+import org.apache.beam.sdk.transforms.windowing.FixedWindows;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.Window;
+import org.apache.beam.sdk.values.PCollection;
+import org.apache.beam.sdk.values.Row;
+import org.apache.beam.sdk.values.TimestampedValue;
+import org.joda.time.Duration;
+import org.joda.time.Instant;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class RowBatchesTest {
+  private static final Schema SCHEMA =
+      Schema.builder()
+          .addInt32Field("id")
+          .addNullableField("name", Schema.FieldType.STRING)
+          .addInt64Field("amount")
+          .build();
+  private static final Schema SELECTED_SCHEMA =
+      Schema.builder()
+          .addNullableField("name", Schema.FieldType.STRING)
+          .addInt32Field("id")
+          .build();
+
+  @Rule public final transient TestPipeline pipeline = TestPipeline.create();
+
+  /** Returns rows whose timestamps are not in the order of the rows. */
+  private static List<TimestampedValue<Row>> timestampedRows(int count) {
+    List<TimestampedValue<Row>> rows = new ArrayList<>();
+    for (int i = 0; i < count; ++i) {
+      Row row =
+          Row.withSchema(SCHEMA).addValues(i, i % 3 == 0 ? null : "name" + i, i * 10L).build();
+      rows.add(TimestampedValue.of(row, new Instant((i * 7L) % count)));
+    }
+    return rows;
+  }
+
+  private PCollection<Row> createRows(List<TimestampedValue<Row>> rows) {
+    return pipeline.apply(Create.timestamped(rows).withCoder(RowCoder.of(SCHEMA)));
+  }
+
+  @Test
+  public void fromRowsAndToRows_preserveValuesAndTimestamps() {
+    List<TimestampedValue<Row>> rows = timestampedRows(10);
+
+    PCollection<TimestampedValue<Row>> output =
+        createRows(rows)
+            .apply(RowBatches.fromRows(3))
+            .apply(RowBatches.toRows())
+            .apply(Reify.timestamps());
+
+    PAssert.that(output).containsInAnyOrder(rows);
+    pipeline.run();
+  }
+
+  @Test
+  public void select_preservesTimestamps() {
+    List<TimestampedValue<Row>> rows = timestampedRows(10);
+    List<TimestampedValue<Row>> expected = new ArrayList<>();
+    for (TimestampedValue<Row> row : rows) {
+      expected.add(
+          TimestampedValue.of(
+              Row.withSchema(SELECTED_SCHEMA)
+                  .addValues(row.getValue().getString("name"), row.getValue().getInt32("id"))
+                  .build(),
+              row.getTimestamp()));
+    }
+
+    PCollection<TimestampedValue<Row>> output =
+        createRows(rows)
+            .apply(RowBatches.fromRows(4))
+            .apply(RowBatches.select("name", "id"))
+            .apply(RowBatches.toRows())
+            .apply(Reify.timestamps());
+
+    PAssert.that(output).containsInAnyOrder(expected);
+    pipeline.run();
+  }
+
+  @Test
+  public void filter_keepsMatchingRowsAndTimestamps() {
+    List<TimestampedValue<Row>> rows = timestampedRows(10);
+    List<TimestampedValue<Row>> expected = new ArrayList<>();
+    for (TimestampedValue<Row> row : rows) {
+      if (row.getValue().getString("name") != null && row.getValue().getInt64("amount") < 60) {
+        expected.add(row);
+      }
+    }
+
+    PCollection<TimestampedValue<Row>> output =
+        createRows(rows)
+            .apply(RowBatches.fromRows(4))
+            .apply(RowBatches.filter("name", (String name) -> name != null))
+            .apply(RowBatches.filter("amount", (Long amount) -> amount < 60))
+            .apply(RowBatches.toRows())
+            .apply(Reify.timestamps());
+
+    PAssert.that(output).containsInAnyOrder(expected);
+    pipeline.run();
+  }
+
+  @Test
+  public void fromRowsAndToRows_preserveWindows() {
+    List<TimestampedValue<Row>> rows = timestampedRows(10);
+    List<Row> firstWindow = new ArrayList<>();
+    List<Row> secondWindow = new ArrayList<>();
+    for (TimestampedValue<Row> row : rows) {
+      (row.getTimestamp().getMillis() < 5 ? firstWindow : secondWindow).add(row.getValue());
+    }
+
+    PCollection<Row> output =
+        createRows(rows)
+            .apply(Window.into(FixedWindows.of(Duration.millis(5))))
+            .apply(RowBatches.fromRows(100))
+            .apply(RowBatches.toRows());
+
+    PAssert.that(output)
+        .inWindow(new IntervalWindow(new Instant(0), new Instant(5)))
+        .containsInAnyOrder(firstWindow);
+    PAssert.that(output)
+        .inWindow(new IntervalWindow(new Instant(5), new Instant(10)))
+        .containsInAnyOrder(secondWindow);
+    pipeline.run();
+  }
+}
@@ -22,25 +22,22 @@ import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Prec
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import org.apache.beam.sdk.values.KV;
-import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Sorts {@code <key, value>} pairs in memory. Based on the configured size of the memory buffer,
  * will reject additional pairs.
+ *
+ * <p>Records are copied into large pages rather than kept as individual objects, so the per record
+ * overhead is a few primitive array slots. The records are sorted by an 8 byte prefix of their key
+ * with a radix sort, and only records with equal prefixes are compared by their full keys.
  */
 class InMemorySorter implements Sorter {
 
-  private static final Logger LOG = LoggerFactory.getLogger(InMemorySorter.class);
-
-  private static final String ARCH_DATA_MODEL_PROPERTY = "sun.arch.data.model";
-
-  private static final long DEFAULT_BYTES_PER_WORD = 8;
-
   /** {@code Options} contains configuration of the sorter. */
   public static class Options implements Serializable {
     private long memoryMB = 100;
@@ -57,40 +54,58 @@ class InMemorySorter implements Sorter {
     }
   }
 
-  /** The comparator to use to sort the records by key. */
-  private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+  /** Size of the pages records are copied into. Larger records get a page of their own. */
+  private static final int PAGE_SIZE = 1 << 20;
+
+  /** Initial capacity of the per record arrays. */
+  private static final int INITIAL_CAPACITY = 1024;
 
-  /** How many bytes per word in the running JVM. Assumes 64 bit/8 bytes if unknown. */
-  private static final long NUM_BYTES_PER_WORD = getNumBytesPerWord();
+  /** Bytes in front of each record in its page, storing the lengths of its key and value. */
+  private static final int RECORD_HEADER_BYTES = 8;
 
   /**
-   * Estimate of memory overhead per KV record in bytes not including memory associated with keys
-   * and values.
+   * Estimate of memory overhead per record in bytes outside of its page.
    *
    * <ul>
-   *   <li>Object reference within {@link ArrayList} (1 word),
-   *   <li>A {@link KV} (2 words),
-   *   <li>Two byte arrays (2 words for array lengths),
-   *   <li>Per-object overhead (JVM-specific, guessing 2 words * 3 objects)
+   *   <li>The pointer to the record and the prefix of its key (2 longs), doubled as the arrays grow
+   *       by a factor of 2 and might be copied while growing,
+   *   <li>The sort order and the scratch space of the radix sort (2 ints).
    * </ul>
    */
-  private static final long RECORD_MEMORY_OVERHEAD_ESTIMATE = 11 * NUM_BYTES_PER_WORD;
+  private static final long RECORD_MEMORY_OVERHEAD_ESTIMATE = 2 * 2 * 8 + 2 * 4;
 
   /** Maximum size of the buffer in bytes. */
   private final long maxBufferSize;
 
-  /** Current number of stored bytes. Including estimated overhead bytes. */
+  /** Current number of stored bytes. Including estimated overhead bytes and unused page space. */
   private long numBytes;
 
   /** Whether sort has been called. */
   private boolean sortCalled;
 
-  /** The stored records to be sorted. */
-  private final ArrayList<KV<byte[], byte[]>> records = new ArrayList<>();
+  /** The pages holding the records, each record is its header, key and value. */
+  private final List<byte[]> pages = new ArrayList<>();
+
+  /** The page records are currently added to and the offset of its free space. */
+  private byte[] currentPage = new byte[0];
+
+  private int currentPageOffset;
+
+  /** The page index in the upper and the offset within the page in the lower half of each long. */
+  private long[] pointers = new long[INITIAL_CAPACITY];
+
+  /** The first 8 bytes of each key in big endian order, padded with zeros. */
+  private long[] prefixes = new long[INITIAL_CAPACITY];
+
+  private int numRecords;
 
   /** Private constructor. */
   private InMemorySorter(Options options) {
-    maxBufferSize = options.getMemoryMB() * 1024L * 1024L;
+    this(options.getMemoryMB() * 1024L * 1024L);
+  }
+
+  private InMemorySorter(long maxBufferSize) {
+    this.maxBufferSize = maxBufferSize;
   }
 
   /** Create a new sorter from provided options. */
@@ -98,6 +113,12 @@ class InMemorySorter implements Sorter {
     return new InMemorySorter(options);
   }
 
+  /** Create a new sorter with a memory buffer of the given size in bytes. */
+  static InMemorySorter create(long maxBufferSize) {
+    checkArgument(maxBufferSize > 0, "maxBufferSize must be greater than zero");
+    return new InMemorySorter(maxBufferSize);
+  }
+
   @Override
   public void add(KV<byte[], byte[]> record) {
     checkState(addIfRoom(record), "No space remaining for in memory sorting");
@@ -107,14 +128,45 @@ class InMemorySorter implements Sorter {
   public boolean addIfRoom(KV<byte[], byte[]> record) {
     checkState(!sortCalled, "Records can only be added before sort()");
 
-    long recordBytes = estimateRecordBytes(record);
-    if (roomInBuffer(numBytes + recordBytes, records.size() + 1L)) {
-      records.add(record);
-      numBytes += recordBytes;
-      return true;
-    } else {
+    byte[] key = record.getKey();
+    byte[] value = record.getValue();
+    long recordBytes = RECORD_HEADER_BYTES + (long) key.length + value.length;
+    boolean newPage = recordBytes > currentPage.length - currentPageOffset;
+    // Records never span pages, so the rest of the current page is lost when starting a new page.
+    long unusedPageBytes = newPage ? currentPage.length - currentPageOffset : 0;
+    if (recordBytes > Integer.MAX_VALUE
+        || numBytes + unusedPageBytes + recordBytes + RECORD_MEMORY_OVERHEAD_ESTIMATE
+            >= maxBufferSize) {
       return false;
     }
+
+    if (newPage) {
+      numBytes += unusedPageBytes;
+      // Pages are at most as large as the room left in the buffer, to not allocate memory for
+      // records which would be rejected anyway.
+      long pageBytes = Math.max(recordBytes, Math.min(PAGE_SIZE, maxBufferSize - numBytes));
+      currentPage = new byte[(int) pageBytes];
+      currentPageOffset = 0;
+      pages.add(currentPage);
+    }
+    numBytes += recordBytes + RECORD_MEMORY_OVERHEAD_ESTIMATE;
+
+    if (numRecords == pointers.length) {
+      pointers = Arrays.copyOf(pointers, numRecords * 2);
+      prefixes = Arrays.copyOf(prefixes, numRecords * 2);
+    }
+    int offset = currentPageOffset;
+    pointers[numRecords] = ((long) (pages.size() - 1) << 32) | offset;
+    prefixes[numRecords] = prefix(key);
+    numRecords++;
+
+    writeInt(currentPage, offset, key.length);
+    writeInt(currentPage, offset + 4, value.length);
+    System.arraycopy(key, 0, currentPage, offset + RECORD_HEADER_BYTES, key.length);
+    System.arraycopy(
+        value, 0, currentPage, offset + RECORD_HEADER_BYTES + key.length, value.length);
+    currentPageOffset += (int) recordBytes;
+    return true;
   }
 
   @Override
@@ -123,60 +175,176 @@ class InMemorySorter implements Sorter {
 
     sortCalled = true;
 
-    Comparator<KV<byte[], byte[]>> kvComparator =
-        (o1, o2) -> COMPARATOR.compare(o1.getKey(), o2.getKey());
-    records.sort(kvComparator);
-    return Collections.unmodifiableList(records);
+    int[] order = radixSortByPrefix();
+    sortEqualPrefixes(order);
+    return () -> new SortedIterator(order);
   }
 
-  /**
-   * Estimate the number of additional bytes required to store this record. Including the key, the
-   * value and any overhead for objects and references.
-   */
-  private long estimateRecordBytes(KV<byte[], byte[]> record) {
-    return RECORD_MEMORY_OVERHEAD_ESTIMATE + record.getKey().length + record.getValue().length;
+  /** Iterates over copies of the records in the given order. */
+  private class SortedIterator implements Iterator<KV<byte[], byte[]>> {
+    private final int[] order;
+    private int next;
+
+    private SortedIterator(int[] order) {
+      this.order = order;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < order.length;
+    }
+
+    @Override
+    public KV<byte[], byte[]> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      long pointer = pointers[order[next++]];
+      byte[] page = pages.get((int) (pointer >>> 32));
+      int offset = (int) pointer;
+      int keyStart = offset + RECORD_HEADER_BYTES;
+      int valueStart = keyStart + readInt(page, offset);
+      return KV.of(
+          Arrays.copyOfRange(page, keyStart, valueStart),
+          Arrays.copyOfRange(page, valueStart, valueStart + readInt(page, offset + 4)));
+    }
   }
 
   /**
-   * Check whether we have room to store the provided total number of bytes and total number of
-   * records.
+   * Returns the indices of the records sorted by the prefixes of their keys. Sorts by one byte of
+   * the prefix at a time, starting with the least significant, and skips bytes which are the same
+   * for all records.
    */
-  private boolean roomInBuffer(long numBytes, long numRecords) {
-    // Collections.sort may allocate up to n/2 extra object references.
-    // Also, ArrayList grows by a factor of 1.5x, so there might be up to n/2 null object
-    // references in the backing array.
-    // And finally, in Java 7, Collections.sort performs a defensive copy to an array in case the
-    // input list is a LinkedList.
-    // So assume we need an additional overhead of two words per record in the worst case
-    return (numBytes + (numRecords * NUM_BYTES_PER_WORD * 2)) < maxBufferSize;
+  private int[] radixSortByPrefix() {
+    int[] order = new int[numRecords];
+    for (int i = 0; i < numRecords; ++i) {
+      order[i] = i;
+    }
+    int[] scratch = new int[numRecords];
+    int[] counts = new int[257];
+    for (int shift = 0; shift < 64; shift += 8) {
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < numRecords; ++i) {
+        counts[((int) (prefixes[i] >>> shift) & 0xff) + 1]++;
+      }
+      boolean allEqual = false;
+      for (int b = 1; b < counts.length; ++b) {
+        allEqual |= counts[b] == numRecords;
+        counts[b] += counts[b - 1];
+      }
+      if (allEqual) {
+        continue;
+      }
+      for (int i = 0; i < numRecords; ++i) {
+        int record = order[i];
+        scratch[counts[(int) (prefixes[record] >>> shift) & 0xff]++] = record;
+      }
+      int[] sorted = scratch;
+      scratch = order;
+      order = sorted;
+    }
+    return order;
+  }
+
+  /** Sorts the runs of records with equal prefixes by their full keys. */
+  private void sortEqualPrefixes(int[] order) {
+    int[] scratch = new int[0];
+    int start = 0;
+    while (start < order.length) {
+      long prefix = prefixes[order[start]];
+      int end = start + 1;
+      while (end < order.length && prefixes[order[end]] == prefix) {
+        end++;
+      }
+      if (end - start > 1) {
+        if (scratch.length < end - start) {
+          scratch = new int[end - start];
+        }
+        mergeSortByKey(order, start, end, scratch);
+      }
+      start = end;
+    }
+  }
+
+  /** Sorts {@code order[from, to)} by the keys of the records, using {@code scratch} as buffer. */
+  private void mergeSortByKey(int[] order, int from, int to, int[] scratch) {
+    if (to - from <= 8) {
+      // insertion sort
+      for (int i = from + 1; i < to; ++i) {
+        int record = order[i];
+        int j = i;
+        while (j > from && compareKeys(order[j - 1], record) > 0) {
+          order[j] = order[j - 1];
+          j--;
+        }
+        order[j] = record;
+      }
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSortByKey(order, from, middle, scratch);
+    mergeSortByKey(order, middle, to, scratch);
+    if (compareKeys(order[middle - 1], order[middle]) <= 0) {
+      return;
+    }
+    System.arraycopy(order, from, scratch, 0, middle - from);
+    int i = 0;
+    int j = middle;
+    int k = from;
+    while (i < middle - from && j < to) {
+      order[k++] = compareKeys(scratch[i], order[j]) <= 0 ? scratch[i++] : order[j++];
+    }
+    System.arraycopy(scratch, i, order, k, middle - from - i);
+  }
+
+  /** Compares the keys of two records as unsigned bytes, like {@code UnsignedBytes}. */
+  private int compareKeys(int left, int right) {
+    long leftPointer = pointers[left];
+    long rightPointer = pointers[right];
+    byte[] leftPage = pages.get((int) (leftPointer >>> 32));
+    byte[] rightPage = pages.get((int) (rightPointer >>> 32));
+    int leftOffset = (int) leftPointer;
+    int rightOffset = (int) rightPointer;
+    int leftLength = readInt(leftPage, leftOffset);
+    int rightLength = readInt(rightPage, rightOffset);
+    leftOffset += RECORD_HEADER_BYTES;
+    rightOffset += RECORD_HEADER_BYTES;
+    int length = Math.min(leftLength, rightLength);
+    for (int i = 0; i < length; ++i) {
+      int result = (leftPage[leftOffset + i] & 0xff) - (rightPage[rightOffset + i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return leftLength - rightLength;
   }
 
   /**
-   * Returns the number of bytes in a word according to the JVM. Defaults to 8 for 64 bit if answer
-   * unknown.
+   * Returns the first 8 bytes of the key as unsigned big endian long, so that prefixes compare like
+   * the keys as far as they go.
    */
-  private static long getNumBytesPerWord() {
-    String bitsPerWordProperty = System.getProperty(ARCH_DATA_MODEL_PROPERTY);
-    if (bitsPerWordProperty == null) {
-      LOG.warn(
-          "System property {} not set; assuming {} bits per word",
-          ARCH_DATA_MODEL_PROPERTY,
-          DEFAULT_BYTES_PER_WORD);
-      return DEFAULT_BYTES_PER_WORD;
-    }
-
-    Long bitsPerWord;
-    try {
-      bitsPerWord = Long.parseLong(bitsPerWordProperty);
-    } catch (NumberFormatException e) {
-      LOG.warn(
-          "System property {} (\"{}\") could not be parsed; assuming {} bits per word",
-          ARCH_DATA_MODEL_PROPERTY,
-          bitsPerWordProperty,
-          DEFAULT_BYTES_PER_WORD);
-      return DEFAULT_BYTES_PER_WORD;
-    }
-
-    return bitsPerWord / 8;
+  private static long prefix(byte[] key) {
+    long prefix = 0;
+    for (int i = 0; i < 8; ++i) {
+      prefix <<= 8;
+      if (i < key.length) {
+        prefix |= key[i] & 0xff;
+      }
+    }
+    return prefix;
+  }
+
+  private static void writeInt(byte[] page, int offset, int value) {
+    page[offset] = (byte) (value >>> 24);
+    page[offset + 1] = (byte) (value >>> 16);
+    page[offset + 2] = (byte) (value >>> 8);
+    page[offset + 3] = (byte) value;
+  }
+
+  private static int readInt(byte[] page, int offset) {
+    return ((page[offset] & 0xff) << 24)
+        | ((page[offset + 1] & 0xff) << 16)
+        | ((page[offset + 2] & 0xff) << 8)
+        | (page[offset + 3] & 0xff);
   }
 }
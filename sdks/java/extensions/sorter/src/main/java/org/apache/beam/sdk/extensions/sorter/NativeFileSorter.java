@@ -31,15 +31,23 @@ import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.values.KV;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Throwables;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterators;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Lists;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,7 +61,7 @@ class NativeFileSorter {
   private static final Logger LOG = LoggerFactory.getLogger(NativeFileSorter.class);
 
   private static final int MAX_TEMP_FILES = 1024;
-  private static final long OBJECT_OVERHEAD = getObjectOverhead();
+  private static final int MERGE_FAN_IN = 64;
 
   private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
   private static final Comparator<KV<byte[], byte[]>> KV_COMPARATOR =
@@ -120,22 +128,28 @@ class NativeFileSorter {
     final List<File> files = new ArrayList<>();
     InputStream inputStream = new BufferedInputStream(new FileInputStream(dataFile));
     try {
-      final List<KV<byte[], byte[]>> tempList = new ArrayList<>();
-      @Nullable KV<byte[], byte[]> kv = KV.of(new byte[0], new byte[0]);
-      while (kv != null) {
-        long currentBlockSize = 0;
-        while (currentBlockSize < blockSize) {
-          kv = readKeyValue(inputStream);
-          if (kv == null) {
-            break;
+      // The in memory sorter packs the records of a block into a few large pages, which keeps the
+      // garbage collector out of sorting large blocks.
+      InMemorySorter block = InMemorySorter.create(blockSize);
+      long blockRecords = 0;
+      @Nullable KV<byte[], byte[]> kv;
+      while ((kv = readKeyValue(inputStream)) != null) {
+        if (!block.addIfRoom(kv)) {
+          if (blockRecords > 0) {
+            files.add(save(block.sort()));
+            block = InMemorySorter.create(blockSize);
+            blockRecords = 0;
+          }
+          if (!block.addIfRoom(kv)) {
+            // the record does not fit into a block on its own
+            files.add(save(Collections.singletonList(kv)));
+            continue;
           }
-
-          // as long as you have enough memory
-          tempList.add(kv);
-          currentBlockSize += estimateSizeOf(kv);
         }
-        files.add(sortAndSave(tempList));
-        tempList.clear();
+        blockRecords++;
+      }
+      if (blockRecords > 0) {
+        files.add(save(block.sort()));
       }
     } finally {
       inputStream.close();
@@ -143,17 +157,15 @@ class NativeFileSorter {
     return files;
   }
 
-  /** Sort a list and save it to a temporary file. */
-  private File sortAndSave(List<KV<byte[], byte[]>> tempList) throws IOException {
+  /** Save sorted records to a temporary file. */
+  private File save(Iterable<KV<byte[], byte[]>> sorted) throws IOException {
     final File tempFile = Files.createTempFile(tempDir, "sort", "seq").toFile();
     tempFile.deleteOnExit();
-    LOG.debug("Sort and save {}", tempFile);
-
-    tempList.sort(KV_COMPARATOR);
+    LOG.debug("Save {}", tempFile);
 
     OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
     try {
-      for (KV<byte[], byte[]> kv : tempList) {
+      for (KV<byte[], byte[]> kv : sorted) {
         CODER.encode(kv.getKey(), outputStream);
         CODER.encode(kv.getValue(), outputStream);
       }
@@ -164,10 +176,11 @@ class NativeFileSorter {
   }
 
   /** Merges a list of temporary flat files. */
-  private Iterable<KV<byte[], byte[]>> mergeSortedFiles(List<File> files) {
+  private Iterable<KV<byte[], byte[]>> mergeSortedFiles(List<File> files) throws IOException {
+    final List<File> mergedFiles = mergeToFanIn(files);
     return () -> {
       final List<Iterator<KV<byte[], byte[]>>> iterators = new ArrayList<>();
-      for (File file : files) {
+      for (File file : mergedFiles) {
         try {
           iterators.add(iterateFile(file));
         } catch (FileNotFoundException e) {
@@ -179,6 +192,68 @@ class NativeFileSorter {
     };
   }
 
+  /**
+   * Merges groups of the files in parallel until at most {@link #MERGE_FAN_IN} files are left, so
+   * that the final merge, which runs on the consuming thread, only has to compare between few
+   * files.
+   */
+  private List<File> mergeToFanIn(List<File> files) throws IOException {
+    List<File> merged = files;
+    while (merged.size() > MERGE_FAN_IN) {
+      int numGroups = (merged.size() + MERGE_FAN_IN - 1) / MERGE_FAN_IN;
+      List<List<File>> groups =
+          Lists.partition(merged, (merged.size() + numGroups - 1) / numGroups);
+      LOG.debug("Merge {} files into {} files", merged.size(), groups.size());
+
+      ExecutorService executor =
+          Executors.newFixedThreadPool(
+              Math.min(groups.size(), Runtime.getRuntime().availableProcessors()),
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("NativeFileSorter-merge-%d")
+                  .build());
+      try {
+        List<Future<File>> futures = new ArrayList<>();
+        for (List<File> group : groups) {
+          futures.add(executor.submit(() -> mergeToFile(group)));
+        }
+        List<File> next = new ArrayList<>();
+        for (Future<File> future : futures) {
+          next.add(getMerged(future));
+        }
+        merged = next;
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    return merged;
+  }
+
+  private static File getMerged(Future<File> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while merging sorted files", e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+      throw new IOException("Failed to merge sorted files", e.getCause());
+    }
+  }
+
+  /** Merges sorted files into a new sorted file and deletes them. */
+  private File mergeToFile(List<File> files) throws IOException {
+    final List<Iterator<KV<byte[], byte[]>>> iterators = new ArrayList<>();
+    for (File file : files) {
+      iterators.add(iterateFile(file));
+    }
+    File merged = save(() -> Iterators.mergeSorted(iterators, KV_COMPARATOR));
+    for (File file : files) {
+      Files.delete(file.toPath());
+    }
+    return merged;
+  }
+
   /** Creates an {@link Iterator} over the key-value pairs in a file. */
   private Iterator<KV<byte[], byte[]>> iterateFile(File file) throws FileNotFoundException {
     final InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
@@ -204,7 +279,12 @@ class NativeFileSorter {
 
   private @Nullable KV<byte[], byte[]> readKeyValueOrFail(InputStream inputStream) {
     try {
-      return readKeyValue(inputStream);
+      @Nullable KV<byte[], byte[]> kv = readKeyValue(inputStream);
+      if (kv == null) {
+        // release the file as soon as it is consumed rather than when it is garbage collected
+        inputStream.close();
+      }
+      return kv;
     } catch (EOFException e) {
       return null;
     } catch (IOException e) {
@@ -257,32 +337,4 @@ class NativeFileSorter {
     }
     return blockSize;
   }
-
-  private static long getObjectOverhead() {
-    // By default we assume 64 bit JVM
-    // (defensive approach since we will get larger estimations in case we are not sure)
-    boolean is64BitJvm = true;
-    // check the system property "sun.arch.data.model"
-    // not very safe, as it might not work for all JVM implementations
-    // nevertheless the worst thing that might happen is that the JVM is 32bit
-    // but we assume its 64bit, so we will be counting a few extra bytes per string object
-    // no harm done here since this is just an approximation.
-    String arch = System.getProperty("sun.arch.data.model");
-    if (arch != null && arch.contains("32")) {
-      // If exists and is 32 bit then we assume a 32bit JVM
-      is64BitJvm = false;
-    }
-    // The sizes below are a bit rough as we don't take into account
-    // advanced JVM options such as compressed oops
-    // however if our calculation is not accurate it'll be a bit over
-    // so there is no danger of an out of memory error because of this.
-    long objectHeader = is64BitJvm ? 16 : 8;
-    long arrayHeader = is64BitJvm ? 24 : 12;
-    long objectRef = is64BitJvm ? 8 : 4;
-    return objectHeader + (objectRef + arrayHeader) * 2;
-  }
-
-  private static long estimateSizeOf(KV<byte[], byte[]> kv) {
-    return kv.getKey().length + kv.getValue().length + OBJECT_OVERHEAD;
-  }
 }
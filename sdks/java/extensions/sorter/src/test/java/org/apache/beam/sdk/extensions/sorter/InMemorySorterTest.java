@@ -17,6 +17,8 @@
  */
 package org.apache.beam.sdk.extensions.sorter;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 
@@ -30,6 +32,10 @@ import org.junit.runners.JUnit4;
 
 /** Tests for {@link InMemorySorter}. */
 @RunWith(JUnit4.class)
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "unchecked"
+})
 public class InMemorySorterTest {
   @Rule public ExpectedException thrown = ExpectedException.none();
 
@@ -71,6 +77,36 @@ public class InMemorySorterTest {
     fail();
   }
 
+  @Test
+  public void testKeysWithEqualPrefixes() throws Exception {
+    InMemorySorter sorter = InMemorySorter.create(new InMemorySorter.Options());
+    KV<byte[], byte[]>[] kvs =
+        new KV[] {
+          KV.of(new byte[] {}, new byte[] {0}),
+          KV.of(new byte[] {1}, new byte[] {1}),
+          KV.of(new byte[] {1, 0}, new byte[] {2}),
+          KV.of(new byte[] {1, 0, 0, 0, 0, 0, 0, 0}, new byte[] {3}),
+          KV.of(new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 0}, new byte[] {4}),
+          KV.of(new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 1}, new byte[] {5}),
+          KV.of(new byte[] {1, 0, 0, 0, 0, 0, 0, 0, (byte) 0xff}, new byte[] {6}),
+          KV.of(new byte[] {(byte) 0x80}, new byte[] {7})
+        };
+    for (int i = kvs.length - 1; i >= 0; --i) {
+      sorter.add(kvs[i]);
+    }
+    assertThat(sorter.sort(), contains(kvs));
+  }
+
+  @Test
+  public void testRecordsLargerThanPage() throws Exception {
+    InMemorySorter sorter = InMemorySorter.create(new InMemorySorter.Options());
+    KV<byte[], byte[]> small = KV.of(new byte[] {2}, new byte[] {2});
+    KV<byte[], byte[]> large = KV.of(new byte[] {1}, new byte[3 * 1024 * 1024]);
+    sorter.add(small);
+    sorter.add(large);
+    assertThat(sorter.sort(), contains(large, small));
+  }
+
   /** Verify an exception is thrown when the in memory sorter runs out of space. */
   @Test
   public void testOutOfSpace() throws Exception {
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.extensions.sorter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.primitives.UnsignedBytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link NativeFileSorter}. */
+@RunWith(JUnit4.class)
+public class NativeFileSorterTest {
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  /** Sorts with little memory, which spills many runs that are merged in parallel. */
+  @Test
+  public void testManySortedRuns() throws Exception {
+    NativeFileSorter sorter = new NativeFileSorter(tmpFolder.getRoot().toPath(), 2000);
+    Random random = new Random(0L);
+    int numRecords = 100000;
+    for (int i = 0; i < numRecords; ++i) {
+      byte[] key = new byte[8];
+      byte[] value = new byte[8];
+      random.nextBytes(key);
+      random.nextBytes(value);
+      sorter.add(key, value);
+    }
+    // larger than the memory of the sorter on its own
+    sorter.add(new byte[5000], new byte[1]);
+
+    Iterable<KV<byte[], byte[]>> sorted = sorter.sort();
+    for (int iteration = 0; iteration < 2; ++iteration) {
+      byte[] prevKey = null;
+      int count = 0;
+      for (KV<byte[], byte[]> record : sorted) {
+        assertTrue(
+            prevKey == null
+                || UnsignedBytes.lexicographicalComparator().compare(prevKey, record.getKey()) < 0);
+        prevKey = record.getKey();
+        count++;
+      }
+      assertEquals(numRecords + 1, count);
+    }
+  }
+}
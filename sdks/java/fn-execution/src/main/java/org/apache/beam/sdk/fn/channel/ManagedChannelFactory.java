@@ -34,9 +34,14 @@ import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Immutabl
 
 /** A Factory which creates {@link ManagedChannel} instances. */
 public class ManagedChannelFactory {
+  private static final String UNIX_DOMAIN_SOCKET_PREFIX = "unix://";
+
   /**
    * Creates a {@link ManagedChannel} relying on the {@link ManagedChannelBuilder} to choose the
    * channel type.
+   *
+   * <p>Descriptors with a {@code unix://} URL are connected using an {@link
+   * EpollDomainSocketChannel} since the {@link ManagedChannelBuilder} is unable to resolve them.
    */
   public static ManagedChannelFactory createDefault() {
     return new ManagedChannelFactory(Type.DEFAULT, Collections.emptyList(), false);
@@ -72,7 +77,15 @@ public class ManagedChannelFactory {
         break;
 
       case DEFAULT:
-        channelBuilder = ManagedChannelBuilder.forTarget(apiServiceDescriptor.getUrl());
+        if (apiServiceDescriptor.getUrl().startsWith(UNIX_DOMAIN_SOCKET_PREFIX)) {
+          channelBuilder =
+              NettyChannelBuilder.forAddress(
+                      SocketAddressFactory.createFrom(apiServiceDescriptor.getUrl()))
+                  .channelType(EpollDomainSocketChannel.class)
+                  .eventLoopGroup(new EpollEventLoopGroup());
+        } else {
+          channelBuilder = ManagedChannelBuilder.forTarget(apiServiceDescriptor.getUrl());
+        }
         break;
 
       case IN_PROCESS:
@@ -27,6 +27,7 @@ import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.CancellableQueue;
+import org.apache.beam.sdk.metrics.Distribution;
 
 /**
  * Decodes {@link BeamFnApi.Elements} partitioning them using the provided {@link DataEndpoint}s and
@@ -154,8 +155,22 @@ public class BeamFnDataInboundObserver implements CloseableFnDataReceiver<BeamFn
       InputStream inputStream = data.getData().newInput();
       Coder<Object> coder = (Coder<Object>) endpoint.endpoint.getCoder();
       FnDataReceiver<Object> receiver = (FnDataReceiver<Object>) endpoint.endpoint.getReceiver();
-      while (inputStream.available() > 0) {
-        receiver.accept(coder.decode(inputStream));
+      Distribution elementByteSizes = endpoint.endpoint.getElementByteSizes();
+      if (elementByteSizes == null) {
+        while (inputStream.available() > 0) {
+          receiver.accept(coder.decode(inputStream));
+        }
+      } else {
+        // The remaining bytes are known up front for the input streams of byte strings, so the
+        // encoded size of each element is obtained without encoding it again.
+        int available = inputStream.available();
+        while (available > 0) {
+          Object element = coder.decode(inputStream);
+          int remaining = inputStream.available();
+          elementByteSizes.update(available - remaining);
+          available = remaining;
+          receiver.accept(element);
+        }
       }
       if (data.getIsLast()) {
         endpoint.isDone = true;
@@ -18,6 +18,7 @@
 package org.apache.beam.sdk.fn.data;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -28,11 +29,15 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
@@ -52,15 +57,28 @@ import org.slf4j.LoggerFactory;
  *
  * <p>The default time-based buffer threshold can be overridden by specifying the experiment {@code
  * data_buffer_time_limit_ms=<milliseconds>}
+ *
+ * <p>Specifying the experiment {@code data_buffer_adaptive} gives each registered endpoint its own
+ * size-based buffer threshold which adapts to how the endpoint's data is produced and sent. The
+ * threshold starts at the configured size limit and is doubled whenever sending the buffered data
+ * takes longer than it took to fill the endpoint's buffer, which indicates that the stream is
+ * applying backpressure and that larger messages should be used to reduce the per message overhead.
+ * The threshold is halved whenever filling the endpoint's buffer took longer than {@link
+ * #ADAPTIVE_TARGET_FILL_TIME_NANOS} to reduce latency for slowly producing endpoints. The threshold
+ * stays between {@link #MIN_ADAPTIVE_BUFFER_LIMIT_BYTES} and {@link
+ * #MAX_ADAPTIVE_BUFFER_LIMIT_BYTES}. Since all endpoints are sent in a single message, the buffers
+ * of all endpoints are also flushed once they hold more than {@link
+ * #MAX_ADAPTIVE_BUFFER_LIMIT_BYTES} in total.
  */
 @SuppressWarnings({
   "nullness" // TODO(https://github.com/apache/beam/issues/20497)
 })
-// The calling thread that invokes sendBufferedDataAndFinishOutboundStreams synchronizes on
-// flushLock effectively making the periodic flushing no longer read or mutate hasFlushedForBundle
-// and allowing the calling thread to read and mutate hasFlushedForBundle safely without needing to
-// create another memory barrier. Also note that flush is always invoked when synchronizing on
-// flushLock when there is a periodic flushing thread.
+// The calling thread that invokes sendBufferedDataAndFinishOutboundStreams holds flushLock
+// effectively making the periodic flushing no longer read or mutate hasFlushedForBundle and
+// allowing the calling thread to read and mutate hasFlushedForBundle safely without needing to
+// create another memory barrier. Also note that flush is always invoked when holding flushLock when
+// there is a periodic flushing thread. flushLock is a j.u.c lock rather than a monitor so that
+// bundles processed on virtual threads don't pin their carrier thread while waiting for it.
 @NotThreadSafe
 public class BeamFnDataOutboundAggregator {
 
@@ -68,8 +86,13 @@ public class BeamFnDataOutboundAggregator {
   public static final int DEFAULT_BUFFER_LIMIT_BYTES = 1_000_000;
   public static final String DATA_BUFFER_TIME_LIMIT_MS = "data_buffer_time_limit_ms=";
   public static final long DEFAULT_BUFFER_LIMIT_TIME_MS = -1L;
+  public static final String DATA_BUFFER_ADAPTIVE = "data_buffer_adaptive";
+  public static final int MIN_ADAPTIVE_BUFFER_LIMIT_BYTES = 64 * 1024;
+  public static final int MAX_ADAPTIVE_BUFFER_LIMIT_BYTES = 16 * 1024 * 1024;
+  public static final long ADAPTIVE_TARGET_FILL_TIME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
 
   private static final Logger LOG = LoggerFactory.getLogger(BeamFnDataOutboundAggregator.class);
+  private final boolean adaptiveSizeLimit;
   private final int sizeLimit;
   private final long timeLimit;
   private final Supplier<String> processBundleRequestIdSupplier;
@@ -78,7 +101,9 @@ public class BeamFnDataOutboundAggregator {
   private final StreamObserver<Elements> outboundObserver;
   @Nullable @VisibleForTesting ScheduledFuture<?> flushFuture;
   private long bytesWrittenSinceFlush;
-  private final Object flushLock;
+  private final LongSupplier nanoClock;
+  private final FlushScheduler flushScheduler;
+  private final Lock flushLock;
   private final boolean collectElementsIfNoFlushes;
   private boolean hasFlushedForBundle;
 
@@ -87,6 +112,24 @@ public class BeamFnDataOutboundAggregator {
       Supplier<String> processBundleRequestIdSupplier,
       StreamObserver<Elements> outboundObserver,
       boolean collectElementsIfNoFlushes) {
+    this(
+        options,
+        processBundleRequestIdSupplier,
+        outboundObserver,
+        collectElementsIfNoFlushes,
+        System::nanoTime,
+        BeamFnDataOutboundAggregator::scheduleFlushes);
+  }
+
+  @VisibleForTesting
+  BeamFnDataOutboundAggregator(
+      PipelineOptions options,
+      Supplier<String> processBundleRequestIdSupplier,
+      StreamObserver<Elements> outboundObserver,
+      boolean collectElementsIfNoFlushes,
+      LongSupplier nanoClock,
+      FlushScheduler flushScheduler) {
+    this.adaptiveSizeLimit = ExperimentalOptions.hasExperiment(options, DATA_BUFFER_ADAPTIVE);
     this.sizeLimit = getSizeLimit(options);
     this.timeLimit = getTimeLimit(options);
     this.collectElementsIfNoFlushes = collectElementsIfNoFlushes;
@@ -95,20 +138,31 @@ public class BeamFnDataOutboundAggregator {
     this.outboundObserver = outboundObserver;
     this.processBundleRequestIdSupplier = processBundleRequestIdSupplier;
     this.bytesWrittenSinceFlush = 0L;
-    this.flushLock = new Object();
+    this.nanoClock = nanoClock;
+    this.flushScheduler = flushScheduler;
+    this.flushLock = new ReentrantLock();
     this.hasFlushedForBundle = false;
   }
 
+  /** Schedules the periodic flushes of an aggregator. */
+  @VisibleForTesting
+  interface FlushScheduler {
+    ScheduledFuture<?> scheduleAtFixedRate(Runnable flush, long periodMillis);
+  }
+
+  private static ScheduledFuture<?> scheduleFlushes(Runnable flush, long periodMillis) {
+    return Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("DataBufferOutboundFlusher-thread")
+                .build())
+        .scheduleAtFixedRate(flush, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
   /** Starts the flushing daemon thread if data_buffer_time_limit_ms is set. */
   public void start() {
     if (timeLimit > 0 && this.flushFuture == null) {
-      this.flushFuture =
-          Executors.newSingleThreadScheduledExecutor(
-                  new ThreadFactoryBuilder()
-                      .setDaemon(true)
-                      .setNameFormat("DataBufferOutboundFlusher-thread")
-                      .build())
-              .scheduleAtFixedRate(this::flush, timeLimit, timeLimit, TimeUnit.MILLISECONDS);
+      this.flushFuture = flushScheduler.scheduleAtFixedRate(this::flush, timeLimit);
     }
   }
 
@@ -117,17 +171,49 @@ public class BeamFnDataOutboundAggregator {
    * endpoint's outbound data.
    */
   public <T> FnDataReceiver<T> registerOutputDataLocation(String pTransformId, Coder<T> coder) {
+    return registerOutputDataLocation(pTransformId, coder, null);
+  }
+
+  /**
+   * Register the outbound data logical endpoint, returns the FnDataReceiver for processing the
+   * endpoint's outbound data.
+   *
+   * <p>The size in bytes of the data sent for this endpoint with each flush is reported to the
+   * {@code bytesPerFlush} distribution if specified. The distribution is only updated on the thread
+   * calling the returned receiver and {@link #sendOrCollectBufferedDataAndFinishOutboundStreams},
+   * also for flushes of the periodic flushing thread, so it doesn't need to be thread safe.
+   */
+  public <T> FnDataReceiver<T> registerOutputDataLocation(
+      String pTransformId, Coder<T> coder, @Nullable Distribution bytesPerFlush) {
+    return registerOutputDataLocation(pTransformId, coder, bytesPerFlush, null);
+  }
+
+  /**
+   * Register the outbound data logical endpoint, returns the FnDataReceiver for processing the
+   * endpoint's outbound data.
+   *
+   * <p>In addition to the {@code bytesPerFlush} distribution, the encoded size of each element is
+   * reported to the {@code elementByteSizes} distribution if specified.
+   */
+  public <T> FnDataReceiver<T> registerOutputDataLocation(
+      String pTransformId,
+      Coder<T> coder,
+      @Nullable Distribution bytesPerFlush,
+      @Nullable Distribution elementByteSizes) {
     if (outputDataReceivers.containsKey(pTransformId)) {
       throw new IllegalStateException(
           "Outbound data endpoint already registered for " + pTransformId);
     }
-    Receiver<T> receiver = new Receiver<>(coder);
+    Receiver<T> receiver = new Receiver<>(coder, bytesPerFlush, elementByteSizes);
     if (timeLimit > 0) {
       outputDataReceivers.put(pTransformId, receiver);
       return data -> {
         checkFlushThreadException();
-        synchronized (flushLock) {
+        flushLock.lock();
+        try {
           receiver.accept(data);
+        } finally {
+          flushLock.unlock();
         }
       };
     }
@@ -146,13 +232,16 @@ public class BeamFnDataOutboundAggregator {
       throw new IllegalStateException(
           "Outbound timers endpoint already registered for " + timerKey);
     }
-    Receiver<T> receiver = new Receiver<>(coder);
+    Receiver<T> receiver = new Receiver<>(coder, null, null);
     if (timeLimit > 0) {
       outputTimersReceivers.put(timerKey, receiver);
       return timers -> {
         checkFlushThreadException();
-        synchronized (flushLock) {
+        flushLock.lock();
+        try {
           receiver.accept(timers);
+        } finally {
+          flushLock.unlock();
         }
       };
     }
@@ -164,13 +253,43 @@ public class BeamFnDataOutboundAggregator {
     if (bytesWrittenSinceFlush == 0) {
       return;
     }
+    List<Receiver<?>> flushedReceivers = adaptiveSizeLimit ? bufferingReceivers() : null;
+    long sendStartNanos = adaptiveSizeLimit ? nanoClock.getAsLong() : 0L;
     Elements.Builder elements = convertBufferForTransmission();
     if (elements.getDataCount() > 0 || elements.getTimersCount() > 0) {
       outboundObserver.onNext(elements.build());
+      if (adaptiveSizeLimit) {
+        long sendNanos = nanoClock.getAsLong() - sendStartNanos;
+        for (Receiver<?> receiver : flushedReceivers) {
+          receiver.adaptSizeLimit(sendStartNanos, sendNanos);
+        }
+      }
     }
     hasFlushedForBundle = true;
   }
 
+  private List<Receiver<?>> bufferingReceivers() {
+    List<Receiver<?>> receivers = new ArrayList<>();
+    for (Receiver<?> receiver : outputDataReceivers.values()) {
+      if (receiver.bufferedSize() > 0) {
+        receivers.add(receiver);
+      }
+    }
+    for (Receiver<?> receiver : outputTimersReceivers.values()) {
+      if (receiver.bufferedSize() > 0) {
+        receivers.add(receiver);
+      }
+    }
+    return receivers;
+  }
+
+  /** Reports the flushes recorded since the last report, on the calling bundle thread. */
+  private void reportFlushes() {
+    for (Receiver<?> receiver : outputDataReceivers.values()) {
+      receiver.reportFlushes();
+    }
+  }
+
   /**
    * Closes the streams for all registered outbound endpoints. Should be called at the end of each
    * bundle. Returns the buffered Elements if the BeamFnDataOutboundAggregator started with
@@ -183,11 +302,16 @@ public class BeamFnDataOutboundAggregator {
     }
     Elements.Builder bufferedElements;
     if (timeLimit > 0) {
-      synchronized (flushLock) {
+      flushLock.lock();
+      try {
         bufferedElements = convertBufferForTransmission();
+        reportFlushes();
+      } finally {
+        flushLock.unlock();
       }
     } else {
       bufferedElements = convertBufferForTransmission();
+      reportFlushes();
     }
     LOG.debug(
         "Closing streams for instruction {} and outbound data {} and timers {}.",
@@ -241,6 +365,7 @@ public class BeamFnDataOutboundAggregator {
         continue;
       }
       ByteString bytes = entry.getValue().toByteStringAndResetBuffer();
+      entry.getValue().recordFlush(bytes.size());
       bufferedElements
           .addDataBuilder()
           .setInstructionId(processBundleRequestIdSupplier.get())
@@ -265,8 +390,11 @@ public class BeamFnDataOutboundAggregator {
 
   void flush() {
     try {
-      synchronized (flushLock) {
+      flushLock.lock();
+      try {
         flushInternal();
+      } finally {
+        flushLock.unlock();
       }
     } catch (Throwable t) {
       throw new RuntimeException(t);
@@ -324,32 +452,82 @@ public class BeamFnDataOutboundAggregator {
   class Receiver<T> implements FnDataReceiver<T> {
     private final ByteStringOutputStream output;
     private final Coder<T> coder;
+    private final @Nullable Distribution bytesPerFlush;
+    private final @Nullable Distribution elementByteSizes;
     private long perBundleByteCount;
     private long perBundleElementCount;
-
-    public Receiver(Coder<T> coder) {
+    // The size-based buffer threshold of this endpoint if it adapts to the endpoint's data.
+    private int flushSizeLimit;
+    private long firstWriteSinceFlushNanos;
+    // The flushes which were not yet reported to bytesPerFlush. Flushes may happen on the periodic
+    // flushing thread, but the distribution is only updated on the bundle thread.
+    private long unreportedFlushBytes;
+    private long unreportedFlushCount;
+    private long unreportedFlushMin;
+    private long unreportedFlushMax;
+
+    public Receiver(
+        Coder<T> coder,
+        @Nullable Distribution bytesPerFlush,
+        @Nullable Distribution elementByteSizes) {
       this.output = new ByteStringOutputStream();
       this.coder = coder;
+      this.bytesPerFlush = bytesPerFlush;
+      this.elementByteSizes = elementByteSizes;
       this.perBundleByteCount = 0L;
       this.perBundleElementCount = 0L;
+      this.flushSizeLimit = sizeLimit;
     }
 
     @Override
     public void accept(T input) throws Exception {
+      reportFlushes();
+      if (adaptiveSizeLimit && output.size() == 0) {
+        firstWriteSinceFlushNanos = nanoClock.getAsLong();
+      }
       int size = output.size();
       coder.encode(input, output);
       if (output.size() - size == 0) {
         output.write(0);
       }
       final long delta = (long) output.size() - size;
+      if (elementByteSizes != null) {
+        elementByteSizes.update(delta);
+      }
       bytesWrittenSinceFlush += delta;
       perBundleByteCount += delta;
       perBundleElementCount += 1;
-      if (bytesWrittenSinceFlush > sizeLimit) {
+      if (exceedsSizeLimit()) {
         flushInternal();
       }
     }
 
+    private boolean exceedsSizeLimit() {
+      if (!adaptiveSizeLimit) {
+        return bytesWrittenSinceFlush > sizeLimit;
+      }
+      return output.size() > flushSizeLimit
+          || bytesWrittenSinceFlush > MAX_ADAPTIVE_BUFFER_LIMIT_BYTES;
+    }
+
+    /** Adapts the size limit after a flush which started sending at {@code sendStartNanos}. */
+    private void adaptSizeLimit(long sendStartNanos, long sendNanos) {
+      long fillNanos = sendStartNanos - firstWriteSinceFlushNanos;
+      if (sendNanos > fillNanos) {
+        // The outbound stream is applying backpressure, use larger messages to reduce the per
+        // message overhead.
+        flushSizeLimit = (int) Math.min(MAX_ADAPTIVE_BUFFER_LIMIT_BYTES, 2L * flushSizeLimit);
+      } else if (fillNanos > ADAPTIVE_TARGET_FILL_TIME_NANOS) {
+        // Data is produced slowly, use smaller messages to reduce latency.
+        flushSizeLimit = Math.max(MIN_ADAPTIVE_BUFFER_LIMIT_BYTES, flushSizeLimit / 2);
+      }
+    }
+
+    @VisibleForTesting
+    int getSizeLimit() {
+      return adaptiveSizeLimit ? flushSizeLimit : sizeLimit;
+    }
+
     public long getByteCount() {
       return perBundleByteCount;
     }
@@ -362,6 +540,30 @@ public class BeamFnDataOutboundAggregator {
       return output.size();
     }
 
+    void recordFlush(int bytes) {
+      if (bytesPerFlush == null) {
+        return;
+      }
+      unreportedFlushMin = unreportedFlushCount == 0 ? bytes : Math.min(unreportedFlushMin, bytes);
+      unreportedFlushMax = unreportedFlushCount == 0 ? bytes : Math.max(unreportedFlushMax, bytes);
+      unreportedFlushBytes += bytes;
+      unreportedFlushCount++;
+    }
+
+    private void reportFlushes() {
+      if (unreportedFlushCount == 0) {
+        return;
+      }
+      if (unreportedFlushCount == 1) {
+        bytesPerFlush.update(unreportedFlushBytes);
+      } else {
+        bytesPerFlush.update(
+            unreportedFlushBytes, unreportedFlushCount, unreportedFlushMin, unreportedFlushMax);
+      }
+      unreportedFlushBytes = 0L;
+      unreportedFlushCount = 0L;
+    }
+
     public ByteString toByteStringAndResetBuffer() {
       return this.output.toByteStringAndReset();
     }
@@ -19,12 +19,26 @@ package org.apache.beam.sdk.fn.data;
 
 import com.google.auto.value.AutoValue;
 import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 @AutoValue
 public abstract class DataEndpoint<T> {
   public static <T> DataEndpoint<T> create(
       String transformId, Coder<T> coder, FnDataReceiver<T> receiver) {
-    return new AutoValue_DataEndpoint<>(transformId, coder, receiver);
+    return new AutoValue_DataEndpoint<>(transformId, coder, receiver, null);
+  }
+
+  /**
+   * Creates an endpoint which reports the encoded size of each element to {@code
+   * elementByteSizes} before the element is passed to {@code receiver}.
+   */
+  public static <T> DataEndpoint<T> create(
+      String transformId,
+      Coder<T> coder,
+      FnDataReceiver<T> receiver,
+      @Nullable Distribution elementByteSizes) {
+    return new AutoValue_DataEndpoint<>(transformId, coder, receiver, elementByteSizes);
   }
 
   public abstract String getTransformId();
@@ -32,4 +46,6 @@ public abstract class DataEndpoint<T> {
   public abstract Coder<T> getCoder();
 
   public abstract FnDataReceiver<T> getReceiver();
+
+  public abstract @Nullable Distribution getElementByteSizes();
 }
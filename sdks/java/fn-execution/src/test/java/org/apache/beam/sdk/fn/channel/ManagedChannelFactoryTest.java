@@ -70,4 +70,18 @@ public class ManagedChannelFactoryTest {
     assertEquals(apiServiceDescriptor.getUrl().substring("unix://".length()), channel.authority());
     channel.shutdownNow();
   }
+
+  @Test
+  public void testDefaultDomainSocketChannel() throws Exception {
+    assumeTrue(SystemUtils.IS_OS_LINUX);
+    assertTrue(org.apache.beam.vendor.grpc.v1p48p1.io.netty.channel.epoll.Epoll.isAvailable());
+    Endpoints.ApiServiceDescriptor apiServiceDescriptor =
+        Endpoints.ApiServiceDescriptor.newBuilder()
+            .setUrl("unix://" + tmpFolder.newFile().getAbsolutePath())
+            .build();
+    ManagedChannel channel =
+        ManagedChannelFactory.createDefault().forDescriptor(apiServiceDescriptor);
+    assertEquals(apiServiceDescriptor.getUrl().substring("unix://".length()), channel.authority());
+    channel.shutdownNow();
+  }
 }
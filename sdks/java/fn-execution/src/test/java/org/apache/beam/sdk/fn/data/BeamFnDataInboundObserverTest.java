@@ -20,13 +20,16 @@ package org.apache.beam.sdk.fn.data;
 import static org.apache.beam.sdk.util.WindowedValue.valueInGlobalWindow;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
@@ -34,8 +37,11 @@ import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.fn.test.TestExecutors;
 import org.apache.beam.sdk.fn.test.TestExecutors.TestExecutorService;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.util.CoderUtils;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.junit.Rule;
 import org.junit.Test;
@@ -202,6 +208,42 @@ public class BeamFnDataInboundObserverTest {
     future.get();
   }
 
+  @Test
+  public void testElementByteSizesAreReportedFromDecodedBytes() throws Exception {
+    Collection<WindowedValue<String>> values = new ArrayList<>();
+    List<Long> elementSizes = new ArrayList<>();
+    Distribution elementByteSizes =
+        new Distribution() {
+          @Override
+          public void update(long value) {
+            elementSizes.add(value);
+          }
+
+          @Override
+          public void update(long sum, long count, long min, long max) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public MetricName getName() {
+            return MetricName.named("test", "elementByteSizes");
+          }
+        };
+    BeamFnDataInboundObserver observer =
+        BeamFnDataInboundObserver.forConsumers(
+            Arrays.asList(DataEndpoint.create(TRANSFORM_ID, CODER, values::add, elementByteSizes)),
+            Collections.emptyList());
+
+    assertFalse(observer.multiplexElements(dataWith("A", "BCDEF")));
+    assertTrue(observer.multiplexElements(lastData()));
+    assertThat(values, contains(valueInGlobalWindow("A"), valueInGlobalWindow("BCDEF")));
+    assertThat(
+        elementSizes,
+        contains(
+            (long) CoderUtils.encodeToByteArray(CODER, valueInGlobalWindow("A")).length,
+            (long) CoderUtils.encodeToByteArray(CODER, valueInGlobalWindow("BCDEF")).length));
+  }
+
   private BeamFnApi.Elements dataWith(String... values) throws Exception {
     ByteStringOutputStream output = new ByteStringOutputStream();
     for (String value : values) {
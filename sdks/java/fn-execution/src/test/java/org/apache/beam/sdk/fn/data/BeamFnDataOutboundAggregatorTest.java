@@ -17,10 +17,14 @@
  */
 package org.apache.beam.sdk.fn.data;
 
+import static org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator.ADAPTIVE_TARGET_FILL_TIME_NANOS;
+import static org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator.MIN_ADAPTIVE_BUFFER_LIMIT_BYTES;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.empty;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeFalse;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -28,15 +32,23 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.sdk.coders.ByteArrayCoder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.coders.LengthPrefixCoder;
+import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator.FlushScheduler;
 import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator.Receiver;
 import org.apache.beam.sdk.fn.test.TestStreams;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -114,6 +126,264 @@ public class BeamFnDataOutboundAggregatorTest {
     assertEquals(endMessage(), values.get(2));
   }
 
+  @Test
+  public void testAdaptiveBufferLimitGrowsUnderBackpressure() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_size_limit=100000", "data_buffer_adaptive"));
+    AtomicLong nanoClock = new AtomicLong();
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            // Simulate a slow consumer.
+            TestStreams.<Elements>withOnNext(
+                    (Elements elements) -> nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50)))
+                .build(),
+            false,
+            nanoClock::get,
+            new ManualFlushScheduler());
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+    dataReceiver.accept(new byte[100_001]);
+    assertEquals(200_000, onlyReceiver(aggregator).getSizeLimit());
+    dataReceiver.accept(new byte[200_001]);
+    assertEquals(400_000, onlyReceiver(aggregator).getSizeLimit());
+  }
+
+  @Test
+  public void testAdaptiveBufferLimitIsPerEndpoint() throws Exception {
+    assumeFalse(endpoint.isTimer());
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_size_limit=100000", "data_buffer_adaptive"));
+    AtomicLong nanoClock = new AtomicLong();
+    List<Elements> values = new ArrayList<>();
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(
+                    (Elements elements) -> {
+                      values.add(elements);
+                      nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+                    })
+                .build(),
+            false,
+            nanoClock::get,
+            new ManualFlushScheduler());
+    LogicalEndpoint quietEndpoint =
+        LogicalEndpoint.data(endpoint.getInstructionId(), "quiet:" + endpoint.getTransformId());
+    FnDataReceiver<byte[]> chattyReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    FnDataReceiver<byte[]> quietReceiver =
+        registerOutputLocation(aggregator, quietEndpoint, CODER);
+    aggregator.start();
+
+    // Only the endpoint whose buffer was sent adapts its limit.
+    chattyReceiver.accept(new byte[100_001]);
+    assertEquals(1, values.size());
+    assertEquals(
+        200_000, aggregator.outputDataReceivers.get(endpoint.getTransformId()).getSizeLimit());
+    assertEquals(
+        100_000, aggregator.outputDataReceivers.get(quietEndpoint.getTransformId()).getSizeLimit());
+
+    // Each endpoint is only flushed once its own buffer exceeds its own limit.
+    quietReceiver.accept(new byte[60_000]);
+    chattyReceiver.accept(new byte[60_000]);
+    assertEquals(1, values.size());
+  }
+
+  @Test
+  public void testAdaptiveBufferLimitBoundsTotalBufferedBytes() throws Exception {
+    assumeFalse(endpoint.isTimer());
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_size_limit=10000000", "data_buffer_adaptive"));
+    List<Elements> values = new ArrayList<>();
+    AtomicLong nanoClock = new AtomicLong();
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(values::add).build(),
+            false,
+            nanoClock::get,
+            new ManualFlushScheduler());
+    LogicalEndpoint otherEndpoint =
+        LogicalEndpoint.data(endpoint.getInstructionId(), "other:" + endpoint.getTransformId());
+    FnDataReceiver<byte[]> receiver = registerOutputLocation(aggregator, endpoint, CODER);
+    FnDataReceiver<byte[]> otherReceiver =
+        registerOutputLocation(aggregator, otherEndpoint, CODER);
+    aggregator.start();
+
+    // Neither endpoint exceeds its own limit but together they exceed the size of a message.
+    receiver.accept(new byte[9_000_000]);
+    assertEquals(0, values.size());
+    otherReceiver.accept(new byte[9_000_000]);
+    assertEquals(1, values.size());
+    assertEquals(2, values.get(0).getDataCount());
+  }
+
+  @Test
+  public void testAdaptiveBufferLimitShrinksForSlowProducers() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_size_limit=100000", "data_buffer_adaptive"));
+    List<Elements> values = new ArrayList<>();
+    AtomicLong nanoClock = new AtomicLong();
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext(values::add).build(),
+            false,
+            nanoClock::get,
+            new ManualFlushScheduler());
+    FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
+    aggregator.start();
+    dataReceiver.accept(new byte[10]);
+    nanoClock.addAndGet(ADAPTIVE_TARGET_FILL_TIME_NANOS + 1);
+    dataReceiver.accept(new byte[100_000]);
+    assertEquals(1, values.size());
+    assertEquals(MIN_ADAPTIVE_BUFFER_LIMIT_BYTES, onlyReceiver(aggregator).getSizeLimit());
+  }
+
+  @Test
+  public void testBytesPerFlushDistribution() throws Exception {
+    assumeFalse(endpoint.isTimer());
+    List<Long> flushedBytes = new ArrayList<>();
+    Distribution bytesPerFlush =
+        new Distribution() {
+          @Override
+          public void update(long value) {
+            flushedBytes.add(value);
+          }
+
+          @Override
+          public void update(long sum, long count, long min, long max) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public MetricName getName() {
+            return MetricName.named("test", "bytesPerFlush");
+          }
+        };
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_size_limit=100"));
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext((Elements elements) -> {}).build(),
+            false);
+    FnDataReceiver<byte[]> dataReceiver =
+        aggregator.registerOutputDataLocation(endpoint.getTransformId(), CODER, bytesPerFlush);
+    aggregator.start();
+    // Each element is prefixed by its length.
+    dataReceiver.accept(new byte[150]);
+    dataReceiver.accept(new byte[10]);
+    aggregator.sendOrCollectBufferedDataAndFinishOutboundStreams();
+    assertEquals(Arrays.asList(152L, 11L), flushedBytes);
+  }
+
+  @Test
+  public void testBytesPerFlushDistributionIsUpdatedOnBundleThread() throws Exception {
+    assumeFalse(endpoint.isTimer());
+    Thread bundleThread = Thread.currentThread();
+    List<Long> flushedBytes = new ArrayList<>();
+    Distribution bytesPerFlush =
+        new Distribution() {
+          @Override
+          public void update(long value) {
+            assertEquals(bundleThread, Thread.currentThread());
+            flushedBytes.add(value);
+          }
+
+          @Override
+          public void update(long sum, long count, long min, long max) {
+            assertEquals(bundleThread, Thread.currentThread());
+            flushedBytes.add(sum);
+          }
+
+          @Override
+          public MetricName getName() {
+            return MetricName.named("test", "bytesPerFlush");
+          }
+        };
+    PipelineOptions options = PipelineOptionsFactory.create();
+    options
+        .as(ExperimentalOptions.class)
+        .setExperiments(Arrays.asList("data_buffer_time_limit_ms=1"));
+    ManualFlushScheduler flushScheduler = new ManualFlushScheduler();
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            options,
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext((Elements elements) -> {}).build(),
+            false,
+            System::nanoTime,
+            flushScheduler);
+    FnDataReceiver<byte[]> dataReceiver =
+        aggregator.registerOutputDataLocation(endpoint.getTransformId(), CODER, bytesPerFlush);
+    aggregator.start();
+    dataReceiver.accept(new byte[10]);
+    Thread flushThread = new Thread(flushScheduler::flush);
+    flushThread.start();
+    flushThread.join();
+    assertThat(flushedBytes, empty());
+
+    // The flush of the time based flushing thread is reported by the next element.
+    dataReceiver.accept(new byte[20]);
+    assertEquals(Arrays.asList(11L), flushedBytes);
+    aggregator.sendOrCollectBufferedDataAndFinishOutboundStreams();
+    assertEquals(Arrays.asList(11L, 21L), flushedBytes);
+  }
+
+  @Test
+  public void testElementByteSizeDistribution() throws Exception {
+    assumeFalse(endpoint.isTimer());
+    List<Long> elementSizes = new ArrayList<>();
+    Distribution elementByteSizes =
+        new Distribution() {
+          @Override
+          public void update(long value) {
+            elementSizes.add(value);
+          }
+
+          @Override
+          public void update(long sum, long count, long min, long max) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public MetricName getName() {
+            return MetricName.named("test", "elementByteSizes");
+          }
+        };
+    BeamFnDataOutboundAggregator aggregator =
+        new BeamFnDataOutboundAggregator(
+            PipelineOptionsFactory.create(),
+            endpoint::getInstructionId,
+            TestStreams.<Elements>withOnNext((Elements elements) -> {}).build(),
+            false);
+    FnDataReceiver<byte[]> dataReceiver =
+        aggregator.registerOutputDataLocation(
+            endpoint.getTransformId(), CODER, null, elementByteSizes);
+    aggregator.start();
+    // Each element is prefixed by its length.
+    dataReceiver.accept(new byte[150]);
+    dataReceiver.accept(new byte[10]);
+    aggregator.sendOrCollectBufferedDataAndFinishOutboundStreams();
+    assertEquals(Arrays.asList(152L, 11L), elementSizes);
+  }
+
   @Test
   public void testConfiguredBufferLimit() throws Exception {
     List<BeamFnApi.Elements> values = new ArrayList<>();
@@ -212,6 +482,7 @@ public class BeamFnDataOutboundAggregatorTest {
     options
         .as(ExperimentalOptions.class)
         .setExperiments(Arrays.asList("data_buffer_time_limit_ms=1"));
+    ManualFlushScheduler flushScheduler = new ManualFlushScheduler();
     BeamFnDataOutboundAggregator aggregator =
         new BeamFnDataOutboundAggregator(
             options,
@@ -222,16 +493,16 @@ public class BeamFnDataOutboundAggregatorTest {
                           throw new RuntimeException("");
                         })
                 .build(),
-            false);
+            false,
+            System::nanoTime,
+            flushScheduler);
 
     // Test that it emits when time passed the time limit
     FnDataReceiver<byte[]> dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
     aggregator.start();
     dataReceiver.accept(new byte[1]);
-    // wait the flush thread to flush the buffer
-    while (!aggregator.flushFuture.isDone()) {
-      Thread.sleep(1);
-    }
+    flushScheduler.flush();
+    assertTrue(aggregator.flushFuture.isDone());
     try {
       // Test that the exception caught in the flush thread is propagated to
       // the main thread when processing the next element
@@ -241,6 +512,7 @@ public class BeamFnDataOutboundAggregatorTest {
       // expected
     }
 
+    flushScheduler = new ManualFlushScheduler();
     aggregator =
         new BeamFnDataOutboundAggregator(
             options,
@@ -251,14 +523,14 @@ public class BeamFnDataOutboundAggregatorTest {
                           throw new RuntimeException("");
                         })
                 .build(),
-            false);
+            false,
+            System::nanoTime,
+            flushScheduler);
     dataReceiver = registerOutputLocation(aggregator, endpoint, CODER);
     aggregator.start();
     dataReceiver.accept(new byte[1]);
-    // wait the flush thread to flush the buffer
-    while (!aggregator.flushFuture.isDone()) {
-      Thread.sleep(1);
-    }
+    flushScheduler.flush();
+    assertTrue(aggregator.flushFuture.isDone());
     try {
       // Test that the exception caught in the flush thread is propagated to
       // the main thread when closing
@@ -380,6 +652,50 @@ public class BeamFnDataOutboundAggregatorTest {
     return builder.build();
   }
 
+  private Receiver<?> onlyReceiver(BeamFnDataOutboundAggregator aggregator) {
+    if (endpoint.isTimer()) {
+      return Iterables.getOnlyElement(aggregator.outputTimersReceivers.values());
+    } else {
+      return Iterables.getOnlyElement(aggregator.outputDataReceivers.values());
+    }
+  }
+
+  /** Runs the periodic flush of an aggregator only when {@link #flush} is called. */
+  private static class ManualFlushScheduler implements FlushScheduler {
+    private ManualFlushFuture future;
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable flush, long periodMillis) {
+      future = new ManualFlushFuture(flush);
+      return future;
+    }
+
+    void flush() {
+      future.runOnce();
+    }
+  }
+
+  /** A periodic task which is done once it failed, like those of a scheduled executor. */
+  private static class ManualFlushFuture extends FutureTask<Void> implements ScheduledFuture<Void> {
+    ManualFlushFuture(Runnable flush) {
+      super(flush, null);
+    }
+
+    void runOnce() {
+      runAndReset();
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return 0;
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+  }
+
   // Convenience method for unit tests.
   <T> FnDataReceiver<T> registerOutputLocation(
       BeamFnDataOutboundAggregator aggregator, LogicalEndpoint endpoint, Coder<T> coder) {
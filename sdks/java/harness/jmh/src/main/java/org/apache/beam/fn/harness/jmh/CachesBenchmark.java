@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.jmh;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.apache.beam.fn.harness.Cache;
+import org.apache.beam.fn.harness.Caches;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks for weighing objects and inserting them into the process wide cache. */
+public class CachesBenchmark {
+  private static final int NUM_KEYS = 1_000;
+
+  @State(Scope.Benchmark)
+  public static class CachedValues {
+    final Cache<Object, Object> cache = Caches.fromOptions(PipelineOptionsFactory.create());
+
+    /** The number of elements within each cached page of values. */
+    @Param({"10", "1000"})
+    public int elementsPerPage;
+
+    /** The size of each element in bytes. */
+    @Param({"16", "1024"})
+    public int elementSize;
+
+    List<List<Object>> pages;
+    List<ByteString> keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      // Use a stable seed to ensure consistency across benchmark runs
+      Random random = new Random(-2134890234);
+      pages = new ArrayList<>(NUM_KEYS);
+      keys = new ArrayList<>(NUM_KEYS);
+      for (int i = 0; i < NUM_KEYS; ++i) {
+        List<Object> page = new ArrayList<>(elementsPerPage);
+        for (int j = 0; j < elementsPerPage; ++j) {
+          byte[] bytes = new byte[elementSize];
+          random.nextBytes(bytes);
+          // Alternate between types commonly stored in state.
+          page.add(j % 2 == 0 ? bytes : new String(bytes, StandardCharsets.ISO_8859_1));
+        }
+        pages.add(page);
+        keys.add(ByteString.copyFromUtf8("key" + i));
+      }
+    }
+  }
+
+  @Benchmark
+  public void weighDeep(CachedValues values, Blackhole blackhole) {
+    for (int i = 0; i < NUM_KEYS; ++i) {
+      blackhole.consume(Caches.weigh(values.pages.get(i)));
+    }
+  }
+
+  @Benchmark
+  public void weighSampled(CachedValues values, Blackhole blackhole) {
+    for (int i = 0; i < NUM_KEYS; ++i) {
+      blackhole.consume(Caches.weighSampled(values.pages.get(i)));
+    }
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void putAndGet(CachedValues values, Blackhole blackhole) {
+    Cache<Object, Object> cache = Caches.subCache(values.cache, Thread.currentThread().getName());
+    for (int i = 0; i < NUM_KEYS; ++i) {
+      cache.put(values.keys.get(i), values.pages.get(i));
+    }
+    for (int i = 0; i < NUM_KEYS; ++i) {
+      blackhole.consume(cache.peek(values.keys.get(i)));
+    }
+  }
+}
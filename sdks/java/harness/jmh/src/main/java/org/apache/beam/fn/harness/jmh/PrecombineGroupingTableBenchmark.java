@@ -24,10 +24,12 @@ import java.util.Random;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.fn.harness.Caches.ClearableCache;
-import org.apache.beam.fn.harness.PrecombineGroupingTable;
+import org.apache.beam.fn.harness.GroupingTable;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions.GroupingTableImplementation;
 import org.apache.beam.sdk.transforms.Combine;
 import org.apache.beam.sdk.transforms.Sum;
 import org.apache.beam.sdk.util.WindowedValue;
@@ -48,9 +50,9 @@ public class PrecombineGroupingTableBenchmark {
   @State(Scope.Benchmark)
   public static class SumIntegerBinaryCombine {
     final Combine.BinaryCombineIntegerFn sumInts = Sum.ofIntegers();
-    final PipelineOptions options = PipelineOptionsFactory.create();
+    PipelineOptions options;
 
-    final Cache<Object, Object> cache = Caches.fromOptions(options);
+    Cache<Object, Object> cache;
 
     List<WindowedValue<KV<String, Integer>>> elements;
 
@@ -60,8 +62,17 @@ public class PrecombineGroupingTableBenchmark {
     @Param({"uniform", "normal", "hotKey", "uniqueKeys"})
     public String distribution;
 
+    @Param({"OBJECT_KEY", "ENCODED_KEY"})
+    public String groupingTableImplementation;
+
     @Setup(Level.Trial)
     public void setUp() {
+      this.options = PipelineOptionsFactory.create();
+      this.options
+          .as(SdkHarnessOptions.class)
+          .setGroupingTableImplementation(
+              GroupingTableImplementation.valueOf(groupingTableImplementation));
+      this.cache = Caches.fromOptions(options);
       this.elements = generateTestData(distribution);
     }
   }
@@ -112,8 +123,8 @@ public class PrecombineGroupingTableBenchmark {
       throws Exception {
     ClearableCache<Object, Object> cache =
         new ClearableCache<>(Caches.subCache(table.cache, Thread.currentThread().getName()));
-    PrecombineGroupingTable<String, Integer, int[]> groupingTable =
-        PrecombineGroupingTable.combiningAndSampling(
+    GroupingTable<String, Integer, int[]> groupingTable =
+        GroupingTable.fromOptions(
             table.options,
             cache,
             table.sumInts,
@@ -124,6 +124,10 @@ public class ProcessBundleBenchmark {
     final Future<?> sdkHarnessExecutorFuture;
 
     public SdkHarness() {
+      this(PipelineOptionsFactory.create());
+    }
+
+    SdkHarness(PipelineOptions pipelineOptions) {
       Set<String> runnerCapabilities = new HashSet<>();
       if (Boolean.parseBoolean(elementsEmbedding)) {
         runnerCapabilities.add(
@@ -165,7 +169,6 @@ public class ProcessBundleBenchmark {
                     clientPool.getSink(), GrpcContextHeaderAccessorProvider.getHeaderAccessor()),
                 serverFactory);
 
-        PipelineOptions pipelineOptions = PipelineOptionsFactory.create();
         // Create the SDK harness, and wait until it connects
         sdkHarnessExecutor = Executors.newSingleThreadExecutor(threadFactory);
         sdkHarnessExecutorFuture =
@@ -320,6 +323,136 @@ public class ProcessBundleBenchmark {
     assertEquals(3_000, outputValuesCount.getAndSet(0));
   }
 
+  /**
+   * A transform which blocks on a simulated call to an external service, such as an RPC enrichment,
+   * for each element. Many bundles are processed concurrently to compare processing bundles on
+   * platform threads against virtual threads.
+   */
+  @State(Scope.Benchmark)
+  public static class IoBoundTransform extends SdkHarness {
+    private static final long RPC_LATENCY_MILLIS = 5;
+
+    final BundleProcessor processor;
+    final ExecutableProcessBundleDescriptor descriptor;
+    final ExecutorService runnerExecutor;
+
+    /**
+     * The number of bundles processed concurrently within each benchmark invocation. The number of
+     * bundles processed per second is the score multiplied by this value.
+     */
+    @Param({"16", "256", "1024"})
+    public int concurrentBundles;
+
+    private static class SimulateRpc extends DoFn<byte[], String> {
+      @ProcessElement
+      public void process(ProcessContext ctxt) throws InterruptedException {
+        Thread.sleep(RPC_LATENCY_MILLIS);
+        ctxt.output("enriched");
+      }
+    }
+
+    public IoBoundTransform() {
+      this(PipelineOptionsFactory.create());
+    }
+
+    IoBoundTransform(PipelineOptions pipelineOptions) {
+      super(pipelineOptions);
+      try {
+        Pipeline p = Pipeline.create();
+        p.apply("impulse", Impulse.create())
+            .apply("rpc", ParDo.of(new SimulateRpc()))
+            .apply("addKeys", WithKeys.of("foo"))
+            .setCoder(KvCoder.of(StringUtf8Coder.of(), StringUtf8Coder.of()))
+            // Force the output to be materialized
+            .apply("gbk", GroupByKey.create());
+
+        RunnerApi.Pipeline pipelineProto = PipelineTranslation.toProto(p);
+        // The fuser will create one stage (SDK responsible portion in []):
+        // (Impulse + [rpc + addKeys] + GBK write)
+        FusedPipeline fused = GreedyPipelineFuser.fuse(pipelineProto);
+        checkState(fused.getFusedStages().size() == 1, "Expected exactly one fused stage");
+        ExecutableStage stage = fused.getFusedStages().iterator().next();
+
+        this.descriptor =
+            ProcessBundleDescriptors.fromExecutableStage(
+                "my_stage", stage, dataServer.getApiServiceDescriptor());
+
+        this.processor =
+            controlClient.getProcessor(
+                descriptor.getProcessBundleDescriptor(), descriptor.getRemoteInputDestinations());
+        this.runnerExecutor =
+            Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("ProcessBundlesBenchmark-runner-%d")
+                    .build());
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @TearDown
+    public void tearDownRunnerExecutor() {
+      runnerExecutor.shutdownNow();
+    }
+  }
+
+  /** An {@link IoBoundTransform} whose bundles are processed on virtual threads by the harness. */
+  @State(Scope.Benchmark)
+  public static class VirtualThreadIoBoundTransform extends IoBoundTransform {
+    public VirtualThreadIoBoundTransform() {
+      super(PipelineOptionsFactory.fromArgs("--experiments=use_virtual_threads").create());
+    }
+  }
+
+  @Benchmark
+  public void testIoBoundBundles(IoBoundTransform ioBoundTransform) throws Exception {
+    testConcurrentBundles(ioBoundTransform);
+  }
+
+  /** Requires JDK 21+, otherwise the harness processes the bundles on platform threads. */
+  @Benchmark
+  public void testIoBoundBundlesOnVirtualThreads(VirtualThreadIoBoundTransform ioBoundTransform)
+      throws Exception {
+    testConcurrentBundles(ioBoundTransform);
+  }
+
+  private static void testConcurrentBundles(IoBoundTransform ioBoundTransform) throws Exception {
+    List<Future<?>> bundles = new ArrayList<>(ioBoundTransform.concurrentBundles);
+    for (int i = 0; i < ioBoundTransform.concurrentBundles; ++i) {
+      bundles.add(
+          ioBoundTransform.runnerExecutor.submit(
+              () -> {
+                Map<String, ? super Coder<WindowedValue<?>>> remoteOutputCoders =
+                    ioBoundTransform.descriptor.getRemoteOutputCoders();
+                Map<String, RemoteOutputReceiver<?>> outputReceivers = new HashMap<>();
+                AtomicInteger outputValuesCount = new AtomicInteger();
+                for (Entry<String, ? super Coder<WindowedValue<?>>> remoteOutputCoder :
+                    remoteOutputCoders.entrySet()) {
+                  outputReceivers.put(
+                      remoteOutputCoder.getKey(),
+                      RemoteOutputReceiver.of(
+                          (Coder) remoteOutputCoder.getValue(),
+                          (FnDataReceiver<? super WindowedValue<?>>)
+                              (WindowedValue<?> value) -> outputValuesCount.incrementAndGet()));
+                }
+                try (RemoteBundle bundle =
+                    ioBoundTransform.processor.newBundle(
+                        outputReceivers, BundleProgressHandler.ignored())) {
+                  for (int j = 0; j < 10; j++) {
+                    Iterables.getOnlyElement(bundle.getInputReceivers().values())
+                        .accept(valueInGlobalWindow(new byte[0]));
+                  }
+                }
+                assertEquals(10, outputValuesCount.get());
+                return null;
+              }));
+    }
+    for (Future<?> bundle : bundles) {
+      bundle.get();
+    }
+  }
+
   @State(Scope.Benchmark)
   public static class StatefulTransform extends SdkHarness {
     final BundleProcessor processor;
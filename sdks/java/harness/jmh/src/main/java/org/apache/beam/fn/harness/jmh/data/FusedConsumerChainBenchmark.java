@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.jmh.data;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkState;
+
+import org.apache.beam.fn.harness.control.BundleProgressReporter;
+import org.apache.beam.fn.harness.control.ExecutionStateSampler;
+import org.apache.beam.fn.harness.data.PCollectionConsumerRegistry;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleDescriptor;
+import org.apache.beam.model.pipeline.v1.RunnerApi.PCollection;
+import org.apache.beam.runners.core.construction.SdkComponents;
+import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for dispatching elements through a linear chain of ten fused transforms registered
+ * with a {@link PCollectionConsumerRegistry}.
+ */
+public class FusedConsumerChainBenchmark {
+  private static final int NUM_STEPS = 10;
+  private static final int NUM_ELEMENTS = 1_000;
+
+  @State(Scope.Thread)
+  public static class Chain {
+    /** Whether receiver classes are generated per PCollection. */
+    @Param({"true", "false"})
+    public String fuseConsumers = "false";
+
+    ExecutionStateSampler sampler;
+    FnDataReceiver<WindowedValue<Long>> head;
+    Sink sink;
+    WindowedValue<Long>[] elements;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void setUp() throws Exception {
+      SdkComponents sdkComponents = SdkComponents.create();
+      String coderId = sdkComponents.registerCoder(VarLongCoder.of());
+      ProcessBundleDescriptor.Builder descriptor =
+          ProcessBundleDescriptor.newBuilder()
+              .setId("fusedChain-" + fuseConsumers)
+              .putAllCoders(sdkComponents.toComponents().getCodersMap());
+      for (int i = 0; i <= NUM_STEPS; ++i) {
+        descriptor.putPcollections(
+            pCollectionId(i), PCollection.newBuilder().setCoderId(coderId).build());
+      }
+
+      sampler =
+          new ExecutionStateSampler(PipelineOptionsFactory.create(), System::currentTimeMillis);
+      PCollectionConsumerRegistry consumers =
+          new PCollectionConsumerRegistry(
+              sampler.create(),
+              new ShortIdMap(),
+              new BundleProgressReporter.InMemory(),
+              descriptor.build(),
+              null,
+              Boolean.parseBoolean(fuseConsumers));
+
+      // Register the consumers from the end of the chain since each step needs the multiplexing
+      // consumer of its output PCollection.
+      sink = new Sink();
+      consumers.register(pCollectionId(NUM_STEPS), "sink", "sinkName", sink);
+      for (int i = NUM_STEPS - 1; i >= 0; --i) {
+        FnDataReceiver next = consumers.getMultiplexingConsumer(pCollectionId(i + 1));
+        FnDataReceiver<WindowedValue<Long>> step;
+        // Alternate between the kinds of steps found in a fused stage.
+        switch (i % 3) {
+          case 0:
+            step = new MapStep(next);
+            break;
+          case 1:
+            step = new FilterStep(next);
+            break;
+          default:
+            step = new ParDoStep(next);
+            break;
+        }
+        consumers.register(pCollectionId(i), "step" + i, "step" + i + "Name", step);
+      }
+      head = (FnDataReceiver) consumers.getMultiplexingConsumer(pCollectionId(0));
+
+      elements = new WindowedValue[NUM_ELEMENTS];
+      for (int i = 0; i < NUM_ELEMENTS; ++i) {
+        elements[i] = WindowedValue.valueInGlobalWindow((long) i);
+      }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      sampler.stop();
+    }
+
+    public void check() {
+      checkState(sink.count == NUM_ELEMENTS, "Expected %s elements, got %s", NUM_ELEMENTS, sink);
+    }
+  }
+
+  private static String pCollectionId(int index) {
+    return "pCollection" + index;
+  }
+
+  private static class MapStep implements FnDataReceiver<WindowedValue<Long>> {
+    private final FnDataReceiver<WindowedValue<Long>> next;
+
+    MapStep(FnDataReceiver<WindowedValue<Long>> next) {
+      this.next = next;
+    }
+
+    @Override
+    public void accept(WindowedValue<Long> input) throws Exception {
+      next.accept(input.withValue(input.getValue() + 1));
+    }
+  }
+
+  private static class FilterStep implements FnDataReceiver<WindowedValue<Long>> {
+    private final FnDataReceiver<WindowedValue<Long>> next;
+
+    FilterStep(FnDataReceiver<WindowedValue<Long>> next) {
+      this.next = next;
+    }
+
+    @Override
+    public void accept(WindowedValue<Long> input) throws Exception {
+      if (input.getValue() >= 0) {
+        next.accept(input);
+      }
+    }
+  }
+
+  private static class ParDoStep implements FnDataReceiver<WindowedValue<Long>> {
+    private final FnDataReceiver<WindowedValue<Long>> next;
+
+    ParDoStep(FnDataReceiver<WindowedValue<Long>> next) {
+      this.next = next;
+    }
+
+    @Override
+    public void accept(WindowedValue<Long> input) throws Exception {
+      next.accept(
+          WindowedValue.of(
+              input.getValue() * 2, input.getTimestamp(), input.getWindows(), input.getPane()));
+    }
+  }
+
+  private static class Sink implements FnDataReceiver<WindowedValue<Long>> {
+    long count;
+    long sum;
+
+    @Override
+    public void accept(WindowedValue<Long> input) {
+      count += 1;
+      sum += input.getValue();
+    }
+
+    @Override
+    public String toString() {
+      return Long.toString(count);
+    }
+  }
+
+  @Benchmark
+  public void testTenStepChain(Chain chain, Blackhole blackhole) throws Exception {
+    chain.sink.count = 0;
+    for (int i = 0; i < NUM_ELEMENTS; ++i) {
+      chain.head.accept(chain.elements[i]);
+    }
+    blackhole.consume(chain.sink.sum);
+  }
+}
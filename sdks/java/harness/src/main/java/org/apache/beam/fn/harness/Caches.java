@@ -17,9 +17,13 @@
  */
 package org.apache.beam.fn.harness;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
 import java.util.WeakHashMap;
 import java.util.concurrent.ExecutionException;
@@ -30,6 +34,7 @@ import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.util.WeightedValue;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheBuilder;
 import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.cache.CacheStats;
@@ -71,11 +76,44 @@ public final class Caches {
   /** The size of a reference. */
   public static final long REFERENCE_SIZE = 8;
 
+  /** The size of an empty byte array including the array header. */
+  private static final long EMPTY_BYTE_ARRAY_SIZE = MEMORY_METER.measure(new byte[0]);
+
+  /** The size of an empty list including its backing array. */
+  private static final long EMPTY_LIST_SIZE = MEMORY_METER.measureDeep(new ArrayList<>(0));
+
+  /** The alignment of objects on the heap. */
+  private static final long OBJECT_ALIGNMENT = 8;
+
+  /**
+   * Lists with more elements than this will have their weight estimated by measuring a subset of
+   * the elements in {@link #weighSampled}.
+   */
+  @VisibleForTesting static final int MAX_FULLY_WEIGHED_ELEMENTS = 32;
+
   /** Returns the amount of memory in bytes the provided object consumes. */
   public static long weigh(Object o) {
     if (o == null) {
       return REFERENCE_SIZE;
     }
+    // Avoid walking the object graph for common leaf types which are frequently weighed.
+    if (o instanceof byte[]
+        || o instanceof Long
+        || o instanceof Integer
+        || o instanceof Double
+        || o instanceof Float
+        || o instanceof Short
+        || o instanceof Byte
+        || o instanceof Boolean
+        || o instanceof Character) {
+      return MEMORY_METER.measure(o);
+    } else if (o instanceof String) {
+      return MEMORY_METER.measure(o) + stringValueSize((String) o);
+    } else if (o instanceof ByteString) {
+      // Assumes that the ByteString is backed by a single array which is true for all ByteStrings
+      // produced while decoding protos and for ByteStrings which were copied.
+      return MEMORY_METER.measure(o) + byteArraySize(((ByteString) o).size());
+    }
     try {
       return MEMORY_METER.measureDeep(o);
     } catch (RuntimeException e) {
@@ -86,6 +124,69 @@ public final class Caches {
     }
   }
 
+  /**
+   * Returns an estimate of the amount of memory in bytes the provided list and its elements
+   * consume.
+   *
+   * <p>Lists with at most {@link #MAX_FULLY_WEIGHED_ELEMENTS} elements are weighed exactly. For
+   * larger lists only {@link #MAX_FULLY_WEIGHED_ELEMENTS} evenly spaced elements are {@link #weigh
+   * weighed} and the average is used for the remaining elements. This avoids walking the object
+   * graph of every element for the large pages of values which are loaded from the state API.
+   */
+  public static long weighSampled(List<?> values) {
+    int size = values.size();
+    // The list object and the backing array of references.
+    long listWeight = EMPTY_LIST_SIZE + REFERENCE_SIZE * size;
+    if (size <= MAX_FULLY_WEIGHED_ELEMENTS) {
+      for (Object value : values) {
+        listWeight += weigh(value);
+      }
+      return listWeight;
+    }
+    long sampledWeight = 0;
+    if (values instanceof RandomAccess) {
+      for (int i = 0; i < MAX_FULLY_WEIGHED_ELEMENTS; ++i) {
+        sampledWeight += weigh(values.get(sampleIndex(i, size)));
+      }
+    } else {
+      // get(i) walks sequential lists like LinkedList, so visit the samples in a single pass.
+      Iterator<?> iterator = values.iterator();
+      int index = -1;
+      Object value = null;
+      for (int i = 0; i < MAX_FULLY_WEIGHED_ELEMENTS; ++i) {
+        for (int sampleIndex = sampleIndex(i, size); index < sampleIndex; ++index) {
+          value = iterator.next();
+        }
+        sampledWeight += weigh(value);
+      }
+    }
+    return listWeight
+        + (long) Math.ceil((double) sampledWeight / MAX_FULLY_WEIGHED_ELEMENTS * size);
+  }
+
+  /** Returns the index of the {@code i}th of the evenly spaced samples of a list of {@code size}. */
+  private static int sampleIndex(int i, int size) {
+    return (int) ((long) i * size / MAX_FULLY_WEIGHED_ELEMENTS);
+  }
+
+  private static long stringValueSize(String s) {
+    // Strings which only contain Latin-1 characters are stored using one byte per character if
+    // compact strings are enabled, we assume the more conservative two bytes per character if any
+    // character requires it.
+    int length = s.length();
+    for (int i = 0; i < length; ++i) {
+      if (s.charAt(i) > 0xFF) {
+        return byteArraySize(2L * length);
+      }
+    }
+    return byteArraySize(length);
+  }
+
+  private static long byteArraySize(long length) {
+    long size = EMPTY_BYTE_ARRAY_SIZE + length;
+    return (size + OBJECT_ALIGNMENT - 1) / OBJECT_ALIGNMENT * OBJECT_ALIGNMENT;
+  }
+
   /**
    * Returns whether the cache should be updated in the case where the objects size has changed.
    *
@@ -76,7 +76,7 @@ public class CombineRunners {
     private final CombineFn<InputT, AccumT, ?> combineFn;
     private final FnDataReceiver<WindowedValue<KV<KeyT, AccumT>>> output;
     private final Coder<KeyT> keyCoder;
-    private PrecombineGroupingTable<KeyT, InputT, AccumT> groupingTable;
+    private GroupingTable<KeyT, InputT, AccumT> groupingTable;
     private boolean isGloballyWindowed;
 
     PrecombineRunner(
@@ -108,7 +108,7 @@ public class CombineRunners {
 
     void startBundle() {
       groupingTable =
-          PrecombineGroupingTable.combiningAndSampling(
+          GroupingTable.fromOptions(
               options,
               Caches.subCache(bundleCache.get(), ptransformId),
               combineFn,
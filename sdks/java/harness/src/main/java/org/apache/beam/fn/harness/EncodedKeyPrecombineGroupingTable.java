@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import org.apache.beam.fn.harness.Cache.Shrinkable;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SamplingSizeEstimator;
+import org.apache.beam.fn.harness.PrecombineGroupingTable.SizeEstimator;
+import org.apache.beam.runners.core.GlobalCombineFnRunner;
+import org.apache.beam.runners.core.GlobalCombineFnRunners;
+import org.apache.beam.runners.core.NullSideInputReader;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
+import org.apache.beam.sdk.transforms.windowing.GlobalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.Weighted;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.joda.time.Instant;
+
+/**
+ * A {@link GroupingTable} which stores the encoded form of each key within a single byte array and
+ * indexes the entries with an open-addressing hash table backed by primitive arrays.
+ *
+ * <p>Compared to {@link PrecombineGroupingTable} this table does not retain a key object and a map
+ * entry per distinct key, which reduces the number of long lived objects the garbage collector has
+ * to trace for combiners with a large number of distinct keys. The weight of the keys and of the
+ * table itself is computed exactly from the size of the backing arrays, only the accumulators are
+ * sized with a {@link SizeEstimator}.
+ *
+ * <p>Keys are grouped by their encoded form, so two keys which are equal but encode differently
+ * are combined separately. This is safe since the output of the pre-combine phase is merged again
+ * after the grouping by key.
+ *
+ * <p>When the table grows beyond the weight allowed by the cache, all accumulators are compacted
+ * and if the table is still too large all entries are output in insertion order.
+ *
+ * <p>{@link NotThreadSafe} because the caller must use the bundle processing thread when invoking
+ * {@link #put} and {@link #flush}. {@link #shrink} may be called from any thread.
+ */
+@SuppressWarnings({
+  "nullness" // TODO(https://github.com/apache/beam/issues/20497)
+})
+@NotThreadSafe
+public class EncodedKeyPrecombineGroupingTable<K, InputT, AccumT>
+    implements GroupingTable<K, InputT, AccumT>,
+        Shrinkable<EncodedKeyPrecombineGroupingTable<K, InputT, AccumT>>,
+        Weighted {
+
+  private static final Collection<? extends BoundedWindow> GLOBAL_WINDOWS =
+      Collections.singletonList(GlobalWindow.INSTANCE);
+
+  /** The initial number of entries which can be stored before the table needs to be resized. */
+  private static final int INITIAL_ENTRY_CAPACITY = 16;
+
+  /** The initial size of the array storing the encoded keys. */
+  private static final int INITIAL_KEY_BYTES_CAPACITY = 1024;
+
+  /**
+   * Returns a grouping table that combines inputs into an accumulator with a sampling {@link
+   * SizeEstimator} for the accumulators. The grouping table uses the cache to defer flushing output
+   * until the cache evicts the table.
+   */
+  public static <K, InputT, AccumT>
+      EncodedKeyPrecombineGroupingTable<K, InputT, AccumT> combiningAndSampling(
+          PipelineOptions options,
+          Cache<Object, Object> cache,
+          CombineFn<InputT, AccumT, ?> combineFn,
+          Coder<K> keyCoder,
+          double sizeEstimatorSampleRate,
+          boolean isGloballyWindowed) {
+    return new EncodedKeyPrecombineGroupingTable<>(
+        options,
+        cache,
+        keyCoder,
+        GlobalCombineFnRunners.create(combineFn),
+        new SamplingSizeEstimator(
+            Caches::weigh,
+            sizeEstimatorSampleRate,
+            1.0,
+            SamplingSizeEstimator.DEFAULT_MIN_SAMPLED,
+            new Random()),
+        isGloballyWindowed);
+  }
+
+  private static final class Key implements Weighted {
+    private static final Key INSTANCE = new Key();
+
+    @Override
+    public long getWeight() {
+      // Ignore the actual size of this singleton because it is trivial and because
+      // the weight reported here will be counted many times as it is present in
+      // many different state subcaches.
+      return 0;
+    }
+  }
+
+  private final Coder<K> keyCoder;
+  private final GlobalCombineFnRunner<InputT, AccumT, ?> combineFn;
+  private final PipelineOptions options;
+  private final SizeEstimator sizer;
+  private final Cache<Key, EncodedKeyPrecombineGroupingTable<K, InputT, AccumT>> cache;
+  private final boolean isGloballyWindowed;
+  private final AtomicLong maxWeight;
+  private final KeyBytesOutputStream keyOutputStream;
+
+  /** Open-addressing index storing {@code entry + 1} for each occupied slot, 0 if empty. */
+  private int[] slots;
+
+  // Entry data stored in parallel arrays indexed by the order of insertion.
+  private int size;
+  private int[] hashes;
+  private int[] keyOffsets;
+  private int[] keyLengths;
+  private Object[] accumulators;
+  private long[] accumulatorSizes;
+  private boolean[] dirty;
+  // Only used when the table is not globally windowed.
+  private long[] outputTimestamps;
+  private Object[] windows;
+
+  // The encoded keys of all entries stored back to back, up to the position of keyOutputStream.
+  private byte[] keyBytes;
+
+  private long accumulatorsWeight;
+  private long lastWeightForFlush;
+
+  @VisibleForTesting
+  EncodedKeyPrecombineGroupingTable(
+      PipelineOptions options,
+      Cache<?, ?> cache,
+      Coder<K> keyCoder,
+      GlobalCombineFnRunner<InputT, AccumT, ?> combineFn,
+      SizeEstimator sizer,
+      boolean isGloballyWindowed) {
+    this.options = options;
+    this.cache = (Cache<Key, EncodedKeyPrecombineGroupingTable<K, InputT, AccumT>>) cache;
+    this.keyCoder = keyCoder;
+    this.combineFn = combineFn;
+    this.sizer = sizer;
+    this.isGloballyWindowed = isGloballyWindowed;
+    this.maxWeight = new AtomicLong();
+    this.keyOutputStream = new KeyBytesOutputStream();
+    allocate();
+    this.cache.put(Key.INSTANCE, this);
+  }
+
+  @Nullable
+  @Override
+  public EncodedKeyPrecombineGroupingTable<K, InputT, AccumT> shrink() {
+    long currentWeight = maxWeight.updateAndGet(operand -> operand >> 1);
+    // It is possible that we are shrunk multiple times until the requested max weight is too small.
+    // In this case we want to effectively stop shrinking since we can't effectively cache much
+    // at this time and the next insertion will likely evict all records.
+    if (currentWeight <= 100L) {
+      return null;
+    }
+    return this;
+  }
+
+  @Override
+  public long getWeight() {
+    return maxWeight.get();
+  }
+
+  /** Returns the number of distinct keys and windows currently stored within this table. */
+  @VisibleForTesting
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the exact number of bytes retained by the arrays backing this table plus the estimated
+   * size of the accumulators.
+   */
+  @VisibleForTesting
+  long currentWeight() {
+    long entryCapacity = hashes.length;
+    long weight =
+        // slots
+        4L * slots.length
+            // hashes, key offsets and key lengths
+            + 12L * entryCapacity
+            // accumulator references and sizes
+            + (Caches.REFERENCE_SIZE + 8L) * entryCapacity
+            // dirty flags
+            + entryCapacity
+            + keyBytes.length
+            + accumulatorsWeight;
+    if (!isGloballyWindowed) {
+      // output timestamps and window references
+      weight += (8L + Caches.REFERENCE_SIZE) * entryCapacity;
+    }
+    return weight;
+  }
+
+  @Override
+  public void put(
+      WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    Collection<? extends BoundedWindow> valueWindows =
+        isGloballyWindowed ? null : value.getWindows();
+
+    // Encode the key at the end of the key bytes so that it only needs to be committed if this is a
+    // new key.
+    int keyOffset = keyOutputStream.position;
+    keyCoder.encode(value.getValue().getKey(), keyOutputStream);
+    int keyLength = keyOutputStream.position - keyOffset;
+    int hash = hash(keyBytes, keyOffset, keyLength, valueWindows);
+
+    int mask = slots.length - 1;
+    int slot = hash & mask;
+    int entry;
+    while (true) {
+      int candidate = slots[slot] - 1;
+      if (candidate < 0) {
+        entry = -1;
+        break;
+      }
+      if (hashes[candidate] == hash
+          && keyLengths[candidate] == keyLength
+          && rangeEquals(keyBytes, keyOffsets[candidate], keyOffset, keyLength)
+          && (isGloballyWindowed || windows[candidate].equals(valueWindows))) {
+        entry = candidate;
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (entry >= 0) {
+      // Discard the encoded key since it is already stored within the table.
+      keyOutputStream.position = keyOffset;
+      accumulatorsWeight -= accumulatorSizes[entry];
+      accumulators[entry] =
+          combineFn.addInput(
+              (AccumT) accumulators[entry],
+              value.getValue().getValue(),
+              options,
+              NullSideInputReader.empty(),
+              windowsFor(entry));
+      dirty[entry] = true;
+    } else {
+      entry = size++;
+      slots[slot] = entry + 1;
+      hashes[entry] = hash;
+      keyOffsets[entry] = keyOffset;
+      keyLengths[entry] = keyLength;
+      if (!isGloballyWindowed) {
+        // The PGBK output will inherit the timestamp of one of its inputs.
+        outputTimestamps[entry] = value.getTimestamp().getMillis();
+        windows[entry] = valueWindows;
+      }
+      AccumT accumulator =
+          combineFn.createAccumulator(options, NullSideInputReader.empty(), windowsFor(entry));
+      accumulators[entry] =
+          combineFn.addInput(
+              accumulator,
+              value.getValue().getValue(),
+              options,
+              NullSideInputReader.empty(),
+              windowsFor(entry));
+      dirty[entry] = true;
+      if (size == hashes.length) {
+        grow();
+      }
+    }
+    accumulatorSizes[entry] = sizer.estimateSize(accumulators[entry]);
+    accumulatorsWeight += accumulatorSizes[entry];
+
+    long weight = currentWeight();
+    if (Caches.shouldUpdateOnSizeChange(lastWeightForFlush, weight)) {
+      flushIfNeeded(weight, receiver);
+      lastWeightForFlush = currentWeight();
+    }
+  }
+
+  private void flushIfNeeded(long weight, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    // Increase the maximum only if we require it
+    maxWeight.accumulateAndGet(weight, (current, update) -> current < update ? update : current);
+
+    // Update the cache to ensure that LRU is handled appropriately and for the cache to have an
+    // opportunity to shrink the maxWeight if necessary.
+    cache.put(Key.INSTANCE, this);
+
+    // Get the updated weight now that the cache may have been shrunk and respect it
+    long currentMax = maxWeight.get();
+
+    // Only compact and output from the bundle processing thread that is inserting elements into the
+    // grouping table. This ensures that we honor the guarantee that transforms for a single bundle
+    // execute using the same thread.
+    if (weight > currentMax) {
+      // Try to compact all the values and only flush values if compaction wasn't enough.
+      for (int i = 0; i < size; ++i) {
+        compact(i);
+      }
+      if (currentWeight() > currentMax) {
+        // Entries can't be removed individually from the open-addressing index without
+        // rehashing so we output everything and release the backing arrays.
+        flush(receiver);
+        cache.put(Key.INSTANCE, this);
+      }
+    }
+  }
+
+  private void compact(int entry) {
+    if (dirty[entry]) {
+      accumulatorsWeight -= accumulatorSizes[entry];
+      accumulators[entry] =
+          combineFn.compact(
+              (AccumT) accumulators[entry],
+              options,
+              NullSideInputReader.empty(),
+              windowsFor(entry));
+      accumulatorSizes[entry] = sizer.estimateSize(accumulators[entry]);
+      accumulatorsWeight += accumulatorSizes[entry];
+      dirty[entry] = false;
+    }
+  }
+
+  /** Output the given entry. Does not actually remove it from the table. */
+  private void output(int entry, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception {
+    compact(entry);
+    K key =
+        keyCoder.decode(
+            new ByteArrayInputStream(keyBytes, keyOffsets[entry], keyLengths[entry]));
+    AccumT accumulator = (AccumT) accumulators[entry];
+    receiver.accept(
+        isGloballyWindowed
+            ? WindowedValue.valueInGlobalWindow(KV.of(key, accumulator))
+            : WindowedValue.of(
+                KV.of(key, accumulator),
+                new Instant(outputTimestamps[entry]),
+                windowsFor(entry),
+                // The PaneInfo will always be overwritten by the GBK.
+                PaneInfo.NO_FIRING));
+  }
+
+  /** Flushes all entries in this table to output. */
+  @Override
+  public void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception {
+    cache.remove(Key.INSTANCE);
+    for (int i = 0; i < size; ++i) {
+      output(i, receiver);
+    }
+    allocate();
+    lastWeightForFlush = 0;
+  }
+
+  private Collection<? extends BoundedWindow> windowsFor(int entry) {
+    return isGloballyWindowed
+        ? GLOBAL_WINDOWS
+        : (Collection<? extends BoundedWindow>) windows[entry];
+  }
+
+  private void allocate() {
+    size = 0;
+    slots = new int[INITIAL_ENTRY_CAPACITY * 2];
+    hashes = new int[INITIAL_ENTRY_CAPACITY];
+    keyOffsets = new int[INITIAL_ENTRY_CAPACITY];
+    keyLengths = new int[INITIAL_ENTRY_CAPACITY];
+    accumulators = new Object[INITIAL_ENTRY_CAPACITY];
+    accumulatorSizes = new long[INITIAL_ENTRY_CAPACITY];
+    dirty = new boolean[INITIAL_ENTRY_CAPACITY];
+    if (!isGloballyWindowed) {
+      outputTimestamps = new long[INITIAL_ENTRY_CAPACITY];
+      windows = new Object[INITIAL_ENTRY_CAPACITY];
+    }
+    keyBytes = new byte[INITIAL_KEY_BYTES_CAPACITY];
+    keyOutputStream.position = 0;
+    accumulatorsWeight = 0;
+  }
+
+  /** Doubles the capacity of the entry arrays and rebuilds the open-addressing index. */
+  private void grow() {
+    int newCapacity = hashes.length * 2;
+    hashes = Arrays.copyOf(hashes, newCapacity);
+    keyOffsets = Arrays.copyOf(keyOffsets, newCapacity);
+    keyLengths = Arrays.copyOf(keyLengths, newCapacity);
+    accumulators = Arrays.copyOf(accumulators, newCapacity);
+    accumulatorSizes = Arrays.copyOf(accumulatorSizes, newCapacity);
+    dirty = Arrays.copyOf(dirty, newCapacity);
+    if (!isGloballyWindowed) {
+      outputTimestamps = Arrays.copyOf(outputTimestamps, newCapacity);
+      windows = Arrays.copyOf(windows, newCapacity);
+    }
+
+    slots = new int[newCapacity * 2];
+    int mask = slots.length - 1;
+    for (int i = 0; i < size; ++i) {
+      int slot = hashes[i] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = i + 1;
+    }
+  }
+
+  private static int hash(
+      byte[] bytes, int offset, int length, @Nullable Collection<? extends BoundedWindow> windows) {
+    int hash = 1;
+    for (int i = offset, end = offset + length; i < end; ++i) {
+      hash = 31 * hash + bytes[i];
+    }
+    if (windows != null) {
+      hash = 31 * hash + windows.hashCode();
+    }
+    // Spread the higher bits since the index only uses the lower bits of the hash.
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean rangeEquals(byte[] bytes, int offsetA, int offsetB, int length) {
+    for (int i = 0; i < length; ++i) {
+      if (bytes[offsetA + i] != bytes[offsetB + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Appends encoded keys to the end of {@link #keyBytes}, growing it when necessary. */
+  private class KeyBytesOutputStream extends OutputStream {
+    private int position;
+
+    @Override
+    public void write(int b) {
+      ensureCapacity(1);
+      keyBytes[position++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      ensureCapacity(len);
+      System.arraycopy(b, off, keyBytes, position, len);
+      position += len;
+    }
+
+    private void ensureCapacity(int len) {
+      if (position + len > keyBytes.length) {
+        keyBytes = Arrays.copyOf(keyBytes, Math.max(keyBytes.length * 2, position + len));
+      }
+    }
+  }
+}
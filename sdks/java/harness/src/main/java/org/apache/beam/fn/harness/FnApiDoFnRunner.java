@@ -45,6 +45,7 @@ import org.apache.beam.fn.harness.state.FnApiStateAccessor;
 import org.apache.beam.fn.harness.state.FnApiTimerBundleTracker;
 import org.apache.beam.fn.harness.state.FnApiTimerBundleTracker.Modifications;
 import org.apache.beam.fn.harness.state.FnApiTimerBundleTracker.TimerInfo;
+import org.apache.beam.fn.harness.state.SideInputIndexStore;
 import org.apache.beam.fn.harness.state.SideInputSpec;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.BundleApplication;
@@ -176,6 +177,7 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
               context.getCacheTokensSupplier(),
               context.getBundleCacheSupplier(),
               context.getProcessWideCache(),
+              context.getSideInputIndexStore(),
               context.getPCollections(),
               context.getCoders(),
               context.getWindowingStrategies(),
@@ -344,6 +346,7 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
       Supplier<List<BeamFnApi.ProcessBundleRequest.CacheToken>> cacheTokens,
       Supplier<Cache<?, ?>> bundleCache,
       Cache<?, ?> processWideCache,
+      @Nullable SideInputIndexStore sideInputIndexStore,
       Map<String, PCollection> pCollections,
       Map<String, RunnerApi.Coder> coders,
       Map<String, RunnerApi.WindowingStrategy> windowingStrategies,
@@ -745,6 +748,7 @@ public class FnApiDoFnRunner<InputT, RestrictionT, PositionT, WatermarkEstimator
             cacheTokens,
             bundleCache,
             processWideCache,
+            sideInputIndexStore,
             tagToSideInputSpecMap,
             beamFnStateClient,
             keyCoder,
@@ -17,10 +17,12 @@
  */
 package org.apache.beam.fn.harness;
 
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import javax.annotation.Nullable;
 import org.apache.beam.fn.harness.control.BeamFnControlClient;
@@ -91,6 +93,7 @@ public class FnHarness {
   private static final String PIPELINE_OPTIONS = "PIPELINE_OPTIONS";
   private static final String RUNNER_CAPABILITIES = "RUNNER_CAPABILITIES";
   private static final String ENABLE_DATA_SAMPLING_EXPERIMENT = "enable_data_sampling";
+  private static final String USE_VIRTUAL_THREADS_EXPERIMENT = "use_virtual_threads";
   private static final Logger LOG = LoggerFactory.getLogger(FnHarness.class);
 
   private static Endpoints.ApiServiceDescriptor getApiServiceDescriptor(String descriptor)
@@ -221,6 +224,8 @@ public class FnHarness {
     ShortIdMap metricsShortIds = new ShortIdMap();
     ExecutorService executorService =
         options.as(ExecutorOptions.class).getScheduledExecutorService();
+    ExecutorService instructionExecutorService =
+        createInstructionExecutorService(options, executorService);
     ExecutionStateSampler executionStateSampler =
         new ExecutionStateSampler(options, System::currentTimeMillis);
     final DataSampler dataSampler = new DataSampler();
@@ -351,7 +356,7 @@ public class FnHarness {
           new BeamFnControlClient(
               controlStub.withExecutor(MoreExecutors.directExecutor()),
               outboundObserverFactory,
-              executorService,
+              instructionExecutorService,
               handlers);
       control.waitForTermination();
       if (beamFnStatusClient != null) {
@@ -362,6 +367,39 @@ public class FnHarness {
       System.out.println("Shutting SDK harness down.");
       executionStateSampler.stop();
       executorService.shutdown();
+      instructionExecutorService.shutdown();
+    }
+  }
+
+  /**
+   * Returns the {@link ExecutorService} which instructions, and hence bundles, are processed on.
+   *
+   * <p>When the {@code use_virtual_threads} experiment is enabled and the JVM supports virtual
+   * threads (JDK 21+), each instruction runs on its own virtual thread. Bundles spend most of their
+   * time blocked on state, data and user RPCs so this allows many more bundles to be processed
+   * concurrently than there are platform threads. Otherwise {@code executorService} is used.
+   */
+  @VisibleForTesting
+  static ExecutorService createInstructionExecutorService(
+      PipelineOptions options, ExecutorService executorService) {
+    if (!ExperimentalOptions.hasExperiment(options, USE_VIRTUAL_THREADS_EXPERIMENT)) {
+      return executorService;
+    }
+    try {
+      // Use reflection since the SDK harness is compiled against JDK versions without virtual
+      // threads.
+      Method newVirtualThreadPerTaskExecutor =
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      ExecutorService virtualThreadExecutorService =
+          (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+      LOG.info("Processing instructions on virtual threads.");
+      return virtualThreadExecutorService;
+    } catch (ReflectiveOperationException e) {
+      LOG.warn(
+          "Experiment {} was specified but virtual threads are not supported by this JVM, "
+              + "processing instructions on platform threads.",
+          USE_VIRTUAL_THREADS_EXPERIMENT);
+      return executorService;
     }
   }
 }
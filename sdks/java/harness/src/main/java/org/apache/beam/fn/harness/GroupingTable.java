@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+
+/**
+ * A table which groups and combines values by key before they are output, used to implement the
+ * lifted pre-combine phase of {@code Combine.perKey}.
+ *
+ * <p>Implementations are not required to be thread safe, the caller must use the bundle processing
+ * thread when invoking {@link #put} and {@link #flush}.
+ */
+public interface GroupingTable<K, InputT, AccumT> {
+
+  /**
+   * Returns the {@link GroupingTable} implementation selected by {@link
+   * SdkHarnessOptions#getGroupingTableImplementation}.
+   */
+  static <K, InputT, AccumT> GroupingTable<K, InputT, AccumT> fromOptions(
+      PipelineOptions options,
+      Cache<Object, Object> cache,
+      CombineFn<InputT, AccumT, ?> combineFn,
+      Coder<K> keyCoder,
+      double sizeEstimatorSampleRate,
+      boolean isGloballyWindowed) {
+    switch (options.as(SdkHarnessOptions.class).getGroupingTableImplementation()) {
+      case ENCODED_KEY:
+        return EncodedKeyPrecombineGroupingTable.combiningAndSampling(
+            options, cache, combineFn, keyCoder, sizeEstimatorSampleRate, isGloballyWindowed);
+      case OBJECT_KEY:
+        return PrecombineGroupingTable.combiningAndSampling(
+            options, cache, combineFn, keyCoder, sizeEstimatorSampleRate, isGloballyWindowed);
+      default:
+        throw new IllegalArgumentException(
+            String.format(
+                "Unknown grouping table implementation %s",
+                options.as(SdkHarnessOptions.class).getGroupingTableImplementation()));
+    }
+  }
+
+  /**
+   * Adds the key and value to this table, possibly flushing some entries to output if the table is
+   * full.
+   */
+  void put(
+      WindowedValue<KV<K, InputT>> value, FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver)
+      throws Exception;
+
+  /** Flushes all entries in this table to output. */
+  void flush(FnDataReceiver<WindowedValue<KV<K, AccumT>>> receiver) throws Exception;
+}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+/**
+ * URNs of the metrics which only the Java SDK harness reports.
+ *
+ * <p>These metrics have no {@code MonitoringInfoSpec} in {@code metrics.proto} and therefore use
+ * an SDK specific prefix instead of the {@code beam:metric:} prefix reserved for the standard
+ * metrics. Runners which don't recognize them are expected to ignore them.
+ */
+public final class HarnessMetricUrns {
+  private static final String PREFIX = "org.apache.beam:java_sdk_harness:metric:";
+
+  /** The number of bytes sent for an outbound data channel endpoint with each flush. */
+  public static final String DATA_CHANNEL_BYTES_PER_FLUSH =
+      PREFIX + "data_channel:bytes_per_flush:v1";
+
+  /** The number of state requests for a transform answered by a page which was read ahead. */
+  public static final String STATE_READ_AHEAD_HITS = PREFIX + "state:read_ahead_hits:v1";
+
+  /** The number of state responses for a transform which were available when waited on. */
+  public static final String STATE_PREFETCH_HITS = PREFIX + "state:prefetch_hits:v1";
+
+  /** The time in microseconds waited on each state response for a transform. */
+  public static final String STATE_WAIT_MICROS = PREFIX + "state:wait_micros:v1";
+
+  private HarnessMetricUrns() {}
+}
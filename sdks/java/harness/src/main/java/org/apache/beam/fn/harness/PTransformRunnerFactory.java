@@ -26,6 +26,7 @@ import org.apache.beam.fn.harness.control.BundleProgressReporter;
 import org.apache.beam.fn.harness.control.BundleSplitListener;
 import org.apache.beam.fn.harness.data.BeamFnDataClient;
 import org.apache.beam.fn.harness.state.BeamFnStateClient;
+import org.apache.beam.fn.harness.state.SideInputIndexStore;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.ProcessBundleRequest;
 import org.apache.beam.model.pipeline.v1.Endpoints;
 import org.apache.beam.model.pipeline.v1.Endpoints.ApiServiceDescriptor;
@@ -38,6 +39,7 @@ import org.apache.beam.sdk.function.ThrowingRunnable;
 import org.apache.beam.sdk.options.PipelineOptions;
 import org.apache.beam.sdk.transforms.DoFn;
 import org.apache.beam.sdk.util.WindowedValue;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** A factory able to instantiate an appropriate handler for a given PTransform. */
 @SuppressWarnings({
@@ -77,6 +79,13 @@ public interface PTransformRunnerFactory<T> {
     /** A cache that is process wide and persists across bundle boundaries. */
     Cache<?, ?> getProcessWideCache();
 
+    /**
+     * A process wide store of multimap side input indices, or null if side inputs should not be
+     * indexed.
+     */
+    @Nullable
+    SideInputIndexStore getSideInputIndexStore();
+
     /** An immutable mapping from PCollection id to PCollection definition. */
     Map<String, RunnerApi.PCollection> getPCollections();
 
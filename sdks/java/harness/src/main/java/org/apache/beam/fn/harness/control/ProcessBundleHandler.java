@@ -44,17 +44,22 @@ import org.apache.beam.fn.harness.BeamFnDataReadRunner;
 import org.apache.beam.fn.harness.Cache;
 import org.apache.beam.fn.harness.Caches;
 import org.apache.beam.fn.harness.Caches.ClearableCache;
+import org.apache.beam.fn.harness.HarnessMetricUrns;
 import org.apache.beam.fn.harness.PTransformRunnerFactory;
 import org.apache.beam.fn.harness.PTransformRunnerFactory.Context;
 import org.apache.beam.fn.harness.PTransformRunnerFactory.Registrar;
 import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionStateTracker;
 import org.apache.beam.fn.harness.control.FinalizeBundleHandler.CallbackRegistration;
+import org.apache.beam.fn.harness.control.Metrics.BundleDistribution;
 import org.apache.beam.fn.harness.data.BeamFnDataClient;
 import org.apache.beam.fn.harness.data.PCollectionConsumerRegistry;
 import org.apache.beam.fn.harness.data.PTransformFunctionRegistry;
 import org.apache.beam.fn.harness.debug.DataSampler;
 import org.apache.beam.fn.harness.state.BeamFnStateClient;
 import org.apache.beam.fn.harness.state.BeamFnStateGrpcClientCache;
+import org.apache.beam.fn.harness.state.ReadAheadStateClient;
+import org.apache.beam.fn.harness.state.SideInputIndexStore;
+import org.apache.beam.fn.harness.state.WriteBehindStateClient;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.Elements;
 import org.apache.beam.model.fnexecution.v1.BeamFnApi.InstructionRequest;
@@ -75,18 +80,26 @@ import org.apache.beam.model.pipeline.v1.RunnerApi.WindowingStrategy;
 import org.apache.beam.runners.core.construction.BeamUrns;
 import org.apache.beam.runners.core.construction.PTransformTranslation;
 import org.apache.beam.runners.core.construction.Timer;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Labels;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.TypeUrns;
 import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Urns;
+import org.apache.beam.runners.core.metrics.MonitoringInfoMetricName;
 import org.apache.beam.runners.core.metrics.ShortIdMap;
+import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.fn.data.BeamFnDataInboundObserver;
 import org.apache.beam.sdk.fn.data.BeamFnDataOutboundAggregator;
 import org.apache.beam.sdk.fn.data.DataEndpoint;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.fn.data.TimerEndpoint;
 import org.apache.beam.sdk.function.ThrowingRunnable;
+import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.MetricsContainer;
 import org.apache.beam.sdk.metrics.MetricsEnvironment;
 import org.apache.beam.sdk.metrics.MetricsEnvironment.MetricsEnvironmentState;
+import org.apache.beam.sdk.options.ExecutorOptions;
+import org.apache.beam.sdk.options.ExperimentalOptions;
 import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
 import org.apache.beam.sdk.transforms.DoFn.BundleFinalizer;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.common.ReflectHelpers;
@@ -134,6 +147,11 @@ public class ProcessBundleHandler {
   private static final String DATA_INPUT_URN = "beam:runner:source:v1";
   private static final String DATA_OUTPUT_URN = "beam:runner:sink:v1";
   public static final String JAVA_SOURCE_URN = "beam:source:java:0.1";
+  // Generates a receiver class per PCollection so that linear chains of transforms can be inlined.
+  private static final String FUSED_CONSUMER_DISPATCH_EXPERIMENT = "fused_consumer_dispatch";
+  // Reports the sizes of the elements crossing the data plane from the bytes that were sent or
+  // received instead of encoding sampled elements again.
+  private static final String DATA_PLANE_ELEMENT_SIZES_EXPERIMENT = "data_plane_element_sizes";
 
   private static final Logger LOG = LoggerFactory.getLogger(ProcessBundleHandler.class);
   @VisibleForTesting static final Map<String, PTransformRunnerFactory> REGISTERED_RUNNER_FACTORIES;
@@ -163,6 +181,7 @@ public class ProcessBundleHandler {
   private final Map<String, PTransformRunnerFactory> urnToPTransformRunnerFactoryMap;
   private final PTransformRunnerFactory defaultPTransformRunnerFactory;
   private final Cache<Object, Object> processWideCache;
+  private final @Nullable SideInputIndexStore sideInputIndexStore;
   @VisibleForTesting final BundleProcessorCache bundleProcessorCache;
   private final Set<String> runnerCapabilities;
   private final @Nullable DataSampler dataSampler;
@@ -222,6 +241,7 @@ public class ProcessBundleHandler {
     this.defaultPTransformRunnerFactory =
         new UnknownPTransformRunnerFactory(urnToPTransformRunnerFactoryMap.keySet());
     this.processWideCache = processWideCache;
+    this.sideInputIndexStore = SideInputIndexStore.fromOptions(options);
     this.bundleProcessorCache = bundleProcessorCache;
     this.dataSampler = dataSampler;
   }
@@ -356,6 +376,11 @@ public class ProcessBundleHandler {
                       return processWideCache;
                     }
 
+                    @Override
+                    public @Nullable SideInputIndexStore getSideInputIndexStore() {
+                      return sideInputIndexStore;
+                    }
+
                     @Override
                     public Map<String, PCollection> getPCollections() {
                       return processBundleDescriptor.getPcollectionsMap();
@@ -398,7 +423,36 @@ public class ProcessBundleHandler {
                                           BeamUrns.getUrn(
                                               StandardRunnerProtocols.Enum
                                                   .CONTROL_RESPONSE_ELEMENTS_EMBEDDING))));
-                      return aggregator.registerOutputDataLocation(pTransformId, coder);
+                      // The size of each flush is only of interest when the size limit adapts.
+                      BundleDistribution bytesPerFlush = null;
+                      if (ExperimentalOptions.hasExperiment(
+                          options, BeamFnDataOutboundAggregator.DATA_BUFFER_ADAPTIVE)) {
+                        HashMap<String, String> labels = new HashMap<>();
+                        labels.put(Labels.PTRANSFORM, pTransformId);
+                        String bytesPerFlushShortId =
+                            shortIds.getOrCreateShortId(
+                                new SimpleMonitoringInfoBuilder()
+                                    .setUrn(HarnessMetricUrns.DATA_CHANNEL_BYTES_PER_FLUSH)
+                                    .setType(TypeUrns.DISTRIBUTION_INT64_TYPE)
+                                    .setLabels(labels)
+                                    .build());
+                        bytesPerFlush =
+                            Metrics.bundleProcessingThreadDistribution(
+                                bytesPerFlushShortId,
+                                MonitoringInfoMetricName.named(
+                                    HarnessMetricUrns.DATA_CHANNEL_BYTES_PER_FLUSH, labels));
+                        addBundleProgressReporter.accept(bytesPerFlush);
+                      }
+                      Distribution elementByteSizes = null;
+                      if (pTransform.getInputsCount() == 1
+                          && ExperimentalOptions.hasExperiment(
+                              options, DATA_PLANE_ELEMENT_SIZES_EXPERIMENT)) {
+                        elementByteSizes =
+                            pCollectionConsumerRegistry.getEncodedByteSizeDistribution(
+                                pTransform.getInputsMap().values().iterator().next());
+                      }
+                      return aggregator.registerOutputDataLocation(
+                          pTransformId, coder, bytesPerFlush, elementByteSizes);
                     }
 
                     @Override
@@ -449,8 +503,17 @@ public class ProcessBundleHandler {
                         ApiServiceDescriptor apiServiceDescriptor,
                         org.apache.beam.sdk.coders.Coder<T> coder,
                         FnDataReceiver<T> receiver) {
+                      Distribution elementByteSizes = null;
+                      if (pTransform.getOutputsCount() == 1
+                          && ExperimentalOptions.hasExperiment(
+                              options, DATA_PLANE_ELEMENT_SIZES_EXPERIMENT)) {
+                        elementByteSizes =
+                            pCollectionConsumerRegistry.getEncodedByteSizeDistribution(
+                                pTransform.getOutputsMap().values().iterator().next());
+                      }
                       addDataEndpoint.accept(
-                          apiServiceDescriptor, DataEndpoint.create(pTransformId, coder, receiver));
+                          apiServiceDescriptor,
+                          DataEndpoint.create(pTransformId, coder, receiver, elementByteSizes));
                     }
 
                     @Override
@@ -781,7 +844,8 @@ public class ProcessBundleHandler {
             shortIds,
             bundleProgressReporterAndRegistrar,
             bundleDescriptor,
-            dataSampler);
+            dataSampler,
+            ExperimentalOptions.hasExperiment(options, FUSED_CONSUMER_DISPATCH_EXPERIMENT));
     HashSet<String> processedPTransformIds = new HashSet<>();
 
     PTransformFunctionRegistry startFunctionRegistry =
@@ -806,7 +870,23 @@ public class ProcessBundleHandler {
       BeamFnStateClient underlyingClient =
           beamFnStateGrpcClientCache.forApiServiceDescriptor(
               bundleDescriptor.getStateApiServiceDescriptor());
-      beamFnStateClient = new BlockTillStateCallsFinish(underlyingClient);
+      int readAheadPages = options.as(SdkHarnessOptions.class).getStateReadAheadPages();
+      ReadAheadStateClient readAheadStateClient = null;
+      if (readAheadPages > 0) {
+        readAheadStateClient =
+            new ReadAheadStateClient(
+                underlyingClient,
+                readAheadPages,
+                options.as(ExecutorOptions.class).getScheduledExecutorService(),
+                stateTracker::getCurrentThreadsPTransformId);
+        underlyingClient = readAheadStateClient;
+      }
+      long writeBehindBufferBytes =
+          options.as(SdkHarnessOptions.class).getStateWriteBehindBufferMb() * 1024L * 1024L;
+      beamFnStateClient =
+          new BlockTillStateCallsFinish(
+              new WriteBehindStateClient(underlyingClient, writeBehindBufferBytes),
+              readAheadStateClient);
     } else {
       beamFnStateClient = new FailAllStateCallsForBundle(processBundleRequest);
     }
@@ -1192,18 +1272,28 @@ public class ProcessBundleHandler {
    * blocks till they are all finished.
    */
   private static class BlockTillStateCallsFinish extends HandleStateCallsForBundle {
-    private final BeamFnStateClient beamFnStateClient;
+    private final WriteBehindStateClient beamFnStateClient;
+    private final @Nullable ReadAheadStateClient readAheadStateClient;
     private final Phaser phaser;
     private int currentPhase;
 
-    private BlockTillStateCallsFinish(BeamFnStateClient beamFnStateClient) {
+    private BlockTillStateCallsFinish(
+        WriteBehindStateClient beamFnStateClient,
+        @Nullable ReadAheadStateClient readAheadStateClient) {
       this.beamFnStateClient = beamFnStateClient;
+      this.readAheadStateClient = readAheadStateClient;
       this.phaser = new Phaser(1 /* initial party is the process bundle handler */);
       this.currentPhase = phaser.getPhase();
     }
 
     @Override
     public void close() throws Exception {
+      // Send any buffered mutations since they are only completed once they have been sent.
+      beamFnStateClient.flush();
+      // Pages which are read ahead are not requested through this client, wait for them separately.
+      if (readAheadStateClient != null) {
+        readAheadStateClient.finishBundle();
+      }
       int unarrivedParties = phaser.getUnarrivedParties();
       if (unarrivedParties > 0) {
         LOG.debug(
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.data;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.dynamic.loading.ClassInjector;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionState;
+import org.apache.beam.fn.harness.control.Metrics.BundleCounter;
+import org.apache.beam.fn.harness.data.PCollectionConsumerRegistry.SampleByteSizeDistribution;
+import org.apache.beam.fn.harness.debug.OutputSampler;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Creates {@link FusedMetricTrackingFnDataReceiver}s whose classes are generated with ByteBuddy.
+ *
+ * <p>A class is generated for each PCollection of each process bundle descriptor and is reused by
+ * all bundle processors created for that descriptor. Once {@link #MAX_GENERATED_CLASSES} classes
+ * have been generated, {@link FusedMetricTrackingFnDataReceiver} itself is used since generated
+ * classes are never unloaded.
+ */
+@SuppressWarnings({
+  "rawtypes", // TODO(https://github.com/apache/beam/issues/20447)
+  "unchecked"
+})
+class FusedFnDataReceivers {
+  @VisibleForTesting static final int MAX_GENERATED_CLASSES = 10_000;
+
+  private static final AtomicLong GENERATED_CLASS_ID = new AtomicLong();
+  private static final Map<String, Constructor<?>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+  private FusedFnDataReceivers() {}
+
+  static <T> FnDataReceiver<WindowedValue<T>> create(
+      String processBundleDescriptorId,
+      String pCollectionId,
+      FnDataReceiver<WindowedValue<T>> delegate,
+      ExecutionState executionState,
+      BundleCounter elementCountCounter,
+      SampleByteSizeDistribution<T> sampledByteSizeDistribution,
+      Coder<T> coder,
+      @Nullable OutputSampler<T> outputSampler) {
+    Constructor<?> constructor;
+    if (CONSTRUCTORS.size() < MAX_GENERATED_CLASSES) {
+      constructor =
+          CONSTRUCTORS.computeIfAbsent(
+              processBundleDescriptorId + "/" + pCollectionId,
+              unused -> getConstructor(generateClass()));
+    } else {
+      constructor =
+          CONSTRUCTORS.getOrDefault(
+              processBundleDescriptorId + "/" + pCollectionId,
+              getConstructor(FusedMetricTrackingFnDataReceiver.class));
+    }
+    try {
+      return (FnDataReceiver<WindowedValue<T>>)
+          constructor.newInstance(
+              delegate,
+              executionState,
+              elementCountCounter,
+              sampledByteSizeDistribution,
+              coder,
+              outputSampler);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          String.format("Unable to instantiate %s", constructor.getDeclaringClass()), e);
+    }
+  }
+
+  @VisibleForTesting
+  static Class<?> generateClass() {
+    Class<?> templateClass = FusedMetricTrackingFnDataReceiver.class;
+    return new ByteBuddy()
+        .redefine(templateClass)
+        .name(templateClass.getName() + "$Generated$" + GENERATED_CLASS_ID.incrementAndGet())
+        .make()
+        .load(templateClass.getClassLoader(), getClassLoadingStrategy(templateClass))
+        .getLoaded();
+  }
+
+  private static Constructor<?> getConstructor(Class<?> clazz) {
+    try {
+      return clazz.getConstructor(
+          FnDataReceiver.class,
+          ExecutionState.class,
+          BundleCounter.class,
+          SampleByteSizeDistribution.class,
+          Coder.class,
+          OutputSampler.class);
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Returns a strategy which defines the generated classes within the package of {@code
+   * targetClass} so that they can access its package private members.
+   */
+  private static ClassLoadingStrategy<ClassLoader> getClassLoadingStrategy(Class<?> targetClass) {
+    try {
+      if (ClassInjector.UsingLookup.isAvailable()) {
+        Class<?> methodHandles = Class.forName("java.lang.invoke.MethodHandles");
+        Object lookup = methodHandles.getMethod("lookup").invoke(null);
+        Method privateLookupIn =
+            methodHandles.getMethod(
+                "privateLookupIn",
+                Class.class,
+                Class.forName("java.lang.invoke.MethodHandles$Lookup"));
+        Object privateLookup = privateLookupIn.invoke(null, targetClass, lookup);
+        return ClassLoadingStrategy.UsingLookup.of(privateLookup);
+      } else if (ClassInjector.UsingReflection.isAvailable()) {
+        return ClassLoadingStrategy.Default.INJECTION;
+      } else {
+        throw new IllegalStateException("No code generation strategy available");
+      }
+    } catch (ReflectiveOperationException e) {
+      throw new LinkageError(e.getMessage(), e);
+    }
+  }
+}
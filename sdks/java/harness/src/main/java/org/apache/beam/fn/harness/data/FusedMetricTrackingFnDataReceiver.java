@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.data;
+
+import javax.annotation.Nullable;
+import org.apache.beam.fn.harness.control.ExecutionStateSampler.ExecutionState;
+import org.apache.beam.fn.harness.control.Metrics.BundleCounter;
+import org.apache.beam.fn.harness.data.PCollectionConsumerRegistry.SampleByteSizeDistribution;
+import org.apache.beam.fn.harness.debug.OutputSampler;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.util.WindowedValue;
+
+/**
+ * A {@link FnDataReceiver} which counts the elements of a PCollection and passes them to the
+ * PCollection's only consumer within the consumer's {@link ExecutionState}.
+ *
+ * <p>{@link FusedFnDataReceivers} defines a copy of this class for each PCollection. Each copy has
+ * its own bytecode and therefore its own type profile, so the call to the consumer within {@link
+ * #accept} only ever observes a single receiver type. This allows the JIT compiler to inline a
+ * linear chain of fused transforms instead of dispatching each element through a megamorphic call
+ * site. For the copies to be equivalent this class must not have nested classes or lambdas.
+ */
+class FusedMetricTrackingFnDataReceiver<T> implements FnDataReceiver<WindowedValue<T>> {
+  private final FnDataReceiver<WindowedValue<T>> delegate;
+  private final ExecutionState executionState;
+  private final BundleCounter elementCountCounter;
+  private final SampleByteSizeDistribution<T> sampledByteSizeDistribution;
+  private final Coder<T> coder;
+  private final @Nullable OutputSampler<T> outputSampler;
+
+  public FusedMetricTrackingFnDataReceiver(
+      FnDataReceiver<WindowedValue<T>> delegate,
+      ExecutionState executionState,
+      BundleCounter elementCountCounter,
+      SampleByteSizeDistribution<T> sampledByteSizeDistribution,
+      Coder<T> coder,
+      @Nullable OutputSampler<T> outputSampler) {
+    this.delegate = delegate;
+    this.executionState = executionState;
+    this.elementCountCounter = elementCountCounter;
+    this.sampledByteSizeDistribution = sampledByteSizeDistribution;
+    this.coder = coder;
+    this.outputSampler = outputSampler;
+  }
+
+  @Override
+  public void accept(WindowedValue<T> input) throws Exception {
+    // Increment the counter for each window the element occurs in.
+    elementCountCounter.inc(input.getWindows().size());
+    sampledByteSizeDistribution.tryUpdate(input.getValue(), coder);
+
+    if (outputSampler != null) {
+      outputSampler.sample(input.getValue());
+    }
+
+    executionState.activate();
+    try {
+      delegate.accept(input);
+    } finally {
+      executionState.deactivate();
+    }
+    sampledByteSizeDistribution.finishLazyUpdate();
+  }
+}
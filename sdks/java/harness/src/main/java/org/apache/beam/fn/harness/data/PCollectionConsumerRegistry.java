@@ -48,6 +48,7 @@ import org.apache.beam.runners.core.metrics.SimpleMonitoringInfoBuilder;
 import org.apache.beam.sdk.coders.Coder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.sdk.metrics.MetricName;
 import org.apache.beam.sdk.util.WindowedValue;
 import org.apache.beam.sdk.util.WindowedValue.WindowedValueCoder;
 import org.apache.beam.sdk.util.common.ElementByteSizeObserver;
@@ -86,10 +87,12 @@ public class PCollectionConsumerRegistry {
   private final ShortIdMap shortIdMap;
   private final Map<String, List<ConsumerAndMetadata>> pCollectionIdsToConsumers;
   private final Map<String, FnDataReceiver> pCollectionIdsToWrappedConsumer;
+  private final Map<String, SampleByteSizeDistribution> pCollectionIdsToSampledByteSizes;
   private final BundleProgressReporter.Registrar bundleProgressReporterRegistrar;
   private final ProcessBundleDescriptor processBundleDescriptor;
   private final RehydratedComponents rehydratedComponents;
   private final @Nullable DataSampler dataSampler;
+  private final boolean fuseConsumers;
 
   public PCollectionConsumerRegistry(
       ExecutionStateTracker stateTracker,
@@ -105,10 +108,32 @@ public class PCollectionConsumerRegistry {
       BundleProgressReporter.Registrar bundleProgressReporterRegistrar,
       ProcessBundleDescriptor processBundleDescriptor,
       @Nullable DataSampler dataSampler) {
+    this(
+        stateTracker,
+        shortIdMap,
+        bundleProgressReporterRegistrar,
+        processBundleDescriptor,
+        dataSampler,
+        false);
+  }
+
+  /**
+   * Creates a registry which, if {@code fuseConsumers} is set, passes the elements of PCollections
+   * with a single consumer through a receiver whose class is generated for that PCollection. See
+   * {@link FusedMetricTrackingFnDataReceiver} for details.
+   */
+  public PCollectionConsumerRegistry(
+      ExecutionStateTracker stateTracker,
+      ShortIdMap shortIdMap,
+      BundleProgressReporter.Registrar bundleProgressReporterRegistrar,
+      ProcessBundleDescriptor processBundleDescriptor,
+      @Nullable DataSampler dataSampler,
+      boolean fuseConsumers) {
     this.stateTracker = stateTracker;
     this.shortIdMap = shortIdMap;
     this.pCollectionIdsToConsumers = new HashMap<>();
     this.pCollectionIdsToWrappedConsumer = new HashMap<>();
+    this.pCollectionIdsToSampledByteSizes = new HashMap<>();
     this.bundleProgressReporterRegistrar = bundleProgressReporterRegistrar;
     this.processBundleDescriptor = processBundleDescriptor;
     this.rehydratedComponents =
@@ -119,6 +144,7 @@ public class PCollectionConsumerRegistry {
                 .putAllWindowingStrategies(processBundleDescriptor.getWindowingStrategiesMap())
                 .build());
     this.dataSampler = dataSampler;
+    this.fuseConsumers = fuseConsumers;
   }
 
   /**
@@ -217,6 +243,17 @@ public class PCollectionConsumerRegistry {
               return new SplittingMetricTrackingFnDataReceiver(
                   pcId, coder, consumerAndMetadata, dataSampler);
             }
+            if (fuseConsumers) {
+              return FusedFnDataReceivers.create(
+                  processBundleDescriptor.getId(),
+                  pcId,
+                  consumerAndMetadata.getConsumer(),
+                  consumerAndMetadata.getExecutionState(),
+                  createElementCountCounter(pcId),
+                  getSampledByteSizeDistribution(pcId),
+                  (Coder) coder,
+                  dataSampler == null ? null : dataSampler.sampleOutput(pcId, coder));
+            }
             return new MetricTrackingFnDataReceiver(pcId, coder, consumerAndMetadata, dataSampler);
           } else {
             /* TODO(SDF), Consider supporting splitting each consumer individually. This would never
@@ -229,6 +266,70 @@ public class PCollectionConsumerRegistry {
         });
   }
 
+  /**
+   * Returns a distribution which is updated by the data plane with the encoded size of each element
+   * of the PCollection that it receives from or sends to the runner, or null if the sizes of the
+   * PCollection's elements are already reported by another data endpoint.
+   *
+   * <p>Once a distribution has been returned, the consumers of the PCollection no longer encode the
+   * sampled elements to estimate their size. The size of the elements of fused PCollections which
+   * never cross the data plane continues to be estimated with the coder. Note that the encoded size
+   * includes the encoding of the element's timestamp, windows and pane.
+   */
+  public @Nullable Distribution getEncodedByteSizeDistribution(String pCollectionId) {
+    SampleByteSizeDistribution<?> sampledByteSizes = getSampledByteSizeDistribution(pCollectionId);
+    if (sampledByteSizes.usesEncodedByteSizes) {
+      return null;
+    }
+    return sampledByteSizes.useEncodedByteSizes();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> SampleByteSizeDistribution<T> getSampledByteSizeDistribution(String pCollectionId) {
+    return pCollectionIdsToSampledByteSizes.computeIfAbsent(
+        pCollectionId,
+        pcId -> new SampleByteSizeDistribution<>(createSampledByteSizeDistribution(pcId)));
+  }
+
+  /** Creates and registers the counter of the elements within the PCollection. */
+  private BundleCounter createElementCountCounter(String pCollectionId) {
+    HashMap<String, String> labels = new HashMap<>();
+    labels.put(Labels.PCOLLECTION, pCollectionId);
+    MonitoringInfoMetricName elementCountMetricName =
+        MonitoringInfoMetricName.named(MonitoringInfoConstants.Urns.ELEMENT_COUNT, labels);
+    String elementCountShortId =
+        shortIdMap.getOrCreateShortId(
+            new SimpleMonitoringInfoBuilder()
+                .setUrn(MonitoringInfoConstants.Urns.ELEMENT_COUNT)
+                .setType(TypeUrns.SUM_INT64_TYPE)
+                .setLabels(labels)
+                .build());
+    BundleCounter elementCountCounter =
+        Metrics.bundleProcessingThreadCounter(elementCountShortId, elementCountMetricName);
+    bundleProgressReporterRegistrar.register(elementCountCounter);
+    return elementCountCounter;
+  }
+
+  /** Creates and registers the distribution of the sampled byte sizes of the PCollection. */
+  private BundleDistribution createSampledByteSizeDistribution(String pCollectionId) {
+    HashMap<String, String> labels = new HashMap<>();
+    labels.put(Labels.PCOLLECTION, pCollectionId);
+    MonitoringInfoMetricName sampledByteSizeMetricName =
+        MonitoringInfoMetricName.named(Urns.SAMPLED_BYTE_SIZE, labels);
+    String sampledByteSizeShortId =
+        shortIdMap.getOrCreateShortId(
+            new SimpleMonitoringInfoBuilder()
+                .setUrn(Urns.SAMPLED_BYTE_SIZE)
+                .setType(TypeUrns.DISTRIBUTION_INT64_TYPE)
+                .setLabels(labels)
+                .build());
+    BundleDistribution sampledByteSizeDistribution =
+        Metrics.bundleProcessingThreadDistribution(
+            sampledByteSizeShortId, sampledByteSizeMetricName);
+    bundleProgressReporterRegistrar.register(sampledByteSizeDistribution);
+    return sampledByteSizeDistribution;
+  }
+
   /**
    * A wrapping {@code FnDataReceiver<WindowedValue<T>>} which counts the number of elements
    * consumed by the original {@code FnDataReceiver<WindowedValue<T>> consumer} and sets up metrics
@@ -252,36 +353,8 @@ public class PCollectionConsumerRegistry {
       this.delegate = consumerAndMetadata.getConsumer();
       this.executionState = consumerAndMetadata.getExecutionState();
 
-      HashMap<String, String> labels = new HashMap<>();
-      labels.put(Labels.PCOLLECTION, pCollectionId);
-      MonitoringInfoMetricName elementCountMetricName =
-          MonitoringInfoMetricName.named(MonitoringInfoConstants.Urns.ELEMENT_COUNT, labels);
-      String elementCountShortId =
-          shortIdMap.getOrCreateShortId(
-              new SimpleMonitoringInfoBuilder()
-                  .setUrn(MonitoringInfoConstants.Urns.ELEMENT_COUNT)
-                  .setType(TypeUrns.SUM_INT64_TYPE)
-                  .setLabels(labels)
-                  .build());
-      this.elementCountCounter =
-          Metrics.bundleProcessingThreadCounter(elementCountShortId, elementCountMetricName);
-      bundleProgressReporterRegistrar.register(elementCountCounter);
-
-      MonitoringInfoMetricName sampledByteSizeMetricName =
-          MonitoringInfoMetricName.named(Urns.SAMPLED_BYTE_SIZE, labels);
-      String sampledByteSizeShortId =
-          shortIdMap.getOrCreateShortId(
-              new SimpleMonitoringInfoBuilder()
-                  .setUrn(Urns.SAMPLED_BYTE_SIZE)
-                  .setType(TypeUrns.DISTRIBUTION_INT64_TYPE)
-                  .setLabels(labels)
-                  .build());
-      BundleDistribution sampledByteSizeUnderlyingDistribution =
-          Metrics.bundleProcessingThreadDistribution(
-              sampledByteSizeShortId, sampledByteSizeMetricName);
-      this.sampledByteSizeDistribution =
-          new SampleByteSizeDistribution<>(sampledByteSizeUnderlyingDistribution);
-      bundleProgressReporterRegistrar.register(sampledByteSizeUnderlyingDistribution);
+      this.elementCountCounter = createElementCountCounter(pCollectionId);
+      this.sampledByteSizeDistribution = getSampledByteSizeDistribution(pCollectionId);
 
       this.coder = coder;
       if (dataSampler == null) {
@@ -338,36 +411,8 @@ public class PCollectionConsumerRegistry {
         @Nullable DataSampler dataSampler) {
       this.consumerAndMetadatas = consumerAndMetadatas;
 
-      HashMap<String, String> labels = new HashMap<>();
-      labels.put(Labels.PCOLLECTION, pCollectionId);
-      MonitoringInfoMetricName elementCountMetricName =
-          MonitoringInfoMetricName.named(MonitoringInfoConstants.Urns.ELEMENT_COUNT, labels);
-      String elementCountShortId =
-          shortIdMap.getOrCreateShortId(
-              new SimpleMonitoringInfoBuilder()
-                  .setUrn(MonitoringInfoConstants.Urns.ELEMENT_COUNT)
-                  .setType(TypeUrns.SUM_INT64_TYPE)
-                  .setLabels(labels)
-                  .build());
-      this.elementCountCounter =
-          Metrics.bundleProcessingThreadCounter(elementCountShortId, elementCountMetricName);
-      bundleProgressReporterRegistrar.register(elementCountCounter);
-
-      MonitoringInfoMetricName sampledByteSizeMetricName =
-          MonitoringInfoMetricName.named(Urns.SAMPLED_BYTE_SIZE, labels);
-      String sampledByteSizeShortId =
-          shortIdMap.getOrCreateShortId(
-              new SimpleMonitoringInfoBuilder()
-                  .setUrn(Urns.SAMPLED_BYTE_SIZE)
-                  .setType(TypeUrns.DISTRIBUTION_INT64_TYPE)
-                  .setLabels(labels)
-                  .build());
-      BundleDistribution sampledByteSizeUnderlyingDistribution =
-          Metrics.bundleProcessingThreadDistribution(
-              sampledByteSizeShortId, sampledByteSizeMetricName);
-      this.sampledByteSizeDistribution =
-          new SampleByteSizeDistribution<>(sampledByteSizeUnderlyingDistribution);
-      bundleProgressReporterRegistrar.register(sampledByteSizeUnderlyingDistribution);
+      this.elementCountCounter = createElementCountCounter(pCollectionId);
+      this.sampledByteSizeDistribution = getSampledByteSizeDistribution(pCollectionId);
 
       this.coder = coder;
       if (dataSampler == null) {
@@ -438,7 +483,7 @@ public class PCollectionConsumerRegistry {
     }
   }
 
-  private static class SampleByteSizeDistribution<T> {
+  static class SampleByteSizeDistribution<T> {
     /** Basic implementation of {@link ElementByteSizeObserver} for use in size estimation. */
     private static class ByteSizeObserver extends ElementByteSizeObserver {
       private long observedSize = 0;
@@ -449,16 +494,52 @@ public class PCollectionConsumerRegistry {
       }
     }
 
+    /**
+     * A {@link Distribution} which is updated with the encoded size of every element and samples
+     * the sizes in the same way as {@link #tryUpdate}.
+     */
+    private class EncodedByteSizeDistribution implements Distribution {
+      @Override
+      public void update(long value) {
+        if (shouldSampleElement()) {
+          distribution.update(value);
+        }
+      }
+
+      @Override
+      public void update(long sum, long count, long min, long max) {
+        if (shouldSampleElement()) {
+          distribution.update(sum, count, min, max);
+        }
+      }
+
+      @Override
+      public MetricName getName() {
+        return distribution.getName();
+      }
+    }
+
     final Distribution distribution;
     ByteSizeObserver byteCountObserver;
+    boolean usesEncodedByteSizes;
 
     public SampleByteSizeDistribution(Distribution distribution) {
       this.distribution = distribution;
       this.byteCountObserver = null;
+      this.usesEncodedByteSizes = false;
+    }
+
+    /**
+     * Returns a {@link Distribution} to update with the encoded size of every element instead of
+     * estimating the size of the sampled elements with their coder.
+     */
+    public Distribution useEncodedByteSizes() {
+      usesEncodedByteSizes = true;
+      return new EncodedByteSizeDistribution();
     }
 
     public void tryUpdate(T value, Coder<T> coder) throws Exception {
-      if (shouldSampleElement()) {
+      if (!usesEncodedByteSizes && shouldSampleElement()) {
         // First try using byte size observer
         byteCountObserver = new ByteSizeObserver();
         coder.registerByteSizeObserver(value, byteCountObserver);
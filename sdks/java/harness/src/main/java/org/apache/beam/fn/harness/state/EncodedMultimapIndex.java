@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.apache.beam.sdk.util.Weighted;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.UnsafeByteOperations;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable index from encoded keys to the encoded values of a multimap side input.
+ *
+ * <p>The keys and values are stored in a small number of, optionally direct, {@link ByteBuffer}s
+ * instead of as decoded Java objects. The buffers start small and grow geometrically up to {@link
+ * #MAX_CHUNK_SIZE} so that small side inputs don't pay for large buffers. The keys are sorted by
+ * their unsigned lexicographical order so that a key is found with a binary search.
+ */
+class EncodedMultimapIndex implements Weighted {
+  @VisibleForTesting static final int INITIAL_CHUNK_SIZE = 64 << 10;
+  @VisibleForTesting static final int MAX_CHUNK_SIZE = 64 << 20;
+
+  private static final Comparator<ByteString> KEY_ORDER =
+      ByteString.unsignedLexicographicalComparator();
+
+  // Each entry is described by the index of its chunk, the offset of the key within the chunk, the
+  // length of the key and the length of the values which directly follow the key.
+  private static final int CHUNK = 0;
+  private static final int OFFSET = 1;
+  private static final int KEY_LENGTH = 2;
+  private static final int VALUES_LENGTH = 3;
+  private static final int ENTRY_STRIDE = 4;
+
+  private final List<ByteBuffer> chunks;
+  private final int[] entries;
+  private final int numEntries;
+  private final long weight;
+
+  private EncodedMultimapIndex(List<ByteBuffer> chunks, int[] entries, int numEntries) {
+    this.chunks = chunks;
+    this.entries = entries;
+    this.numEntries = numEntries;
+    long weight = (long) entries.length * Integer.BYTES;
+    for (ByteBuffer chunk : chunks) {
+      weight += chunk.capacity();
+    }
+    this.weight = weight;
+  }
+
+  static Builder builder(boolean offHeap) {
+    return new Builder(offHeap, INITIAL_CHUNK_SIZE, MAX_CHUNK_SIZE);
+  }
+
+  /** Returns the number of keys within this index. */
+  int size() {
+    return numEntries;
+  }
+
+  /** Returns the encoded key at {@code index} in ascending order. */
+  ByteString getKey(int index) {
+    int entry = index * ENTRY_STRIDE;
+    return slice(entries[entry + CHUNK], entries[entry + OFFSET], entries[entry + KEY_LENGTH]);
+  }
+
+  /**
+   * Returns the concatenated encoded values of {@code encodedKey} or null if the key is not
+   * present. The returned {@link ByteString} shares the memory of this index.
+   */
+  @Nullable
+  ByteString getValues(ByteString encodedKey) {
+    int low = 0;
+    int high = numEntries - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = compareKey(mid, encodedKey);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        int entry = mid * ENTRY_STRIDE;
+        return slice(
+            entries[entry + CHUNK],
+            entries[entry + OFFSET] + entries[entry + KEY_LENGTH],
+            entries[entry + VALUES_LENGTH]);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public long getWeight() {
+    return weight;
+  }
+
+  /** Compares the key at {@code index} with {@code encodedKey} using unsigned byte order. */
+  private int compareKey(int index, ByteString encodedKey) {
+    int entry = index * ENTRY_STRIDE;
+    ByteBuffer chunk = chunks.get(entries[entry + CHUNK]);
+    int offset = entries[entry + OFFSET];
+    int keyLength = entries[entry + KEY_LENGTH];
+    int length = Math.min(keyLength, encodedKey.size());
+    for (int i = 0; i < length; ++i) {
+      int comparison =
+          Integer.compare(
+              Byte.toUnsignedInt(chunk.get(offset + i)), Byte.toUnsignedInt(encodedKey.byteAt(i)));
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(keyLength, encodedKey.size());
+  }
+
+  private ByteString slice(int chunkIndex, int offset, int length) {
+    ByteBuffer slice = chunks.get(chunkIndex).duplicate();
+    slice.position(offset);
+    slice.limit(offset + length);
+    return UnsafeByteOperations.unsafeWrap(slice.slice());
+  }
+
+  /**
+   * Builds an {@link EncodedMultimapIndex} from keys which are added in ascending unsigned
+   * lexicographical order.
+   */
+  static class Builder {
+    private final boolean offHeap;
+    private final int maxChunkSize;
+    private int chunkSize;
+    private final List<ByteBuffer> chunks;
+    private int[] entries;
+    private int numEntries;
+    private @Nullable ByteString lastKey;
+
+    @VisibleForTesting
+    Builder(boolean offHeap, int initialChunkSize, int maxChunkSize) {
+      checkArgument(
+          0 < initialChunkSize && initialChunkSize <= maxChunkSize,
+          "Expected 0 < initialChunkSize <= maxChunkSize but got %s and %s.",
+          initialChunkSize,
+          maxChunkSize);
+      this.offHeap = offHeap;
+      this.maxChunkSize = maxChunkSize;
+      this.chunkSize = initialChunkSize;
+      this.chunks = new ArrayList<>();
+      this.entries = new int[16 * ENTRY_STRIDE];
+    }
+
+    /** Adds the concatenated encoded values of a key which is greater than all previous keys. */
+    Builder put(ByteString encodedKey, ByteString encodedValues) {
+      checkArgument(
+          lastKey == null || KEY_ORDER.compare(lastKey, encodedKey) < 0,
+          "Keys must be added in ascending order.");
+      lastKey = encodedKey;
+
+      int size = encodedKey.size() + encodedValues.size();
+      checkArgument(size >= 0, "Key and values exceed the maximum size of 2 GiB.");
+      ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+      if (chunk == null || chunk.remaining() < size) {
+        if (chunk != null) {
+          chunkSize = (int) Math.min(maxChunkSize, 2L * chunkSize);
+        }
+        int capacity = Math.max(chunkSize, size);
+        chunk = offHeap ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        chunks.add(chunk);
+      }
+
+      if ((numEntries + 1) * ENTRY_STRIDE > entries.length) {
+        entries = Arrays.copyOf(entries, entries.length * 2);
+      }
+      int entry = numEntries * ENTRY_STRIDE;
+      entries[entry + CHUNK] = chunks.size() - 1;
+      entries[entry + OFFSET] = chunk.position();
+      entries[entry + KEY_LENGTH] = encodedKey.size();
+      entries[entry + VALUES_LENGTH] = encodedValues.size();
+      numEntries += 1;
+
+      encodedKey.copyTo(chunk);
+      encodedValues.copyTo(chunk);
+      return this;
+    }
+
+    EncodedMultimapIndex build() {
+      // Release the unused space of the last chunk.
+      if (!chunks.isEmpty()) {
+        ByteBuffer last = chunks.get(chunks.size() - 1);
+        if (last.remaining() > 0) {
+          ByteBuffer trimmed =
+              offHeap
+                  ? ByteBuffer.allocateDirect(last.position())
+                  : ByteBuffer.allocate(last.position());
+          last.flip();
+          trimmed.put(last);
+          chunks.set(chunks.size() - 1, trimmed);
+        }
+      }
+      return new EncodedMultimapIndex(
+          chunks, Arrays.copyOf(entries, numEntries * ENTRY_STRIDE), numEntries);
+    }
+  }
+}
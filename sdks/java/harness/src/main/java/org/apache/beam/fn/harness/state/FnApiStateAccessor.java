@@ -55,6 +55,7 @@ import org.apache.beam.sdk.state.WatermarkHoldState;
 import org.apache.beam.sdk.transforms.Combine.CombineFn;
 import org.apache.beam.sdk.transforms.CombineWithContext.CombineFnWithContext;
 import org.apache.beam.sdk.transforms.Materializations;
+import org.apache.beam.sdk.transforms.Materializations.MultimapView;
 import org.apache.beam.sdk.transforms.windowing.BoundedWindow;
 import org.apache.beam.sdk.transforms.windowing.TimestampCombiner;
 import org.apache.beam.sdk.util.ByteStringOutputStream;
@@ -82,6 +83,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
   private final Supplier<List<BeamFnApi.ProcessBundleRequest.CacheToken>> cacheTokens;
   private final Supplier<Cache<?, ?>> bundleCache;
   private final Cache<?, ?> processWideCache;
+  private final @Nullable SideInputIndexStore sideInputIndexStore;
   private final Collection<ThrowingRunnable> stateFinalizers;
 
   private final Supplier<BoundedWindow> currentWindowSupplier;
@@ -96,6 +98,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
       Supplier<List<CacheToken>> cacheTokens,
       Supplier<Cache<?, ?>> bundleCache,
       Cache<?, ?> processWideCache,
+      @Nullable SideInputIndexStore sideInputIndexStore,
       Map<TupleTag<?>, SideInputSpec> sideInputSpecMap,
       BeamFnStateClient beamFnStateClient,
       Coder<K> keyCoder,
@@ -111,6 +114,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
     this.cacheTokens = cacheTokens;
     this.bundleCache = bundleCache;
     this.processWideCache = processWideCache;
+    this.sideInputIndexStore = sideInputIndexStore;
     this.stateFinalizers = new ArrayList<>();
     this.currentWindowSupplier = currentWindowSupplier;
     this.encodedCurrentKeySupplier =
@@ -232,10 +236,7 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
                   return sideInputSpec
                       .getViewFn()
                       .apply(
-                          new MultimapSideInput<>(
-                              getCacheFor(key),
-                              beamFnStateClient,
-                              processBundleInstructionId.get(),
+                          createMultimapSideInput(
                               key,
                               ((KvCoder) sideInputSpec.getCoder()).getKeyCoder(),
                               ((KvCoder) sideInputSpec.getCoder()).getValueCoder()));
@@ -253,6 +254,41 @@ public class FnApiStateAccessor<K> implements SideInputReader, StateBinder {
             });
   }
 
+  /**
+   * Creates a multimap side input which is read from the {@link SideInputIndexStore} if the side
+   * input has a cache token and is small enough to be indexed.
+   */
+  private <KeyT, ValueT> MultimapView<KeyT, ValueT> createMultimapSideInput(
+      StateKey stateKey, Coder<KeyT> keyCoder, Coder<ValueT> valueCoder) {
+    if (sideInputIndexStore != null) {
+      StateKey.MultimapKeysSideInput sideInput = stateKey.getMultimapKeysSideInput();
+      for (CacheToken token : cacheTokens.get()) {
+        if (token.hasSideInput()
+            && sideInput.getTransformId().equals(token.getSideInput().getTransformId())
+            && sideInput.getSideInputId().equals(token.getSideInput().getSideInputId())) {
+          EncodedMultimapIndex index =
+              sideInputIndexStore.getOrBuild(
+                  token.getToken(),
+                  stateKey,
+                  beamFnStateClient,
+                  processBundleInstructionId.get(),
+                  keyCoder);
+          if (index != null) {
+            return new IndexedMultimapSideInput<>(index, keyCoder, valueCoder);
+          }
+          break;
+        }
+      }
+    }
+    return new MultimapSideInput<>(
+        getCacheFor(stateKey),
+        beamFnStateClient,
+        processBundleInstructionId.get(),
+        stateKey,
+        keyCoder,
+        valueCoder);
+  }
+
   @Override
   public <T> boolean contains(PCollectionView<T> view) {
     return sideInputSpecMap.containsKey(view.getTagInternal());
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.transforms.Materializations.MultimapView;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+
+/**
+ * An implementation of a multimap side input that decodes keys and values from an {@link
+ * EncodedMultimapIndex} on access.
+ *
+ * <p>The keys are returned in the order of their encoded form.
+ */
+class IndexedMultimapSideInput<K, V> implements MultimapView<K, V> {
+  private final EncodedMultimapIndex index;
+  private final Coder<K> keyCoder;
+  private final Coder<V> valueCoder;
+
+  IndexedMultimapSideInput(EncodedMultimapIndex index, Coder<K> keyCoder, Coder<V> valueCoder) {
+    this.index = index;
+    this.keyCoder = keyCoder;
+    this.valueCoder = valueCoder;
+  }
+
+  @Override
+  public Iterable<K> get() {
+    return () ->
+        new Iterator<K>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return next < index.size();
+          }
+
+          @Override
+          public K next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            try {
+              return keyCoder.decode(index.getKey(next++).newInput());
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+          }
+        };
+  }
+
+  @Override
+  public Iterable<V> get(K k) {
+    ByteStringOutputStream output = new ByteStringOutputStream();
+    try {
+      keyCoder.encode(k, output);
+    } catch (IOException e) {
+      throw new IllegalStateException(String.format("Failed to encode key %s.", k), e);
+    }
+    ByteString encodedValues = index.getValues(output.toByteString());
+    if (encodedValues == null) {
+      return Collections.emptyList();
+    }
+    return () -> new DecodingIterator<>(encodedValues.newInput(), valueCoder);
+  }
+
+  /** Decodes the values of an input stream of concatenated encoded values. */
+  private static class DecodingIterator<T> implements Iterator<T> {
+    private final InputStream input;
+    private final Coder<T> coder;
+
+    private DecodingIterator(InputStream input, Coder<T> coder) {
+      this.input = input;
+      this.coder = coder;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        return input.available() > 0;
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      try {
+        return coder.decode(input);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
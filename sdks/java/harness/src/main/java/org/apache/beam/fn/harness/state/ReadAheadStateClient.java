@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import org.apache.beam.fn.harness.HarnessMetricUrns;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
+import org.apache.beam.runners.core.metrics.LabeledMetrics;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Labels;
+import org.apache.beam.runners.core.metrics.MonitoringInfoMetricName;
+import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Distribution;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BeamFnStateClient} which reads ahead the pages of paginated {@code get} requests and
+ * reports how long the bundle processing thread waits for state.
+ *
+ * <p>Whenever a {@code get} response contains a continuation token, up to {@code readAheadPages}
+ * following pages are requested before they are asked for. Since a continuation token is only
+ * known once the preceding page has been received, the pages are requested one after another
+ * without waiting for them to be consumed. The requests are sent from the supplied {@link Executor}
+ * since sending may block on flow control which must not happen on the thread completing the
+ * response. A request which matches a page that was read ahead is answered by that page instead of
+ * being sent again. A read ahead request which fails is answered with its failure once the page is
+ * asked for.
+ *
+ * <p>The following metrics are reported for the transform that is currently being executed:
+ *
+ * <ul>
+ *   <li>{@link HarnessMetricUrns#STATE_READ_AHEAD_HITS}: the number of requests answered by a page
+ *       that was read ahead.
+ *   <li>{@link HarnessMetricUrns#STATE_PREFETCH_HITS}: the number of responses which were available
+ *       when they were waited on.
+ *   <li>{@link HarnessMetricUrns#STATE_WAIT_MICROS}: the time spent waiting on each response.
+ * </ul>
+ *
+ * <p>{@link #finishBundle} must be invoked before a bundle completes. It stops reading ahead and
+ * waits for the pages which were read ahead but never consumed so that none of the bundle's state
+ * requests are in flight once the bundle completes.
+ */
+public class ReadAheadStateClient implements BeamFnStateClient {
+  private static final Logger LOG = LoggerFactory.getLogger(ReadAheadStateClient.class);
+
+  private final BeamFnStateClient beamFnStateClient;
+  private final int readAheadPages;
+  private final Executor executor;
+  private final Supplier<@Nullable String> currentPTransformId;
+  private final Map<StateRequest, CompletableFuture<StateResponse>> pagesReadAhead;
+  private final Map<String, StateMetrics> metricsForPTransform;
+  private final Object lock;
+
+  /** Incremented whenever the read ahead pages are discarded. Guarded by {@link #lock}. */
+  private long generation;
+
+  public ReadAheadStateClient(
+      BeamFnStateClient beamFnStateClient,
+      int readAheadPages,
+      Executor executor,
+      Supplier<@Nullable String> currentPTransformId) {
+    checkArgument(readAheadPages > 0, "Expected a positive number of pages to read ahead.");
+    this.beamFnStateClient = beamFnStateClient;
+    this.readAheadPages = readAheadPages;
+    this.executor = executor;
+    this.currentPTransformId = currentPTransformId;
+    this.pagesReadAhead = new ConcurrentHashMap<>();
+    this.metricsForPTransform = new ConcurrentHashMap<>();
+    this.lock = new Object();
+  }
+
+  @Override
+  public CompletableFuture<StateResponse> handle(StateRequest.Builder requestBuilder) {
+    String pTransformId = currentPTransformId.get();
+    StateMetrics metrics =
+        pTransformId == null
+            ? null
+            : metricsForPTransform.computeIfAbsent(pTransformId, StateMetrics::new);
+
+    CompletableFuture<StateResponse> response;
+    if (requestBuilder.hasGet()) {
+      StateRequest request = requestBuilder.build();
+      response = pagesReadAhead.remove(request);
+      if (response == null) {
+        response = beamFnStateClient.handle(requestBuilder);
+      } else if (metrics != null) {
+        metrics.readAheadHits.inc();
+      }
+      long currentGeneration;
+      synchronized (lock) {
+        currentGeneration = generation;
+      }
+      readAhead(request, response, readAheadPages, currentGeneration);
+    } else {
+      response = beamFnStateClient.handle(requestBuilder);
+    }
+
+    if (metrics == null) {
+      return response;
+    }
+    TimedStateResponse timedResponse = new TimedStateResponse(metrics);
+    response.whenComplete(
+        (stateResponse, throwable) -> {
+          if (throwable != null) {
+            timedResponse.completeExceptionally(throwable);
+          } else {
+            timedResponse.complete(stateResponse);
+          }
+        });
+    return timedResponse;
+  }
+
+  /**
+   * Stops reading ahead for requests which are currently in flight, waits for the pages which were
+   * read ahead but never consumed and discards them.
+   */
+  public void finishBundle() throws InterruptedException {
+    List<CompletableFuture<StateResponse>> unconsumedPages;
+    synchronized (lock) {
+      generation += 1;
+      unconsumedPages = new ArrayList<>(pagesReadAhead.values());
+      pagesReadAhead.clear();
+    }
+    for (CompletableFuture<StateResponse> page : unconsumedPages) {
+      try {
+        page.get();
+      } catch (ExecutionException e) {
+        LOG.warn("Failed to read ahead a state page which was never consumed.", e.getCause());
+      }
+    }
+  }
+
+  @VisibleForTesting
+  int getNumPagesReadAhead() {
+    return pagesReadAhead.size();
+  }
+
+  /**
+   * Ensures that the {@code remainingPages} pages following the page requested by {@code request}
+   * are being read ahead once {@code response} completes.
+   */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  private void readAhead(
+      StateRequest request,
+      CompletableFuture<StateResponse> response,
+      int remainingPages,
+      long requestGeneration) {
+    if (remainingPages <= 0) {
+      return;
+    }
+    response.thenAcceptAsync(
+        stateResponse -> {
+          ByteString continuationToken = stateResponse.getGet().getContinuationToken();
+          if (continuationToken.isEmpty()) {
+            return;
+          }
+          StateRequest nextRequest =
+              request
+                  .toBuilder()
+                  .setGet(StateGetRequest.newBuilder().setContinuationToken(continuationToken))
+                  .build();
+          CompletableFuture<StateResponse> nextResponse;
+          synchronized (lock) {
+            if (generation != requestGeneration) {
+              return;
+            }
+            nextResponse = pagesReadAhead.get(nextRequest);
+            if (nextResponse == null) {
+              try {
+                nextResponse = beamFnStateClient.handle(nextRequest.toBuilder());
+              } catch (RuntimeException e) {
+                // Report the failure to whoever asks for the page.
+                nextResponse = new CompletableFuture<>();
+                nextResponse.completeExceptionally(e);
+              }
+              pagesReadAhead.put(nextRequest, nextResponse);
+            }
+          }
+          readAhead(nextRequest, nextResponse, remainingPages - 1, requestGeneration);
+        },
+        executor);
+  }
+
+  /** The metrics reported for state requests made while executing a single transform. */
+  private static class StateMetrics {
+    private final Counter readAheadHits;
+    private final Counter prefetchHits;
+    private final Distribution waitMicros;
+
+    private StateMetrics(String pTransformId) {
+      Map<String, String> labels = new HashMap<>();
+      labels.put(Labels.PTRANSFORM, pTransformId);
+      this.readAheadHits =
+          LabeledMetrics.counter(
+              MonitoringInfoMetricName.named(HarnessMetricUrns.STATE_READ_AHEAD_HITS, labels));
+      this.prefetchHits =
+          LabeledMetrics.counter(
+              MonitoringInfoMetricName.named(HarnessMetricUrns.STATE_PREFETCH_HITS, labels));
+      this.waitMicros =
+          LabeledMetrics.distribution(
+              MonitoringInfoMetricName.named(HarnessMetricUrns.STATE_WAIT_MICROS, labels));
+    }
+  }
+
+  /** A response which records how long the caller waited for it to be completed. */
+  private static class TimedStateResponse extends CompletableFuture<StateResponse> {
+    private final StateMetrics metrics;
+
+    private TimedStateResponse(StateMetrics metrics) {
+      this.metrics = metrics;
+    }
+
+    @Override
+    public StateResponse get() throws InterruptedException, ExecutionException {
+      if (isDone()) {
+        metrics.prefetchHits.inc();
+        metrics.waitMicros.update(0);
+        return super.get();
+      }
+      long startNanos = System.nanoTime();
+      try {
+        return super.get();
+      } finally {
+        metrics.waitMicros.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+      }
+    }
+
+    @Override
+    public StateResponse get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      if (isDone()) {
+        metrics.prefetchHits.inc();
+        metrics.waitMicros.update(0);
+        return super.get(timeout, unit);
+      }
+      long startNanos = System.nanoTime();
+      try {
+        return super.get(timeout, unit);
+      } finally {
+        metrics.waitMicros.update(
+            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+      }
+    }
+  }
+}
@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.apache.beam.fn.harness.state.StateFetchingIterators.LazyBlockingStateFetchingIterator;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.sdk.coders.Coder;
+import org.apache.beam.sdk.options.ExperimentalOptions;
+import org.apache.beam.sdk.options.PipelineOptions;
+import org.apache.beam.sdk.options.SdkHarnessOptions;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Throwables;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A process wide store of {@link EncodedMultimapIndex}es for multimap side inputs which is shared
+ * by all bundles and all DoFn instances of the SDK harness.
+ *
+ * <p>An index is materialized once for each window of a side input and cache token. Since the
+ * runner supplies a new cache token whenever the contents of a side input change, all indices of a
+ * side input which were built for a different cache token are discarded as soon as the side input
+ * is accessed with a new cache token. Side inputs which have not been accessed recently are
+ * discarded once the indices exceed the configured size. Indices which exceed the configured size
+ * by themselves are not stored and the side input is read using the Beam Fn State API instead.
+ */
+public class SideInputIndexStore {
+  /** Stores the encoded keys and values in direct byte buffers instead of on the Java heap. */
+  public static final String OFF_HEAP_EXPERIMENT = "side_input_index_off_heap";
+
+  // The number of requests for the values of different keys which are outstanding at once while
+  // building an index.
+  private static final int MAX_OUTSTANDING_VALUE_REQUESTS = 16;
+
+  private final long maxBytes;
+  private final boolean offHeap;
+  // Ordered by access so that the least recently used side input is discarded first.
+  private final LinkedHashMap<SideInputId, SideInputVersion> sideInputs;
+  private long totalBytes;
+
+  public SideInputIndexStore(long maxBytes, boolean offHeap) {
+    this.maxBytes = maxBytes;
+    this.offHeap = offHeap;
+    this.sideInputs = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /** Returns a store configured by the {@link PipelineOptions} or null if it is disabled. */
+  public static @Nullable SideInputIndexStore fromOptions(PipelineOptions options) {
+    long maxBytes = options.as(SdkHarnessOptions.class).getSideInputIndexCacheMb() * 1024L * 1024L;
+    if (maxBytes <= 0) {
+      return null;
+    }
+    return new SideInputIndexStore(
+        maxBytes, ExperimentalOptions.hasExperiment(options, OFF_HEAP_EXPERIMENT));
+  }
+
+  /**
+   * Returns the index of the multimap side input identified by {@code stateKey} for the {@code
+   * cacheToken}, building it using {@code beamFnStateClient} if necessary. Returns null if the
+   * side input is too large to be stored.
+   *
+   * <p>Concurrent callers requesting the same index wait for the index built by the first caller.
+   */
+  @Nullable
+  EncodedMultimapIndex getOrBuild(
+      ByteString cacheToken,
+      StateKey stateKey,
+      BeamFnStateClient beamFnStateClient,
+      String instructionId,
+      Coder<?> keyCoder) {
+    checkArgument(
+        stateKey.hasMultimapKeysSideInput(),
+        "Expected MultimapKeysSideInput StateKey but received %s.",
+        stateKey);
+    StateKey.MultimapKeysSideInput sideInput = stateKey.getMultimapKeysSideInput();
+    SideInputId sideInputId =
+        new SideInputId(sideInput.getTransformId(), sideInput.getSideInputId());
+
+    CompletableFuture<@Nullable EncodedMultimapIndex> index;
+    boolean shouldBuild = false;
+    synchronized (sideInputs) {
+      SideInputVersion version = sideInputs.get(sideInputId);
+      if (version == null || !version.cacheToken.equals(cacheToken)) {
+        if (version != null) {
+          totalBytes -= version.bytes;
+        }
+        version = new SideInputVersion(cacheToken);
+        sideInputs.put(sideInputId, version);
+      }
+      index = version.indices.get(sideInput.getWindow());
+      if (index == null) {
+        index = new CompletableFuture<>();
+        version.indices.put(sideInput.getWindow(), index);
+        shouldBuild = true;
+      }
+    }
+
+    if (shouldBuild) {
+      try {
+        EncodedMultimapIndex builtIndex =
+            build(
+                beamFnStateClient,
+                StateRequest.newBuilder().setInstructionId(instructionId).setStateKey(stateKey),
+                keyCoder);
+        if (builtIndex.getWeight() > maxBytes) {
+          index.complete(null);
+        } else {
+          store(sideInputId, cacheToken, builtIndex);
+          index.complete(builtIndex);
+        }
+      } catch (RuntimeException | IOException e) {
+        // Allow a later attempt to build the index again.
+        synchronized (sideInputs) {
+          SideInputVersion version = sideInputs.get(sideInputId);
+          if (version != null && version.cacheToken.equals(cacheToken)) {
+            version.indices.remove(sideInput.getWindow());
+          }
+        }
+        index.completeExceptionally(e);
+      }
+    }
+
+    try {
+      return index.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(
+          String.format("Failed to read side input %s.", sideInput.getSideInputId()),
+          e.getCause());
+    }
+  }
+
+  @VisibleForTesting
+  long getTotalBytes() {
+    synchronized (sideInputs) {
+      return totalBytes;
+    }
+  }
+
+  private void store(SideInputId sideInputId, ByteString cacheToken, EncodedMultimapIndex index) {
+    synchronized (sideInputs) {
+      SideInputVersion version = sideInputs.get(sideInputId);
+      // The side input may have been discarded or accessed with a newer cache token meanwhile.
+      if (version == null || !version.cacheToken.equals(cacheToken)) {
+        return;
+      }
+      version.bytes += index.getWeight();
+      totalBytes += index.getWeight();
+      Iterator<SideInputVersion> eldest = sideInputs.values().iterator();
+      while (totalBytes > maxBytes && eldest.hasNext()) {
+        SideInputVersion candidate = eldest.next();
+        if (candidate != version) {
+          totalBytes -= candidate.bytes;
+          eldest.remove();
+        }
+      }
+    }
+  }
+
+  /**
+   * Fetches all keys of the multimap side input and then the values of each key, sorting the keys
+   * by their encoded form.
+   */
+  private EncodedMultimapIndex build(
+      BeamFnStateClient beamFnStateClient, StateRequest.Builder keysRequest, Coder<?> keyCoder)
+      throws IOException {
+    List<ByteString> encodedKeys = new ArrayList<>();
+    ByteString keysData = readAll(beamFnStateClient, keysRequest.build());
+    InputStream keysInput = keysData.newInput();
+    int available = keysInput.available();
+    while (available > 0) {
+      keyCoder.decode(keysInput);
+      int remaining = keysInput.available();
+      encodedKeys.add(
+          keysData.substring(keysData.size() - available, keysData.size() - remaining));
+      available = remaining;
+    }
+    encodedKeys.sort(ByteString.unsignedLexicographicalComparator());
+
+    StateKey.MultimapKeysSideInput sideInput = keysRequest.getStateKey().getMultimapKeysSideInput();
+    EncodedMultimapIndex.Builder builder = EncodedMultimapIndex.builder(offHeap);
+    ArrayDeque<LazyBlockingStateFetchingIterator> outstandingRequests = new ArrayDeque<>();
+    int nextRequest = 0;
+    for (ByteString encodedKey : encodedKeys) {
+      while (nextRequest < encodedKeys.size()
+          && outstandingRequests.size() < MAX_OUTSTANDING_VALUE_REQUESTS) {
+        StateKey.Builder valuesKey = StateKey.newBuilder();
+        valuesKey
+            .getMultimapSideInputBuilder()
+            .setTransformId(sideInput.getTransformId())
+            .setSideInputId(sideInput.getSideInputId())
+            .setWindow(sideInput.getWindow())
+            .setKey(encodedKeys.get(nextRequest));
+        LazyBlockingStateFetchingIterator values =
+            new LazyBlockingStateFetchingIterator(
+                beamFnStateClient, keysRequest.clone().setStateKey(valuesKey).build());
+        values.prefetch();
+        outstandingRequests.add(values);
+        nextRequest += 1;
+      }
+      builder.put(encodedKey, concatenate(outstandingRequests.remove()));
+    }
+    return builder.build();
+  }
+
+  private static ByteString readAll(BeamFnStateClient beamFnStateClient, StateRequest request) {
+    return concatenate(new LazyBlockingStateFetchingIterator(beamFnStateClient, request));
+  }
+
+  private static ByteString concatenate(Iterator<ByteString> pages) {
+    ByteString data = ByteString.EMPTY;
+    while (pages.hasNext()) {
+      data = data.concat(pages.next());
+    }
+    return data;
+  }
+
+  private static class SideInputId {
+    private final String transformId;
+    private final String sideInputId;
+
+    private SideInputId(String transformId, String sideInputId) {
+      this.transformId = transformId;
+      this.sideInputId = sideInputId;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof SideInputId)) {
+        return false;
+      }
+      SideInputId that = (SideInputId) o;
+      return transformId.equals(that.transformId) && sideInputId.equals(that.sideInputId);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(transformId, sideInputId);
+    }
+  }
+
+  /** The indices of all windows of a side input for a single cache token. */
+  private static class SideInputVersion {
+    private final ByteString cacheToken;
+    private final Map<ByteString, CompletableFuture<@Nullable EncodedMultimapIndex>> indices;
+    private long bytes;
+
+    private SideInputVersion(ByteString cacheToken) {
+      this.cacheToken = cacheToken;
+      this.indices = new HashMap<>();
+    }
+  }
+}
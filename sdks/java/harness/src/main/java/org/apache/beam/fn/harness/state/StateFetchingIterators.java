@@ -192,7 +192,7 @@ public class StateFetchingIterators {
 
       public static <T> Block<T> fromValues(List<T> values, @Nullable ByteString nextToken) {
         return new AutoValue_StateFetchingIterators_CachingStateIterable_Block<>(
-            values, nextToken, Caches.weigh(values) + Caches.weigh(nextToken));
+            values, nextToken, Caches.weighSampled(values) + Caches.weigh(nextToken));
       }
 
       abstract List<T> getValues();
@@ -287,7 +287,7 @@ public class StateFetchingIterators {
     public void clearAndAppend(List<T> values) {
       cache.put(
           IterableCacheKey.INSTANCE,
-          new MutatedBlocks<>(Block.mutatedBlock(values, Caches.weigh(values))));
+          new MutatedBlocks<>(Block.mutatedBlock(values, Caches.weighSampled(values))));
     }
 
     @Override
@@ -321,7 +321,7 @@ public class StateFetchingIterators {
       // they were mutated and we must evict all or none of the blocks. When consuming the blocks,
       // we must have a reference to all or none of the blocks (which forces a load).
       List<Block<T>> blocks = existing.getBlocks();
-      long totalWeight = addBoundByMax(Caches.weigh(values), sumWeight(blocks));
+      long totalWeight = addBoundByMax(Caches.weighSampled(values), sumWeight(blocks));
       int totalSize = values.size();
       for (int i = 0; i < blocks.size(); ++i) {
         totalSize += blocks.get(i).getValues().size();
@@ -0,0 +1,281 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateAppendRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateClearRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.annotations.VisibleForTesting;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A {@link BeamFnStateClient} which buffers bag and multimap user state mutations and sends them
+ * to the runner in bulk.
+ *
+ * <p>Appends and clears of the same state key are coalesced: a clear discards all buffered appends
+ * and successive appends are concatenated into a single append request. Since a clear of a
+ * multimap's keys clears all of its values, it also discards the buffered mutations of the
+ * multimap's values.
+ *
+ * <p>The buffered mutations are sent, in the order in which the state keys were first mutated,
+ * when:
+ *
+ * <ul>
+ *   <li>the appended data exceeds {@code maxBufferedBytes},
+ *   <li>a state key with buffered mutations, or any multimap value of a multimap with buffered
+ *       mutations, is read,
+ *   <li>{@link #flush} is invoked which must happen before the bundle completes.
+ * </ul>
+ *
+ * <p>The future returned for a buffered mutation completes once all requests for its state key
+ * have completed. Mutations which were discarded by a later clear complete with an empty response
+ * without being sent.
+ */
+public class WriteBehindStateClient implements BeamFnStateClient {
+  private final BeamFnStateClient beamFnStateClient;
+  private final long maxBufferedBytes;
+  // The buffered mutations are swapped out while holding lock and sent after releasing it so that
+  // concurrent state requests are not serialized behind a flush. lock is a j.u.c lock rather than a
+  // monitor so that a virtual thread waiting on it does not pin its carrier thread.
+  private final Lock lock;
+  private Map<StateKey, PendingMutations> pendingMutations;
+  // The state keys with buffered mutations grouped by the user state cell they belong to.
+  private final Map<StateKey, Set<StateKey>> pendingStateKeysByCell;
+  private long bufferedBytes;
+
+  public WriteBehindStateClient(BeamFnStateClient beamFnStateClient, long maxBufferedBytes) {
+    this.beamFnStateClient = beamFnStateClient;
+    this.maxBufferedBytes = maxBufferedBytes;
+    this.lock = new ReentrantLock();
+    this.pendingMutations = new LinkedHashMap<>();
+    this.pendingStateKeysByCell = new HashMap<>();
+  }
+
+  @Override
+  public CompletableFuture<StateResponse> handle(StateRequest.Builder requestBuilder) {
+    if (maxBufferedBytes <= 0) {
+      return beamFnStateClient.handle(requestBuilder);
+    }
+    StateKey stateKey = requestBuilder.getStateKey();
+    StateKey cell = userStateCell(stateKey);
+    if (cell == null) {
+      return beamFnStateClient.handle(requestBuilder);
+    }
+    @Nullable Collection<PendingMutations> mutationsToSend = null;
+    @Nullable CompletableFuture<StateResponse> response = null;
+    lock.lock();
+    try {
+      switch (requestBuilder.getRequestCase()) {
+        case APPEND:
+          ByteString data = requestBuilder.getAppend().getData();
+          PendingMutations appendMutations = pendingMutationsFor(requestBuilder, cell);
+          appendMutations.appends.add(data);
+          bufferedBytes += data.size();
+          if (bufferedBytes > maxBufferedBytes) {
+            mutationsToSend = takePendingMutations();
+          }
+          response = appendMutations.response;
+          break;
+        case CLEAR:
+          if (stateKey.hasMultimapKeysUserState()) {
+            discardMultimapValueMutations(cell);
+          }
+          PendingMutations clearMutations = pendingMutationsFor(requestBuilder, cell);
+          clearMutations.isCleared = true;
+          for (ByteString append : clearMutations.appends) {
+            bufferedBytes -= append.size();
+          }
+          clearMutations.appends.clear();
+          response = clearMutations.response;
+          break;
+        default:
+          if (pendingStateKeysByCell.containsKey(cell)) {
+            mutationsToSend = takePendingMutations();
+          }
+          break;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (mutationsToSend != null) {
+      send(mutationsToSend);
+    }
+    if (response != null) {
+      return response;
+    }
+    return beamFnStateClient.handle(requestBuilder);
+  }
+
+  /** Sends all buffered mutations to the runner. */
+  public void flush() {
+    Collection<PendingMutations> mutationsToSend;
+    lock.lock();
+    try {
+      mutationsToSend = takePendingMutations();
+    } finally {
+      lock.unlock();
+    }
+    send(mutationsToSend);
+  }
+
+  @VisibleForTesting
+  long getBufferedBytes() {
+    lock.lock();
+    try {
+      return bufferedBytes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Collection<PendingMutations> takePendingMutations() {
+    Collection<PendingMutations> mutations = pendingMutations.values();
+    pendingMutations = new LinkedHashMap<>();
+    pendingStateKeysByCell.clear();
+    bufferedBytes = 0;
+    return mutations;
+  }
+
+  private static void send(Collection<PendingMutations> mutations) {
+    for (PendingMutations pending : mutations) {
+      pending.send();
+    }
+  }
+
+  private PendingMutations pendingMutationsFor(StateRequest.Builder requestBuilder, StateKey cell) {
+    return pendingMutations.computeIfAbsent(
+        requestBuilder.getStateKey(),
+        stateKey -> {
+          pendingStateKeysByCell.computeIfAbsent(cell, unused -> new HashSet<>()).add(stateKey);
+          return new PendingMutations(
+              StateRequest.newBuilder()
+                  .setInstructionId(requestBuilder.getInstructionId())
+                  .setStateKey(stateKey)
+                  .build());
+        });
+  }
+
+  private void discardMultimapValueMutations(StateKey cell) {
+    Set<StateKey> stateKeys = pendingStateKeysByCell.get(cell);
+    if (stateKeys == null) {
+      return;
+    }
+    Iterator<StateKey> iterator = stateKeys.iterator();
+    while (iterator.hasNext()) {
+      StateKey stateKey = iterator.next();
+      if (!stateKey.hasMultimapUserState()) {
+        continue;
+      }
+      PendingMutations mutations = pendingMutations.remove(stateKey);
+      for (ByteString append : mutations.appends) {
+        bufferedBytes -= append.size();
+      }
+      mutations.response.complete(StateResponse.getDefaultInstance());
+      iterator.remove();
+    }
+    if (stateKeys.isEmpty()) {
+      pendingStateKeysByCell.remove(cell);
+    }
+  }
+
+  /**
+   * Returns the state key identifying the user state cell that {@code stateKey} belongs to or null
+   * if {@code stateKey} is not a bag or multimap user state key. All values of a multimap belong to
+   * the same cell as the multimap's keys.
+   */
+  private static @Nullable StateKey userStateCell(StateKey stateKey) {
+    switch (stateKey.getTypeCase()) {
+      case BAG_USER_STATE:
+      case MULTIMAP_KEYS_USER_STATE:
+        return stateKey;
+      case MULTIMAP_USER_STATE:
+        StateKey.MultimapUserState multimapUserState = stateKey.getMultimapUserState();
+        StateKey.Builder builder = StateKey.newBuilder();
+        builder
+            .getMultimapKeysUserStateBuilder()
+            .setTransformId(multimapUserState.getTransformId())
+            .setUserStateId(multimapUserState.getUserStateId())
+            .setWindow(multimapUserState.getWindow())
+            .setKey(multimapUserState.getKey());
+        return builder.build();
+      default:
+        return null;
+    }
+  }
+
+  /** The buffered mutations of a single state key. */
+  private class PendingMutations {
+    private final StateRequest request;
+    private final CompletableFuture<StateResponse> response;
+    private final List<ByteString> appends;
+    private boolean isCleared;
+
+    private PendingMutations(StateRequest request) {
+      this.request = request;
+      this.response = new CompletableFuture<>();
+      this.appends = new ArrayList<>();
+    }
+
+    @SuppressWarnings("FutureReturnValueIgnored")
+    private void send() {
+      List<CompletableFuture<StateResponse>> responses = new ArrayList<>(2);
+      if (isCleared) {
+        responses.add(
+            beamFnStateClient.handle(
+                request.toBuilder().setClear(StateClearRequest.getDefaultInstance())));
+      }
+      if (!appends.isEmpty()) {
+        responses.add(
+            beamFnStateClient.handle(
+                request
+                    .toBuilder()
+                    .setAppend(
+                        StateAppendRequest.newBuilder().setData(ByteString.copyFrom(appends)))));
+      }
+      if (responses.isEmpty()) {
+        response.complete(StateResponse.getDefaultInstance());
+        return;
+      }
+      CompletableFuture<StateResponse> lastResponse = responses.get(responses.size() - 1);
+      CompletableFuture.allOf(responses.toArray(new CompletableFuture<?>[0]))
+          .whenComplete(
+              (ignored, throwable) -> {
+                if (throwable != null) {
+                  response.completeExceptionally(throwable);
+                } else {
+                  response.complete(lastResponse.join());
+                }
+              });
+    }
+  }
+}
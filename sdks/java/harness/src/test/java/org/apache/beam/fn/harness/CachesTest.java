@@ -19,15 +19,23 @@ package org.apache.beam.fn.harness;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import org.apache.beam.fn.harness.Cache.Shrinkable;
 import org.apache.beam.fn.harness.Caches.ClearableCache;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
 import org.apache.beam.sdk.util.Weighted;
 import org.apache.beam.sdk.util.WeightedValue;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.base.Strings;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -221,4 +229,43 @@ public class CachesTest {
         .put(WeightedValue.of("subCacheKey", 8 * MB), WeightedValue.of("subCacheValue", 3 * MB));
     assertThat(cache.describeStats(), containsString("used/max 650/1000 MB"));
   }
+
+  @Test
+  public void testWeighLeafTypes() throws Exception {
+    assertThat(Caches.weigh(new byte[100]), greaterThanOrEqualTo(100L));
+    assertThat(Caches.weigh(new byte[100]), lessThan(164L));
+    assertThat(Caches.weigh(Strings.repeat("a", 100)), greaterThanOrEqualTo(100L));
+    // Characters outside of Latin-1 require two bytes each.
+    assertThat(Caches.weigh(Strings.repeat("\u0100", 100)), greaterThanOrEqualTo(200L));
+    assertThat(
+        Caches.weigh(ByteString.copyFrom(new byte[100])),
+        greaterThan(Caches.weigh(new byte[100])));
+    assertEquals(Caches.weigh(5L), Caches.weigh(6L));
+  }
+
+  @Test
+  public void testWeighSampled() throws Exception {
+    List<String> small = new ArrayList<>();
+    for (int i = 0; i < Caches.MAX_FULLY_WEIGHED_ELEMENTS; ++i) {
+      small.add(Strings.repeat("a", i));
+    }
+    long exactSmallWeight = 0;
+    for (String value : small) {
+      exactSmallWeight += Caches.weigh(value);
+    }
+    assertThat(Caches.weighSampled(small), greaterThan(exactSmallWeight));
+
+    List<String> large = new ArrayList<>();
+    long exactLargeWeight = 0;
+    for (int i = 0; i < 10_000; ++i) {
+      String value = Strings.repeat("a", i % 100);
+      large.add(value);
+      exactLargeWeight += Caches.weigh(value);
+    }
+    long sampledLargeWeight = Caches.weighSampled(large);
+    assertThat(sampledLargeWeight, greaterThan(exactLargeWeight * 9 / 10));
+    assertThat(sampledLargeWeight, lessThan(exactLargeWeight * 11 / 10 + 8 * large.size() + 64));
+    // Lists without random access are sampled at the same elements.
+    assertEquals(sampledLargeWeight, Caches.weighSampled(new LinkedList<>(large)));
+  }
 }
@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness;
+
+import static org.apache.beam.sdk.util.WindowedValue.timestampedValueInGlobalWindow;
+import static org.apache.beam.sdk.util.WindowedValue.valueInGlobalWindow;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.runners.core.GlobalCombineFnRunners;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.coders.VarLongCoder;
+import org.apache.beam.sdk.fn.data.FnDataReceiver;
+import org.apache.beam.sdk.options.PipelineOptionsFactory;
+import org.apache.beam.sdk.transforms.Combine.CombineFn;
+import org.apache.beam.sdk.transforms.windowing.IntervalWindow;
+import org.apache.beam.sdk.transforms.windowing.PaneInfo;
+import org.apache.beam.sdk.util.WindowedValue;
+import org.apache.beam.sdk.values.KV;
+import org.joda.time.Instant;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link EncodedKeyPrecombineGroupingTable}. */
+@RunWith(JUnit4.class)
+public class EncodedKeyPrecombineGroupingTableTest {
+
+  private static class TestOutputReceiver<T> implements FnDataReceiver<T> {
+    final List<T> outputElems = new ArrayList<>();
+
+    @Override
+    public void accept(T elem) {
+      outputElems.add(elem);
+    }
+  }
+
+  private static final CombineFn<Integer, Long, Long> COMBINE_FN =
+      new CombineFn<Integer, Long, Long>() {
+
+        @Override
+        public Long createAccumulator() {
+          return 0L;
+        }
+
+        @Override
+        public Long addInput(Long accumulator, Integer value) {
+          return accumulator + value;
+        }
+
+        @Override
+        public Long mergeAccumulators(Iterable<Long> accumulators) {
+          long sum = 0;
+          for (Long part : accumulators) {
+            sum += part;
+          }
+          return sum;
+        }
+
+        @Override
+        public Long compact(Long accumulator) {
+          if (accumulator % 2 == 0) {
+            return accumulator / 4;
+          }
+          return accumulator;
+        }
+
+        @Override
+        public Long extractOutput(Long accumulator) {
+          return accumulator;
+        }
+      };
+
+  @Test
+  public void testCombiningInheritsOneOfTheValuesTimestamps() throws Exception {
+    EncodedKeyPrecombineGroupingTable<String, Integer, Long> table =
+        new EncodedKeyPrecombineGroupingTable<>(
+            PipelineOptionsFactory.create(),
+            Caches.forMaximumBytes(1 << 20),
+            StringUtf8Coder.of(),
+            GlobalCombineFnRunners.create(COMBINE_FN),
+            new TestSizeEstimator(),
+            false);
+
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 1), new Instant(1)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("B", 9), new Instant(21)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 2), new Instant(1)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("B", 2), new Instant(20)), receiver);
+    table.put(timestampedValueInGlobalWindow(KV.of("A", 4), new Instant(1)), receiver);
+    assertEquals(2, table.size());
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            timestampedValueInGlobalWindow(KV.of("A", 1L + 2 + 4), new Instant(1)),
+            timestampedValueInGlobalWindow(KV.of("B", 9L + 2), new Instant(21))));
+  }
+
+  @Test
+  public void testCombiningGroupsByKeyAndWindow() throws Exception {
+    EncodedKeyPrecombineGroupingTable<String, Integer, Long> table =
+        new EncodedKeyPrecombineGroupingTable<>(
+            PipelineOptionsFactory.create(),
+            Caches.forMaximumBytes(1 << 20),
+            StringUtf8Coder.of(),
+            GlobalCombineFnRunners.create(COMBINE_FN),
+            new TestSizeEstimator(),
+            false);
+
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+    IntervalWindow first = new IntervalWindow(new Instant(0), new Instant(10));
+    IntervalWindow second = new IntervalWindow(new Instant(10), new Instant(20));
+
+    table.put(WindowedValue.of(KV.of("A", 1), new Instant(1), first, PaneInfo.NO_FIRING), receiver);
+    table.put(
+        WindowedValue.of(KV.of("A", 3), new Instant(11), second, PaneInfo.NO_FIRING), receiver);
+    table.put(WindowedValue.of(KV.of("A", 5), new Instant(2), first, PaneInfo.NO_FIRING), receiver);
+    table.put(WindowedValue.of(KV.of("B", 7), new Instant(3), first, PaneInfo.NO_FIRING), receiver);
+    assertEquals(3, table.size());
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            WindowedValue.of(KV.of("A", 1L + 5), new Instant(1), first, PaneInfo.NO_FIRING),
+            WindowedValue.of(KV.of("A", 3L), new Instant(11), second, PaneInfo.NO_FIRING),
+            WindowedValue.of(KV.of("B", 7L), new Instant(3), first, PaneInfo.NO_FIRING)));
+  }
+
+  @Test
+  public void testCombiningGroupingTableEvictsAllOnLargeEntry() throws Exception {
+    EncodedKeyPrecombineGroupingTable<String, Integer, Long> table =
+        new EncodedKeyPrecombineGroupingTable<>(
+            PipelineOptionsFactory.create(),
+            Caches.forMaximumBytes(2500L),
+            StringUtf8Coder.of(),
+            GlobalCombineFnRunners.create(COMBINE_FN),
+            new TestSizeEstimator(),
+            true);
+
+    TestOutputReceiver<WindowedValue<KV<String, Long>>> receiver = new TestOutputReceiver<>();
+
+    table.put(valueInGlobalWindow(KV.of("A", 1)), receiver);
+    table.put(valueInGlobalWindow(KV.of("B", 3)), receiver);
+    table.put(valueInGlobalWindow(KV.of("B", 6)), receiver);
+    table.put(valueInGlobalWindow(KV.of("C", 7)), receiver);
+    assertThat(receiver.outputElems, empty());
+
+    // Add beyond the size which even after compaction leads to evicting all entries.
+    table.put(valueInGlobalWindow(KV.of("C", 100000)), receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            valueInGlobalWindow(KV.of("A", 1L)),
+            valueInGlobalWindow(KV.of("B", 9L)),
+            valueInGlobalWindow(KV.of("C", 100007L))));
+    assertEquals(0, table.size());
+
+    table.put(valueInGlobalWindow(KV.of("A", 5)), receiver);
+    table.flush(receiver);
+    assertThat(
+        receiver.outputElems,
+        containsInAnyOrder(
+            valueInGlobalWindow(KV.of("A", 1L)),
+            valueInGlobalWindow(KV.of("B", 9L)),
+            valueInGlobalWindow(KV.of("C", 100007L)),
+            valueInGlobalWindow(KV.of("A", 5L))));
+  }
+
+  @Test
+  public void testCombiningManyKeysResizesTable() throws Exception {
+    EncodedKeyPrecombineGroupingTable<Long, Integer, Long> table =
+        new EncodedKeyPrecombineGroupingTable<>(
+            PipelineOptionsFactory.create(),
+            Caches.forMaximumBytes(1 << 30),
+            VarLongCoder.of(),
+            GlobalCombineFnRunners.create(COMBINE_FN),
+            new TestSizeEstimator(),
+            true);
+
+    Map<Long, Long> values = new HashMap<>();
+    FnDataReceiver<WindowedValue<KV<Long, Long>>> receiver =
+        (input) -> values.merge(input.getValue().getKey(), input.getValue().getValue(), Long::sum);
+    for (int i = 0; i < 3; ++i) {
+      for (long j = 1; j <= 10000; ++j) {
+        table.put(valueInGlobalWindow(KV.of(j, 1)), receiver);
+      }
+    }
+    assertEquals(10000, table.size());
+    table.flush(receiver);
+
+    assertEquals(10000, values.size());
+    for (Map.Entry<Long, Long> value : values.entrySet()) {
+      assertEquals(3L, (long) value.getValue());
+    }
+  }
+
+  /** Used to simulate very specific compaction/eviction tests, longs are sized by their value. */
+  private static class TestSizeEstimator implements PrecombineGroupingTable.SizeEstimator {
+    @Override
+    public long estimateSize(Object element) {
+      if (element instanceof Long) {
+        return (Long) element;
+      }
+      throw new IllegalArgumentException(
+          "Unknown type " + (element == null ? "null" : element.getClass().toString()));
+    }
+  }
+}
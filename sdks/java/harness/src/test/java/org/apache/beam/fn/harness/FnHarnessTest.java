@@ -17,6 +17,9 @@
  */
 package org.apache.beam.fn.harness;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.inOrder;
@@ -27,6 +30,8 @@ import com.google.auto.service.AutoService;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -184,4 +189,45 @@ public class FnHarnessTest {
     inOrder.verify(beforeProcessingMock).accept(any());
     inOrder.verify(instructionResponses).add(INSTRUCTION_RESPONSE);
   }
+
+  @Test
+  public void testInstructionExecutorServiceDefaultsToExecutorOptions() throws Exception {
+    PipelineOptions options = PipelineOptionsFactory.create();
+    ExecutorService executorService =
+        options.as(ExecutorOptions.class).getScheduledExecutorService();
+    try {
+      assertSame(
+          executorService, FnHarness.createInstructionExecutorService(options, executorService));
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testInstructionExecutorServiceWithVirtualThreads() throws Exception {
+    PipelineOptions options =
+        PipelineOptionsFactory.fromArgs("--experiments=use_virtual_threads").create();
+    ExecutorService executorService =
+        options.as(ExecutorOptions.class).getScheduledExecutorService();
+    ExecutorService instructionExecutorService =
+        FnHarness.createInstructionExecutorService(options, executorService);
+    try {
+      boolean supportsVirtualThreads;
+      try {
+        Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        supportsVirtualThreads = true;
+      } catch (NoSuchMethodException e) {
+        supportsVirtualThreads = false;
+      }
+      if (supportsVirtualThreads) {
+        assertNotSame(executorService, instructionExecutorService);
+      } else {
+        assertSame(executorService, instructionExecutorService);
+      }
+      assertEquals("done", instructionExecutorService.submit(() -> "done").get());
+    } finally {
+      instructionExecutorService.shutdown();
+      executorService.shutdown();
+    }
+  }
 }
@@ -19,10 +19,13 @@ package org.apache.beam.fn.harness.data;
 
 import static org.apache.beam.sdk.util.WindowedValue.valueInGlobalWindow;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
@@ -57,6 +60,7 @@ import org.apache.beam.sdk.coders.IterableCoder;
 import org.apache.beam.sdk.coders.StringUtf8Coder;
 import org.apache.beam.sdk.fn.data.FnDataReceiver;
 import org.apache.beam.sdk.metrics.Counter;
+import org.apache.beam.sdk.metrics.Distribution;
 import org.apache.beam.sdk.metrics.Metrics;
 import org.apache.beam.sdk.metrics.MetricsEnvironment;
 import org.apache.beam.sdk.options.PipelineOptionsFactory;
@@ -177,6 +181,76 @@ public class PCollectionConsumerRegistryTest {
     assertThat(result, containsInAnyOrder(expected.toArray()));
   }
 
+  @Test
+  public void singleConsumerFused() throws Exception {
+    final String pTransformIdA = "pTransformIdA";
+
+    ShortIdMap shortIds = new ShortIdMap();
+    BundleProgressReporter.InMemory reporterAndRegistrar = new BundleProgressReporter.InMemory();
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            sampler.create(), shortIds, reporterAndRegistrar, TEST_DESCRIPTOR, null, true);
+    FnDataReceiver<WindowedValue<String>> consumerA1 = mock(FnDataReceiver.class);
+
+    consumers.register(P_COLLECTION_A, pTransformIdA, pTransformIdA + "Name", consumerA1);
+
+    FnDataReceiver<WindowedValue<String>> wrapperConsumer =
+        (FnDataReceiver<WindowedValue<String>>)
+            (FnDataReceiver) consumers.getMultiplexingConsumer(P_COLLECTION_A);
+    assertNotEquals(FusedMetricTrackingFnDataReceiver.class, wrapperConsumer.getClass());
+
+    // The generated class is reused for the same PCollection of the same descriptor.
+    PCollectionConsumerRegistry otherConsumers =
+        new PCollectionConsumerRegistry(
+            sampler.create(),
+            shortIds,
+            new BundleProgressReporter.InMemory(),
+            TEST_DESCRIPTOR,
+            null,
+            true);
+    otherConsumers.register(P_COLLECTION_A, pTransformIdA, pTransformIdA + "Name", consumerA1);
+    assertEquals(
+        wrapperConsumer.getClass(),
+        otherConsumers.getMultiplexingConsumer(P_COLLECTION_A).getClass());
+
+    String elementValue = "elem";
+    WindowedValue<String> element = valueInGlobalWindow(elementValue);
+    int numElements = 10;
+    for (int i = 0; i < numElements; i++) {
+      wrapperConsumer.accept(element);
+    }
+
+    // Check that the underlying consumers are each invoked per element.
+    verify(consumerA1, times(numElements)).accept(element);
+
+    List<MonitoringInfo> expected = new ArrayList<>();
+
+    SimpleMonitoringInfoBuilder builder = new SimpleMonitoringInfoBuilder();
+    builder.setUrn(MonitoringInfoConstants.Urns.ELEMENT_COUNT);
+    builder.setLabel(MonitoringInfoConstants.Labels.PCOLLECTION, P_COLLECTION_A);
+    builder.setInt64SumValue(numElements);
+    expected.add(builder.build());
+
+    long elementByteSize = StringUtf8Coder.of().getEncodedElementByteSize(elementValue);
+    builder = new SimpleMonitoringInfoBuilder();
+    builder.setUrn(Urns.SAMPLED_BYTE_SIZE);
+    builder.setLabel(MonitoringInfoConstants.Labels.PCOLLECTION, P_COLLECTION_A);
+    builder.setInt64DistributionValue(
+        DistributionData.create(
+            numElements * elementByteSize, numElements, elementByteSize, elementByteSize));
+    expected.add(builder.build());
+
+    Map<String, ByteString> actualData = new HashMap<>();
+    reporterAndRegistrar.updateFinalMonitoringData(actualData);
+
+    Iterable<MonitoringInfo> result =
+        Iterables.filter(
+            shortIds.toMonitoringInfo(actualData),
+            monitoringInfo -> monitoringInfo.containsLabels(Labels.PCOLLECTION));
+
+    assertThat(result, containsInAnyOrder(expected.toArray()));
+  }
+
   @Test
   public void singleConsumerException() throws Exception {
     final String pTransformId = "pTransformId";
@@ -512,6 +586,87 @@ public class PCollectionConsumerRegistryTest {
     assertThat(result, containsInAnyOrder(expected.toArray()));
   }
 
+  @Test
+  public void testEncodedByteSizesReplaceCoderEstimation() throws Exception {
+    final String pTransformIdA = "pTransformIdA";
+
+    ShortIdMap shortIds = new ShortIdMap();
+    BundleProgressReporter.InMemory reporterAndRegistrar = new BundleProgressReporter.InMemory();
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            sampler.create(), shortIds, reporterAndRegistrar, TEST_DESCRIPTOR);
+    FnDataReceiver<WindowedValue<String>> consumerA1 = mock(FnDataReceiver.class);
+
+    consumers.register(P_COLLECTION_A, pTransformIdA, pTransformIdA + "Name", consumerA1);
+    Distribution encodedByteSizes = consumers.getEncodedByteSizeDistribution(P_COLLECTION_A);
+    // Only a single data endpoint reports the sizes of a PCollection's elements.
+    assertNull(consumers.getEncodedByteSizeDistribution(P_COLLECTION_A));
+
+    FnDataReceiver<WindowedValue<String>> wrapperConsumer =
+        (FnDataReceiver<WindowedValue<String>>)
+            (FnDataReceiver) consumers.getMultiplexingConsumer(P_COLLECTION_A);
+    WindowedValue<String> element = valueInGlobalWindow("elem");
+    long encodedByteSize = 100;
+    int numElements = 10;
+    for (int i = 0; i < numElements; i++) {
+      encodedByteSizes.update(encodedByteSize);
+      wrapperConsumer.accept(element);
+    }
+
+    verify(consumerA1, times(numElements)).accept(element);
+
+    SimpleMonitoringInfoBuilder builder = new SimpleMonitoringInfoBuilder();
+    builder.setUrn(Urns.SAMPLED_BYTE_SIZE);
+    builder.setLabel(MonitoringInfoConstants.Labels.PCOLLECTION, P_COLLECTION_A);
+    builder.setInt64DistributionValue(
+        DistributionData.create(
+            numElements * encodedByteSize, numElements, encodedByteSize, encodedByteSize));
+    MonitoringInfo expected = builder.build();
+
+    Map<String, ByteString> actualData = new HashMap<>();
+    reporterAndRegistrar.updateFinalMonitoringData(actualData);
+
+    Iterable<MonitoringInfo> result =
+        Iterables.filter(
+            shortIds.toMonitoringInfo(actualData),
+            monitoringInfo -> monitoringInfo.getUrn().equals(Urns.SAMPLED_BYTE_SIZE));
+
+    assertThat(result, contains(expected));
+  }
+
+  @Test
+  public void testEncodedByteSizesBulkUpdate() throws Exception {
+    final String pTransformIdA = "pTransformIdA";
+
+    ShortIdMap shortIds = new ShortIdMap();
+    BundleProgressReporter.InMemory reporterAndRegistrar = new BundleProgressReporter.InMemory();
+    PCollectionConsumerRegistry consumers =
+        new PCollectionConsumerRegistry(
+            sampler.create(), shortIds, reporterAndRegistrar, TEST_DESCRIPTOR);
+    FnDataReceiver<WindowedValue<String>> consumerA1 = mock(FnDataReceiver.class);
+
+    consumers.register(P_COLLECTION_A, pTransformIdA, pTransformIdA + "Name", consumerA1);
+    Distribution encodedByteSizes = consumers.getEncodedByteSizeDistribution(P_COLLECTION_A);
+    // The first elements are always sampled.
+    encodedByteSizes.update(300, 3, 50, 150);
+
+    SimpleMonitoringInfoBuilder builder = new SimpleMonitoringInfoBuilder();
+    builder.setUrn(Urns.SAMPLED_BYTE_SIZE);
+    builder.setLabel(MonitoringInfoConstants.Labels.PCOLLECTION, P_COLLECTION_A);
+    builder.setInt64DistributionValue(DistributionData.create(300, 3, 50, 150));
+    MonitoringInfo expected = builder.build();
+
+    Map<String, ByteString> actualData = new HashMap<>();
+    reporterAndRegistrar.updateFinalMonitoringData(actualData);
+
+    Iterable<MonitoringInfo> result =
+        Iterables.filter(
+            shortIds.toMonitoringInfo(actualData),
+            monitoringInfo -> monitoringInfo.getUrn().equals(Urns.SAMPLED_BYTE_SIZE));
+
+    assertThat(result, contains(expected));
+  }
+
   /**
    * Test that element samples are taken when a DataSampler is present.
    *
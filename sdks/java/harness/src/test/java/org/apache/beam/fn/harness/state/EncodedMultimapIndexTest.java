@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link EncodedMultimapIndex}. */
+@RunWith(JUnit4.class)
+public class EncodedMultimapIndexTest {
+  private static final ByteString A = ByteString.copyFromUtf8("A");
+  private static final ByteString AB = ByteString.copyFromUtf8("AB");
+  private static final ByteString B = ByteString.copyFromUtf8("B");
+  // Sorts after all other keys when bytes are compared as unsigned values.
+  private static final ByteString HIGH = ByteString.copyFrom(new byte[] {(byte) 0xff});
+
+  private static EncodedMultimapIndex build(EncodedMultimapIndex.Builder builder) {
+    return builder
+        .put(A, ByteString.copyFromUtf8("a1a2"))
+        .put(AB, ByteString.EMPTY)
+        .put(B, ByteString.copyFromUtf8("b1"))
+        .put(HIGH, ByteString.copyFromUtf8("h1"))
+        .build();
+  }
+
+  private static void assertContents(EncodedMultimapIndex index) {
+    assertEquals(4, index.size());
+    assertEquals(A, index.getKey(0));
+    assertEquals(AB, index.getKey(1));
+    assertEquals(B, index.getKey(2));
+    assertEquals(HIGH, index.getKey(3));
+    assertEquals(ByteString.copyFromUtf8("a1a2"), index.getValues(A));
+    assertEquals(ByteString.EMPTY, index.getValues(AB));
+    assertEquals(ByteString.copyFromUtf8("b1"), index.getValues(B));
+    assertEquals(ByteString.copyFromUtf8("h1"), index.getValues(HIGH));
+    assertNull(index.getValues(ByteString.EMPTY));
+    assertNull(index.getValues(ByteString.copyFromUtf8("AA")));
+    assertNull(index.getValues(ByteString.copyFromUtf8("C")));
+  }
+
+  @Test
+  public void testLookup() {
+    EncodedMultimapIndex index = build(EncodedMultimapIndex.builder(false));
+    assertContents(index);
+    // The unused space of the chunk is released.
+    assertEquals(13 + 4 * 4 * Integer.BYTES, index.getWeight());
+  }
+
+  @Test
+  public void testLookupOffHeap() {
+    assertContents(build(EncodedMultimapIndex.builder(true)));
+  }
+
+  @Test
+  public void testEntriesSpanMultipleChunks() {
+    assertContents(build(new EncodedMultimapIndex.Builder(false, 3, 3)));
+  }
+
+  @Test
+  public void testChunksGrowGeometrically() {
+    EncodedMultimapIndex.Builder builder = new EncodedMultimapIndex.Builder(false, 2, 8);
+    for (int i = 0; i < 10; ++i) {
+      builder.put(ByteString.copyFrom(new byte[] {(byte) i}), ByteString.copyFromUtf8("v"));
+    }
+    EncodedMultimapIndex index = builder.build();
+
+    assertEquals(10, index.size());
+    for (int i = 0; i < 10; ++i) {
+      ByteString key = ByteString.copyFrom(new byte[] {(byte) i});
+      assertEquals(ByteString.copyFromUtf8("v"), index.getValues(key));
+    }
+    // The chunks hold 2, 4, 8 and the remaining 6 bytes.
+    assertEquals(2 + 4 + 8 + 6 + 10 * 4 * Integer.BYTES, index.getWeight());
+  }
+
+  @Test
+  public void testSmallIndexDoesNotAllocateMaxChunk() {
+    EncodedMultimapIndex.Builder builder = EncodedMultimapIndex.builder(true);
+    builder.put(A, ByteString.copyFrom(new byte[EncodedMultimapIndex.INITIAL_CHUNK_SIZE]));
+    builder.put(B, ByteString.copyFromUtf8("b1"));
+    EncodedMultimapIndex index = builder.build();
+
+    assertEquals(ByteString.copyFromUtf8("b1"), index.getValues(B));
+    assertTrue(index.getWeight() < EncodedMultimapIndex.MAX_CHUNK_SIZE);
+  }
+
+  @Test
+  public void testEmpty() {
+    EncodedMultimapIndex index = EncodedMultimapIndex.builder(false).build();
+    assertEquals(0, index.size());
+    assertNull(index.getValues(A));
+  }
+
+  @Test
+  public void testKeysMustBeSorted() {
+    EncodedMultimapIndex.Builder builder = EncodedMultimapIndex.builder(false).put(B, A);
+    assertThrows(IllegalArgumentException.class, () -> builder.put(A, B));
+    assertThrows(IllegalArgumentException.class, () -> builder.put(B, B));
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.beam.fn.harness.HarnessMetricUrns;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetResponse;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
+import org.apache.beam.runners.core.metrics.MetricsContainerImpl;
+import org.apache.beam.runners.core.metrics.MonitoringInfoConstants.Labels;
+import org.apache.beam.runners.core.metrics.MonitoringInfoMetricName;
+import org.apache.beam.sdk.metrics.MetricsEnvironment;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ReadAheadStateClient}. */
+@RunWith(JUnit4.class)
+public class ReadAheadStateClientTest {
+  private static final StateKey STATE_KEY =
+      StateKey.newBuilder()
+          .setRunner(StateKey.Runner.newBuilder().setKey(ByteString.copyFromUtf8("key")))
+          .build();
+
+  /** A client which returns {@code numPages} pages each containing the page number as data. */
+  private static class PagingStateClient implements BeamFnStateClient {
+    private final int numPages;
+    private final List<ByteString> requestedTokens = new ArrayList<>();
+
+    private PagingStateClient(int numPages) {
+      this.numPages = numPages;
+    }
+
+    @Override
+    public CompletableFuture<StateResponse> handle(StateRequest.Builder requestBuilder) {
+      ByteString token = requestBuilder.getGet().getContinuationToken();
+      requestedTokens.add(token);
+      int page = token.isEmpty() ? 0 : Integer.parseInt(token.toStringUtf8());
+      return CompletableFuture.completedFuture(
+          StateResponse.newBuilder()
+              .setGet(
+                  StateGetResponse.newBuilder()
+                      .setData(ByteString.copyFromUtf8(Integer.toString(page)))
+                      .setContinuationToken(
+                          page + 1 < numPages
+                              ? ByteString.copyFromUtf8(Integer.toString(page + 1))
+                              : ByteString.EMPTY))
+              .build());
+    }
+  }
+
+  private static StateRequest.Builder requestFor(String continuationToken) {
+    return StateRequest.newBuilder()
+        .setInstructionId("instruction")
+        .setStateKey(STATE_KEY)
+        .setGet(
+            StateGetRequest.newBuilder()
+                .setContinuationToken(ByteString.copyFromUtf8(continuationToken)));
+  }
+
+  private static List<ByteString> tokens(String... tokens) {
+    List<ByteString> rval = new ArrayList<>();
+    for (String token : tokens) {
+      rval.add(ByteString.copyFromUtf8(token));
+    }
+    return rval;
+  }
+
+  @Test
+  public void testReadAheadPagesMustBePositive() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> new ReadAheadStateClient(new PagingStateClient(10), 0, Runnable::run, () -> null));
+  }
+
+  @Test
+  public void testReadAheadPages() throws Exception {
+    PagingStateClient underlying = new PagingStateClient(10);
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(underlying, 3, Runnable::run, () -> null);
+
+    assertEquals(
+        ByteString.copyFromUtf8("0"), client.handle(requestFor("")).get().getGet().getData());
+    assertEquals(tokens("", "1", "2", "3"), underlying.requestedTokens);
+    assertEquals(3, client.getNumPagesReadAhead());
+
+    // Consuming a page which was read ahead keeps reading ahead the same number of pages.
+    assertEquals(
+        ByteString.copyFromUtf8("1"), client.handle(requestFor("1")).get().getGet().getData());
+    assertEquals(tokens("", "1", "2", "3", "4"), underlying.requestedTokens);
+    assertEquals(3, client.getNumPagesReadAhead());
+  }
+
+  @Test
+  public void testReadAheadStopsAtEndOfStream() throws Exception {
+    PagingStateClient underlying = new PagingStateClient(2);
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(underlying, 3, Runnable::run, () -> null);
+
+    assertEquals(
+        ByteString.copyFromUtf8("0"), client.handle(requestFor("")).get().getGet().getData());
+    assertEquals(
+        ByteString.copyFromUtf8("1"), client.handle(requestFor("1")).get().getGet().getData());
+    assertEquals(tokens("", "1"), underlying.requestedTokens);
+    assertEquals(0, client.getNumPagesReadAhead());
+  }
+
+  @Test
+  public void testFinishBundle() throws Exception {
+    PagingStateClient underlying = new PagingStateClient(10);
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(underlying, 2, Runnable::run, () -> null);
+
+    CompletableFuture<StateResponse> pendingResponse = new CompletableFuture<>();
+    ReadAheadStateClient pendingClient =
+        new ReadAheadStateClient(requestBuilder -> pendingResponse, 2, Runnable::run, () -> null);
+    pendingClient.handle(requestFor(""));
+    pendingClient.finishBundle();
+    // Responses completing after the read ahead pages were discarded are not read ahead.
+    pendingResponse.complete(
+        StateResponse.newBuilder()
+            .setGet(
+                StateGetResponse.newBuilder().setContinuationToken(ByteString.copyFromUtf8("1")))
+            .build());
+    assertEquals(0, pendingClient.getNumPagesReadAhead());
+
+    client.handle(requestFor("")).get();
+    assertEquals(2, client.getNumPagesReadAhead());
+    client.finishBundle();
+    assertEquals(0, client.getNumPagesReadAhead());
+    assertEquals(
+        ByteString.copyFromUtf8("1"), client.handle(requestFor("1")).get().getGet().getData());
+    assertEquals(tokens("", "1", "2", "1", "2", "3"), underlying.requestedTokens);
+  }
+
+  @Test
+  public void testFinishBundleWaitsForPagesReadAhead() throws Exception {
+    CompletableFuture<StateResponse> firstPage = new CompletableFuture<>();
+    CompletableFuture<StateResponse> secondPage = new CompletableFuture<>();
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(
+            requestBuilder ->
+                requestBuilder.getGet().getContinuationToken().isEmpty() ? firstPage : secondPage,
+            1,
+            Runnable::run,
+            () -> null);
+    client.handle(requestFor(""));
+    firstPage.complete(
+        StateResponse.newBuilder()
+            .setGet(
+                StateGetResponse.newBuilder().setContinuationToken(ByteString.copyFromUtf8("1")))
+            .build());
+    assertEquals(1, client.getNumPagesReadAhead());
+
+    Thread finishBundle =
+        new Thread(
+            () -> {
+              try {
+                client.finishBundle();
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    finishBundle.start();
+    finishBundle.join(100);
+    assertTrue(finishBundle.isAlive());
+
+    // A failed page which was never consumed does not fail the bundle.
+    secondPage.completeExceptionally(new RuntimeException("Failed to read ahead"));
+    finishBundle.join();
+    assertEquals(0, client.getNumPagesReadAhead());
+  }
+
+  @Test
+  public void testFailedReadAheadIsReportedToConsumer() throws Exception {
+    PagingStateClient underlying = new PagingStateClient(10);
+    RuntimeException failure = new RuntimeException("Stream closed");
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(
+            requestBuilder -> {
+              if (!requestBuilder.getGet().getContinuationToken().isEmpty()) {
+                throw failure;
+              }
+              return underlying.handle(requestBuilder);
+            },
+            1,
+            Runnable::run,
+            () -> null);
+
+    client.handle(requestFor("")).get();
+    assertEquals(1, client.getNumPagesReadAhead());
+    ExecutionException thrown =
+        assertThrows(ExecutionException.class, () -> client.handle(requestFor("1")).get());
+    assertSame(failure, thrown.getCause());
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    PagingStateClient underlying = new PagingStateClient(10);
+    ReadAheadStateClient client =
+        new ReadAheadStateClient(underlying, 1, Runnable::run, () -> "ptransform");
+    MetricsContainerImpl container = new MetricsContainerImpl("ptransform");
+
+    try (Closeable closeable = MetricsEnvironment.scopedMetricsContainer(container)) {
+      client.handle(requestFor("")).get();
+      client.handle(requestFor("1")).get();
+
+      // A response which is not available when waited on is not a prefetch hit.
+      ReadAheadStateClient pendingClient =
+          new ReadAheadStateClient(
+              requestBuilder -> new CompletableFuture<>(), 1, Runnable::run, () -> "ptransform");
+      CompletableFuture<StateResponse> response = pendingClient.handle(requestFor(""));
+      assertThrows(TimeoutException.class, () -> response.get(1, TimeUnit.MILLISECONDS));
+    }
+
+    assertEquals(
+        1L,
+        (long)
+            container
+                .getCounter(
+                    MonitoringInfoMetricName.named(
+                        HarnessMetricUrns.STATE_READ_AHEAD_HITS,
+                        Collections.singletonMap(Labels.PTRANSFORM, "ptransform")))
+                .getCumulative());
+    assertEquals(
+        2L,
+        (long)
+            container
+                .getCounter(
+                    MonitoringInfoMetricName.named(
+                        HarnessMetricUrns.STATE_PREFETCH_HITS,
+                        Collections.singletonMap(Labels.PTRANSFORM, "ptransform")))
+                .getCumulative());
+    assertEquals(
+        3L,
+        container
+            .getDistribution(
+                MonitoringInfoMetricName.named(
+                    HarnessMetricUrns.STATE_WAIT_MICROS,
+                    Collections.singletonMap(Labels.PTRANSFORM, "ptransform")))
+            .getCumulative()
+            .count());
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.sdk.coders.ByteArrayCoder;
+import org.apache.beam.sdk.coders.StringUtf8Coder;
+import org.apache.beam.sdk.util.ByteStringOutputStream;
+import org.apache.beam.sdk.values.KV;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.Iterables;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link SideInputIndexStore} and {@link IndexedMultimapSideInput}. */
+@RunWith(JUnit4.class)
+public class SideInputIndexStoreTest {
+  private static final byte[] A = "A".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] B = "B".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] UNKNOWN = "UNKNOWN".getBytes(StandardCharsets.UTF_8);
+  private static final ByteString TOKEN_1 = ByteString.copyFromUtf8("token1");
+  private static final ByteString TOKEN_2 = ByteString.copyFromUtf8("token2");
+  private static final BeamFnStateClient FAILING_CLIENT =
+      requestBuilder -> {
+        throw new IllegalStateException("Unexpected call for test.");
+      };
+
+  private static FakeBeamFnStateClient fakeClient(String sideInputId) throws IOException {
+    // Return the keys out of order and in multiple pages.
+    return new FakeBeamFnStateClient(
+        ImmutableMap.of(
+            stateKey(sideInputId), KV.of(ByteArrayCoder.of(), asList(B, A)),
+            key(sideInputId, A), KV.of(StringUtf8Coder.of(), asList("A1", "A2", "A3")),
+            key(sideInputId, B), KV.of(StringUtf8Coder.of(), asList("B1", "B2"))),
+        3);
+  }
+
+  private static EncodedMultimapIndex getOrBuild(
+      SideInputIndexStore store,
+      ByteString cacheToken,
+      String sideInputId,
+      BeamFnStateClient beamFnStateClient)
+      throws IOException {
+    return store.getOrBuild(
+        cacheToken, stateKey(sideInputId), beamFnStateClient, "instructionId", ByteArrayCoder.of());
+  }
+
+  @Test
+  public void testIndexedMultimapSideInput() throws Exception {
+    SideInputIndexStore store = new SideInputIndexStore(1 << 20, false);
+    IndexedMultimapSideInput<byte[], String> multimapSideInput =
+        new IndexedMultimapSideInput<>(
+            getOrBuild(store, TOKEN_1, "sideInput", fakeClient("sideInput")),
+            ByteArrayCoder.of(),
+            StringUtf8Coder.of());
+
+    assertArrayEquals(
+        new String[] {"A1", "A2", "A3"}, Iterables.toArray(multimapSideInput.get(A), String.class));
+    assertArrayEquals(
+        new String[] {"B1", "B2"}, Iterables.toArray(multimapSideInput.get(B), String.class));
+    assertArrayEquals(
+        new String[] {}, Iterables.toArray(multimapSideInput.get(UNKNOWN), String.class));
+    assertArrayEquals(
+        new byte[][] {A, B}, Iterables.toArray(multimapSideInput.get(), byte[].class));
+  }
+
+  @Test
+  public void testIndexIsSharedForCacheToken() throws Exception {
+    SideInputIndexStore store = new SideInputIndexStore(1 << 20, true);
+    EncodedMultimapIndex index = getOrBuild(store, TOKEN_1, "sideInput", fakeClient("sideInput"));
+    assertSame(index, getOrBuild(store, TOKEN_1, "sideInput", FAILING_CLIENT));
+    assertEquals(index.getWeight(), store.getTotalBytes());
+  }
+
+  @Test
+  public void testNewCacheTokenDiscardsIndex() throws Exception {
+    SideInputIndexStore store = new SideInputIndexStore(1 << 20, false);
+    EncodedMultimapIndex index = getOrBuild(store, TOKEN_1, "sideInput", fakeClient("sideInput"));
+    EncodedMultimapIndex newIndex =
+        getOrBuild(store, TOKEN_2, "sideInput", fakeClient("sideInput"));
+    assertNotSame(index, newIndex);
+    assertEquals(newIndex.getWeight(), store.getTotalBytes());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedSideInputIsDiscarded() throws Exception {
+    SideInputIndexStore probe = new SideInputIndexStore(1 << 20, false);
+    long weight = getOrBuild(probe, TOKEN_1, "sideInput1", fakeClient("sideInput1")).getWeight();
+
+    SideInputIndexStore store = new SideInputIndexStore(2 * weight, false);
+    getOrBuild(store, TOKEN_1, "sideInput1", fakeClient("sideInput1"));
+    EncodedMultimapIndex index2 =
+        getOrBuild(store, TOKEN_1, "sideInput2", fakeClient("sideInput2"));
+    // Access the second side input such that the first side input is discarded.
+    getOrBuild(store, TOKEN_1, "sideInput2", FAILING_CLIENT);
+    getOrBuild(store, TOKEN_1, "sideInput3", fakeClient("sideInput3"));
+    assertEquals(2 * weight, store.getTotalBytes());
+
+    assertSame(index2, getOrBuild(store, TOKEN_1, "sideInput2", FAILING_CLIENT));
+    FakeBeamFnStateClient client = fakeClient("sideInput1");
+    getOrBuild(store, TOKEN_1, "sideInput1", client);
+    assertEquals(7, client.getCallCount());
+  }
+
+  @Test
+  public void testTooLargeSideInputIsNotIndexed() throws Exception {
+    SideInputIndexStore store = new SideInputIndexStore(1, false);
+    assertNull(getOrBuild(store, TOKEN_1, "sideInput", fakeClient("sideInput")));
+    // The side input is not fetched again for the same cache token.
+    assertNull(getOrBuild(store, TOKEN_1, "sideInput", FAILING_CLIENT));
+    assertEquals(0, store.getTotalBytes());
+  }
+
+  private static StateKey stateKey(String sideInputId) {
+    return StateKey.newBuilder()
+        .setMultimapKeysSideInput(
+            StateKey.MultimapKeysSideInput.newBuilder()
+                .setTransformId("ptransformId")
+                .setSideInputId(sideInputId)
+                .setWindow(ByteString.copyFromUtf8("encodedWindow")))
+        .build();
+  }
+
+  private static StateKey key(String sideInputId, byte[] key) throws IOException {
+    ByteStringOutputStream out = new ByteStringOutputStream();
+    ByteArrayCoder.of().encode(key, out);
+    return StateKey.newBuilder()
+        .setMultimapSideInput(
+            StateKey.MultimapSideInput.newBuilder()
+                .setTransformId("ptransformId")
+                .setSideInputId(sideInputId)
+                .setWindow(ByteString.copyFromUtf8("encodedWindow"))
+                .setKey(out.toByteString()))
+        .build();
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.fn.harness.state;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateAppendRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateClearRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateGetRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateKey;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateRequest;
+import org.apache.beam.model.fnexecution.v1.BeamFnApi.StateResponse;
+import org.apache.beam.vendor.grpc.v1p48p1.com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link WriteBehindStateClient}. */
+@RunWith(JUnit4.class)
+public class WriteBehindStateClientTest {
+  private static final StateKey BAG_A = bagKey("A");
+  private static final StateKey BAG_B = bagKey("B");
+  private static final StateKey MULTIMAP_KEYS =
+      StateKey.newBuilder()
+          .setMultimapKeysUserState(
+              StateKey.MultimapKeysUserState.newBuilder()
+                  .setTransformId("ptransform")
+                  .setUserStateId("multimap")
+                  .setWindow(ByteString.copyFromUtf8("window"))
+                  .setKey(ByteString.copyFromUtf8("key")))
+          .build();
+  private static final StateKey MULTIMAP_VALUE =
+      StateKey.newBuilder()
+          .setMultimapUserState(
+              StateKey.MultimapUserState.newBuilder()
+                  .setTransformId("ptransform")
+                  .setUserStateId("multimap")
+                  .setWindow(ByteString.copyFromUtf8("window"))
+                  .setKey(ByteString.copyFromUtf8("key"))
+                  .setMapKey(ByteString.copyFromUtf8("mapKey")))
+          .build();
+
+  /** A client which records all requests and completes them immediately. */
+  private static class RecordingStateClient implements BeamFnStateClient {
+    private final List<StateRequest> requests = new ArrayList<>();
+
+    @Override
+    public CompletableFuture<StateResponse> handle(StateRequest.Builder requestBuilder) {
+      requests.add(requestBuilder.build());
+      return CompletableFuture.completedFuture(StateResponse.getDefaultInstance());
+    }
+  }
+
+  private static StateKey bagKey(String userStateId) {
+    StateKey.Builder builder = StateKey.newBuilder();
+    builder
+        .getBagUserStateBuilder()
+        .setTransformId("ptransform")
+        .setUserStateId(userStateId)
+        .setWindow(ByteString.copyFromUtf8("window"))
+        .setKey(ByteString.copyFromUtf8("key"));
+    return builder.build();
+  }
+
+  private static StateRequest.Builder append(StateKey stateKey, String data) {
+    return StateRequest.newBuilder()
+        .setInstructionId("instruction")
+        .setStateKey(stateKey)
+        .setAppend(StateAppendRequest.newBuilder().setData(ByteString.copyFromUtf8(data)));
+  }
+
+  private static StateRequest.Builder clear(StateKey stateKey) {
+    return StateRequest.newBuilder()
+        .setInstructionId("instruction")
+        .setStateKey(stateKey)
+        .setClear(StateClearRequest.getDefaultInstance());
+  }
+
+  private static StateRequest.Builder get(StateKey stateKey) {
+    return StateRequest.newBuilder()
+        .setInstructionId("instruction")
+        .setStateKey(stateKey)
+        .setGet(StateGetRequest.getDefaultInstance());
+  }
+
+  @Test
+  public void testWriteBehindDisabled() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 0);
+
+    client.handle(append(BAG_A, "a"));
+    client.handle(clear(BAG_A));
+
+    assertThat(underlying.requests, contains(append(BAG_A, "a").build(), clear(BAG_A).build()));
+  }
+
+  @Test
+  public void testAppendsAreCoalesced() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    CompletableFuture<StateResponse> firstResponse = client.handle(append(BAG_A, "a"));
+    CompletableFuture<StateResponse> secondResponse = client.handle(append(BAG_B, "b"));
+    CompletableFuture<StateResponse> thirdResponse = client.handle(append(BAG_A, "c"));
+    assertThat(underlying.requests, empty());
+    assertFalse(firstResponse.isDone());
+    assertEquals(3, client.getBufferedBytes());
+
+    client.flush();
+    assertThat(
+        underlying.requests, contains(append(BAG_A, "ac").build(), append(BAG_B, "b").build()));
+    assertTrue(firstResponse.isDone());
+    assertTrue(secondResponse.isDone());
+    assertTrue(thirdResponse.isDone());
+    assertEquals(0, client.getBufferedBytes());
+  }
+
+  @Test
+  public void testClearDiscardsAppends() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    client.handle(append(BAG_A, "a"));
+    client.handle(clear(BAG_A));
+    client.handle(append(BAG_A, "b"));
+    assertEquals(1, client.getBufferedBytes());
+
+    client.flush();
+    assertThat(underlying.requests, contains(clear(BAG_A).build(), append(BAG_A, "b").build()));
+  }
+
+  @Test
+  public void testReadFlushesMutations() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    client.handle(append(BAG_A, "a"));
+    // Reading other state does not require the mutations to be sent.
+    client.handle(get(BAG_B));
+    assertThat(underlying.requests, contains(get(BAG_B).build()));
+
+    client.handle(get(BAG_A));
+    assertThat(
+        underlying.requests,
+        contains(get(BAG_B).build(), append(BAG_A, "a").build(), get(BAG_A).build()));
+  }
+
+  @Test
+  public void testMultimapKeysReadFlushesValueMutations() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    client.handle(append(MULTIMAP_VALUE, "a"));
+    client.handle(get(MULTIMAP_KEYS));
+    assertThat(
+        underlying.requests,
+        contains(append(MULTIMAP_VALUE, "a").build(), get(MULTIMAP_KEYS).build()));
+  }
+
+  @Test
+  public void testMultimapClearDiscardsValueMutations() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    CompletableFuture<StateResponse> discardedResponse =
+        client.handle(append(MULTIMAP_VALUE, "a"));
+    client.handle(clear(MULTIMAP_KEYS));
+    assertTrue(discardedResponse.isDone());
+    client.handle(append(MULTIMAP_VALUE, "b"));
+
+    client.flush();
+    assertThat(
+        underlying.requests,
+        contains(clear(MULTIMAP_KEYS).build(), append(MULTIMAP_VALUE, "b").build()));
+  }
+
+  @Test
+  public void testFlushWhenBufferIsFull() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 10);
+
+    client.handle(append(BAG_A, "abcdef"));
+    assertThat(underlying.requests, empty());
+    client.handle(append(BAG_A, "ghijkl"));
+    assertThat(underlying.requests, contains(append(BAG_A, "abcdefghijkl").build()));
+    assertEquals(0, client.getBufferedBytes());
+  }
+
+  @Test
+  public void testMultimapClearKeepsMutationsOfOtherCells() throws Exception {
+    RecordingStateClient underlying = new RecordingStateClient();
+    WriteBehindStateClient client = new WriteBehindStateClient(underlying, 1000);
+
+    client.handle(append(BAG_A, "a"));
+    client.handle(append(MULTIMAP_VALUE, "b"));
+    client.handle(clear(MULTIMAP_KEYS));
+    assertEquals(1, client.getBufferedBytes());
+
+    client.flush();
+    assertThat(
+        underlying.requests, contains(append(BAG_A, "a").build(), clear(MULTIMAP_KEYS).build()));
+  }
+
+  @Test(timeout = 10000)
+  public void testMutationsAreSentWithoutHoldingTheLock() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      AtomicReference<WriteBehindStateClient> client = new AtomicReference<>();
+      List<Long> bufferedBytesDuringSend = new ArrayList<>();
+      client.set(
+          new WriteBehindStateClient(
+              requestBuilder -> {
+                // Blocks if the flushing thread still holds the client's lock.
+                bufferedBytesDuringSend.add(
+                    CompletableFuture.supplyAsync(client.get()::getBufferedBytes, executor)
+                        .join());
+                return CompletableFuture.completedFuture(StateResponse.getDefaultInstance());
+              },
+              1000));
+
+      client.get().handle(append(BAG_A, "abc"));
+      client.get().flush();
+      assertThat(bufferedBytesDuringSend, contains(0L));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.testutils.jmh;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * Compares JMH benchmark scores against the scores of a baseline run to detect regressions.
+ *
+ * <p>Baselines are JMH result files in JSON format, as written by running JMH with {@code -rf json
+ * -rff <file>}. Benchmarks are matched by their fully qualified name, mode and parameters.
+ * Benchmarks which are only present in either run are ignored.
+ *
+ * <p>A benchmark regressed if its score is worse than the baseline score by more than the given
+ * threshold, relative to the baseline score. Higher scores are better for throughput benchmarks,
+ * lower scores are better for all other modes.
+ *
+ * <p>Two result files can be compared directly with:
+ *
+ * <pre>
+ * java org.apache.beam.sdk.testutils.jmh.BaselineComparison baseline.json current.json [threshold]
+ * </pre>
+ *
+ * <p>which prints a report and exits with a non-zero status if any benchmark regressed.
+ */
+public class BaselineComparison {
+  /** The default relative threshold above which a worse score is reported as regression. */
+  public static final double DEFAULT_THRESHOLD = 0.1;
+
+  private static final String THROUGHPUT_MODE = "thrpt";
+
+  /** The primary score of a benchmark run. */
+  public static class Score {
+    private final String mode;
+    private final double score;
+    private final double scoreError;
+    private final String scoreUnit;
+
+    public Score(String mode, double score, double scoreError, String scoreUnit) {
+      this.mode = mode;
+      this.score = score;
+      this.scoreError = scoreError;
+      this.scoreUnit = scoreUnit;
+    }
+
+    public String getMode() {
+      return mode;
+    }
+
+    public double getScore() {
+      return score;
+    }
+
+    public double getScoreError() {
+      return scoreError;
+    }
+
+    public String getScoreUnit() {
+      return scoreUnit;
+    }
+  }
+
+  /** The comparison of the score of a benchmark against its baseline score. */
+  public static class Comparison {
+    private final String benchmark;
+    private final Score baseline;
+    private final Score current;
+    private final double threshold;
+
+    private Comparison(String benchmark, Score baseline, Score current, double threshold) {
+      this.benchmark = benchmark;
+      this.baseline = baseline;
+      this.current = current;
+      this.threshold = threshold;
+    }
+
+    public String getBenchmark() {
+      return benchmark;
+    }
+
+    /**
+     * Returns the relative change of the score, which is positive if the score improved and
+     * negative if it got worse.
+     */
+    public double getChange() {
+      double change = (current.getScore() - baseline.getScore()) / baseline.getScore();
+      return THROUGHPUT_MODE.equals(current.getMode()) ? change : -change;
+    }
+
+    public boolean isRegression() {
+      return getChange() < -threshold;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%-12s %s: %.3f +- %.3f -> %.3f +- %.3f %s (%+.1f%%)",
+          isRegression() ? "REGRESSION" : "ok",
+          benchmark,
+          baseline.getScore(),
+          baseline.getScoreError(),
+          current.getScore(),
+          current.getScoreError(),
+          current.getScoreUnit(),
+          getChange() * 100);
+    }
+  }
+
+  private BaselineComparison() {}
+
+  /**
+   * Returns the key by which benchmarks are matched, consisting of the benchmark name, its mode
+   * and its parameters, if any.
+   */
+  static String key(String benchmark, String mode, Map<String, String> params) {
+    StringBuilder key = new StringBuilder(benchmark).append(" [").append(mode);
+    for (Map.Entry<String, String> param : new TreeMap<>(params).entrySet()) {
+      key.append(", ").append(param.getKey()).append('=').append(param.getValue());
+    }
+    return key.append(']').toString();
+  }
+
+  /** Reads the primary scores of a JMH result file in JSON format, keyed by {@link #key}. */
+  public static Map<String, Score> readScores(Reader json) {
+    Map<String, Score> scores = new TreeMap<>();
+    for (JsonElement element : JsonParser.parseReader(json).getAsJsonArray()) {
+      JsonObject result = element.getAsJsonObject();
+      String mode = result.get("mode").getAsString();
+      Map<String, String> params = new TreeMap<>();
+      @Nullable JsonObject jsonParams = result.getAsJsonObject("params");
+      if (jsonParams != null) {
+        for (Map.Entry<String, JsonElement> param : jsonParams.entrySet()) {
+          params.put(param.getKey(), param.getValue().getAsString());
+        }
+      }
+      JsonObject metric = result.getAsJsonObject("primaryMetric");
+      JsonElement scoreError = metric.get("scoreError");
+      scores.put(
+          key(result.get("benchmark").getAsString(), mode, params),
+          new Score(
+              mode,
+              metric.get("score").getAsDouble(),
+              // JMH writes "NaN" as string if the error is unknown
+              scoreError.getAsJsonPrimitive().isNumber() ? scoreError.getAsDouble() : Double.NaN,
+              metric.get("scoreUnit").getAsString()));
+    }
+    return scores;
+  }
+
+  /** Compares all benchmarks which are present in both {@code baseline} and {@code current}. */
+  public static List<Comparison> compare(
+      Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+    List<Comparison> comparisons = new ArrayList<>();
+    for (Map.Entry<String, Score> score : new TreeMap<>(current).entrySet()) {
+      @Nullable Score baselineScore = baseline.get(score.getKey());
+      if (baselineScore != null
+          && baselineScore.getScore() != 0
+          && Objects.equals(baselineScore.getScoreUnit(), score.getValue().getScoreUnit())) {
+        comparisons.add(
+            new Comparison(score.getKey(), baselineScore, score.getValue(), threshold));
+      }
+    }
+    return Collections.unmodifiableList(comparisons);
+  }
+
+  /** Prints a report of the {@code comparisons} and returns whether any benchmark regressed. */
+  public static boolean report(List<Comparison> comparisons, PrintStream out) {
+    boolean regressed = false;
+    for (Comparison comparison : comparisons) {
+      out.println(comparison);
+      regressed |= comparison.isRegression();
+    }
+    return regressed;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [threshold]");
+      System.exit(2);
+    }
+    Map<String, Score> baseline;
+    try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), UTF_8)) {
+      baseline = readScores(reader);
+    }
+    Map<String, Score> current;
+    try (Reader reader = Files.newBufferedReader(Paths.get(args[1]), UTF_8)) {
+      current = readScores(reader);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+    if (report(compare(baseline, current, threshold), System.out)) {
+      System.exit(1);
+    }
+  }
+}
@@ -17,19 +17,27 @@
  */
 package org.apache.beam.sdk.testutils.jmh;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
 import static org.openjdk.jmh.annotations.Mode.SingleShotTime;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
+import org.apache.beam.sdk.testutils.jmh.BaselineComparison.Comparison;
+import org.apache.beam.sdk.testutils.jmh.BaselineComparison.Score;
 import org.apache.beam.sdk.testutils.publishing.InfluxDBPublisher;
 import org.apache.beam.sdk.testutils.publishing.InfluxDBPublisher.DataPoint;
 import org.apache.beam.sdk.testutils.publishing.InfluxDBSettings;
@@ -46,7 +54,7 @@ import org.openjdk.jmh.runner.options.CommandLineOptions;
 
 /**
  * Custom main wrapper around the {@link Runner JMH runner} that supports publishing JMH benchmark
- * results to InfluxDB.
+ * results to InfluxDB and comparing them against a baseline.
  *
  * <h3>Schema</h3>
  *
@@ -92,11 +100,22 @@ import org.openjdk.jmh.runner.options.CommandLineOptions;
  *   <li>{@code INFLUXDB_BASE_MEASUREMENT}: Prefix for measurement name, the benchmark mode will be
  *       appended to this
  * </ul>
+ *
+ * <h3>Baseline comparison</h3>
+ *
+ * <p>If {@code JMH_BASELINE_RESULTS} points to the JSON results of a previous run, typically
+ * written with {@code -rf json -rff baseline.json}, the score of each benchmark is compared against
+ * its baseline score. A report is printed after the run and the wrapper exits with a non-zero
+ * status if any benchmark got worse by more than {@code JMH_REGRESSION_THRESHOLD}, relative to the
+ * baseline score (defaults to {@link BaselineComparison#DEFAULT_THRESHOLD}). See {@link
+ * BaselineComparison} for details.
  */
 public class Main {
   private static final String INFLUXDB_HOST = "INFLUXDB_HOST";
   private static final String INFLUXDB_DATABASE = "INFLUXDB_DATABASE";
   private static final String INFLUXDB_BASE_MEASUREMENT = "INFLUXDB_BASE_MEASUREMENT";
+  private static final String JMH_BASELINE_RESULTS = "JMH_BASELINE_RESULTS";
+  private static final String JMH_REGRESSION_THRESHOLD = "JMH_REGRESSION_THRESHOLD";
 
   public static void main(String[] args)
       throws CommandLineOptionException, IOException, RunnerException {
@@ -104,10 +123,13 @@ public class Main {
 
     final InfluxDBSettings influxDB = influxDBSettings();
     final String baseMeasurement = System.getenv(INFLUXDB_BASE_MEASUREMENT);
+    final String baselineResults = System.getenv(JMH_BASELINE_RESULTS);
+    final boolean publish =
+        influxDB != null
+            && baseMeasurement != null
+            && !isSingleShotTimeOnly(opts.getBenchModes());
 
-    if (influxDB == null
-        || baseMeasurement == null
-        || isSingleShotTimeOnly(opts.getBenchModes())
+    if ((!publish && baselineResults == null)
         || opts.shouldHelp()
         || opts.shouldList()
         || opts.shouldListWithParams()
@@ -121,13 +143,59 @@ public class Main {
     final Runner runner = new Runner(opts);
     final Collection<RunResult> results = runner.run();
 
-    final Collection<DataPoint> dataPoints =
-        results.stream()
-            .filter(r -> r.getParams().getMode() != SingleShotTime)
-            .map(r -> dataPoint(baseMeasurement, r))
-            .collect(toList());
+    if (publish && influxDB != null && baseMeasurement != null) {
+      final Collection<DataPoint> dataPoints =
+          results.stream()
+              .filter(r -> r.getParams().getMode() != SingleShotTime)
+              .map(r -> dataPoint(baseMeasurement, r))
+              .collect(toList());
+
+      InfluxDBPublisher.publish(influxDB, dataPoints);
+    }
+
+    if (baselineResults != null && compareToBaseline(baselineResults, results)) {
+      System.exit(1);
+    }
+  }
+
+  /** Prints the comparison of the results to the baseline and returns whether any regressed. */
+  private static boolean compareToBaseline(String baselineResults, Collection<RunResult> results)
+      throws IOException {
+    final Map<String, Score> baseline;
+    try (Reader reader = Files.newBufferedReader(Paths.get(baselineResults), UTF_8)) {
+      baseline = BaselineComparison.readScores(reader);
+    }
+    final String threshold = System.getenv(JMH_REGRESSION_THRESHOLD);
+    final List<Comparison> comparisons =
+        BaselineComparison.compare(
+            baseline,
+            results.stream().collect(toMap(Main::baselineKey, Main::score, (a, b) -> b)),
+            threshold != null
+                ? Double.parseDouble(threshold)
+                : BaselineComparison.DEFAULT_THRESHOLD);
+
+    System.out.println();
+    System.out.printf("Comparison to baseline %s:%n", baselineResults);
+    return BaselineComparison.report(comparisons, System.out);
+  }
+
+  private static String baselineKey(RunResult run) {
+    final BenchmarkParams params = run.getParams();
+    final Map<String, String> paramValues = new TreeMap<>();
+    for (String key : params.getParamsKeys()) {
+      paramValues.put(key, params.getParam(key));
+    }
+    return BaselineComparison.key(
+        params.getBenchmark(), params.getMode().shortLabel(), paramValues);
+  }
 
-    InfluxDBPublisher.publish(influxDB, dataPoints);
+  private static Score score(RunResult run) {
+    final Result<?> result = run.getPrimaryResult();
+    return new Score(
+        run.getParams().getMode().shortLabel(),
+        result.getScore(),
+        result.getScoreError(),
+        result.getScoreUnit());
   }
 
   private static boolean isSingleShotTimeOnly(Collection<Mode> modes) {
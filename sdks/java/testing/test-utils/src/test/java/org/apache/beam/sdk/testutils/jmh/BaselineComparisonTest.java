@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.beam.sdk.testutils.jmh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.apache.beam.sdk.testutils.jmh.BaselineComparison.Comparison;
+import org.apache.beam.sdk.testutils.jmh.BaselineComparison.Score;
+import org.apache.beam.vendor.guava.v26_0_jre.com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+public final class BaselineComparisonTest {
+
+  private static final String RESULTS =
+      "[{\"benchmark\": \"org.apache.beam.Benchmark.encode\", \"mode\": \"thrpt\","
+          + " \"params\": {\"coder\": \"VAR_INT\", \"size\": \"10\"},"
+          + " \"primaryMetric\": {\"score\": 1000.0, \"scoreError\": 10.0,"
+          + " \"scoreUnit\": \"ops/s\"}},"
+          + " {\"benchmark\": \"org.apache.beam.Benchmark.decode\", \"mode\": \"avgt\","
+          + " \"primaryMetric\": {\"score\": 2.5, \"scoreError\": \"NaN\","
+          + " \"scoreUnit\": \"us/op\"}}]";
+
+  @Test
+  public void testReadScores() {
+    Map<String, Score> scores = BaselineComparison.readScores(new StringReader(RESULTS));
+
+    assertEquals(2, scores.size());
+    Score encode =
+        scores.get("org.apache.beam.Benchmark.encode [thrpt, coder=VAR_INT, size=10]");
+    assertEquals(1000.0, encode.getScore(), 0.0);
+    assertEquals(10.0, encode.getScoreError(), 0.0);
+    assertEquals("ops/s", encode.getScoreUnit());
+    Score decode = scores.get("org.apache.beam.Benchmark.decode [avgt]");
+    assertEquals(2.5, decode.getScore(), 0.0);
+    assertTrue(Double.isNaN(decode.getScoreError()));
+  }
+
+  @Test
+  public void testCompareThroughput() {
+    Map<String, Score> baseline = ImmutableMap.of("a", thrpt(1000.0), "b", thrpt(1000.0));
+    Map<String, Score> current =
+        ImmutableMap.of("a", thrpt(950.0), "b", thrpt(850.0), "c", thrpt(1.0));
+
+    List<Comparison> comparisons = BaselineComparison.compare(baseline, current, 0.1);
+
+    assertEquals(2, comparisons.size());
+    assertEquals("a", comparisons.get(0).getBenchmark());
+    assertEquals(-0.05, comparisons.get(0).getChange(), 1e-9);
+    assertFalse(comparisons.get(0).isRegression());
+    assertEquals("b", comparisons.get(1).getBenchmark());
+    assertEquals(-0.15, comparisons.get(1).getChange(), 1e-9);
+    assertTrue(comparisons.get(1).isRegression());
+  }
+
+  @Test
+  public void testCompareAverageTime() {
+    Map<String, Score> baseline = ImmutableMap.of("a", avgt(2.0), "b", avgt(2.0));
+    Map<String, Score> current = ImmutableMap.of("a", avgt(1.0), "b", avgt(2.5));
+
+    List<Comparison> comparisons = BaselineComparison.compare(baseline, current, 0.1);
+
+    assertEquals(0.5, comparisons.get(0).getChange(), 1e-9);
+    assertFalse(comparisons.get(0).isRegression());
+    assertEquals(-0.25, comparisons.get(1).getChange(), 1e-9);
+    assertTrue(comparisons.get(1).isRegression());
+  }
+
+  @Test
+  public void testReport() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8.name());
+
+    assertFalse(
+        BaselineComparison.report(
+            BaselineComparison.compare(
+                ImmutableMap.of("a", thrpt(1000.0)), ImmutableMap.of("a", thrpt(1100.0)), 0.1),
+            out));
+    assertTrue(
+        BaselineComparison.report(
+            BaselineComparison.compare(
+                ImmutableMap.of("a", thrpt(1000.0)), ImmutableMap.of("a", thrpt(500.0)), 0.1),
+            out));
+
+    String report = new String(output.toByteArray(), StandardCharsets.UTF_8);
+    assertTrue(report, report.contains("+10.0%"));
+    assertTrue(report, report.contains("REGRESSION"));
+  }
+
+  private static Score thrpt(double score) {
+    return new Score("thrpt", score, 1.0, "ops/s");
+  }
+
+  private static Score avgt(double score) {
+    return new Score("avgt", score, 1.0, "us/op");
+  }
+}
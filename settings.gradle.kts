@@ -80,7 +80,9 @@ include(":learning:tour-of-beam:frontend")
 
 include(":runners:core-construction-java")
 include(":runners:core-java")
+include(":runners:core-java:jmh")
 include(":runners:direct-java")
+include(":runners:direct-java:jmh")
 include(":runners:extensions-java:metrics")
 /* Begin Flink Runner related settings */
 // Flink 1.12
@@ -136,6 +138,7 @@ include(":sdks:java:core:jmh")
 include(":sdks:java:expansion-service")
 include(":sdks:java:expansion-service:app")
 include(":sdks:java:extensions:arrow")
+include(":sdks:java:extensions:arrow:jmh")
 include(":sdks:java:extensions:avro")
 include(":sdks:java:extensions:euphoria")
 include(":sdks:java:extensions:kryo")